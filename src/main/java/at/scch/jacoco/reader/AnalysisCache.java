@@ -0,0 +1,193 @@
+package at.scch.jacoco.reader;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Persistent cache of analyzed classes, keyed by the class id (CRC64 of the class file).
+ * Classes that did not change since an earlier analysis are read from the cache instead of analyzing their byte code again.
+ * <p>
+ * Every class is stored in a file of its own, which is written to a temporary file first and then moved into place,
+ * so other processes using the same directory either see a complete entry or none.
+ * The size of the cache is bounded by evicting the least recently used entries in {@link #trim()},
+ * which holds a lock on the directory so only one process evicts at a time.
+ * Damaged or outdated entries are treated as missing.
+ */
+public class AnalysisCache {
+
+	/**
+	 * Marks the files of the cache, followed by the format version.
+	 */
+	private static final int MAGIC_NUMBER = 0x4A434143;
+
+	/**
+	 * Must be changed whenever the analysis or the format of {@link AnalyzedClass} changes.
+	 */
+	private static final int FORMAT_VERSION = 3;
+
+	private static final String SUFFIX = ".class-index";
+
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	private static final String LOCK_FILE = ".lock";
+
+	/**
+	 * Age after which a temporary file is considered left over by a process that failed to write it.
+	 */
+	private static final long TEMP_FILE_AGE = 60 * 60 * 1000L;
+
+	private final Path directory;
+
+	private final long maxSize;
+
+	/**
+	 * @param directory - directory of the cache, created if it doesn't exist
+	 * @param maxSize - maximal size of all entries in bytes
+	 * @throws IOException - if the directory can't be created
+	 */
+	public AnalysisCache(File directory, long maxSize) throws IOException {
+		super();
+		this.directory = directory.toPath();
+		this.maxSize = maxSize;
+		Files.createDirectories(this.directory);
+	}
+
+	/**
+	 * Reads an analyzed class from the cache and marks it as recently used.
+	 * @param classId - class id, as used in the execution data
+	 * @return - analyzed class, or null if it is not in the cache
+	 */
+	AnalyzedClass get(long classId) {
+		Path file = getFile(classId);
+		try {
+			byte[] content = Files.readAllBytes(file);
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(content));
+			if (in.readInt() != MAGIC_NUMBER || in.readInt() != FORMAT_VERSION) {
+				return null;
+			}
+			AnalyzedClass analyzedClass = AnalyzedClass.read(in);
+			if (analyzedClass.id != classId) {
+				return null;
+			}
+			Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+			return analyzedClass;
+		} catch (IOException e) {
+			// damaged or removed meanwhile, analyze the class again
+			return null;
+		}
+	}
+
+	/**
+	 * Writes an analyzed class to the cache.
+	 * Failing to write is not an error, the class is analyzed again next time.
+	 * @param analyzedClass - analyzed class
+	 */
+	void put(AnalyzedClass analyzedClass) {
+		Path file = getFile(analyzedClass.id);
+		Path tmp = null;
+		try {
+			tmp = Files.createTempFile(directory, file.getFileName().toString(), TEMP_SUFFIX);
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+				out.writeInt(MAGIC_NUMBER);
+				out.writeInt(FORMAT_VERSION);
+				analyzedClass.write(out);
+			}
+			try {
+				Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IOException e) {
+			System.err.println("WARNING: Can't write analysis cache entry " + file + ": " + e.getMessage());
+			if (tmp != null) {
+				try {
+					Files.deleteIfExists(tmp);
+				} catch (IOException ignored) {
+					// nothing left to do
+				}
+			}
+		}
+	}
+
+	/**
+	 * Evicts the least recently used entries, until the cache is not larger than its maximal size.
+	 * If another process is evicting entries from the same directory, nothing is done.
+	 * @throws IOException - if the directory can't be read
+	 */
+	public void trim() throws IOException {
+		try (FileChannel channel = FileChannel.open(directory.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+			 FileLock lock = tryLock(channel)) {
+			if (lock == null) {
+				return;
+			}
+			List<Entry> entries = new ArrayList<>();
+			long size = 0;
+			long now = System.currentTimeMillis();
+			try (Stream<Path> files = Files.list(directory)) {
+				for (Path file : (Iterable<Path>) files::iterator) {
+					String name = file.getFileName().toString();
+					try {
+						BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+						if (name.endsWith(SUFFIX)) {
+							entries.add(new Entry(file, attributes.size(), attributes.lastModifiedTime().toMillis()));
+							size += attributes.size();
+						} else if (name.endsWith(TEMP_SUFFIX) && now - attributes.lastModifiedTime().toMillis() > TEMP_FILE_AGE) {
+							Files.deleteIfExists(file);
+						}
+					} catch (IOException e) {
+						// removed meanwhile or in use by another process
+					}
+				}
+			}
+			if (size <= maxSize) {
+				return;
+			}
+			entries.sort(Comparator.comparingLong(e -> e.lastUsed));
+			for (Entry entry : entries) {
+				if (size <= maxSize) {
+					break;
+				}
+				try {
+					Files.deleteIfExists(entry.file);
+					size -= entry.size;
+				} catch (IOException e) {
+					// in use by another process, try the next one
+				}
+			}
+		}
+	}
+
+	private static FileLock tryLock(FileChannel channel) throws IOException {
+		try {
+			return channel.tryLock();
+		} catch (OverlappingFileLockException e) {
+			// locked by another thread of this process
+			return null;
+		}
+	}
+
+	private Path getFile(long classId) {
+		return directory.resolve(String.format("%016x", classId) + SUFFIX);
+	}
+
+	private static class Entry {
+		private final Path file;
+		private final long size;
+		private final long lastUsed;
+
+		Entry(Path file, long size, long lastUsed) {
+			this.file = file;
+			this.size = size;
+			this.lastUsed = lastUsed;
+		}
+	}
+}
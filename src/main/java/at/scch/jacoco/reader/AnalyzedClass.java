@@ -0,0 +1,146 @@
+package at.scch.jacoco.reader;
+
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Result of analyzing the byte code of a single class, independent of the source code structure it is added to.
+ * It contains the methods and lines of the class, and the probes covering the instructions and branches of every line,
+ * in the flattened form used by {@link ClassProbeIndex}.
+ * Unlike the structure, it can be written to and read from the {@link AnalysisCache}.
+ */
+class AnalyzedClass {
+
+	/**
+	 * Class id (CRC64 of the class file), as used in the execution data.
+	 */
+	final long id;
+
+	/**
+	 * Name of the class, with "/" as package separator.
+	 */
+	final String vmName;
+
+	/**
+	 * Name of the source file of the class, without directories, or null if the class file does not name it.
+	 */
+	final String sourceFileName;
+
+	final String[] signatures;
+
+	final int[] complexities;
+
+	/**
+	 * Offsets into the lines, per method.
+	 */
+	final int[] methodLines;
+
+	final int[] lineNumbers;
+
+	final int[] lineInstructions;
+
+	final int[] lineBranches;
+
+	/**
+	 * Offsets into the probe groups, per line.
+	 */
+	final int[] lineGroups;
+
+	/**
+	 * Number of instructions covered by any probe of a group.
+	 */
+	final int[] groupInstructions;
+
+	/**
+	 * Number of branches covered by any probe of a group.
+	 */
+	final int[] groupBranches;
+
+	/**
+	 * Offsets into probes, per group.
+	 */
+	final int[] groupProbes;
+
+	final int[] probes;
+
+	AnalyzedClass(long id, String vmName, String sourceFileName, String[] signatures, int[] complexities, int[] methodLines,
+				  int[] lineNumbers, int[] lineInstructions, int[] lineBranches, int[] lineGroups,
+				  int[] groupInstructions, int[] groupBranches, int[] groupProbes, int[] probes) {
+		this.id = id;
+		this.vmName = vmName;
+		this.sourceFileName = sourceFileName;
+		this.signatures = signatures;
+		this.complexities = complexities;
+		this.methodLines = methodLines;
+		this.lineNumbers = lineNumbers;
+		this.lineInstructions = lineInstructions;
+		this.lineBranches = lineBranches;
+		this.lineGroups = lineGroups;
+		this.groupInstructions = groupInstructions;
+		this.groupBranches = groupBranches;
+		this.groupProbes = groupProbes;
+		this.probes = probes;
+	}
+
+	void write(DataOutput out) throws IOException {
+		out.writeLong(id);
+		out.writeUTF(vmName);
+		out.writeBoolean(sourceFileName != null);
+		if (sourceFileName != null) {
+			out.writeUTF(sourceFileName);
+		}
+		out.writeInt(signatures.length);
+		for (String signature : signatures) {
+			out.writeUTF(signature);
+		}
+		writeInts(out, complexities);
+		writeInts(out, methodLines);
+		writeInts(out, lineNumbers);
+		writeInts(out, lineInstructions);
+		writeInts(out, lineBranches);
+		writeInts(out, lineGroups);
+		writeInts(out, groupInstructions);
+		writeInts(out, groupBranches);
+		writeInts(out, groupProbes);
+		writeInts(out, probes);
+	}
+
+	static AnalyzedClass read(DataInputStream in) throws IOException {
+		long id = in.readLong();
+		String vmName = in.readUTF();
+		String sourceFileName = in.readBoolean() ? in.readUTF() : null;
+		String[] signatures = new String[readLength(in, 2)];
+		for (int i = 0; i < signatures.length; i++) {
+			signatures[i] = in.readUTF();
+		}
+		return new AnalyzedClass(id, vmName, sourceFileName, signatures, readInts(in), readInts(in), readInts(in), readInts(in),
+				readInts(in), readInts(in), readInts(in), readInts(in), readInts(in), readInts(in));
+	}
+
+	private static void writeInts(DataOutput out, int[] values) throws IOException {
+		out.writeInt(values.length);
+		for (int value : values) {
+			out.writeInt(value);
+		}
+	}
+
+	private static int[] readInts(DataInputStream in) throws IOException {
+		int[] values = new int[readLength(in, 4)];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = in.readInt();
+		}
+		return values;
+	}
+
+	/**
+	 * Reads the length of an array and checks it against the remaining input, so a damaged file can't cause a huge allocation.
+	 */
+	private static int readLength(DataInputStream in, int minElementSize) throws IOException {
+		int length = in.readInt();
+		if (length < 0 || (long) length * minElementSize > in.available()) {
+			throw new IOException("Invalid array length " + length + ".");
+		}
+		return length;
+	}
+}
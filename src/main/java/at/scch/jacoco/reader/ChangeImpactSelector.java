@@ -0,0 +1,138 @@
+package at.scch.jacoco.reader;
+
+import org.apache.commons.cli.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Prints the sessions covering the lines changed by a unified diff, e.g. the tests affected by a commit,
+ * the session covering the most changed lines first. Every line holds the number of changed lines the session covers
+ * and the session ID, separated by a tab.
+ */
+public class ChangeImpactSelector {
+
+    public static void main(final String[] args) throws IOException {
+
+        Options options = new Options();
+        Option diffOption = Option.builder("d")
+                .longOpt("diff")
+                .argName("diffPath")
+                .hasArg()
+                .desc("Path to a unified diff of the sources the coverage was recorded on, e.g. from git diff, or - to read it from the standard input.")
+                .required()
+                .build();
+        Option reportOption = Option.builder("j")
+                .longOpt("json")
+                .argName("reportPath")
+                .hasArg()
+                .desc("Path to a report exported as JSON. (Optional: Instead of exec files and binaries.)")
+                .build();
+        Option execOption = Option.builder("e")
+                .longOpt("exec")
+                .argName("execPath")
+                .hasArg()
+                .desc("List of paths to the exec files from recording coverage with JaCoCo, or directories containing them. The list entries are separated by a semicolon (;) in Windows and a colon (:) in Unix. Sessions with the same ID in several files are merged.")
+                .build();
+        Option binariesOption = Option.builder("b")
+                .longOpt("binaries")
+                .argName("binaryPaths")
+                .hasArg()
+                .desc("List of paths to the binaries (directory, class files, JAR files) to analyze. The list entries are separated by a semicolon (;) in Windows and a colon (:) in Unix.")
+                .build();
+        Option workersOption = Option.builder("w")
+                .longOpt("workers")
+                .argName("count")
+                .hasArg()
+                .desc("Number of exec files read and binaries analyzed concurrently. (Optional: By default 1.)")
+                .build();
+        Option sessionsOption = Option.builder("sessions")
+                .argName("idPatterns")
+                .hasArg()
+                .desc("A list of session IDs that may be selected. The list entries are separated by a colon (:) and may use wildcard characters (* and ?). (Optional: By default all sessions.)")
+                .build();
+
+        options.addOption(diffOption);
+        options.addOption(reportOption);
+        options.addOption(execOption);
+        options.addOption(binariesOption);
+        options.addOption(workersOption);
+        options.addOption(sessionsOption);
+
+        CommandLineParser parser = new DefaultParser();
+        CommandLine cmd;
+        try {
+            cmd = parser.parse(options, args);
+            if (!cmd.hasOption('j') && !(cmd.hasOption('e') && cmd.hasOption('b'))) {
+                throw new ParseException("Missing option: either j or e and b");
+            }
+        } catch (ParseException e) {
+            System.err.println(e.getMessage());
+            HelpFormatter formatter = new HelpFormatter();
+            formatter.printHelp("java -cp jaCoCoReader " + ChangeImpactSelector.class.getName() + " [OPTIONS]", options);
+            return;
+        }
+
+        int workers = 1;
+        if(cmd.hasOption('w')){
+            try {
+                workers = Integer.parseInt(cmd.getOptionValue('w'));
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid number of workers: " + cmd.getOptionValue('w'));
+                return;
+            }
+        }
+
+        SessionFilter sessionFilter = SessionFilter.ALL;
+        if(cmd.hasOption("sessions")){
+            sessionFilter = sessionFilter.withIdPatterns(Arrays.asList(cmd.getOptionValue("sessions").split(":")));
+        }
+
+        JacocoCoverageReport report;
+        if (cmd.hasOption('j')) {
+            JacocoCoverageReport imported = JacocoCoverageReport.importReport(new File(cmd.getOptionValue('j')));
+            report = imported;
+            if (cmd.hasOption("sessions")) {
+                report = new JacocoCoverageReport(imported.getPackages());
+                for (JacocoSession session : imported.getSessions()) {
+                    if (sessionFilter.accept(session.getId())) {
+                        report.addSession(session);
+                    }
+                }
+            }
+        } else {
+            String separator = System.getProperty("os.name").toLowerCase().contains("win") ? ";" : ":";
+            List<File> execFiles = new ArrayList<>();
+            for (String execFile : cmd.getOptionValue('e').split(separator)) {
+                execFiles.add(new File(execFile));
+            }
+            Set<File> bins = new HashSet<>();
+            for (String bin : cmd.getOptionValue('b').split(separator)) {
+                bins.add(new File(bin));
+            }
+            // the binaries are analyzed once, the coverage of every session is derived from its probes
+            JacocoProbeIndex index = JacocoReportGenerator.createProbeIndex(bins, Collections.emptySet(), null, null, workers);
+            report = JacocoReportGenerator.streamExecFiles(execFiles, index, workers, sessionFilter);
+        }
+
+        Map<String, Set<Integer>> changedLines;
+        String diff = cmd.getOptionValue('d');
+        try (Reader reader = diff.equals("-")
+                ? new InputStreamReader(System.in, StandardCharsets.UTF_8)
+                : new InputStreamReader(new FileInputStream(diff), StandardCharsets.UTF_8)) {
+            changedLines = JacocoChangeImpact.readChangedLines(reader);
+        }
+
+        JacocoChangeImpact impact = report.getChangeImpact(changedLines);
+        for (String sessionID : impact.getSessionIDs()) {
+            System.out.println(impact.getNumberOfChangedLinesCovered(sessionID) + "\t" + sessionID);
+        }
+        System.err.println(impact.getSessionIDs().size() + " sessions cover "
+                + (impact.getNumberOfChangedLines() - impact.getUncoveredLines().size()) + " of "
+                + impact.getNumberOfChangedLines() + " changed lines");
+        for (JacocoLine line : impact.getUncoveredLines()) {
+            System.err.println("not covered: " + line.getIdentifier());
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package at.scch.jacoco.reader;
+
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Include and exclude patterns for class files, compiled once for all class files of an analysis.
+ * A pattern matches the end of the path of a class file, "." is a package separator,
+ * "*" matches any number of characters and "?" a single character.
+ * All includes are compiled into a single regular expression, as are all excludes.
+ * Matching reuses one matcher per thread, so a filter can be shared by several analyzing threads.
+ */
+class ClassFileFilter {
+
+	private final ThreadLocal<Matcher> includes;
+
+	private final ThreadLocal<Matcher> excludes;
+
+	ClassFileFilter(final Set<String> includes, final Set<String> excludes) {
+		super();
+		this.includes = compile(includes);
+		this.excludes = compile(excludes);
+	}
+
+	/**
+	 * @return - whether any include or exclude pattern is given
+	 */
+	boolean isFiltering() {
+		return includes != null || excludes != null;
+	}
+
+	/**
+	 * @param pathToClassFile - path of the class file, or name of the zip entry
+	 * @return - whether the class file matches an include pattern and no exclude pattern
+	 */
+	boolean includes(final String pathToClassFile) {
+		if (!isFiltering()) {
+			return true;
+		}
+		String filePath = pathToClassFile.indexOf('\\') < 0 ? pathToClassFile : pathToClassFile.replace('\\', '/');
+		return (includes == null || matches(includes, filePath)) && (excludes == null || !matches(excludes, filePath));
+	}
+
+	private static boolean matches(ThreadLocal<Matcher> matcher, String filePath) {
+		return matcher.get().reset(filePath).matches();
+	}
+
+	private static ThreadLocal<Matcher> compile(final Set<String> patterns) {
+		if (patterns == null || patterns.isEmpty()) {
+			return null;
+		}
+		StringBuilder regex = new StringBuilder();
+		for (String pattern : patterns) {
+			if (regex.length() > 0) {
+				regex.append('|');
+			}
+			regex.append("(?:").append(getFileRegexFromPattern(pattern)).append(')');
+		}
+		Pattern compiled = Pattern.compile(regex.toString());
+		return ThreadLocal.withInitial(() -> compiled.matcher(""));
+	}
+
+	private static String getFileRegexFromPattern(String pattern) {
+		return ".*" + pattern.replaceAll("\\.", "/").
+				replaceAll("\\*", ".*").
+				replaceAll("\\?", ".");
+	}
+}
@@ -0,0 +1,224 @@
+package at.scch.jacoco.reader;
+
+import org.jacoco.core.analysis.ISourceNode;
+
+import java.util.*;
+
+/**
+ * Maps the probes of a single class to the lines and methods they cover.
+ * Every line keeps its instructions and branches grouped by the set of probes covering them,
+ * so the coverage of a line is the number of groups hit by a probe array.
+ */
+class ClassProbeIndex {
+
+	private final AnalyzedClass data;
+
+	private final JacocoMethod[] methods;
+
+	private final JacocoLine[] lines;
+
+	/**
+	 * Creates the methods and lines of an analyzed class in the structure.
+	 * @param data - analyzed class
+	 * @param clazz - class the methods are added to
+	 */
+	ClassProbeIndex(AnalyzedClass data, JacocoClass clazz) {
+		this.data = data;
+		this.methods = new JacocoMethod[data.signatures.length];
+		this.lines = new JacocoLine[data.lineNumbers.length];
+		for (int m = 0; m < methods.length; m++) {
+			methods[m] = new JacocoMethod(clazz, data.signatures[m], data.complexities[m]);
+			for (int l = data.methodLines[m]; l < data.methodLines[m + 1]; l++) {
+				lines[l] = new JacocoLine(data.lineNumbers[l], methods[m], data.lineInstructions[l], data.lineBranches[l]);
+			}
+		}
+	}
+
+	long getId() {
+		return data.id;
+	}
+
+	/**
+	 * Adds the coverage derived from the probes to the session.
+	 * @param session - session the coverage is added to
+	 * @param executed - executed probes of this class, as bits
+	 */
+	void addCoverage(JacocoSession.Builder session, long[] executed) {
+		for (int l = 0; l < lines.length; l++) {
+			int instructionsCovered = 0;
+			int branchesCovered = 0;
+			for (int g = data.lineGroups[l]; g < data.lineGroups[l + 1]; g++) {
+				if (isHit(g, executed)) {
+					instructionsCovered += data.groupInstructions[g];
+					branchesCovered += data.groupBranches[g];
+				}
+			}
+			if (instructionsCovered > 0) {
+				// same argument order as the analyzer based coverage in JacocoReportGenerator
+				session.addLine(lines[l], branchesCovered, instructionsCovered);
+			}
+		}
+	}
+
+	private boolean isHit(int group, long[] executed) {
+		int[] probes = data.probes;
+		for (int p = data.groupProbes[group]; p < data.groupProbes[group + 1]; p++) {
+			int probe = probes[p];
+			if ((probe >>> 6) < executed.length && (executed[probe >>> 6] & (1L << probe)) != 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Collects the methods of a class while it is analyzed.
+	 */
+	static class Builder {
+
+		private final long id;
+
+		private final String vmName;
+
+		private final List<MethodEntry> methods = new ArrayList<>();
+
+		private String sourceFileName;
+
+		Builder(long id, String vmName) {
+			this.id = id;
+			this.vmName = vmName;
+		}
+
+		/**
+		 * @param sourceFileName - name of the source file, as named by the class file
+		 */
+		void setSourceFileName(String sourceFileName) {
+			this.sourceFileName = sourceFileName;
+		}
+
+		/**
+		 * @param signature - signature of the method
+		 * @param instructions - instructions of the method, that are not filtered
+		 */
+		void addMethod(String signature, Collection<ProbeInstruction> instructions) {
+			if (instructions.isEmpty()) {
+				// Only consider methods that actually contain code
+				return;
+			}
+			int complexity = 1;
+			SortedMap<Integer, List<ProbeInstruction>> lines = new TreeMap<>();
+			for (ProbeInstruction instruction : instructions) {
+				if (instruction.getBranches() > 1) {
+					complexity += instruction.getBranches() - 1;
+				}
+				if (instruction.getLine() != ISourceNode.UNKNOWN_LINE) {
+					lines.computeIfAbsent(instruction.getLine(), l -> new ArrayList<>()).add(instruction);
+				}
+			}
+			methods.add(new MethodEntry(signature, complexity, lines));
+		}
+
+		/**
+		 * Groups the instructions and branches of every line by the probes covering them.
+		 * @return - analyzed class
+		 */
+		AnalyzedClass build() {
+			String[] signatures = new String[methods.size()];
+			int[] complexities = new int[methods.size()];
+			int[] methodLines = new int[methods.size() + 1];
+			IntList lineNumbers = new IntList();
+			IntList lineInstructions = new IntList();
+			IntList lineBranches = new IntList();
+			IntList lineGroups = new IntList();
+			IntList groupInstructions = new IntList();
+			IntList groupBranches = new IntList();
+			IntList groupProbes = new IntList();
+			IntList probes = new IntList();
+
+			for (int m = 0; m < methods.size(); m++) {
+				MethodEntry entry = methods.get(m);
+				signatures[m] = entry.signature;
+				complexities[m] = entry.complexity;
+				methodLines[m] = lineNumbers.size();
+				for (Map.Entry<Integer, List<ProbeInstruction>> line : entry.lines.entrySet()) {
+					int instructions = 0;
+					int branches = 0;
+					Map<BitSet, int[]> groups = new LinkedHashMap<>();
+					for (ProbeInstruction instruction : line.getValue()) {
+						instructions++;
+						addToGroup(groups, instruction.getProbes(), 0);
+						if (instruction.getBranches() > 1) {
+							branches += instruction.getBranches();
+							for (BitSet branchProbes : instruction.getBranchProbes()) {
+								addToGroup(groups, branchProbes, 1);
+							}
+						}
+					}
+					lineNumbers.add(line.getKey());
+					lineInstructions.add(instructions);
+					lineBranches.add(branches);
+					lineGroups.add(groupInstructions.size());
+					for (Map.Entry<BitSet, int[]> group : groups.entrySet()) {
+						groupInstructions.add(group.getValue()[0]);
+						groupBranches.add(group.getValue()[1]);
+						groupProbes.add(probes.size());
+						BitSet groupSet = group.getKey();
+						for (int p = groupSet.nextSetBit(0); p >= 0; p = groupSet.nextSetBit(p + 1)) {
+							probes.add(p);
+						}
+					}
+				}
+			}
+			methodLines[methods.size()] = lineNumbers.size();
+			lineGroups.add(groupInstructions.size());
+			groupProbes.add(probes.size());
+
+			return new AnalyzedClass(id, vmName, sourceFileName, signatures, complexities, methodLines,
+					lineNumbers.toArray(), lineInstructions.toArray(), lineBranches.toArray(), lineGroups.toArray(),
+					groupInstructions.toArray(), groupBranches.toArray(), groupProbes.toArray(), probes.toArray());
+		}
+
+		private static void addToGroup(Map<BitSet, int[]> groups, BitSet probes, int counter) {
+			if (probes.isEmpty()) {
+				// never covered, only counts to the total of the line
+				return;
+			}
+			groups.computeIfAbsent(probes, p -> new int[2])[counter]++;
+		}
+	}
+
+	private static class MethodEntry {
+		private final String signature;
+		private final int complexity;
+		private final SortedMap<Integer, List<ProbeInstruction>> lines;
+
+		MethodEntry(String signature, int complexity, SortedMap<Integer, List<ProbeInstruction>> lines) {
+			this.signature = signature;
+			this.complexity = complexity;
+			this.lines = lines;
+		}
+	}
+
+	/**
+	 * Growable list of primitive ints.
+	 */
+	private static class IntList {
+		private int[] values = new int[16];
+		private int size;
+
+		void add(int value) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = value;
+		}
+
+		int size() {
+			return size;
+		}
+
+		int[] toArray() {
+			return Arrays.copyOf(values, size);
+		}
+	}
+}
@@ -0,0 +1,173 @@
+package at.scch.jacoco.reader;
+
+import org.jacoco.core.analysis.Analyzer;
+import org.jacoco.core.internal.ContentTypeDetector;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Analyzes class directories and archives on several threads.
+ * Directories are walked up front, every file and every entry of a jar file is analyzed as a task of its own.
+ * Every worker thread uses its own {@link Analyzer}, so the coverage visitor of the analyzers must be thread-safe.
+ */
+class ClasspathScanner {
+
+	private final ClassFileFilter filter;
+
+	private final int workers;
+
+	ClasspathScanner(ClassFileFilter filter, int workers) {
+		this.filter = filter;
+		this.workers = workers;
+	}
+
+	/**
+	 * Analyze all class files in bins and jars.
+	 * @param analyzers - creates an analyzer for a worker thread
+	 * @param bins - directories containing class files
+	 * @param jars - jar files that should be part of the analysis
+	 * @throws IOException - if a directory cannot be walked
+	 */
+	void scan(Supplier<Analyzer> analyzers, Set<File> bins, Set<File> jars) throws IOException {
+		ThreadLocal<Analyzer> analyzer = ThreadLocal.withInitial(analyzers);
+		List<FileTask> tasks = new ArrayList<>();
+		if (bins != null) {
+			for (File bin : bins) {
+				addFiles(tasks, bin, analyzer);
+			}
+		}
+		if (jars != null) {
+			for (File jar : jars) {
+				addFiles(tasks, jar, analyzer);
+			}
+		}
+
+		ForkJoinPool pool = new ForkJoinPool(workers);
+		try {
+			pool.invoke(new RecursiveAction() {
+				@Override
+				protected void compute() {
+					invokeAll(tasks);
+				}
+			});
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	private void addFiles(List<FileTask> tasks, File bin, ThreadLocal<Analyzer> analyzer) throws IOException {
+		if (!bin.isDirectory()) {
+			tasks.add(new FileTask(bin, analyzer));
+			return;
+		}
+		try (Stream<Path> paths = Files.walk(bin.toPath(), FileVisitOption.FOLLOW_LINKS)) {
+			tasks.addAll(paths.filter(Files::isRegularFile)
+					.map(path -> new FileTask(path.toFile(), analyzer))
+					.collect(Collectors.toList()));
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	private static void printError(IOException e) {
+		System.err.println("ERROR: " + e.getMessage());
+		e.printStackTrace();
+	}
+
+	private class FileTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final File file;
+
+		private final ThreadLocal<Analyzer> analyzer;
+
+		FileTask(File file, ThreadLocal<Analyzer> analyzer) {
+			this.file = file;
+			this.analyzer = analyzer;
+		}
+
+		@Override
+		protected void compute() {
+			try {
+				int type;
+				try (InputStream in = Files.newInputStream(file.toPath())) {
+					ContentTypeDetector detector = new ContentTypeDetector(in);
+					type = detector.getType();
+					if (type != ContentTypeDetector.ZIPFILE) {
+						JacocoReportGenerator.analyzeFiltered(analyzer.get(), detector.getInputStream(), file.getPath(), filter);
+					}
+				}
+				if (type == ContentTypeDetector.ZIPFILE) {
+					analyzeZip();
+				}
+			} catch (IOException e) {
+				printError(e);
+			}
+		}
+
+		private void analyzeZip() throws IOException {
+			try (ZipFile zip = new ZipFile(file)) {
+				List<EntryTask> entries = new ArrayList<>();
+				boolean filtered = filter.isFiltering();
+				Enumeration<? extends ZipEntry> e = zip.entries();
+				while (e.hasMoreElements()) {
+					ZipEntry entry = e.nextElement();
+					if (entry.isDirectory()) {
+						continue;
+					}
+					if (!filtered || (entry.getName().endsWith(".class") && filter.includes(entry.getName()))) {
+						entries.add(new EntryTask(zip, entry, file.getPath() + "@" + entry.getName(), analyzer));
+					}
+				}
+				invokeAll(entries);
+			}
+		}
+	}
+
+	private static class EntryTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final ZipFile zip;
+
+		private final ZipEntry entry;
+
+		private final String location;
+
+		private final ThreadLocal<Analyzer> analyzer;
+
+		EntryTask(ZipFile zip, ZipEntry entry, String location, ThreadLocal<Analyzer> analyzer) {
+			this.zip = zip;
+			this.entry = entry;
+			this.location = location;
+			this.analyzer = analyzer;
+		}
+
+		@Override
+		protected void compute() {
+			try (InputStream in = zip.getInputStream(entry)) {
+				analyzer.get().analyzeAll(in, location);
+			} catch (IOException e) {
+				printError(e);
+			}
+		}
+	}
+}
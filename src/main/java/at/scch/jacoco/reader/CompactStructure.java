@@ -0,0 +1,496 @@
+package at.scch.jacoco.reader;
+
+import java.util.*;
+import java.util.function.IntFunction;
+
+/**
+ * Compact source code structure for very large code bases.
+ * Packages, classes, methods and lines are kept in parallel primitive arrays, every element refers to
+ * its children by offsets, and all names are kept once in a shared string table.
+ * The elements are queried through flyweight views, that only hold the structure and a position,
+ * so no object per line or method is kept in memory.
+ * <p>
+ * Packages are ordered by name, the classes of a package by name and the lines of a method by line number.
+ */
+public class CompactStructure {
+
+	private final String[] strings;
+
+	private final int[] packageNames;
+
+	/**
+	 * Offsets into the classes, per package.
+	 */
+	private final int[] packageClasses;
+
+	private final int[] classNames;
+
+	private final int[] classPackages;
+
+	/**
+	 * Offsets into the methods, per class.
+	 */
+	private final int[] classMethods;
+
+	private final int[] methodSignatures;
+
+	private final int[] methodClasses;
+
+	private final int[] methodComplexities;
+
+	/**
+	 * Offsets into the lines, per method.
+	 */
+	private final int[] methodLines;
+
+	private final int[] lineNumbers;
+
+	private final int[] lineInstructions;
+
+	private final int[] lineBranches;
+
+	/**
+	 * Classes by their full name, built on first lookup.
+	 */
+	private Map<String, Integer> classesByName;
+
+	private CompactStructure(String[] strings, int[] packageNames, int[] packageClasses, int[] classNames, int[] classPackages,
+			int[] classMethods, int[] methodSignatures, int[] methodClasses, int[] methodComplexities, int[] methodLines,
+			int[] lineNumbers, int[] lineInstructions, int[] lineBranches) {
+		super();
+		this.strings = strings;
+		this.packageNames = packageNames;
+		this.packageClasses = packageClasses;
+		this.classNames = classNames;
+		this.classPackages = classPackages;
+		this.classMethods = classMethods;
+		this.methodSignatures = methodSignatures;
+		this.methodClasses = methodClasses;
+		this.methodComplexities = methodComplexities;
+		this.methodLines = methodLines;
+		this.lineNumbers = lineNumbers;
+		this.lineInstructions = lineInstructions;
+		this.lineBranches = lineBranches;
+	}
+
+	/**
+	 * Copies a source code structure into the compact representation.
+	 * @param packages - source code structure
+	 * @return - compact structure
+	 */
+	public static CompactStructure of(Collection<JacocoPackage> packages) {
+		Builder builder = new Builder();
+		for (JacocoPackage pkg : packages) {
+			for (JacocoClass clazz : pkg.getClasses()) {
+				List<JacocoMethod> methods = new ArrayList<>(clazz.getMethods());
+				String[] signatures = new String[methods.size()];
+				int[] complexities = new int[methods.size()];
+				int[] methodLines = new int[methods.size() + 1];
+				int lines = 0;
+				for (JacocoMethod method : methods) {
+					lines += method.getNumberOfLines();
+				}
+				int[] lineNumbers = new int[lines];
+				int[] lineInstructions = new int[lines];
+				int[] lineBranches = new int[lines];
+				int l = 0;
+				for (int m = 0; m < methods.size(); m++) {
+					JacocoMethod method = methods.get(m);
+					signatures[m] = method.getSignature();
+					complexities[m] = method.getComplexity();
+					methodLines[m] = l;
+					int first = l;
+					for (int lineNumber : method.getLineNumbers()) {
+						lineNumbers[l++] = lineNumber;
+					}
+					Arrays.sort(lineNumbers, first, l);
+					for (int i = first; i < l; i++) {
+						JacocoLine line = method.getLine(lineNumbers[i]);
+						lineInstructions[i] = line.getInstructions();
+						lineBranches[i] = line.getBranches();
+					}
+				}
+				methodLines[methods.size()] = l;
+				builder.addClass(pkg.getName(), clazz.getName(), signatures, complexities, methodLines, lineNumbers, lineInstructions, lineBranches);
+			}
+		}
+		return builder.build();
+	}
+
+	public List<PackageView> getPackages() {
+		return new ViewList<>(packageNames.length, PackageView::new);
+	}
+
+	public int getNumberOfClasses() {
+		return classNames.length;
+	}
+
+	public int getNumberOfMethods() {
+		return methodSignatures.length;
+	}
+
+	public int getNumberOfLines() {
+		return lineNumbers.length;
+	}
+
+	/**
+	 * @param className - package name + class name
+	 * @return - class of the structure, or null if there is none
+	 */
+	public ClassView getClassByFullName(String className) {
+		Integer c = getClassesByName().get(className);
+		return c == null ? null : new ClassView(c);
+	}
+
+	/**
+	 * @param methodName - package name + class name + method signature
+	 * @return - method of the structure, or null if there is none
+	 */
+	public MethodView getMethodByFullName(String methodName) {
+		int pos = methodName.indexOf('(');
+		pos = methodName.lastIndexOf('.', pos == -1 ? methodName.length() : pos);
+		while (pos > 0) {
+			ClassView clazz = getClassByFullName(methodName.substring(0, pos));
+			if (clazz != null) {
+				String signature = methodName.substring(pos + 1);
+				for (int m = classMethods[clazz.index]; m < classMethods[clazz.index + 1]; m++) {
+					if (strings[methodSignatures[m]].equals(signature)) {
+						return new MethodView(m);
+					}
+				}
+			}
+			pos = methodName.lastIndexOf('.', pos - 1);
+		}
+		return null;
+	}
+
+	private synchronized Map<String, Integer> getClassesByName() {
+		if (classesByName == null) {
+			Map<String, Integer> classes = new HashMap<>(classNames.length * 2);
+			for (int c = 0; c < classNames.length; c++) {
+				classes.putIfAbsent(getClassFullName(c), c);
+			}
+			classesByName = classes;
+		}
+		return classesByName;
+	}
+
+	private String getClassFullName(int c) {
+		return strings[packageNames[classPackages[c]]] + "." + strings[classNames[c]];
+	}
+
+	private int sum(int[] values, int from, int to) {
+		int sum = 0;
+		for (int i = from; i < to; i++) {
+			sum += values[i];
+		}
+		return sum;
+	}
+
+	/**
+	 * View of a package of the structure.
+	 */
+	public class PackageView {
+
+		private final int index;
+
+		PackageView(int index) {
+			this.index = index;
+		}
+
+		public String getName() {
+			return strings[packageNames[index]];
+		}
+
+		public List<ClassView> getClasses() {
+			int first = packageClasses[index];
+			return new ViewList<>(packageClasses[index + 1] - first, c -> new ClassView(first + c));
+		}
+	}
+
+	/**
+	 * View of a class of the structure.
+	 */
+	public class ClassView {
+
+		private final int index;
+
+		ClassView(int index) {
+			this.index = index;
+		}
+
+		public String getName() {
+			return strings[classNames[index]];
+		}
+
+		public PackageView getPackage() {
+			return new PackageView(classPackages[index]);
+		}
+
+		public String getFullName() {
+			return getClassFullName(index);
+		}
+
+		public List<MethodView> getMethods() {
+			int first = classMethods[index];
+			return new ViewList<>(classMethods[index + 1] - first, m -> new MethodView(first + m));
+		}
+	}
+
+	/**
+	 * View of a method of the structure.
+	 */
+	public class MethodView {
+
+		private final int index;
+
+		MethodView(int index) {
+			this.index = index;
+		}
+
+		public String getSignature() {
+			return strings[methodSignatures[index]];
+		}
+
+		public String getName() {
+			return getSignature().split("\\(")[0].trim();
+		}
+
+		public ClassView getClazz() {
+			return new ClassView(methodClasses[index]);
+		}
+
+		public String getFullName() {
+			return getClassFullName(methodClasses[index]) + "." + getSignature();
+		}
+
+		public int getComplexity() {
+			return methodComplexities[index];
+		}
+
+		public List<LineView> getLines() {
+			int first = methodLines[index];
+			return new ViewList<>(methodLines[index + 1] - first, l -> new LineView(first + l));
+		}
+
+		public int getNumberOfLines() {
+			return methodLines[index + 1] - methodLines[index];
+		}
+
+		/**
+		 * @param lineNumber - line number in the source code
+		 * @return - line of the method, or null if the method has no such line
+		 */
+		public LineView getLine(int lineNumber) {
+			int l = Arrays.binarySearch(lineNumbers, methodLines[index], methodLines[index + 1], lineNumber);
+			return l < 0 ? null : new LineView(l);
+		}
+
+		public int getBranches() {
+			return sum(lineBranches, methodLines[index], methodLines[index + 1]);
+		}
+
+		public int getInstructions() {
+			return sum(lineInstructions, methodLines[index], methodLines[index + 1]);
+		}
+	}
+
+	/**
+	 * View of a line of the structure.
+	 */
+	public class LineView {
+
+		private final int index;
+
+		LineView(int index) {
+			this.index = index;
+		}
+
+		public int getLineNumber() {
+			return lineNumbers[index];
+		}
+
+		public MethodView getMethod() {
+			int m = Arrays.binarySearch(methodLines, index);
+			if (m < 0) {
+				m = -m - 2;
+			} else {
+				// skip methods without lines
+				while (methodLines[m + 1] == index) {
+					m++;
+				}
+			}
+			return new MethodView(m);
+		}
+
+		public int getInstructions() {
+			return lineInstructions[index];
+		}
+
+		public int getBranches() {
+			return lineBranches[index];
+		}
+
+		/**
+		 * @return package name + class name + method signature + line number
+		 */
+		public String getIdentifier() {
+			return getMethod().getFullName() + ":" + getLineNumber();
+		}
+	}
+
+	/**
+	 * List of views, created on access.
+	 */
+	private static class ViewList<T> extends AbstractList<T> implements RandomAccess {
+
+		private final int size;
+
+		private final IntFunction<T> view;
+
+		ViewList(int size, IntFunction<T> view) {
+			this.size = size;
+			this.view = view;
+		}
+
+		@Override
+		public T get(int index) {
+			if (index < 0 || index >= size) {
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+			}
+			return view.apply(index);
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+	}
+
+	/**
+	 * Collects the classes of a structure, they may be added in any order and from several threads.
+	 */
+	static class Builder {
+
+		private final List<ClassEntry> classes = new ArrayList<>();
+
+		private final Set<String> names = new HashSet<>();
+
+		/**
+		 * Adds an analyzed class, a class with the same name as a class added before is skipped.
+		 * @param analyzedClass - analyzed class
+		 */
+		void addClass(AnalyzedClass analyzedClass) {
+			String vmName = analyzedClass.vmName;
+			int pos = vmName.lastIndexOf('/');
+			String pkg = pos == -1 ? "" : vmName.substring(0, pos).replace("/", ".");
+			addClass(pkg, vmName.substring(pos + 1), analyzedClass.signatures, analyzedClass.complexities, analyzedClass.methodLines,
+					analyzedClass.lineNumbers, analyzedClass.lineInstructions, analyzedClass.lineBranches);
+		}
+
+		synchronized void addClass(String pkg, String className, String[] signatures, int[] complexities, int[] methodLines,
+				int[] lineNumbers, int[] lineInstructions, int[] lineBranches) {
+			if (names.add(pkg + "." + className)) {
+				classes.add(new ClassEntry(pkg, className, signatures, complexities, methodLines, lineNumbers, lineInstructions, lineBranches));
+			}
+		}
+
+		synchronized CompactStructure build() {
+			classes.sort(Comparator.comparing((ClassEntry c) -> c.pkg).thenComparing(c -> c.name));
+			int methods = 0;
+			int lines = 0;
+			for (ClassEntry entry : classes) {
+				methods += entry.signatures.length;
+				lines += entry.lineNumbers.length;
+			}
+
+			Map<String, Integer> stringIds = new HashMap<>();
+			List<String> strings = new ArrayList<>();
+			List<Integer> packageNames = new ArrayList<>();
+			List<Integer> packageClasses = new ArrayList<>();
+			int[] classNames = new int[classes.size()];
+			int[] classPackages = new int[classes.size()];
+			int[] classMethods = new int[classes.size() + 1];
+			int[] methodSignatures = new int[methods];
+			int[] methodClasses = new int[methods];
+			int[] methodComplexities = new int[methods];
+			int[] methodLines = new int[methods + 1];
+			int[] lineNumbers = new int[lines];
+			int[] lineInstructions = new int[lines];
+			int[] lineBranches = new int[lines];
+
+			int m = 0;
+			int l = 0;
+			for (int c = 0; c < classes.size(); c++) {
+				ClassEntry entry = classes.get(c);
+				if (c == 0 || !entry.pkg.equals(classes.get(c - 1).pkg)) {
+					packageNames.add(intern(entry.pkg, stringIds, strings));
+					packageClasses.add(c);
+				}
+				classNames[c] = intern(entry.name, stringIds, strings);
+				classPackages[c] = packageNames.size() - 1;
+				classMethods[c] = m;
+				for (int i = 0; i < entry.signatures.length; i++) {
+					methodSignatures[m] = intern(entry.signatures[i], stringIds, strings);
+					methodClasses[m] = c;
+					methodComplexities[m] = entry.complexities[i];
+					methodLines[m] = l + entry.methodLines[i];
+					m++;
+				}
+				int count = entry.lineNumbers.length;
+				System.arraycopy(entry.lineNumbers, 0, lineNumbers, l, count);
+				System.arraycopy(entry.lineInstructions, 0, lineInstructions, l, count);
+				System.arraycopy(entry.lineBranches, 0, lineBranches, l, count);
+				l += count;
+			}
+			classMethods[classes.size()] = m;
+			methodLines[methods] = l;
+			packageClasses.add(classes.size());
+
+			return new CompactStructure(strings.toArray(new String[0]), toArray(packageNames), toArray(packageClasses),
+					classNames, classPackages, classMethods, methodSignatures, methodClasses, methodComplexities, methodLines,
+					lineNumbers, lineInstructions, lineBranches);
+		}
+
+		private static int intern(String value, Map<String, Integer> stringIds, List<String> strings) {
+			Integer id = stringIds.get(value);
+			if (id == null) {
+				id = strings.size();
+				stringIds.put(value, id);
+				strings.add(value);
+			}
+			return id;
+		}
+
+		private static int[] toArray(List<Integer> values) {
+			int[] array = new int[values.size()];
+			for (int i = 0; i < array.length; i++) {
+				array[i] = values.get(i);
+			}
+			return array;
+		}
+	}
+
+	private static class ClassEntry {
+		private final String pkg;
+		private final String name;
+		private final String[] signatures;
+		private final int[] complexities;
+		private final int[] methodLines;
+		private final int[] lineNumbers;
+		private final int[] lineInstructions;
+		private final int[] lineBranches;
+
+		ClassEntry(String pkg, String name, String[] signatures, int[] complexities, int[] methodLines,
+				int[] lineNumbers, int[] lineInstructions, int[] lineBranches) {
+			this.pkg = pkg;
+			this.name = name;
+			this.signatures = signatures;
+			this.complexities = complexities;
+			this.methodLines = methodLines;
+			this.lineNumbers = lineNumbers;
+			this.lineInstructions = lineInstructions;
+			this.lineBranches = lineBranches;
+		}
+	}
+}
@@ -0,0 +1,124 @@
+package at.scch.jacoco.reader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Reads many exec files concurrently and merges their execution data.
+ * Every file is read into a visitor of its own, the visitors are merged pairwise in a tree,
+ * so both reading and merging run on all workers.
+ * Merging keeps the order of the files, so sessions are in the same order as if the files were read one after another.
+ */
+class ExecFileMerger<V> {
+
+	/**
+	 * Reads the execution data of a single exec file.
+	 */
+	interface ExecFileReader<V> {
+		V read(File execFile) throws IOException;
+	}
+
+	private final ExecFileReader<V> reader;
+
+	/**
+	 * Merges the second visitor into the first one and returns the first one.
+	 */
+	private final BinaryOperator<V> merge;
+
+	ExecFileMerger(ExecFileReader<V> reader, BinaryOperator<V> merge) {
+		this.reader = reader;
+		this.merge = merge;
+	}
+
+	/**
+	 * @param execFiles - exec files, in the order their sessions should have
+	 * @param workers - number of files that are read and merged concurrently
+	 * @return - merged execution data of all files
+	 * @throws IOException - if no exec file is given, or one of them can't be read
+	 */
+	V read(List<File> execFiles, int workers) throws IOException {
+		if (execFiles.isEmpty()) {
+			throw new IOException("No exec files to read.");
+		}
+		if (workers <= 1) {
+			V merged = reader.read(execFiles.get(0));
+			for (int i = 1; i < execFiles.size(); i++) {
+				merged = merge.apply(merged, reader.read(execFiles.get(i)));
+			}
+			return merged;
+		}
+
+		ForkJoinPool pool = new ForkJoinPool(workers);
+		try {
+			return pool.invoke(new MergeTask(execFiles));
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Lists the exec files to read, directories are searched for files with the extension .exec.
+	 * The files found in a directory are sorted by their path.
+	 * @param paths - exec files and directories
+	 * @return - exec files
+	 * @throws IOException - if a directory can't be read
+	 */
+	static List<File> listExecFiles(Collection<File> paths) throws IOException {
+		List<File> execFiles = new ArrayList<>();
+		for (File path : paths) {
+			if (!path.isDirectory()) {
+				execFiles.add(path);
+				continue;
+			}
+			try (Stream<Path> files = Files.walk(path.toPath(), FileVisitOption.FOLLOW_LINKS)) {
+				execFiles.addAll(files.filter(f -> Files.isRegularFile(f) && f.getFileName().toString().endsWith(".exec"))
+						.sorted()
+						.map(Path::toFile)
+						.collect(Collectors.toList()));
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+		}
+		return execFiles;
+	}
+
+	private class MergeTask extends RecursiveTask<V> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final List<File> execFiles;
+
+		MergeTask(List<File> execFiles) {
+			this.execFiles = execFiles;
+		}
+
+		@Override
+		protected V compute() {
+			if (execFiles.size() == 1) {
+				try {
+					return reader.read(execFiles.get(0));
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+			int middle = execFiles.size() / 2;
+			MergeTask first = new MergeTask(execFiles.subList(0, middle));
+			MergeTask second = new MergeTask(execFiles.subList(middle, execFiles.size()));
+			second.fork();
+			V merged = first.compute();
+			return merge.apply(merged, second.join());
+		}
+	}
+}
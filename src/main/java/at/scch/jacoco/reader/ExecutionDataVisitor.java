@@ -18,15 +18,39 @@ import java.util.*;
  */
 public class ExecutionDataVisitor implements ISessionInfoVisitor, IExecutionDataVisitor {
 
+    /**
+     * Selects the sessions that are kept, the execution data of other sessions is skipped.
+     */
+    private final SessionFilter filter;
+
     private final Map<String, SessionInfo> sessionInfos = new HashMap<>();
 
     private final Map<String, ExecutionDataStore> sessions = new LinkedHashMap<>();
 
     private ExecutionDataStore executionDataStore;
-    private ExecutionDataStore merged = new ExecutionDataStore();
+
+    /**
+     * Execution data merged over all sessions, created on first request.
+     */
+    private ExecutionDataStore merged;
+
+    public ExecutionDataVisitor() {
+        this(SessionFilter.ALL);
+    }
+
+    /**
+     * @param filter - selects the sessions that are kept
+     */
+    public ExecutionDataVisitor(SessionFilter filter) {
+        this.filter = filter;
+    }
 
     @Override
     public void visitSessionInfo(SessionInfo info) {
+        if (!filter.accept(info)) {
+            executionDataStore = null;
+            return;
+        }
         String sessionId = info.getId();
         executionDataStore = sessions.computeIfAbsent(sessionId, id -> new ExecutionDataStore());
         sessionInfos.computeIfAbsent(sessionId, id -> info);
@@ -34,8 +58,38 @@ public class ExecutionDataVisitor implements ISessionInfoVisitor, IExecutionData
 
     @Override
     public void visitClassExecution(ExecutionData data) {
+        if (executionDataStore == null) {
+            // session not selected, or execution data without a session
+            return;
+        }
         executionDataStore.put(data);
-        merged.put(defensiveCopy(data));
+        merged = null;
+    }
+
+    /**
+     * Merges the sessions read by another visitor into this visitor, sessions with the same ID are merged.
+     * Sessions only read by the other visitor are added after the sessions of this visitor.
+     *
+     * @param other - visitor, that must not be used afterwards
+     * @return - this visitor
+     */
+    public ExecutionDataVisitor merge(ExecutionDataVisitor other) {
+        for (Map.Entry<String, ExecutionDataStore> entry : other.sessions.entrySet()) {
+            ExecutionDataStore store = sessions.get(entry.getKey());
+            if (store == null) {
+                sessions.put(entry.getKey(), entry.getValue());
+            } else {
+                for (ExecutionData data : entry.getValue().getContents()) {
+                    store.put(data);
+                }
+            }
+        }
+        for (Map.Entry<String, SessionInfo> entry : other.sessionInfos.entrySet()) {
+            sessionInfos.putIfAbsent(entry.getKey(), entry.getValue());
+        }
+        executionDataStore = null;
+        merged = null;
+        return this;
     }
 
     public Map<String, ExecutionDataStore> getSessions() {
@@ -47,6 +101,14 @@ public class ExecutionDataVisitor implements ISessionInfoVisitor, IExecutionData
     }
 
     public ExecutionDataStore getMerged() {
+        if (merged == null) {
+            merged = new ExecutionDataStore();
+            for (ExecutionDataStore session : sessions.values()) {
+                for (ExecutionData data : session.getContents()) {
+                    merged.put(defensiveCopy(data));
+                }
+            }
+        }
         return merged;
     }
 
@@ -0,0 +1,249 @@
+package at.scch.jacoco.reader;
+
+import org.jacoco.core.data.SessionInfo;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.util.*;
+
+/**
+ * Coverage report of an exec file that JaCoCo agents keep appending sessions to.
+ * Every {@link #update()} reads only the blocks appended since the last update, and adds the new sessions to the report.
+ * <p>
+ * The byte offset and the sessions read so far can be exported together with the report,
+ * so a later process can continue where the last one stopped, see {@link #importReport(File, File, JacocoProbeIndex)}.
+ * A session that is continued after an import, i.e. the same session ID is dumped again,
+ * is merged on the level of line coverage, as the probes of the earlier dumps are not part of the exported report.
+ */
+public class IncrementalExecFile {
+
+	private final File execFile;
+
+	private final JacocoProbeIndex index;
+
+	private final JacocoCoverageReport report;
+
+	/**
+	 * Selects the sessions that are part of the report.
+	 */
+	private final SessionFilter filter;
+
+	/**
+	 * Keeps the probes of all sessions read by this instance, so repeated session IDs are merged on the level of probes.
+	 */
+	private final ProbeStreamVisitor visitor;
+
+	/**
+	 * IDs of all sessions read so far, in the order of the exec file.
+	 */
+	private final Set<String> sessions;
+
+	/**
+	 * IDs of sessions read before the report was imported, their probes are not known.
+	 */
+	private final Set<String> importedSessions;
+
+	/**
+	 * File offset of the next block to read.
+	 */
+	private long offset;
+
+	/**
+	 * Session the last read execution data belonged to, execution data appended next belongs to it as well.
+	 */
+	private SessionInfo currentSession;
+
+	/**
+	 * @param execFile - exec file, that does not need to exist yet
+	 * @param index - probe index of the class files that should be part of the analysis
+	 */
+	public IncrementalExecFile(File execFile, JacocoProbeIndex index) {
+		this(execFile, index, SessionFilter.ALL);
+	}
+
+	/**
+	 * @param execFile - exec file, that does not need to exist yet
+	 * @param index - probe index of the class files that should be part of the analysis
+	 * @param filter - selects the sessions that are part of the report
+	 */
+	public IncrementalExecFile(File execFile, JacocoProbeIndex index, SessionFilter filter) {
+		super();
+		this.execFile = execFile;
+		this.index = index;
+		this.report = new JacocoCoverageReport(index.getPackages());
+		this.filter = filter;
+		this.visitor = new ProbeStreamVisitor(index, filter);
+		this.sessions = new LinkedHashSet<>();
+		this.importedSessions = new HashSet<>();
+		this.offset = 0;
+	}
+
+	public JacocoCoverageReport getReport() {
+		return report;
+	}
+
+	/**
+	 * @return - file offset up to which the exec file was read
+	 */
+	public long getOffset() {
+		return offset;
+	}
+
+	/**
+	 * @return - IDs of the sessions read so far, in the order of the exec file
+	 */
+	public Set<String> getSessionIds() {
+		return Collections.unmodifiableSet(sessions);
+	}
+
+	/**
+	 * Reads the blocks appended to the exec file since the last update.
+	 * @return - sessions that were added to the report or changed by the update
+	 * @throws IOException - if the exec file is not valid, or it was truncated since the last update
+	 */
+	public Collection<JacocoSession> update() throws IOException {
+		return update(1);
+	}
+
+	/**
+	 * Reads the blocks appended to the exec file since the last update.
+	 * @param workers - number of sessions that are built concurrently
+	 * @return - sessions that were added to the report or changed by the update
+	 * @throws IOException - if the exec file is not valid, or it was truncated since the last update
+	 */
+	public Collection<JacocoSession> update(int workers) throws IOException {
+		if (!execFile.exists()) {
+			return Collections.emptyList();
+		}
+		if (execFile.length() < offset) {
+			throw new IOException("Exec file " + execFile + " was truncated, it is not appended to anymore.");
+		}
+
+		Set<String> updated = new LinkedHashSet<>();
+		try (MappedExecFileReader reader = new MappedExecFileReader(execFile)) {
+			reader.setPosition(offset);
+			reader.setSessionInfoVisitor(info -> {
+				visitor.visitSessionInfo(info);
+				currentSession = filter.accept(info) ? info : null;
+				if (currentSession != null) {
+					updated.add(info.getId());
+				}
+			});
+			reader.setExecutionDataVisitor(probes -> {
+				visitor.visitClassExecution(probes);
+				if (currentSession != null) {
+					updated.add(currentSession.getId());
+				}
+			});
+			reader.readCompleteBlocks();
+			offset = reader.getPosition();
+		}
+		if (updated.isEmpty()) {
+			return Collections.emptyList();
+		}
+
+		Map<String, SessionProbes> probes = new LinkedHashMap<>();
+		for (String id : updated) {
+			probes.put(id, visitor.getSessions().get(id));
+		}
+		JacocoCoverageReport built = new JacocoCoverageReport(index.getPackages());
+		JacocoReportGenerator.addSessions(built, probes, (id, sessionProbes) -> index.createSession(sessionProbes), workers);
+
+		List<JacocoSession> changed = new ArrayList<>();
+		for (JacocoSession session : built.getSessions()) {
+			JacocoSession existing = report.getSession(session.getId());
+			if (existing != null && importedSessions.contains(session.getId())) {
+				existing.add(session);
+				changed.add(existing);
+			} else {
+				report.addSession(session);
+				changed.add(session);
+			}
+		}
+		sessions.addAll(updated);
+		return changed;
+	}
+
+	/**
+	 * Exports the report, together with the offset and sessions read so far.
+	 * The exported file can be imported as a {@link JacocoCoverageReport} as well.
+	 * @param jsonFile - file the report is written to
+	 * @throws IOException
+	 */
+	public void exportReport(File jsonFile) throws IOException {
+		JSONObject jReport = report.serialize();
+
+		JSONObject jExecFile = new JSONObject();
+		jExecFile.put("offset", offset);
+		jExecFile.put("sessions", new JSONArray(sessions));
+		if (currentSession != null) {
+			JSONObject jCurrent = new JSONObject();
+			jCurrent.put("id", currentSession.getId());
+			jCurrent.put("start", currentSession.getStartTimeStamp());
+			jCurrent.put("dump", currentSession.getDumpTimeStamp());
+			jExecFile.put("currentSession", jCurrent);
+		}
+		jReport.put("execFile", jExecFile);
+
+		try (PrintWriter out = new PrintWriter(jsonFile)) {
+			out.println(jReport.toString());
+		}
+	}
+
+	/**
+	 * Continue with a report exported by {@link #exportReport(File)}.
+	 * The coverage of the sessions is imported into the structure of the index.
+	 * @param execFile - exec file the report was read from
+	 * @param jsonFile - exported report
+	 * @param index - probe index of the class files that should be part of the analysis
+	 * @return - report that continues reading at the offset read so far
+	 * @throws IOException
+	 */
+	public static IncrementalExecFile importReport(File execFile, File jsonFile, JacocoProbeIndex index) throws IOException {
+		return importReport(execFile, jsonFile, index, SessionFilter.ALL);
+	}
+
+	/**
+	 * Continue with a report exported by {@link #exportReport(File)}.
+	 * The coverage of the sessions is imported into the structure of the index.
+	 * @param execFile - exec file the report was read from
+	 * @param jsonFile - exported report
+	 * @param index - probe index of the class files that should be part of the analysis
+	 * @param filter - selects the sessions that are added to the report, should be the filter the report was read with
+	 * @return - report that continues reading at the offset read so far
+	 * @throws IOException
+	 */
+	public static IncrementalExecFile importReport(File execFile, File jsonFile, JacocoProbeIndex index, SessionFilter filter) throws IOException {
+		JSONObject jReport;
+		try (Reader in = new FileReader(jsonFile)) {
+			jReport = (JSONObject) new JSONTokener(in).nextValue();
+		}
+		JSONObject jExecFile = jReport.optJSONObject("execFile");
+		if (jExecFile == null) {
+			throw new IOException("Report " + jsonFile + " was not exported from an incremental exec file.");
+		}
+
+		IncrementalExecFile incremental = new IncrementalExecFile(execFile, index, filter);
+		for (Object s : jReport.getJSONArray("sessions")) {
+			incremental.report.addSession(JacocoSession.deserialize((JSONObject) s, incremental.report));
+		}
+		incremental.offset = jExecFile.getLong("offset");
+		for (Object id : jExecFile.getJSONArray("sessions")) {
+			incremental.sessions.add((String) id);
+		}
+		incremental.importedSessions.addAll(incremental.sessions);
+		JSONObject jCurrent = jExecFile.optJSONObject("currentSession");
+		if (jCurrent != null) {
+			SessionInfo current = new SessionInfo(jCurrent.getString("id"), jCurrent.getLong("start"), jCurrent.getLong("dump"));
+			incremental.visitor.visitSessionInfo(current);
+			incremental.currentSession = current;
+		}
+		return incremental;
+	}
+}
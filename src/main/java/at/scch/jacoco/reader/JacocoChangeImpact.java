@@ -0,0 +1,151 @@
+package at.scch.jacoco.reader;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.*;
+
+/**
+ * Sessions covering changed source lines, e.g. the tests to run again after a change.
+ */
+public class JacocoChangeImpact {
+
+    private final List<String> sessionIDs;
+    private final Map<String, Integer> changedLinesCovered;
+    private final int changedLines;
+    private final List<JacocoLine> uncoveredLines;
+
+    public JacocoChangeImpact(List<String> sessionIDs, Map<String, Integer> changedLinesCovered, int changedLines, List<JacocoLine> uncoveredLines) {
+        this.sessionIDs = Collections.unmodifiableList(sessionIDs);
+        this.changedLinesCovered = Collections.unmodifiableMap(changedLinesCovered);
+        this.changedLines = changedLines;
+        this.uncoveredLines = Collections.unmodifiableList(uncoveredLines);
+    }
+
+    /**
+     * @return - IDs of the sessions covering any changed line, the session covering the most changed lines first,
+     * sessions covering as many changed lines in the order of the report
+     */
+    public List<String> getSessionIDs() {
+        return sessionIDs;
+    }
+
+    /**
+     * @param sessionID - ID of a session
+     * @return - number of changed lines the session covers, 0 if it covers none
+     */
+    public int getNumberOfChangedLinesCovered(String sessionID) {
+        return changedLinesCovered.getOrDefault(sessionID, 0);
+    }
+
+    /**
+     * @return - number of changed lines that are lines of the structure, changed comments or blank lines are not
+     */
+    public int getNumberOfChangedLines() {
+        return changedLines;
+    }
+
+    /**
+     * @return - lines of the structure that changed, but no session covers
+     */
+    public List<JacocoLine> getUncoveredLines() {
+        return uncoveredLines;
+    }
+
+    /**
+     * Reads the changed lines of every file from a unified diff, e.g. the output of git diff.
+     * The lines are the lines of the original file, the version the coverage was recorded on:
+     * removed and replaced lines, and for added lines the lines before and after them.
+     * Files the diff adds have no original lines and are left out.
+     * @param diff - unified diff
+     * @return - line numbers in the original file, by the path of the file in the diff
+     * @throws IOException
+     */
+    public static Map<String, Set<Integer>> readChangedLines(Reader diff) throws IOException {
+        Map<String, Set<Integer>> changedLines = new LinkedHashMap<>();
+        BufferedReader reader = diff instanceof BufferedReader ? (BufferedReader) diff : new BufferedReader(diff);
+        String oldPath = null;
+        Set<Integer> lines = null;
+        int oldLine = 0;
+        int oldRemaining = 0;
+        int newRemaining = 0;
+        boolean removed = false;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (oldRemaining > 0 || newRemaining > 0) {
+                // inside a hunk, so lines starting with --- or +++ are removed or added lines
+                if (line.startsWith("-")) {
+                    lines.add(oldLine++);
+                    oldRemaining--;
+                    removed = true;
+                } else if (line.startsWith("+")) {
+                    if (!removed) {
+                        if (oldLine > 1) {
+                            lines.add(oldLine - 1);
+                        }
+                        lines.add(oldLine);
+                    }
+                    newRemaining--;
+                } else if (!line.startsWith("\\")) {
+                    oldLine++;
+                    oldRemaining--;
+                    newRemaining--;
+                    removed = false;
+                }
+            } else if (line.startsWith("--- ")) {
+                oldPath = getPath(line);
+                lines = null;
+            } else if (line.startsWith("+++ ")) {
+                lines = oldPath == null ? null : changedLines.computeIfAbsent(oldPath, path -> new TreeSet<>());
+            } else if (line.startsWith("@@ ") && lines != null) {
+                int[] range = getOldRange(line);
+                if (range == null) {
+                    continue;
+                }
+                // an empty range starts at the line before it
+                oldLine = range[1] == 0 ? range[0] + 1 : range[0];
+                oldRemaining = range[1];
+                newRemaining = range[2];
+                removed = false;
+            }
+        }
+        return changedLines;
+    }
+
+    private static String getPath(String line) {
+        String path = line.substring(4);
+        int tab = path.indexOf('\t');
+        if (tab != -1) {
+            path = path.substring(0, tab);
+        }
+        path = path.trim();
+        return path.equals("/dev/null") ? null : path;
+    }
+
+    /**
+     * @param line - hunk header, e.g. @@ -12,5 +12,7 @@
+     * @return - start and length of the range in the original file, and length of the range in the new file,
+     * or null if the line is no hunk header
+     */
+    private static int[] getOldRange(String line) {
+        String[] parts = line.split(" ");
+        if (parts.length < 3 || !parts[1].startsWith("-") || !parts[2].startsWith("+")) {
+            return null;
+        }
+        try {
+            int[] oldRange = parseRange(parts[1].substring(1));
+            int[] newRange = parseRange(parts[2].substring(1));
+            return new int[]{oldRange[0], oldRange[1], newRange[1]};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static int[] parseRange(String range) {
+        int comma = range.indexOf(',');
+        if (comma == -1) {
+            return new int[]{Integer.parseInt(range), 1};
+        }
+        return new int[]{Integer.parseInt(range.substring(0, comma)), Integer.parseInt(range.substring(comma + 1))};
+    }
+}
@@ -29,16 +29,51 @@ public class JacocoClass {
 	 */
 	private final JacocoPackage package_;
 
+	/**
+	 * Name of the source file the class is compiled from, without directories, or null if it is not known.
+	 */
+	private final String sourceFileName;
+
 	/**
 	 * Methods inside the class.
 	 */
 	private final Set<JacocoMethod> methods;
 
+	/**
+	 * Full name, built on first use.
+	 */
+	private String fullName;
+
+	/**
+	 * Number of lines of all methods, kept up to date as lines are added.
+	 */
+	private int numberOfLines;
+
+	/**
+	 * Instructions of all methods, kept up to date as lines are added.
+	 */
+	private int instructions;
+
+	/**
+	 * Branches of all methods, kept up to date as lines are added.
+	 */
+	private int branches;
+
 	public JacocoClass(JacocoPackage package_, String name) {
+		this(package_, name, null);
+	}
+
+	/**
+	 * @param package_ - package the class is contained in
+	 * @param name - name of the class
+	 * @param sourceFileName - name of the source file, as named by the class file, or null if it is not known
+	 */
+	public JacocoClass(JacocoPackage package_, String name, String sourceFileName) {
 		super();
 		this.package_ = package_;
 		this.package_.addClass(this);
 		this.name = name;
+		this.sourceFileName = sourceFileName;
 		this.methods = new HashSet<>();
 	}
 
@@ -46,6 +81,17 @@ public class JacocoClass {
 		return name;
 	}
 
+	/**
+	 * @return - name of the source file the class is compiled from, e.g. Foo.java, or null if it is not known
+	 */
+	public String getSourceFileName() {
+		return sourceFileName;
+	}
+
+	public JacocoPackage getPackage() {
+		return package_;
+	}
+
 	public Set<JacocoMethod> getMethods() {
 		return methods;
 	}
@@ -73,12 +119,43 @@ public class JacocoClass {
 	 * @return package name and class name
 	 */
 	public String getFullName() {
-		return this.package_.getName() + "." + this.name;
+		if (fullName == null) {
+			fullName = this.package_.getName() + "." + this.name;
+		}
+		return fullName;
+	}
+
+	/**
+	 * @return - number of lines contained in this class
+	 */
+	public int getNumberOfLines() {
+		return numberOfLines;
+	}
+
+	public int getInstructions() {
+		return instructions;
+	}
+
+	public int getBranches() {
+		return branches;
+	}
+
+	/**
+	 * Adds the changes of the lines of a method to the totals.
+	 */
+	void addTotals(int lines, int instructions, int branches) {
+		this.numberOfLines += lines;
+		this.instructions += instructions;
+		this.branches += branches;
+		this.package_.addTotals(lines, instructions, branches);
 	}
 
 	protected JSONObject serialize() {
 		JSONObject jClass = new JSONObject();
 		jClass.put("name", this.name);
+		if (this.sourceFileName != null) {
+			jClass.put("sourceFile", this.sourceFileName);
+		}
 
 		// serialize methods
 		JSONArray methods = new JSONArray();
@@ -93,7 +170,7 @@ public class JacocoClass {
 
 	public static JacocoClass deserialize(JSONObject jClass, JacocoPackage package_) {
 		String name = jClass.getString("name");
-		JacocoClass deserialized = new JacocoClass(package_, name);
+		JacocoClass deserialized = new JacocoClass(package_, name, jClass.optString("sourceFile", null));
 
 		// parse methods
 		JSONArray methods = jClass.getJSONArray("methods");
@@ -9,6 +9,7 @@ import java.io.FileReader;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.*;
+import java.util.function.Supplier;
 
 /*
  * TestCovAnalyzer
@@ -29,44 +30,196 @@ public class JacocoCoverageReport {
 	 */
 	private final Collection<JacocoPackage> packages;
 
+	/**
+	 * Default number of lazily built sessions that are kept.
+	 */
+	public static final int DEFAULT_CACHE_SIZE = 256;
+
 	/**
 	 * Sessions of the at.sfischer.jacocoReader.JacocoCoverageReport, by their ID.
 	 */
-	private final Map<String, JacocoSession> sessions;
-	
+	private final Map<String, SessionEntry> sessions;
+
+	/**
+	 * Lazily built sessions, by their ID, the least recently used session is evicted first.
+	 */
+	private final Map<String, JacocoSession> cache;
+
+	/**
+	 * Index of the lines of the structure.
+	 */
+	private final LineIndex index;
+
+	/**
+	 * Sessions by the lines they cover, built on first use and dropped when sessions are added.
+	 */
+	private JacocoSessionIndex sessionIndex;
+
+	/**
+	 * Changes of the sessions kept by the report when the session index was built, see {@link #getModifications()}.
+	 */
+	private long sessionIndexModifications;
+
+	/**
+	 * Classes of the structure, by their full name.
+	 */
+	private final Map<String, JacocoClass> classes;
+
+	/**
+	 * Methods of the structure, by their full name.
+	 */
+	private final Map<String, JacocoMethod> methods;
+
+	/**
+	 * Classes of the structure, by the path of their source file without extension, built on first use.
+	 */
+	private Map<String, List<JacocoClass>> sourceFiles;
+
 	public JacocoCoverageReport(Collection<JacocoPackage> packages) {
+		this(packages, DEFAULT_CACHE_SIZE);
+	}
+
+	/**
+	 * @param packages - source code structure
+	 * @param cacheSize - number of lazily built sessions that are kept
+	 */
+	public JacocoCoverageReport(Collection<JacocoPackage> packages, final int cacheSize) {
 		super();
 		this.packages = packages;
+		// number the lines, so the sessions of the report share their line ids
+		this.index = LineIndex.of(packages);
 		this.sessions = new LinkedHashMap<>();
+		this.cache = new LinkedHashMap<String, JacocoSession>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, JacocoSession> eldest) {
+				return size() > cacheSize;
+			}
+		};
+		this.classes = new HashMap<>();
+		this.methods = new HashMap<>();
+		for (JacocoPackage pkg : packages) {
+			for (JacocoClass clazz : pkg.getClasses()) {
+				this.classes.putIfAbsent(clazz.getFullName(), clazz);
+				for (JacocoMethod method : clazz.getMethods()) {
+					this.methods.putIfAbsent(method.getFullName(), method);
+				}
+			}
+		}
 	}
 
 	public Collection<JacocoPackage> getPackages() {
 		return packages;
 	}
 
+	/**
+	 * @param methodName - package name + class name + method signature
+	 * @return - method of the structure, or null if there is none
+	 */
 	public JacocoMethod getMethodByFullName(String methodName) {
-		for (JacocoPackage pkg : packages) {
-			if(methodName.startsWith(pkg.getName())){
-				JacocoMethod found = pkg.getMethodByFullName(methodName);
-				if(found != null){
-					return found;
-				}
-			}
-		}
+		return this.methods.get(methodName);
+	}
+
+	/**
+	 * @param className - package name + class name
+	 * @return - class of the structure, or null if there is none
+	 */
+	public JacocoClass getClassByFullName(String className) {
+		return this.classes.get(className);
+	}
 
-		return null;
+	/**
+	 * @param identifier - line identifier, see {@link JacocoLine#getIdentifier()}
+	 * @return - line of the structure, or null if there is none
+	 */
+	public JacocoLine getLineByIdentifier(String identifier) {
+		int pos = identifier.lastIndexOf(':');
+		if (pos == -1) {
+			return null;
+		}
+		JacocoMethod method = getMethodByFullName(identifier.substring(0, pos));
+		if (method == null) {
+			return null;
+		}
+		try {
+			return method.getLine(Integer.parseInt(identifier.substring(pos + 1)));
+		} catch (NumberFormatException e) {
+			return null;
+		}
 	}
 
 	public void addSession(JacocoSession session) {
-		this.sessions.put(session.getId(), session);
+		this.sessions.put(session.getId(), new SessionEntry(session, null));
+		this.sessionIndex = null;
+		synchronized (cache) {
+			cache.remove(session.getId());
+		}
 	}
-	
+
+	/**
+	 * Adds a session that is built on first access, from its compact execution data.
+	 * Built sessions are kept in a bounded cache, once evicted they are built again on the next access.
+	 * Changes to a lazily built session are therefore not kept, such sessions should only be read.
+	 * @param id - session ID
+	 * @param factory - builds the session
+	 */
+	void addSession(String id, Supplier<JacocoSession> factory) {
+		this.sessions.put(id, new SessionEntry(null, factory));
+		this.sessionIndex = null;
+		synchronized (cache) {
+			cache.remove(id);
+		}
+	}
+
 	public JacocoSession getSession(String id) {
-		return this.sessions.get(id);
+		SessionEntry entry = this.sessions.get(id);
+		return entry == null ? null : getSession(id, entry);
 	}
 
+	private JacocoSession getSession(String id, SessionEntry entry) {
+		if (entry.session != null) {
+			return entry.session;
+		}
+		JacocoSession session;
+		synchronized (cache) {
+			session = cache.get(id);
+		}
+		if (session == null) {
+			session = entry.factory.get();
+			synchronized (cache) {
+				cache.put(id, session);
+			}
+		}
+		return session;
+	}
+
+	/**
+	 * Lazily built sessions are built one after another while iterating, only the most recently used are kept.
+	 * @return - sessions of the report, in the order they were added
+	 */
 	public Collection<JacocoSession> getSessions() {
-		return this.sessions.values();
+		return new AbstractCollection<JacocoSession>() {
+			@Override
+			public Iterator<JacocoSession> iterator() {
+				Iterator<Map.Entry<String, SessionEntry>> entries = sessions.entrySet().iterator();
+				return new Iterator<JacocoSession>() {
+					@Override
+					public boolean hasNext() {
+						return entries.hasNext();
+					}
+
+					@Override
+					public JacocoSession next() {
+						Map.Entry<String, SessionEntry> entry = entries.next();
+						return getSession(entry.getKey(), entry.getValue());
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return sessions.size();
+			}
+		};
 	}
 	
 	public int numberOfSessions() {
@@ -91,51 +244,89 @@ public class JacocoCoverageReport {
 	}
 
 	/**
+	 * Index of the sessions covering a line, method or class, for answering many such queries.
+	 * Built on first use from all sessions, and built again after sessions are added or a session of the report is changed,
+	 * e.g. with {@link JacocoSession#add(JacocoSession)}. An index returned before is not updated, get it again after changes.
+	 * Changes to lazily built sessions are not kept, see {@link #addSession(String, Supplier)}, so they are not considered.
+	 * Sessions are referred to by their ordinal, their position in the order they were added.
+	 * @return - index of the sessions of the report
+	 */
+	public synchronized JacocoSessionIndex getSessionIndex() {
+		long modifications = getModifications();
+		if (sessionIndex == null || sessionIndexModifications != modifications) {
+			sessionIndex = new JacocoSessionIndex(index, new ArrayList<>(sessions.keySet()), getSessionSuppliers());
+			sessionIndexModifications = modifications;
+		}
+		return sessionIndex;
+	}
+
+	/**
+	 * @return - changes of the sessions kept by the report, it grows with every change of one of them
+	 */
+	private long getModifications() {
+		long modifications = 0;
+		for (SessionEntry entry : sessions.values()) {
+			if (entry.session != null) {
+				modifications += entry.session.getModifications();
+			}
+		}
+		return modifications;
+	}
+
+	/**
+	 * Lazily built sessions are built in parallel, see {@link #union(Collection)}.
 	 * @return Union of all sessions in the report.
 	 */
 	public JacocoSession union() {
-		return JacocoCoverageReport.union(getSessions());
+		return new SessionMerger("union " + System.currentTimeMillis(), null, true).merge(getSessionSuppliers());
 	}
 
 	/**
 	 * Intersection of all sessions in the report.
+	 * Lazily built sessions are built in parallel, see {@link #intersection(Collection)}.
 	 * @return
 	 */
 	public JacocoSession intersection() {
-		return JacocoCoverageReport.intersection(getSessions());
+		return new SessionMerger("intersection " + System.currentTimeMillis(), null, false).merge(getSessionSuppliers());
 	}
 
 	/**
+	 * @return - sessions of the report, in the order they were added, each built on first use
+	 */
+	private List<Supplier<JacocoSession>> getSessionSuppliers() {
+		List<Supplier<JacocoSession>> suppliers = new ArrayList<>(sessions.size());
+		for (Map.Entry<String, SessionEntry> entry : sessions.entrySet()) {
+			suppliers.add(() -> getSession(entry.getKey(), entry.getValue()));
+		}
+		return suppliers;
+	}
+
+	/**
+	 * Groups of sessions are merged in one pass each, large numbers of sessions are merged in parallel.
+	 * If several sessions cover a line, the coverage with the most instructions covered is kept, the first one of equal ones.
 	 * @param sessions - sessions to be in the union (i.e. the coverage over all sessions).
 	 * @return - Union of all sessions in sessions.
 	 */
 	public static JacocoSession union(Collection<JacocoSession> sessions) {
-		JacocoSession union = new JacocoSession("union " + System.currentTimeMillis());
-		for(JacocoSession session : sessions) {
-			union.add(session);
-		}
-		return union;
+		return new SessionMerger("union " + System.currentTimeMillis(), null, true).merge(toSuppliers(sessions));
 	}
 
 	/**
+	 * Groups of sessions are merged in one pass each, large numbers of sessions are merged in parallel.
+	 * If all sessions cover a line, the coverage with the least instructions covered is kept, the first one of equal ones.
 	 * @param sessions - sessions to be in the intersection (i.e. the coverage all sessions have in common).
 	 * @return - Intersection of all sessions in sessions.
 	 */
 	public static JacocoSession intersection(Collection<JacocoSession> sessions) {
-		JacocoSession intersection = new JacocoSession("intersection " + System.currentTimeMillis());
-		boolean first = true;
-		for(JacocoSession session : sessions) {
-			if(first) {
-				intersection.add(session);
-			} else {
-				intersection.retain(session);
-				if(intersection.getNumberOfCoveredMethods() == 0) {
-					break;
-				}
-			}
-			first = false;
+		return new SessionMerger("intersection " + System.currentTimeMillis(), null, false).merge(toSuppliers(sessions));
+	}
+
+	private static List<Supplier<JacocoSession>> toSuppliers(Collection<JacocoSession> sessions) {
+		List<Supplier<JacocoSession>> suppliers = new ArrayList<>(sessions.size());
+		for (JacocoSession session : sessions) {
+			suppliers.add(() -> session);
 		}
-		return intersection;
+		return suppliers;
 	}
 
 	/**
@@ -143,12 +334,12 @@ public class JacocoCoverageReport {
 	 * @return - coverage data that only session contains and no other session in the report has.
 	 */
 	public JacocoSession getUniqueContribution(JacocoSession session) {
-		JacocoSession unique = new JacocoSession("unique " + session.getId());
-		unique.add(session);
+		JacocoSession unique = session.copy("unique " + session.getId());
 		for(JacocoSession jSession : getSessions()) {
-			if(jSession != session) {
+			// compared by ID, as lazily built sessions may be built again
+			if(!jSession.getId().equals(session.getId())) {
 				unique.remove(jSession);
-				if(unique.getNumberOfCoveredMethods() == 0) {
+				if(unique.isEmpty()) {
 					break;
 				}
 			}
@@ -156,16 +347,287 @@ public class JacocoCoverageReport {
 		return unique;
 	}
 
+	/**
+	 * Unique contribution of every session at once, see {@link #getUniqueContribution(JacocoSession)}.
+	 * Counts how many sessions cover every line in one pass, instead of removing every other session from every session.
+	 * Lazily built sessions are built in parallel, once, and are kept until their contribution is computed.
+	 * @return - coverage data only the session contains and no other session in the report has, by session ID,
+	 * in the order the sessions were added
+	 */
+	public Map<String, JacocoSession> getUniqueContributions() {
+		List<JacocoSession> unique = new UniqueContributions(index, getSessionSuppliers()).compute();
+		Map<String, JacocoSession> contributions = new LinkedHashMap<>();
+		Iterator<String> ids = sessions.keySet().iterator();
+		for (JacocoSession session : unique) {
+			contributions.put(ids.next(), session);
+		}
+		return contributions;
+	}
+
+	/**
+	 * Similarity of the covered lines of every pair of sessions in the report.
+	 * @param measure - similarity measure
+	 * @return - similarity by the position of the sessions in the order they were added
+	 */
+	public double[][] getSimilarityMatrix(JacocoSessionSimilarity.Measure measure) {
+		return createSimilarityMatrix(new ArrayList<>(sessions.keySet()), null, measure).compute();
+	}
+
+	/**
+	 * Similarity of the covered lines of every row session to every column session.
+	 * @param rowIDs - IDs of the row sessions
+	 * @param columnIDs - IDs of the column sessions
+	 * @param measure - similarity measure
+	 * @return - similarity by the position of the row and the column session, sessions not in the report cover no line
+	 */
+	public double[][] getSimilarityMatrix(List<String> rowIDs, List<String> columnIDs, JacocoSessionSimilarity.Measure measure) {
+		return createSimilarityMatrix(rowIDs, columnIDs, measure).compute();
+	}
+
+	/**
+	 * The most similar pairs of sessions in the report, by their covered lines.
+	 * @param measure - similarity measure
+	 * @param k - number of pairs, or 0 for all pairs
+	 * @return - the k most similar pairs, most similar first
+	 */
+	public List<JacocoSessionSimilarity> getMostSimilarSessions(JacocoSessionSimilarity.Measure measure, int k) {
+		return createSimilarityMatrix(new ArrayList<>(sessions.keySet()), null, measure).top(k);
+	}
+
+	/**
+	 * The most similar pairs of a session of groupA and a session of groupB, by their covered lines.
+	 * A session is not paired with itself.
+	 * @param groupA - IDs of the first sessions of the pairs
+	 * @param groupB - IDs of the second sessions of the pairs
+	 * @param measure - similarity measure
+	 * @param k - number of pairs, or 0 for all pairs
+	 * @return - the k most similar pairs, most similar first, sessions not in the report cover no line
+	 */
+	public List<JacocoSessionSimilarity> getMostSimilarSessions(List<String> groupA, List<String> groupB,
+																JacocoSessionSimilarity.Measure measure, int k) {
+		return createSimilarityMatrix(groupA, groupB, measure).top(k);
+	}
+
+	/**
+	 * @param columnIDs - IDs of the column sessions, or null if they are the row sessions
+	 */
+	private SimilarityMatrix createSimilarityMatrix(List<String> rowIDs, List<String> columnIDs, JacocoSessionSimilarity.Measure measure) {
+		List<String> ids = new ArrayList<>(rowIDs);
+		if (columnIDs != null) {
+			ids.addAll(columnIDs);
+		}
+		// build the sessions in parallel, their lines are compared in the index of the first session covering a line
+		JacocoSession[] sessions = new JacocoSession[ids.size()];
+		Arrays.parallelSetAll(sessions, i -> getSession(ids.get(i)));
+		LineIndex index = null;
+		for (JacocoSession session : sessions) {
+			if (session != null && !session.isEmpty()) {
+				index = session.getIndex();
+				break;
+			}
+		}
+		LineBitmap[] lines = new LineBitmap[sessions.length];
+		for (int i = 0; i < sessions.length; i++) {
+			lines[i] = sessions[i] == null || sessions[i].isEmpty() ? new LineBitmap() : sessions[i].getLines(index);
+		}
+
+		String[] rowIds = rowIDs.toArray(new String[0]);
+		LineBitmap[] rows = Arrays.copyOf(lines, rowIds.length);
+		if (columnIDs == null) {
+			return new SimilarityMatrix(rowIds, rows, rowIds, rows, true, measure);
+		}
+		String[] columnIds = columnIDs.toArray(new String[0]);
+		LineBitmap[] columns = Arrays.copyOfRange(lines, rowIds.length, lines.length);
+		return new SimilarityMatrix(rowIds, rows, columnIds, columns, false, measure);
+	}
+
+	/**
+	 * Selects few sessions that together cover as much as all sessions of the report, e.g. to minimize a test suite.
+	 * @param criterion - coverage the selected sessions should reach
+	 * @return - selected sessions
+	 */
+	public JacocoSessionSelection minimize(JacocoSessionSelection.Criterion criterion) {
+		return minimize(criterion, null, 0);
+	}
+
+	/**
+	 * Selects few sessions that together cover as much as all sessions of the report, e.g. to minimize a test suite.
+	 * Sessions are selected greedily by the coverage they add per cost (lazy greedy set cover).
+	 * @param criterion - coverage the selected sessions should reach
+	 * @param costs - cost of the sessions by their ID, e.g. their run time, sessions without a cost cost 1
+	 * @param timeBudget - milliseconds after which the sessions selected so far are returned, or 0 for no limit
+	 * @return - selected sessions, not complete if the time budget ran out
+	 */
+	public JacocoSessionSelection minimize(JacocoSessionSelection.Criterion criterion, Map<String, Double> costs, long timeBudget) {
+		long deadline = timeBudget > 0 ? System.currentTimeMillis() + timeBudget : 0;
+		return createSetCover(criterion, costs).select(deadline);
+	}
+
+	private SetCover createSetCover(JacocoSessionSelection.Criterion criterion, Map<String, Double> costs) {
+		List<Supplier<JacocoSession>> suppliers = getSessionSuppliers();
+		JacocoSession[] sessions = new JacocoSession[suppliers.size()];
+		Arrays.parallelSetAll(sessions, i -> suppliers.get(i).get());
+		return new SetCover(sessions, costs, criterion);
+	}
+
+	/**
+	 * Orders the sessions of the report by additional coverage, e.g. to prioritize tests.
+	 * The next session is the one adding the most coverage to the sessions before it, once no session adds
+	 * coverage the order starts over with the remaining sessions. Sessions covering nothing come last.
+	 * The order is computed while iterating, so the first sessions are known before the whole order is.
+	 * @param criterion - coverage the sessions add
+	 * @return - session IDs in additional coverage order
+	 */
+	public Iterator<String> prioritize(JacocoSessionSelection.Criterion criterion) {
+		return prioritize(criterion, null);
+	}
+
+	/**
+	 * Orders the sessions of the report by additional coverage per cost, see {@link #prioritize(JacocoSessionSelection.Criterion)}.
+	 * @param criterion - coverage the sessions add
+	 * @param costs - cost of the sessions by their ID, e.g. their run time, sessions without a cost cost 1
+	 * @return - session IDs in additional coverage order
+	 */
+	public Iterator<String> prioritize(JacocoSessionSelection.Criterion criterion, Map<String, Double> costs) {
+		return createSetCover(criterion, costs).prioritize();
+	}
+
+	/**
+	 * Selects the sessions covering changed source lines, e.g. to run only the tests affected by a change.
+	 * A source file is mapped to the classes of its package compiled from it, see {@link #getClassesBySourceFile(String)}.
+	 * The sessions covering a line are looked up in the {@link #getSessionIndex() session index}.
+	 * @param changedLines - changed line numbers, by the path of the source file, see {@link JacocoChangeImpact#readChangedLines(java.io.Reader)}
+	 * @return - sessions covering any changed line, by the number of changed lines they cover
+	 */
+	public JacocoChangeImpact getChangeImpact(Map<String, ? extends Collection<Integer>> changedLines) {
+		JacocoSessionIndex sessionIndex = getSessionIndex();
+		int[] covered = new int[sessionIndex.getNumberOfSessions()];
+		// last changed line counted for a session, so a line of several methods is counted once
+		int[] counted = new int[covered.length];
+		int changed = 0;
+		List<JacocoLine> uncovered = new ArrayList<>();
+		for (Map.Entry<String, ? extends Collection<Integer>> file : changedLines.entrySet()) {
+			List<JacocoClass> classes = getClassesBySourceFile(file.getKey());
+			if (classes.isEmpty()) {
+				continue;
+			}
+			for (int lineNumber : new TreeSet<>(file.getValue())) {
+				List<JacocoLine> lines = new ArrayList<>(1);
+				for (JacocoClass clazz : classes) {
+					for (JacocoMethod method : clazz.getMethods()) {
+						JacocoLine line = method.getLine(lineNumber);
+						if (line != null) {
+							lines.add(line);
+						}
+					}
+				}
+				if (lines.isEmpty()) {
+					continue;
+				}
+				changed++;
+				boolean isCovered = false;
+				for (JacocoLine line : lines) {
+					for (int ordinal : sessionIndex.getSessionsCoveringLine(line)) {
+						isCovered = true;
+						if (counted[ordinal] != changed) {
+							counted[ordinal] = changed;
+							covered[ordinal]++;
+						}
+					}
+				}
+				if (!isCovered) {
+					uncovered.add(lines.get(0));
+				}
+			}
+		}
+
+		// rank by descending count, then ascending ordinal
+		long[] ranked = new long[covered.length];
+		int n = 0;
+		for (int ordinal = 0; ordinal < covered.length; ordinal++) {
+			if (covered[ordinal] > 0) {
+				ranked[n++] = ((long) (Integer.MAX_VALUE - covered[ordinal]) << 32) | ordinal;
+			}
+		}
+		Arrays.sort(ranked, 0, n);
+		List<String> sessionIDs = new ArrayList<>(n);
+		Map<String, Integer> counts = new HashMap<>();
+		for (int i = 0; i < n; i++) {
+			int ordinal = (int) ranked[i];
+			String id = sessionIndex.getSessionId(ordinal);
+			sessionIDs.add(id);
+			counts.put(id, covered[ordinal]);
+		}
+		return new JacocoChangeImpact(sessionIDs, counts, changed, uncovered);
+	}
+
+	/**
+	 * Classes are mapped to their source file by the source file the class file names, e.g. a class Helper declared in
+	 * Foo.java is compiled from at/scch/Foo.java. Classes whose class file names none are mapped by their outer class name.
+	 * A file path is matched by its longest suffix that is a package directory and file name, e.g.
+	 * src/main/java/at/scch/Foo.java is matched to the classes at.scch.Foo, at.scch.Foo$Bar and at.scch.Helper.
+	 * @param path - path of a source file, with or without extension
+	 * @return - classes of the structure compiled from the file, empty if there are none
+	 */
+	public List<JacocoClass> getClassesBySourceFile(String path) {
+		Map<String, List<JacocoClass>> sourceFiles = getSourceFiles();
+		String name = path.replace('\\', '/');
+		int extension = name.lastIndexOf('.');
+		if (extension > name.lastIndexOf('/')) {
+			name = name.substring(0, extension);
+		}
+		// try the whole path, then without its leading directories one after the other
+		int start = 0;
+		while (true) {
+			List<JacocoClass> classes = sourceFiles.get(name.substring(start));
+			if (classes != null) {
+				return classes;
+			}
+			int slash = name.indexOf('/', start);
+			if (slash == -1) {
+				return Collections.emptyList();
+			}
+			start = slash + 1;
+		}
+	}
+
+	private synchronized Map<String, List<JacocoClass>> getSourceFiles() {
+		if (sourceFiles == null) {
+			sourceFiles = new HashMap<>();
+			for (JacocoPackage pkg : packages) {
+				String directory = pkg.getName().isEmpty() ? "" : pkg.getName().replace('.', '/') + "/";
+				for (JacocoClass clazz : pkg.getClasses()) {
+					String name = clazz.getSourceFileName();
+					if (name != null) {
+						int extension = name.lastIndexOf('.');
+						name = extension == -1 ? name : name.substring(0, extension);
+					} else {
+						// no source file attribute, the outer class is named like its file
+						name = clazz.getName();
+						int inner = name.indexOf('$');
+						name = inner == -1 ? name : name.substring(0, inner);
+					}
+					sourceFiles.computeIfAbsent(directory + name, p -> new ArrayList<>()).add(clazz);
+				}
+			}
+		}
+		return sourceFiles;
+	}
+
 	/**
 	 * @param sessions - sessions we want the unique coverage contribution for.
 	 * @return - coverage data that only the union of sessions contains and no other session in the report has.
 	 */
 	public JacocoSession getUniqueContribution(Collection<JacocoSession> sessions) {
 		JacocoSession unique = JacocoCoverageReport.union(sessions);
+		Set<String> sessionIDs = new HashSet<>();
+		for(JacocoSession session : sessions) {
+			sessionIDs.add(session.getId());
+		}
 		for(JacocoSession jSession : getSessions()) {
-			if(!sessions.contains(jSession)) {
+			if(!sessionIDs.contains(jSession.getId())) {
 				unique.remove(jSession);
-				if(unique.getNumberOfCoveredMethods() == 0) {
+				if(unique.isEmpty()) {
 					break;
 				}
 			}
@@ -199,7 +661,7 @@ public class JacocoCoverageReport {
 
 		// serialize sessions
 		JSONArray sessions = new JSONArray();
-		for (JacocoSession session : this.sessions.values()) {
+		for (JacocoSession session : getSessions()) {
 			JSONObject jSession = session.serialize();
 			sessions.put(jSession);
 		}
@@ -233,4 +695,17 @@ public class JacocoCoverageReport {
 
 		return deserialized;
 	}
+
+	/**
+	 * A session of the report, either built or built on access by its factory.
+	 */
+	private static class SessionEntry {
+		private final JacocoSession session;
+		private final Supplier<JacocoSession> factory;
+
+		SessionEntry(JacocoSession session, Supplier<JacocoSession> factory) {
+			this.session = session;
+			this.factory = factory;
+		}
+	}
 }
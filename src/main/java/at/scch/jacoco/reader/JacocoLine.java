@@ -21,12 +21,23 @@ public class JacocoLine {
 
 	private final int branches;
 
+	/**
+	 * Index the line is numbered in, or null if it is not numbered yet.
+	 */
+	volatile LineIndex index;
+
+	/**
+	 * Id of the line in its index.
+	 */
+	int id;
+
 	public JacocoLine(int lineNumber, JacocoMethod method, int instructions, int branches) {
 		this.lineNumber = lineNumber;
 		this.method = method;
-		this.method.addLine(this);
 		this.instructions = instructions;
 		this.branches = branches;
+		// added last, the method adds the counts of the line to its totals
+		this.method.addLine(this);
 	}
 
 	public int getLineNumber() {
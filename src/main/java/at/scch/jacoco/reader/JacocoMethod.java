@@ -38,6 +38,26 @@ public class JacocoMethod {
 
 	private final int complexity;
 
+	/**
+	 * Lowest line number inside the method.
+	 */
+	private int firstLine = Integer.MAX_VALUE;
+
+	/**
+	 * Full name, built on first use.
+	 */
+	private String fullName;
+
+	/**
+	 * Sum of the instructions of all lines, kept up to date as lines are added.
+	 */
+	private int instructions;
+
+	/**
+	 * Sum of the branches of all lines, kept up to date as lines are added.
+	 */
+	private int branches;
+
 	public JacocoMethod(JacocoClass clazz, String signature, int complexity) {
 		super();
 		this.clazz = clazz;
@@ -67,6 +87,13 @@ public class JacocoMethod {
 		return lines.values();
 	}
 
+	/**
+	 * @return - lowest line number inside the method, or Integer.MAX_VALUE if the method has no lines
+	 */
+	public int getFirstLine() {
+		return firstLine;
+	}
+
 	public JacocoLine getLine(int lineNumber) {
 		return this.lines.get(lineNumber);
 	}
@@ -83,26 +110,33 @@ public class JacocoMethod {
 	 * @return package name and class name and method signature
 	 */
 	public String getFullName() {
-		return clazz.getFullName() + "." + this.signature;
+		if (fullName == null) {
+			fullName = clazz.getFullName() + "." + this.signature;
+		}
+		return fullName;
 	}
 
 	protected void addLine(JacocoLine jacocoLine) {
-		this.lines.put(jacocoLine.getLineNumber(), jacocoLine);
+		JacocoLine replaced = this.lines.put(jacocoLine.getLineNumber(), jacocoLine);
+		this.firstLine = Math.min(this.firstLine, jacocoLine.getLineNumber());
+		int lines = 1;
+		int instructions = jacocoLine.getInstructions();
+		int branches = jacocoLine.getBranches();
+		if (replaced != null) {
+			lines = 0;
+			instructions -= replaced.getInstructions();
+			branches -= replaced.getBranches();
+		}
+		this.instructions += instructions;
+		this.branches += branches;
+		this.clazz.addTotals(lines, instructions, branches);
 	}
 
 	public int getBranches() {
-		int branches = 0;
-		for (JacocoLine line : this.lines.values()) {
-			branches += line.getBranches();
-		}
 		return branches;
 	}
 
 	public int getInstructions() {
-		int instructions = 0;
-		for (JacocoLine line : this.lines.values()) {
-			instructions += line.getInstructions();
-		}
 		return instructions;
 	}
 
@@ -3,10 +3,7 @@ package at.scch.jacoco.reader;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
 
 /*
  * TestCovAnalyzer
@@ -18,63 +15,133 @@ import java.util.Set;
 
 /**
  * Coverage data for a method
+ * <p>
+ * Lines are kept as bits relative to the first line of the method, with the covered instructions and branches
+ * of every line in primitive arrays at the same offset. Union, difference and intersection with the coverage
+ * of the same method are word-wise bit operations, only the counts of lines covered by both are compared.
+ * The totals over all covered lines are kept up to date by every change.
  */
 public class JacocoMethodCoverage {
 
+	private static final int[] NO_COUNTS = new int[0];
+
+	private static final long[] NO_LINES = new long[0];
+
 	/**
 	 * Method the coverage data is for
 	 */
 	private final JacocoMethod method;
 
 	/**
-	 * Lines inside the method the were covered, by number.
+	 * Line number of the first bit in linesCovered.
+	 */
+	private int firstLine;
+
+	/**
+	 * Lines inside the method the were covered, as bits relative to firstLine.
 	 */
-	private final Map<Integer, JacocoLineCoverage> linesCovered;
+	private long[] linesCovered;
+
+	/**
+	 * Covered instructions of the covered lines, relative to firstLine.
+	 */
+	private int[] instructionsCovered;
+
+	/**
+	 * Covered branches of the covered lines, relative to firstLine.
+	 */
+	private int[] branchesCovered;
+
+	private int numberOfLinesCovered;
+
+	private int totalInstructionsCovered;
+
+	private int totalBranchesCovered;
 
 	public JacocoMethodCoverage(JacocoMethod method) {
-		this(method, new HashMap<>());
+		super();
+		this.method = method;
+		this.firstLine = method != null && method.getFirstLine() != Integer.MAX_VALUE ? method.getFirstLine() : 0;
+		this.linesCovered = NO_LINES;
+		this.instructionsCovered = NO_COUNTS;
+		this.branchesCovered = NO_COUNTS;
 	}
 
 	public JacocoMethodCoverage(JacocoMethod method, Map<Integer, JacocoLineCoverage> linesCovered) {
-		super();
-		this.method = method;
-		this.linesCovered = linesCovered;
+		this(method);
+		for (Map.Entry<Integer, JacocoLineCoverage> coverageEntry : linesCovered.entrySet()) {
+			JacocoLineCoverage coverage = coverageEntry.getValue();
+			setLineCovered(coverageEntry.getKey(), coverage.getInstructionsCovered(), coverage.getBranchesCovered());
+		}
 	}
 
 	public JacocoMethod getMethod() {
 		return method;
 	}
 
+	/**
+	 * @return - numbers of the covered lines, in ascending order
+	 */
 	public Set<Integer> getLineNumbersCovered() {
-		return linesCovered.keySet();
+		Set<Integer> lineNumbers = new LinkedHashSet<>();
+		for (int offset = nextLine(0); offset >= 0; offset = nextLine(offset + 1)) {
+			lineNumbers.add(firstLine + offset);
+		}
+		return Collections.unmodifiableSet(lineNumbers);
 	}
 
 	public boolean isLineCovered(int lineNumber){
-		return linesCovered.containsKey(lineNumber);
+		int offset = lineNumber - firstLine;
+		return offset >= 0 && offset < instructionsCovered.length && (linesCovered[offset >>> 6] & (1L << offset)) != 0;
 	}
 
 	public int getNumberOfLinesCovered() {
-		return this.linesCovered.size();
+		return numberOfLinesCovered;
 	}
 
-	private JacocoLineCoverage getLineCoverage(int lineNumber) {
-		return this.linesCovered.get(lineNumber);
+	public int getBranchesCovered() {
+		return totalBranchesCovered;
 	}
 
-	public int getBranchesCovered() {
-		int branches = 0;
-		for (JacocoLineCoverage line : this.linesCovered.values()) {
-			branches += line.getBranchesCovered();
+	public int getInstructionsCovered() {
+		return totalInstructionsCovered;
+	}
+
+	/**
+	 * Receives the covered lines of a method.
+	 */
+	interface LineCoverageVisitor {
+		void visitLine(int lineNumber, int instructions, int branches);
+	}
+
+	/**
+	 * @param visitor - receives the covered lines, in ascending order
+	 */
+	void visitLinesCovered(LineCoverageVisitor visitor) {
+		for (int offset = nextLine(0); offset >= 0; offset = nextLine(offset + 1)) {
+			visitor.visitLine(firstLine + offset, instructionsCovered[offset], branchesCovered[offset]);
 		}
-		return branches;
 	}
 
-	public int getInstructionsCovered() {
-		int instructions = 0;
-		for (JacocoLineCoverage line : this.linesCovered.values()) {
-			instructions += line.getInstructionsCovered();
+	/**
+	 * Sets the coverage of a line, replacing the coverage it had so far.
+	 * @param lineNumber - number of the covered line
+	 * @param instructions - instructions covered in the line
+	 * @param branches - branches covered in the line
+	 */
+	void setLineCovered(int lineNumber, int instructions, int branches) {
+		ensureRange(lineNumber, lineNumber);
+		int offset = lineNumber - firstLine;
+		if ((this.linesCovered[offset >>> 6] & (1L << offset)) != 0) {
+			uncount(offset);
+		} else {
+			this.numberOfLinesCovered++;
 		}
-		return instructions;
+		this.totalInstructionsCovered += instructions;
+		this.totalBranchesCovered += branches;
+		this.linesCovered[offset >>> 6] |= 1L << offset;
+		this.instructionsCovered[offset] = instructions;
+		this.branchesCovered[offset] = branches;
 	}
 
 	/**
@@ -83,20 +150,35 @@ public class JacocoMethodCoverage {
 	 * @param toAdd - coverage to add
 	 */
 	public void addLinesCovered(JacocoMethodCoverage toAdd) {
-		for (Map.Entry<Integer, JacocoLineCoverage> coverageEntry : toAdd.linesCovered.entrySet()) {
-			if(this.linesCovered.containsKey(coverageEntry.getKey())) {
-				JacocoLineCoverage addCoverage = coverageEntry.getValue();
-				if (addCoverage != null) {
-					JacocoLineCoverage coverage = this.getLineCoverage(coverageEntry.getKey());
-					if(coverage.getInstructionsCovered() < addCoverage.getInstructionsCovered()){
-						this.linesCovered.put(coverageEntry.getKey(), coverageEntry.getValue());
+		int first = toAdd.nextLine(0);
+		if (first < 0) {
+			return;
+		}
+		ensureRange(toAdd.firstLine + first, toAdd.firstLine + toAdd.previousLine(toAdd.instructionsCovered.length - 1));
+		int delta = this.firstLine - toAdd.firstLine;
+		for (int w = 0; w < this.linesCovered.length; w++) {
+			long added = getWord(toAdd.linesCovered, (w << 6) + delta);
+			if (added == 0) {
+				continue;
+			}
+			long existing = this.linesCovered[w];
+			for (long bits = added; bits != 0; bits &= bits - 1) {
+				int offset = (w << 6) + Long.numberOfTrailingZeros(bits);
+				int addOffset = offset + delta;
+				boolean covered = (existing & Long.lowestOneBit(bits)) != 0;
+				if (!covered || this.instructionsCovered[offset] < toAdd.instructionsCovered[addOffset]) {
+					if (covered) {
+						uncount(offset);
+					} else {
+						this.numberOfLinesCovered++;
 					}
-
-					continue;
+					this.instructionsCovered[offset] = toAdd.instructionsCovered[addOffset];
+					this.branchesCovered[offset] = toAdd.branchesCovered[addOffset];
+					this.totalInstructionsCovered += this.instructionsCovered[offset];
+					this.totalBranchesCovered += this.branchesCovered[offset];
 				}
 			}
-
-			this.linesCovered.put(coverageEntry.getKey(), coverageEntry.getValue());
+			this.linesCovered[w] = existing | added;
 		}
 	}
 
@@ -105,12 +187,14 @@ public class JacocoMethodCoverage {
 	 * @param remove - coverage to remove
 	 */
 	public void removeLinesCovered(JacocoMethodCoverage remove) {
-		Set<Integer> toRemove = new HashSet<>();
-		for (Map.Entry<Integer, JacocoLineCoverage> coverageEntry : remove.linesCovered.entrySet()) {
-			toRemove.add(coverageEntry.getKey());
-		}
-		for (Integer line : toRemove) {
-			this.linesCovered.remove(line);
+		int delta = this.firstLine - remove.firstLine;
+		for (int w = 0; w < this.linesCovered.length; w++) {
+			long removed = this.linesCovered[w] & getWord(remove.linesCovered, (w << 6) + delta);
+			for (long bits = removed; bits != 0; bits &= bits - 1) {
+				uncount((w << 6) + Long.numberOfTrailingZeros(bits));
+				this.numberOfLinesCovered--;
+			}
+			this.linesCovered[w] &= ~removed;
 		}
 	}
 
@@ -120,26 +204,116 @@ public class JacocoMethodCoverage {
 	 * @param toRetain - coverage to retain
 	 */
 	public void retainLinesCovered(JacocoMethodCoverage toRetain) {
-		Set<Integer> toRemove = new HashSet<>();
-		for (Map.Entry<Integer, JacocoLineCoverage> coverageEntry : this.linesCovered.entrySet()) {
-			if(toRetain.linesCovered.containsKey(coverageEntry.getKey())) {
-				JacocoLineCoverage retainCoverage = toRetain.getLineCoverage(coverageEntry.getKey());
-				if (retainCoverage != null) {
-					JacocoLineCoverage coverage = coverageEntry.getValue();
-					if(retainCoverage.getInstructionsCovered() < coverage.getInstructionsCovered()){
-						coverageEntry.setValue(retainCoverage);
-					}
-
-					continue;
+		int delta = this.firstLine - toRetain.firstLine;
+		for (int w = 0; w < this.linesCovered.length; w++) {
+			long retained = this.linesCovered[w] & getWord(toRetain.linesCovered, (w << 6) + delta);
+			for (long bits = this.linesCovered[w] & ~retained; bits != 0; bits &= bits - 1) {
+				uncount((w << 6) + Long.numberOfTrailingZeros(bits));
+				this.numberOfLinesCovered--;
+			}
+			this.linesCovered[w] = retained;
+			for (long bits = retained; bits != 0; bits &= bits - 1) {
+				int offset = (w << 6) + Long.numberOfTrailingZeros(bits);
+				int retainOffset = offset + delta;
+				if (toRetain.instructionsCovered[retainOffset] < this.instructionsCovered[offset]) {
+					uncount(offset);
+					this.instructionsCovered[offset] = toRetain.instructionsCovered[retainOffset];
+					this.branchesCovered[offset] = toRetain.branchesCovered[retainOffset];
+					this.totalInstructionsCovered += this.instructionsCovered[offset];
+					this.totalBranchesCovered += this.branchesCovered[offset];
 				}
 			}
+		}
+	}
 
-			toRemove.add(coverageEntry.getKey());
+	/**
+	 * Removes the counts of a covered line from the totals.
+	 */
+	private void uncount(int offset) {
+		this.totalInstructionsCovered -= this.instructionsCovered[offset];
+		this.totalBranchesCovered -= this.branchesCovered[offset];
+	}
+
+	/**
+	 * Grows the line range, so it contains the lines from first to last.
+	 */
+	private void ensureRange(int first, int last) {
+		int size = this.instructionsCovered.length;
+		if (size == 0) {
+			// keep the first line of the method, so coverage of the same method shares its offsets
+			this.firstLine = Math.min(this.firstLine, first);
+		} else if (first >= this.firstLine && last < this.firstLine + size) {
+			return;
+		}
+		int newFirst = size == 0 ? this.firstLine : Math.min(this.firstLine, first);
+		int newSize = Math.max(size == 0 ? 0 : this.firstLine + size, last + 1) - newFirst;
+		int shift = this.firstLine - newFirst;
+
+		long[] lines = new long[(newSize + 63) >>> 6];
+		for (int w = 0; w < lines.length; w++) {
+			lines[w] = getWord(this.linesCovered, (w << 6) - shift);
 		}
+		int[] instructions = new int[newSize];
+		int[] branches = new int[newSize];
+		System.arraycopy(this.instructionsCovered, 0, instructions, shift, size);
+		System.arraycopy(this.branchesCovered, 0, branches, shift, size);
 
-		for (Integer line : toRemove) {
-			this.linesCovered.remove(line);
+		this.firstLine = newFirst;
+		this.linesCovered = lines;
+		this.instructionsCovered = instructions;
+		this.branchesCovered = branches;
+	}
+
+	/**
+	 * @param lines - line bits
+	 * @param start - offset of the first bit, may be outside the bits
+	 * @return - 64 bits beginning at start, bits outside of lines are 0
+	 */
+	private static long getWord(long[] lines, int start) {
+		int word = Math.floorDiv(start, 64);
+		int shift = Math.floorMod(start, 64);
+		long bits = getWordAt(lines, word) >>> shift;
+		if (shift != 0) {
+			bits |= getWordAt(lines, word + 1) << (64 - shift);
+		}
+		return bits;
+	}
+
+	private static long getWordAt(long[] lines, int word) {
+		return word >= 0 && word < lines.length ? lines[word] : 0;
+	}
+
+	/**
+	 * @return - offset of the first covered line at or after offset, or -1 if there is none
+	 */
+	private int nextLine(int offset) {
+		int w = offset >>> 6;
+		if (w >= this.linesCovered.length) {
+			return -1;
+		}
+		long bits = this.linesCovered[w] & (-1L << offset);
+		while (bits == 0) {
+			if (++w == this.linesCovered.length) {
+				return -1;
+			}
+			bits = this.linesCovered[w];
+		}
+		return (w << 6) + Long.numberOfTrailingZeros(bits);
+	}
+
+	/**
+	 * @return - offset of the last covered line at or before offset, or -1 if there is none
+	 */
+	private int previousLine(int offset) {
+		int w = offset >>> 6;
+		long bits = this.linesCovered[w] & (-1L >>> (63 - (offset & 63)));
+		while (bits == 0) {
+			if (--w < 0) {
+				return -1;
+			}
+			bits = this.linesCovered[w];
 		}
+		return (w << 6) + 63 - Long.numberOfLeadingZeros(bits);
 	}
 
 	protected JSONObject serialize() {
@@ -148,8 +322,11 @@ public class JacocoMethodCoverage {
 
 		// serialize linesCovered
 		JSONArray linesCovered = new JSONArray();
-		for (JacocoLineCoverage lineCoverage : this.linesCovered.values()) {
-			JSONObject jLineCoverage = lineCoverage.serialize();
+		for (int offset = nextLine(0); offset >= 0; offset = nextLine(offset + 1)) {
+			JSONObject jLineCoverage = new JSONObject();
+			jLineCoverage.put("lineNumber", firstLine + offset);
+			jLineCoverage.put("instructionsCovered", instructionsCovered[offset]);
+			jLineCoverage.put("branchesCovered", branchesCovered[offset]);
 			linesCovered.put(jLineCoverage);
 		}
 		jCoverage.put("coverage", linesCovered);
@@ -165,15 +342,15 @@ public class JacocoMethodCoverage {
 			System.out.println("Could not find method: " + methodName);
 		}
 
-		Map<Integer, JacocoLineCoverage> linesCovered = new HashMap<>();
+		JacocoMethodCoverage methodCoverage = new JacocoMethodCoverage(method);
 		// parse linesCovered
 		JSONArray coverage = jCoverage.getJSONArray("coverage");
 		for (Object c : coverage) {
 			JSONObject jLineCoverage = (JSONObject)c;
-			JacocoLineCoverage lineCoverage = JacocoLineCoverage.deserialize(jLineCoverage, method);
-			linesCovered.put(lineCoverage.getLine().getLineNumber(), lineCoverage);
+			methodCoverage.setLineCovered(jLineCoverage.getInt("lineNumber"),
+					jLineCoverage.getInt("instructionsCovered"), jLineCoverage.getInt("branchesCovered"));
 		}
 
-		return new JacocoMethodCoverage(method, linesCovered);
+		return methodCoverage;
 	}
 }
@@ -29,6 +29,21 @@ public class JacocoPackage {
 	 */
 	private final Set<JacocoClass> classes;
 
+	/**
+	 * Number of lines of all classes, kept up to date as lines are added.
+	 */
+	private int numberOfLines;
+
+	/**
+	 * Instructions of all classes, kept up to date as lines are added.
+	 */
+	private int instructions;
+
+	/**
+	 * Branches of all classes, kept up to date as lines are added.
+	 */
+	private int branches;
+
 	public JacocoPackage(String name) {
 		super();
 		this.name = name;
@@ -64,6 +79,30 @@ public class JacocoPackage {
 		this.classes.add(jacocoClass);
 	}
 
+	/**
+	 * @return - number of lines contained in this package
+	 */
+	public int getNumberOfLines() {
+		return numberOfLines;
+	}
+
+	public int getInstructions() {
+		return instructions;
+	}
+
+	public int getBranches() {
+		return branches;
+	}
+
+	/**
+	 * Adds the changes of the lines of a class to the totals.
+	 */
+	void addTotals(int lines, int instructions, int branches) {
+		this.numberOfLines += lines;
+		this.instructions += instructions;
+		this.branches += branches;
+	}
+
 	protected JSONObject serialize() {
 		JSONObject jPackage = new JSONObject();
 		jPackage.put("name", this.name);
@@ -0,0 +1,128 @@
+package at.scch.jacoco.reader;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Source code structure of the system under test, together with the mapping from the probes of every class
+ * to the lines and methods they cover.
+ * The byte code is analyzed once when the index is built, afterwards the coverage of any session
+ * is derived from its probe arrays alone.
+ */
+public class JacocoProbeIndex {
+
+	/**
+	 * Packages of the source code structure, by name.
+	 */
+	private final Map<String, JacocoPackage> packages;
+
+	/**
+	 * Indexed classes, by their VM name.
+	 */
+	private final Map<String, ClassProbeIndex> classesByName;
+
+	/**
+	 * Indexed classes, by their class id.
+	 */
+	private final Map<Long, ClassProbeIndex> classes;
+
+	/**
+	 * Ids of the lines of the structure, numbered again when classes were added.
+	 */
+	private LineIndex lineIndex;
+
+	public JacocoProbeIndex() {
+		super();
+		this.packages = new HashMap<>();
+		this.classesByName = new HashMap<>();
+		this.classes = new HashMap<>();
+	}
+
+	public Collection<JacocoPackage> getPackages() {
+		return packages.values();
+	}
+
+	/**
+	 * @return - number of classes in the index
+	 */
+	public int getNumberOfClasses() {
+		return classes.size();
+	}
+
+	/**
+	 * @param classId - class id, as used in the execution data
+	 * @return - whether the class is in the index
+	 */
+	public boolean containsClass(long classId) {
+		return classes.containsKey(classId);
+	}
+
+	/**
+	 * Adds an analyzed class to the structure and the index.
+	 * Classes may be added from several analyzing threads.
+	 * @param analyzedClass - analyzed class
+	 */
+	synchronized void addClass(AnalyzedClass analyzedClass) {
+		String vmName = analyzedClass.vmName;
+		ClassProbeIndex dup = classesByName.get(vmName);
+		if (dup != null) {
+			if (dup.getId() != analyzedClass.id) {
+				throw new IllegalStateException("Can't add different class with same name: " + vmName);
+			}
+			return;
+		}
+
+		int pos = vmName.lastIndexOf('/');
+		String pkg = pos == -1 ? "" : vmName.substring(0, pos).replace("/", ".");
+		String className = vmName.substring(pos + 1);
+		JacocoPackage jPkg = packages.computeIfAbsent(pkg, JacocoPackage::new);
+		ClassProbeIndex classIndex = new ClassProbeIndex(analyzedClass, new JacocoClass(jPkg, className, analyzedClass.sourceFileName));
+		classesByName.put(vmName, classIndex);
+		classes.put(classIndex.getId(), classIndex);
+		lineIndex = null;
+	}
+
+	private synchronized LineIndex getLineIndex() {
+		if (lineIndex == null) {
+			lineIndex = LineIndex.of(getPackages());
+		}
+		return lineIndex;
+	}
+
+	/**
+	 * Derive the coverage of a session from its execution data.
+	 * @param id - session ID
+	 * @param executionData - execution data of the session
+	 * @return - session with the coverage of all indexed classes
+	 */
+	public JacocoSession createSession(String id, ExecutionDataStore executionData) {
+		JacocoSession.Builder session = new JacocoSession.Builder(id, getLineIndex());
+		for (ExecutionData data : executionData.getContents()) {
+			ClassProbeIndex classIndex = classes.get(data.getId());
+			if (classIndex != null && data.hasHits()) {
+				classIndex.addCoverage(session, SessionProbes.toBits(data.getProbes()));
+			}
+		}
+		return session.build();
+	}
+
+	/**
+	 * Derive the coverage of a session from its compact execution data.
+	 * @param probes - execution data of the session
+	 * @return - session with the coverage of all indexed classes
+	 */
+	JacocoSession createSession(SessionProbes probes) {
+		JacocoSession.Builder session = new JacocoSession.Builder(probes.getId(), getLineIndex());
+		for (Map.Entry<Long, long[]> entry : probes.getProbes().entrySet()) {
+			ClassProbeIndex classIndex = classes.get(entry.getKey());
+			if (classIndex != null) {
+				classIndex.addCoverage(session, entry.getValue());
+			}
+		}
+		return session.build();
+	}
+}
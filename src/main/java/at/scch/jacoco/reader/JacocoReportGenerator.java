@@ -4,12 +4,18 @@ import org.jacoco.core.analysis.*;
 import org.jacoco.core.data.ExecutionDataReader;
 import org.jacoco.core.data.ExecutionDataStore;
 import org.jacoco.core.internal.ContentTypeDetector;
+import org.jacoco.core.internal.Pack200Streams;
 import org.jacoco.report.JavaNames;
 
 import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPInputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
@@ -23,6 +29,11 @@ import java.util.zip.ZipInputStream;
 
 public class JacocoReportGenerator {
 
+	/**
+	 * ID of the session recording the coverage outside of any test, it is not part of the per session reports.
+	 */
+	static final String NO_TEST_SESSION = "No-Test";
+
 	private JacocoReportGenerator() {
 		super();
 	}
@@ -62,15 +73,67 @@ public class JacocoReportGenerator {
 	 */
 	public static JacocoCoverageReport parseExecFile(final File execFile, final Set<File> bins, final Set<File> jars)
 			throws IOException {
+		return parseExecFile(execFile, bins, jars, 1);
+	}
 
-		ExecutionDataVisitor visitor = getExecutionDataVisitor(execFile);
+	/**
+	 * Parse the exec file generate by JaCoCo
+	 * @param execFile - exec file
+	 * @param bins - directories containing class files
+	 * @param jars - jar files that should be part of the analysis
+	 * @param workers - number of sessions that are built concurrently
+	 * @return
+	 * @throws IOException
+	 */
+	public static JacocoCoverageReport parseExecFile(final File execFile, final Set<File> bins, final Set<File> jars, final int workers)
+			throws IOException {
+		return parseExecFile(execFile, bins, jars, workers, SessionFilter.ALL);
+	}
 
-		// read merged results, over all sessions
-		CoverageBuilder mergedBuilder = getCoverageBuilder(visitor.getMerged(), bins, jars);
+	/**
+	 * Parse the exec file generate by JaCoCo
+	 * @param execFile - exec file
+	 * @param bins - directories containing class files
+	 * @param jars - jar files that should be part of the analysis
+	 * @param workers - number of sessions that are built concurrently
+	 * @param filter - selects the sessions that are part of the report
+	 * @return
+	 * @throws IOException
+	 */
+	public static JacocoCoverageReport parseExecFile(final File execFile, final Set<File> bins, final Set<File> jars, final int workers, final SessionFilter filter)
+			throws IOException {
+		return createReport(getExecutionDataVisitor(execFile, filter), bins, jars, workers);
+	}
+
+	/**
+	 * Parse many exec files generate by JaCoCo into one report.
+	 * The files are read concurrently, sessions with the same ID in several files are merged.
+	 * @param execFiles - exec files, or directories containing exec files
+	 * @param bins - directories containing class files
+	 * @param jars - jar files that should be part of the analysis
+	 * @param workers - number of exec files read and sessions built concurrently
+	 * @param filter - selects the sessions that are part of the report
+	 * @return
+	 * @throws IOException
+	 */
+	public static JacocoCoverageReport parseExecFiles(final Collection<File> execFiles, final Set<File> bins, final Set<File> jars, final int workers, final SessionFilter filter)
+			throws IOException {
+		return createReport(getExecutionDataVisitor(execFiles, filter, workers), bins, jars, workers);
+	}
+
+	private static JacocoCoverageReport createReport(final ExecutionDataVisitor visitor, final Set<File> bins, final Set<File> jars, final int workers)
+			throws IOException {
+
+		// read the structure, it does not depend on the execution data
+		CoverageBuilder mergedBuilder = getCoverageBuilder(new ExecutionDataStore(), bins, jars, null, null, workers);
 
 		Map<String, JacocoPackage> packages = new HashMap<>();
 		Map<String, JacocoMethod> methods = new HashMap<>();
 		for (final IClassCoverage cc : mergedBuilder.getClasses()) {
+			if (cc.getInstructionCounter().getTotalCount() == 0) {
+				// classes without code, e.g. interfaces without default methods, as skipped by the probe index
+				continue;
+			}
 			String pkg = getPackageName(cc);
 			JacocoPackage jPkg = packages.get(pkg);
 			if(jPkg == null) {
@@ -78,7 +141,7 @@ public class JacocoReportGenerator {
 				packages.put(pkg, jPkg);
 			}
 			String className = getClassName(cc);
-			JacocoClass jClass = new JacocoClass(jPkg, className);
+			JacocoClass jClass = new JacocoClass(jPkg, className, cc.getSourceFileName());
 			for (final IMethodCoverage mc : cc.getMethods()) {
 				String signature = getMethodSignature(cc, mc);
 				JacocoMethod jMethod = new JacocoMethod(jClass, signature, mc.getComplexityCounter().getTotalCount());
@@ -88,43 +151,367 @@ public class JacocoReportGenerator {
 		}
 		
 		JacocoCoverageReport report = new JacocoCoverageReport(packages.values());
+		addSessions(report, visitor.getSessions(), (id, executionDataStore) -> createSession(id, executionDataStore, bins, jars, methods), workers);
+		return report;
+	}
+
+	/**
+	 * Parse the exec file generate by JaCoCo, deriving the coverage of every session from a probe index.
+	 * The class files are not analyzed again.
+	 * @param execFile - exec file
+	 * @param index - probe index of the class files that should be part of the analysis
+	 * @return
+	 * @throws IOException
+	 */
+	public static JacocoCoverageReport parseExecFile(final File execFile, final JacocoProbeIndex index) throws IOException {
+		return parseExecFile(execFile, index, 1);
+	}
+
+	/**
+	 * Parse the exec file generate by JaCoCo, deriving the coverage of every session from a probe index.
+	 * The class files are not analyzed again.
+	 * @param execFile - exec file
+	 * @param index - probe index of the class files that should be part of the analysis
+	 * @param workers - number of sessions that are built concurrently
+	 * @return
+	 * @throws IOException
+	 */
+	public static JacocoCoverageReport parseExecFile(final File execFile, final JacocoProbeIndex index, final int workers) throws IOException {
+		return parseExecFile(execFile, index, workers, SessionFilter.ALL);
+	}
+
+	/**
+	 * Parse the exec file generate by JaCoCo, deriving the coverage of every session from a probe index.
+	 * The class files are not analyzed again.
+	 * @param execFile - exec file
+	 * @param index - probe index of the class files that should be part of the analysis
+	 * @param workers - number of sessions that are built concurrently
+	 * @param filter - selects the sessions that are part of the report
+	 * @return
+	 * @throws IOException
+	 */
+	public static JacocoCoverageReport parseExecFile(final File execFile, final JacocoProbeIndex index, final int workers, final SessionFilter filter) throws IOException {
+		ExecutionDataVisitor visitor = getExecutionDataVisitor(execFile, filter);
+
+		JacocoCoverageReport report = new JacocoCoverageReport(index.getPackages());
+		addSessions(report, visitor.getSessions(), index::createSession, workers);
+		return report;
+	}
+
+	/**
+	 * Parse the exec file generate by JaCoCo, without keeping the probe arrays of all sessions in memory.
+	 * The file is memory-mapped and the execution data of every session is reduced to the probes of the indexed classes
+	 * while the file is read, the coverage of the sessions is derived from the probe index afterwards.
+	 * @param execFile - exec file
+	 * @param index - probe index of the class files that should be part of the analysis
+	 * @return
+	 * @throws IOException
+	 */
+	public static JacocoCoverageReport streamExecFile(final File execFile, final JacocoProbeIndex index) throws IOException {
+		return streamExecFile(execFile, index, 1);
+	}
+
+	/**
+	 * Parse the exec file generate by JaCoCo, without keeping the probe arrays of all sessions in memory.
+	 * The file is memory-mapped and the execution data of every session is reduced to the probes of the indexed classes
+	 * while the file is read, the coverage of the sessions is derived from the probe index afterwards.
+	 * @param execFile - exec file
+	 * @param index - probe index of the class files that should be part of the analysis
+	 * @param workers - number of sessions that are built concurrently
+	 * @return
+	 * @throws IOException
+	 */
+	public static JacocoCoverageReport streamExecFile(final File execFile, final JacocoProbeIndex index, final int workers) throws IOException {
+		return streamExecFile(execFile, index, workers, SessionFilter.ALL);
+	}
 
-		for (Map.Entry<String, ExecutionDataStore> entry : visitor.getSessions().entrySet()) {
-			if(entry.getKey().equals("No-Test")) {
+	/**
+	 * Parse the exec file generate by JaCoCo, without keeping the probe arrays of all sessions in memory.
+	 * The execution data of sessions that are not selected by the filter is skipped while the file is read.
+	 * @param execFile - exec file
+	 * @param index - probe index of the class files that should be part of the analysis
+	 * @param workers - number of sessions that are built concurrently
+	 * @param filter - selects the sessions that are part of the report
+	 * @return
+	 * @throws IOException
+	 */
+	public static JacocoCoverageReport streamExecFile(final File execFile, final JacocoProbeIndex index, final int workers, final SessionFilter filter) throws IOException {
+		ProbeStreamVisitor visitor = readProbes(execFile, index, filter);
+
+		JacocoCoverageReport report = new JacocoCoverageReport(index.getPackages());
+		addSessions(report, visitor.getSessions(), (id, probes) -> index.createSession(probes), workers);
+		return report;
+	}
+
+	/**
+	 * Parse many exec files generate by JaCoCo into one report, without keeping the probe arrays of all sessions in memory.
+	 * The files are read concurrently, the probes of sessions with the same ID in several files are merged.
+	 * @param execFiles - exec files, or directories containing exec files
+	 * @param index - probe index of the class files that should be part of the analysis
+	 * @param workers - number of exec files read and sessions built concurrently
+	 * @param filter - selects the sessions that are part of the report
+	 * @return
+	 * @throws IOException
+	 */
+	public static JacocoCoverageReport streamExecFiles(final Collection<File> execFiles, final JacocoProbeIndex index, final int workers, final SessionFilter filter) throws IOException {
+		ExecFileMerger<ProbeStreamVisitor> merger = new ExecFileMerger<>(execFile -> readProbes(execFile, index, filter), ProbeStreamVisitor::merge);
+		ProbeStreamVisitor visitor = merger.read(ExecFileMerger.listExecFiles(execFiles), workers);
+
+		JacocoCoverageReport report = new JacocoCoverageReport(index.getPackages());
+		addSessions(report, visitor.getSessions(), (id, probes) -> index.createSession(probes), workers);
+		return report;
+	}
+
+	/**
+	 * Open the exec file generate by JaCoCo as a report whose sessions are built on first access.
+	 * Only the probes of the indexed classes are kept for every session, a session is built from them when it is accessed,
+	 * and only the most recently used sessions are kept built.
+	 * Lazily built sessions should only be read, changes to them are lost once they are evicted.
+	 * @param execFile - exec file
+	 * @param index - probe index of the class files that should be part of the analysis
+	 * @param filter - selects the sessions that are part of the report
+	 * @param cacheSize - number of built sessions that are kept
+	 * @return
+	 * @throws IOException
+	 */
+	public static JacocoCoverageReport openExecFile(final File execFile, final JacocoProbeIndex index, final SessionFilter filter, final int cacheSize) throws IOException {
+		return createLazyReport(readProbes(execFile, index, filter), index, cacheSize);
+	}
+
+	/**
+	 * Open many exec files generate by JaCoCo as one report whose sessions are built on first access.
+	 * The probes of sessions with the same ID in several files are merged.
+	 * @param execFiles - exec files, or directories containing exec files
+	 * @param index - probe index of the class files that should be part of the analysis
+	 * @param workers - number of exec files read concurrently
+	 * @param filter - selects the sessions that are part of the report
+	 * @param cacheSize - number of built sessions that are kept
+	 * @return
+	 * @throws IOException
+	 */
+	public static JacocoCoverageReport openExecFiles(final Collection<File> execFiles, final JacocoProbeIndex index, final int workers, final SessionFilter filter, final int cacheSize) throws IOException {
+		ExecFileMerger<ProbeStreamVisitor> merger = new ExecFileMerger<>(execFile -> readProbes(execFile, index, filter), ProbeStreamVisitor::merge);
+		return createLazyReport(merger.read(ExecFileMerger.listExecFiles(execFiles), workers), index, cacheSize);
+	}
+
+	private static JacocoCoverageReport createLazyReport(final ProbeStreamVisitor visitor, final JacocoProbeIndex index, final int cacheSize) {
+		JacocoCoverageReport report = new JacocoCoverageReport(index.getPackages(), cacheSize);
+		for (Map.Entry<String, SessionProbes> entry : visitor.getSessions().entrySet()) {
+			if(entry.getKey().equals(NO_TEST_SESSION)) {
 				continue;
 			}
 
-//			System.out.println(entry.getKey());
-
-			CoverageBuilder coverageBuilder = getCoverageBuilder(entry.getValue(), bins, jars);
-
-			JacocoSession session = new JacocoSession(entry.getKey());
-			
-			for (final IClassCoverage cc : coverageBuilder.getClasses()) {
-				String pkg = getPackageName(cc);
-				String className = getClassName(cc);
-				for (final IMethodCoverage mc : cc.getMethods()) {
-					String signature = getMethodSignature(cc, mc);
-					String key = pkg + "." + className + "." + signature;
-					JacocoMethod jMethod = methods.get(key);
-					Map<Integer, JacocoLineCoverage> linesCovered = getLinesCovered(mc, pkg, className, signature, jMethod);
-					if(!linesCovered.isEmpty()) {
-						JacocoMethodCoverage methodCoverage = new JacocoMethodCoverage(jMethod, linesCovered);
-						session.addCoverage(methodCoverage);
-					}
+			SessionProbes probes = entry.getValue();
+			report.addSession(entry.getKey(), () -> index.createSession(probes));
+		}
+		return report;
+	}
+
+	private static ProbeStreamVisitor readProbes(final File execFile, final JacocoProbeIndex index, final SessionFilter filter) throws IOException {
+		ProbeStreamVisitor visitor = new ProbeStreamVisitor(index, filter);
+		try (MappedExecFileReader reader = new MappedExecFileReader(execFile)) {
+			reader.setExecutionDataVisitor(visitor);
+			reader.setSessionInfoVisitor(visitor);
+			reader.read();
+		}
+		return visitor;
+	}
+
+	/**
+	 * Builds the sessions and adds them to the report, in the order of the exec file.
+	 * @param report - report the sessions are added to
+	 * @param sessions - execution data, by session ID
+	 * @param factory - builds a single session from its execution data
+	 * @param workers - number of sessions that are built concurrently
+	 * @throws IOException
+	 */
+	static <T> void addSessions(final JacocoCoverageReport report, final Map<String, T> sessions, final SessionFactory<T> factory, final int workers)
+			throws IOException {
+		if (workers <= 1) {
+			for (Map.Entry<String, T> entry : sessions.entrySet()) {
+				if(entry.getKey().equals(NO_TEST_SESSION)) {
+					continue;
 				}
+
+				report.addSession(factory.createSession(entry.getKey(), entry.getValue()));
 			}
-			report.addSession(session);
+			return;
 		}
-		return report;
+
+		ExecutorService executor = Executors.newFixedThreadPool(workers);
+		try {
+			List<Future<JacocoSession>> futures = new ArrayList<>();
+			for (Map.Entry<String, T> entry : sessions.entrySet()) {
+				if(entry.getKey().equals(NO_TEST_SESSION)) {
+					continue;
+				}
+
+				futures.add(executor.submit(() -> factory.createSession(entry.getKey(), entry.getValue())));
+			}
+			for (Future<JacocoSession> future : futures) {
+				report.addSession(getResult(future));
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static <T> T getResult(final Future<T> future) throws IOException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while building sessions.");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			}
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IOException(cause);
+		}
+	}
+
+	private static JacocoSession createSession(final String id, final ExecutionDataStore executionDataStore, final Set<File> bins, final Set<File> jars, final Map<String, JacocoMethod> methods)
+			throws IOException {
+		CoverageBuilder coverageBuilder = getCoverageBuilder(executionDataStore, bins, jars);
+
+		JacocoSession session = new JacocoSession(id);
+
+		for (final IClassCoverage cc : coverageBuilder.getClasses()) {
+			String pkg = getPackageName(cc);
+			String className = getClassName(cc);
+			for (final IMethodCoverage mc : cc.getMethods()) {
+				String signature = getMethodSignature(cc, mc);
+				String key = pkg + "." + className + "." + signature;
+				JacocoMethod jMethod = methods.get(key);
+				Map<Integer, JacocoLineCoverage> linesCovered = getLinesCovered(mc, pkg, className, signature, jMethod);
+				if(!linesCovered.isEmpty()) {
+					JacocoMethodCoverage methodCoverage = new JacocoMethodCoverage(jMethod, linesCovered);
+					session.addCoverage(methodCoverage);
+				}
+			}
+		}
+		return session;
+	}
+
+	public static JacocoProbeIndex createProbeIndex(final Set<File> bins, final Set<File> jars) throws IOException {
+		return createProbeIndex(bins, jars, null, null);
+	}
+
+	/**
+	 * Analyze the class files once, building the source code structure and the mapping from probes to lines.
+	 * @param bins - directories containing class files
+	 * @param jars - jar files that should be part of the analysis
+	 * @param includes - patterns of class files to include, or null to include all
+	 * @param excludes - patterns of class files to exclude, or null to exclude none
+	 * @return - probe index of the class files
+	 * @throws IOException
+	 */
+	public static JacocoProbeIndex createProbeIndex(final Set<File> bins, final Set<File> jars, final Set<String> includes, final Set<String> excludes) throws IOException {
+		return createProbeIndex(bins, jars, includes, excludes, 1);
+	}
+
+	/**
+	 * Analyze the class files once, building the source code structure and the mapping from probes to lines.
+	 * @param bins - directories containing class files
+	 * @param jars - jar files that should be part of the analysis
+	 * @param includes - patterns of class files to include, or null to include all
+	 * @param excludes - patterns of class files to exclude, or null to exclude none
+	 * @param workers - number of class files that are analyzed concurrently
+	 * @return - probe index of the class files
+	 * @throws IOException
+	 */
+	public static JacocoProbeIndex createProbeIndex(final Set<File> bins, final Set<File> jars, final Set<String> includes, final Set<String> excludes, final int workers) throws IOException {
+		return createProbeIndex(bins, jars, includes, excludes, workers, null);
+	}
+
+	/**
+	 * Analyze the class files, reading classes that were analyzed before from the cache.
+	 * Newly analyzed classes are added to the cache, which is trimmed to its maximal size afterwards.
+	 * @param bins - directories containing class files
+	 * @param jars - jar files that should be part of the analysis
+	 * @param includes - patterns of class files to include, or null to include all
+	 * @param excludes - patterns of class files to exclude, or null to exclude none
+	 * @param workers - number of class files that are analyzed concurrently
+	 * @param cache - cache of analyzed classes, or null to analyze all classes
+	 * @return - probe index of the class files
+	 * @throws IOException
+	 */
+	public static JacocoProbeIndex createProbeIndex(final Set<File> bins, final Set<File> jars, final Set<String> includes, final Set<String> excludes, final int workers, final AnalysisCache cache) throws IOException {
+		JacocoProbeIndex index = new JacocoProbeIndex();
+		if (workers <= 1) {
+			analyzeBins(new ProbeIndexAnalyzer(index, cache), bins, jars, includes, excludes);
+		} else {
+			new ClasspathScanner(new ClassFileFilter(includes, excludes), workers).scan(() -> new ProbeIndexAnalyzer(index, cache), bins, jars);
+		}
+		if (cache != null) {
+			cache.trim();
+		}
+		return index;
+	}
+
+	/**
+	 * Analyze the class files into a compact source code structure, without creating an object per method or line.
+	 * @param bins - directories containing class files
+	 * @param jars - jar files that should be part of the analysis
+	 * @param includes - patterns of class files to include, or null to include all
+	 * @param excludes - patterns of class files to exclude, or null to exclude none
+	 * @param workers - number of class files analyzed concurrently
+	 * @param cache - cache of classes analyzed earlier, or null
+	 * @return - compact structure of the class files
+	 * @throws IOException
+	 */
+	public static CompactStructure createCompactStructure(final Set<File> bins, final Set<File> jars, final Set<String> includes, final Set<String> excludes, final int workers, final AnalysisCache cache) throws IOException {
+		CompactStructure.Builder builder = new CompactStructure.Builder();
+		if (workers <= 1) {
+			analyzeBins(new ProbeIndexAnalyzer(builder::addClass, cache), bins, jars, includes, excludes);
+		} else {
+			new ClasspathScanner(new ClassFileFilter(includes, excludes), workers).scan(() -> new ProbeIndexAnalyzer(builder::addClass, cache), bins, jars);
+		}
+		if (cache != null) {
+			cache.trim();
+		}
+		return builder.build();
 	}
 
 	public static ExecutionDataVisitor getExecutionDataVisitor(final File execFile) throws IOException{
-		ExecutionDataVisitor visitor = new ExecutionDataVisitor();
-		ExecutionDataReader reader = new ExecutionDataReader(new FileInputStream(execFile));
-		reader.setExecutionDataVisitor(visitor);
-		reader.setSessionInfoVisitor(visitor);
-		reader.read();
+		return getExecutionDataVisitor(execFile, SessionFilter.ALL);
+	}
+
+	/**
+	 * Read many exec files generate by JaCoCo concurrently, merging sessions with the same ID.
+	 * @param execFiles - exec files, or directories containing exec files
+	 * @param filter - selects the sessions that are kept
+	 * @param workers - number of exec files read concurrently
+	 * @return - visitor with the merged execution data of the selected sessions
+	 * @throws IOException
+	 */
+	public static ExecutionDataVisitor getExecutionDataVisitor(final Collection<File> execFiles, final SessionFilter filter, final int workers) throws IOException{
+		ExecFileMerger<ExecutionDataVisitor> merger = new ExecFileMerger<>(execFile -> getExecutionDataVisitor(execFile, filter), ExecutionDataVisitor::merge);
+		return merger.read(ExecFileMerger.listExecFiles(execFiles), workers);
+	}
+
+	/**
+	 * Read the exec file generate by JaCoCo, keeping only the execution data of the selected sessions.
+	 * @param execFile - exec file
+	 * @param filter - selects the sessions that are kept
+	 * @return - visitor with the execution data of the selected sessions
+	 * @throws IOException
+	 */
+	public static ExecutionDataVisitor getExecutionDataVisitor(final File execFile, final SessionFilter filter) throws IOException{
+		ExecutionDataVisitor visitor = new ExecutionDataVisitor(filter);
+		try (InputStream in = new BufferedInputStream(new FileInputStream(execFile))) {
+			ExecutionDataReader reader = new ExecutionDataReader(in);
+			reader.setExecutionDataVisitor(visitor);
+			reader.setSessionInfoVisitor(visitor);
+			reader.read();
+		}
 
 		return visitor;
 	}
@@ -151,9 +538,33 @@ public class JacocoReportGenerator {
 	}
 
 	public static CoverageBuilder getCoverageBuilder(final ExecutionDataStore executionDataStore, final Set<File> bins, final Set<File> jars, final Set<String> includes, final Set<String> excludes) throws IOException {
+		return getCoverageBuilder(executionDataStore, bins, jars, includes, excludes, 1);
+	}
+
+	/**
+	 * Analyze the class files with the given execution data.
+	 * @param executionDataStore - execution data
+	 * @param bins - directories containing class files
+	 * @param jars - jar files that should be part of the analysis
+	 * @param includes - patterns of class files to include, or null to include all
+	 * @param excludes - patterns of class files to exclude, or null to exclude none
+	 * @param workers - number of class files that are analyzed concurrently
+	 * @return - coverage of the analyzed classes
+	 * @throws IOException
+	 */
+	public static CoverageBuilder getCoverageBuilder(final ExecutionDataStore executionDataStore, final Set<File> bins, final Set<File> jars, final Set<String> includes, final Set<String> excludes, final int workers) throws IOException {
 		CoverageBuilder coverageBuilder = new CoverageBuilder();
-		Analyzer analyzer = new Analyzer(executionDataStore, coverageBuilder);
-		analyzeBins(analyzer, bins, jars, includes, excludes);
+		if (workers <= 1) {
+			Analyzer analyzer = new Analyzer(executionDataStore, coverageBuilder);
+			analyzeBins(analyzer, bins, jars, includes, excludes);
+		} else {
+			ICoverageVisitor visitor = coverage -> {
+				synchronized (coverageBuilder) {
+					coverageBuilder.visitCoverage(coverage);
+				}
+			};
+			new ClasspathScanner(new ClassFileFilter(includes, excludes), workers).scan(() -> new Analyzer(executionDataStore, visitor), bins, jars);
+		}
 
 		return coverageBuilder;
 	}
@@ -173,10 +584,11 @@ public class JacocoReportGenerator {
 //	}
 
 	private static void analyzeBins(final Analyzer analyzer, final Set<File> bins, final Set<File> jars, final Set<String> includes, final Set<String> excludes) throws IOException {
+		ClassFileFilter filter = new ClassFileFilter(includes, excludes);
 		if (bins != null) {
 			for (File bin : bins) {
 				try {
-					analyzeBins(analyzer, bin, includes, excludes);
+					analyzeBins(analyzer, bin, filter);
 				} catch (IOException e) {
 					System.err.println("ERROR: " + e.getMessage());
 					e.printStackTrace();
@@ -186,7 +598,7 @@ public class JacocoReportGenerator {
 		if (jars != null) {
 			for (File jar : jars) {
 				try {
-					analyzeBins(analyzer, jar, includes, excludes);
+					analyzeBins(analyzer, jar, filter);
 				} catch (IOException e) {
 					System.err.println("ERROR: " + e.getMessage());
 					e.printStackTrace();
@@ -195,106 +607,58 @@ public class JacocoReportGenerator {
 		}
 	}
 
-	private static void analyzeBins(final Analyzer analyzer, final File bins, final Set<String> includes, final Set<String> excludes) throws IOException {
+	private static void analyzeBins(final Analyzer analyzer, final File bins, final ClassFileFilter filter) throws IOException {
 		if(bins.isDirectory()){
 			for (final File f : bins.listFiles()) {
-				analyzeBins(analyzer, f, includes, excludes);
+				analyzeBins(analyzer, f, filter);
 			}
 		} else {
-			final InputStream in = new FileInputStream(bins);
-			try {
-				final ContentTypeDetector detector = new ContentTypeDetector(in);
-				switch (detector.getType()) {
-					case ContentTypeDetector.CLASSFILE:
-						if(includeClassFile(bins.getPath(), includes, excludes)){
-							analyzer.analyzeAll(bins);
-						}
-						break;
-					case ContentTypeDetector.ZIPFILE:
-						if(includes.isEmpty() && excludes.isEmpty()){
-							analyzer.analyzeAll(bins);
-						} else {
-							ZipInputStream zip = new ZipInputStream(new FileInputStream(bins));
-							ZipEntry entry;
-							while((entry = nextEntry(zip)) != null){
-								if(entry.getName().endsWith(".class") && includeClassFile(entry.getName(), includes, excludes)) {
-									analyzer.analyzeAll(zip, bins.getPath() + "@" + entry.getName());
-								}
-							}
-						}
-						break;
-					case ContentTypeDetector.GZFILE:
-						// TODO Handle file type GZFILE, if a filter in includes or excludes is specified.
-						if(!includes.isEmpty() || !excludes.isEmpty()){
-							System.err.println("Filter are not supported for GZFILE files yet.");
-						}
-						analyzer.analyzeAll(bins);
-						break;
-					case ContentTypeDetector.PACK200FILE:
-						// TODO Handle file type PACK200FILE, if a filter in includes or excludes is specified.
-						if(!includes.isEmpty() || !excludes.isEmpty()){
-							System.err.println("Filter are not supported for PACK200FILE files yet.");
-						}
-						analyzer.analyzeAll(bins);
-						break;
-					default:
-				}
-			} finally {
-				in.close();
+			try (InputStream in = new FileInputStream(bins)) {
+				analyzeFiltered(analyzer, in, bins.getPath(), filter);
 			}
 		}
 	}
 
-	private static boolean includeClassFile(final String pathToClassFile, final Set<String> includes, final Set<String> excludes){
-		return includeClassFile(pathToClassFile, includes) && !excludeClassFile(pathToClassFile, excludes);
-	}
-
-	private static boolean includeClassFile(final String pathToClassFile, final Set<String> includes){
-		if(includes == null || includes.isEmpty()){
-			return true;
-		}
-
-		String filePath = pathToClassFile.replaceAll("\\\\", "/");
-		for (String include : includes) {
-			String regex = getFileRegexFromPattern(include);
-			if(filePath.matches(regex)){
-				return true;
-			}
-		}
-
-		return false;
-	}
-
-	private static boolean excludeClassFile(final String pathToClassFile, final Set<String> excludes){
-		if(excludes == null || excludes.isEmpty()){
-			return false;
-		}
-
-		String filePath = pathToClassFile.replaceAll("\\\\", "/");
-		for (String exclude : excludes) {
-			String regex = getFileRegexFromPattern(exclude);
-			if(filePath.matches(regex)){
-				return true;
-			}
+	/**
+	 * Analyze the class files of a class file, zip file, GZIP or Pack200 stream, that pass the filter.
+	 * Compressed streams are unpacked and filtered like the file they contain.
+	 * @param analyzer - analyzer of the class files
+	 * @param in - content of the file
+	 * @param location - path of the file
+	 * @param filter - filter of the class files
+	 * @throws IOException
+	 */
+	static void analyzeFiltered(final Analyzer analyzer, final InputStream in, final String location, final ClassFileFilter filter) throws IOException {
+		if(!filter.isFiltering()){
+			analyzer.analyzeAll(in, location);
+			return;
 		}
-
-		return false;
-	}
-
-	private static ZipEntry nextEntry(final ZipInputStream input) {
-		try {
-            return input.getNextEntry();
-		} catch (final IOException e) {
-			throw new RuntimeException(e);
+		final ContentTypeDetector detector = new ContentTypeDetector(in);
+		switch (detector.getType()) {
+			case ContentTypeDetector.CLASSFILE:
+				if(filter.includes(location)){
+					analyzer.analyzeClass(detector.getInputStream(), location);
+				}
+				break;
+			case ContentTypeDetector.ZIPFILE:
+				ZipInputStream zip = new ZipInputStream(detector.getInputStream());
+				ZipEntry entry;
+				while((entry = zip.getNextEntry()) != null){
+					if(entry.getName().endsWith(".class") && filter.includes(entry.getName())) {
+						analyzer.analyzeAll(zip, location + "@" + entry.getName());
+					}
+				}
+				break;
+			case ContentTypeDetector.GZFILE:
+				analyzeFiltered(analyzer, new GZIPInputStream(detector.getInputStream()), location, filter);
+				break;
+			case ContentTypeDetector.PACK200FILE:
+				analyzeFiltered(analyzer, Pack200Streams.unpack(detector.getInputStream()), location, filter);
+				break;
+			default:
 		}
 	}
 
-	private static String getFileRegexFromPattern(String pattern){
-        return ".*" + pattern.replaceAll("\\.","/").
-				replaceAll("\\*", ".*").
-				replaceAll("\\?", ".");
-	}
-
 	private static Set<JacocoLine> getLines(final IMethodCoverage mc, String pkg, String className, String methodName, JacocoMethod jMethod) {
 		Set<JacocoLine> coveredLines = new HashSet<>();
 		for (int i = mc.getFirstLine(); i <= mc.getLastLine(); i++) {
@@ -346,4 +710,11 @@ public class JacocoReportGenerator {
 		return names.getMethodName(cc.getName(), mc.getName(), mc.getDesc(), mc.getSignature());
 	}
 
+	/**
+	 * Builds the coverage of a single session from its execution data.
+	 */
+	interface SessionFactory<T> {
+		JacocoSession createSession(String id, T executionData) throws IOException;
+	}
+
 }
@@ -3,10 +3,7 @@ package at.scch.jacoco.reader;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
 
 /*
  * TestCovAnalyzer
@@ -18,6 +15,13 @@ import java.util.Set;
 
 /**
  * Represents a session inside the JaCoCo coverage report
+ * <p>
+ * The covered lines are kept as a compressed bitmap of the line ids of the structure, see {@link LineIndex},
+ * so union, intersection and difference are bitmap operations across the whole session.
+ * Only the lines that are not fully covered keep their covered instructions and branches separately.
+ * <p>
+ * Copies and sessions derived from other sessions share the unchanged parts of the bitmap and the counts,
+ * so deriving a session only takes memory for the coverage it changes.
  */
 public class JacocoSession {
 
@@ -27,69 +31,225 @@ public class JacocoSession {
 	private final String id;
 
 	/**
-	 * Coverage data of this session, per method
+	 * Index of the lines, or null as long as the session is empty.
 	 */
-	private final Map<String, JacocoMethodCoverage> coverage;
-	
+	private LineIndex index;
+
+	/**
+	 * Ids of the covered lines.
+	 */
+	private LineBitmap lines;
+
+	/**
+	 * Covered instructions and branches of the lines that are not fully covered.
+	 */
+	private LineCounts counts;
+
+	/**
+	 * Rollups of the covered lines, counted on first use and dropped whenever the coverage changes.
+	 */
+	private Rollups rollups;
+
+	/**
+	 * Number of changes of the coverage, so indexes built from the session can tell they are out of date.
+	 */
+	private long modifications;
+
 	public JacocoSession(String id) {
 		super();
 		this.id = id;
-		this.coverage = new HashMap<>();
+		this.lines = new LineBitmap();
+		this.counts = LineCounts.EMPTY;
 	}
 
 	public String getId() {
 		return id;
 	}
 
+	/**
+	 * @return - number of changes of the coverage so far, it grows with every change
+	 */
+	long getModifications() {
+		return modifications;
+	}
+
+	/**
+	 * Copies the coverage of this session, the copy shares the coverage until either of them changes.
+	 * @param id - id of the copy
+	 * @return - session with the coverage of this session
+	 */
+	public JacocoSession copy(String id) {
+		JacocoSession copy = new JacocoSession(id);
+		copy.index = this.index;
+		copy.lines = this.lines.copy();
+		copy.counts = this.counts;
+		copy.rollups = this.rollups;
+		return copy;
+	}
+
+	/**
+	 * Coverage data of this session, per method.
+	 * The coverage is built from the lines of the session on every call, so it is a snapshot: the map cannot be changed,
+	 * and changing a method coverage in it does not change the session. Use {@link #addCoverage(JacocoMethodCoverage)} instead.
+	 * @return - coverage by full name of the method, unmodifiable
+	 */
 	public Map<String, JacocoMethodCoverage> getCoverage() {
-		return coverage;
+		Map<String, JacocoMethodCoverage> coverage = new LinkedHashMap<>();
+		int[] ids = lines.toArray();
+		int c = 0;
+		JacocoMethod method = null;
+		JacocoMethodCoverage methodCoverage = null;
+		for (int lineId : ids) {
+			JacocoLine line = index.getLine(lineId);
+			if (line.getMethod() != method) {
+				method = line.getMethod();
+				methodCoverage = coverage.get(method.getFullName());
+				if (methodCoverage == null) {
+					methodCoverage = new JacocoMethodCoverage(method);
+					coverage.put(method.getFullName(), methodCoverage);
+				}
+			}
+			while (c < counts.size && counts.ids[c] < lineId) {
+				c++;
+			}
+			if (c < counts.size && counts.ids[c] == lineId) {
+				methodCoverage.setLineCovered(line.getLineNumber(), counts.instructions[c], counts.branches[c]);
+			} else {
+				methodCoverage.setLineCovered(line.getLineNumber(), LineCounts.getDefaultInstructions(line), LineCounts.getDefaultBranches(line));
+			}
+		}
+		return Collections.unmodifiableMap(coverage);
 	}
 
+	/**
+	 * Sets the coverage of a method, replacing the coverage the method had so far.
+	 * Lines that are not part of the method are ignored.
+	 * @param methodCoverage - coverage of a method
+	 */
 	public void addCoverage(JacocoMethodCoverage methodCoverage) {
-		this.coverage.put(methodCoverage.getMethod().getFullName(), methodCoverage); 
+		JacocoMethod method = methodCoverage.getMethod();
+		if (method == null) {
+			return;
+		}
+		if (index == null) {
+			index = findIndex(method);
+		}
+
+		// replace the lines covered so far
+		Builder covered = new Builder(this.id, index);
+		for (JacocoLine line : method.getLines()) {
+			int lineId = index.findId(line);
+			if (lineId >= 0 && lines.contains(lineId)) {
+				covered.addLine(lineId, 0, 0);
+			}
+		}
+		if (!covered.isEmpty()) {
+			remove(covered.build());
+		}
+
+		Builder added = new Builder(this.id, index);
+		methodCoverage.visitLinesCovered((lineNumber, instructions, branches) -> {
+			JacocoLine line = method.getLine(lineNumber);
+			if (line != null) {
+				added.addLine(index.getId(line), instructions, branches);
+			}
+		});
+		add(added.build());
 	}
 
+	/**
+	 * @param fullName - package name + class name + method signature
+	 * @return - coverage of the method, a snapshot like {@link #getCoverage()}, or null if the session does not cover it
+	 */
 	public JacocoMethodCoverage getCoverage(String fullName) {
-		return this.coverage.get(fullName);
+		if (index == null) {
+			return null;
+		}
+		JacocoMethod method = index.getMethod(fullName);
+		if (method == null) {
+			return null;
+		}
+		JacocoMethodCoverage methodCoverage = null;
+		for (JacocoLine line : method.getLines()) {
+			int lineId = index.findId(line);
+			if (lineId >= 0 && lines.contains(lineId)) {
+				if (methodCoverage == null) {
+					methodCoverage = new JacocoMethodCoverage(method);
+				}
+				int c = Arrays.binarySearch(counts.ids, 0, counts.size, lineId);
+				if (c >= 0) {
+					methodCoverage.setLineCovered(line.getLineNumber(), counts.instructions[c], counts.branches[c]);
+				} else {
+					methodCoverage.setLineCovered(line.getLineNumber(), LineCounts.getDefaultInstructions(line), LineCounts.getDefaultBranches(line));
+				}
+			}
+		}
+		return methodCoverage;
 	}
 
 	public boolean coversLine(JacocoLine line) {
-		JacocoMethodCoverage methodCoverage = coverage.get(line.getMethod().getFullName());
-		if(methodCoverage == null){
+		if (index == null) {
 			return false;
 		}
+		int lineId = index.findId(line);
+		return lineId >= 0 && lines.contains(lineId);
+	}
 
-		return methodCoverage.isLineCovered(line.getLineNumber());
+	/**
+	 * @return - whether the session covers no line at all
+	 */
+	public boolean isEmpty() {
+		return lines.isEmpty();
 	}
 
 	public int getNumberOfCoveredMethods() {
-		return this.coverage.size();
+		return getRollups().methods;
+	}
+
+	/**
+	 * @param clazz - class of the structure
+	 * @return - number of lines of the class the session covers
+	 */
+	public int getNumberOfLinesCovered(JacocoClass clazz) {
+		return getRollups().classes.getOrDefault(clazz.getFullName(), 0);
+	}
+
+	/**
+	 * @param pkg - package of the structure
+	 * @return - number of lines of the package the session covers
+	 */
+	public int getNumberOfLinesCovered(JacocoPackage pkg) {
+		return getRollups().packages.getOrDefault(pkg.getName(), 0);
 	}
 
 	public long getNumberOfLinesCovered() {
-		long linesCovered = 0;
-		for (JacocoMethodCoverage m : this.coverage.values()) {
-			linesCovered += m.getNumberOfLinesCovered();
-		}
-		return linesCovered;
+		return lines.cardinality();
 	}
 
 	/**
 	 * Add the coverage data of session to this.
 	 * Union operation.
+	 * If a line is covered by both: keep the one with the best coverage (i.e. max instructions covered).
 	 * @param session
 	 */
 	public void add(JacocoSession session) {
-		for(Map.Entry<String, JacocoMethodCoverage> entry : session.coverage.entrySet()) {
-			JacocoMethodCoverage jMethodCoverage = this.coverage.get(entry.getKey());
-			if(jMethodCoverage == null) {
-				jMethodCoverage = new JacocoMethodCoverage(entry.getValue().getMethod());
-				jMethodCoverage.addLinesCovered(entry.getValue());
-				this.coverage.put(entry.getKey(), jMethodCoverage);
-			} else {
-				jMethodCoverage.addLinesCovered(entry.getValue());
-			}
+		if (session.isEmpty()) {
+			return;
+		}
+		this.rollups = null;
+		this.modifications++;
+		if (this.index == null) {
+			this.index = session.index;
+		}
+		session = session.in(this.index);
+		if (this.isEmpty()) {
+			// share the coverage of session
+			this.lines = session.lines.copy();
+			this.counts = session.counts;
+			return;
 		}
+		this.counts = mergeCounts(session, true);
+		this.lines.or(session.lines);
 	}
 
 	/**
@@ -97,38 +257,429 @@ public class JacocoSession {
 	 * @param session
 	 */
 	public void remove(JacocoSession session) {
-		for(Map.Entry<String, JacocoMethodCoverage> entry : session.coverage.entrySet()) {
-			JacocoMethodCoverage jMethodCoverage = this.coverage.get(entry.getKey());
-			if(jMethodCoverage != null) {
-				jMethodCoverage.removeLinesCovered(entry.getValue());
-				if(jMethodCoverage.getNumberOfLinesCovered() == 0){
-					this.coverage.remove(entry.getKey());
-				}
+		if (this.isEmpty() || session.isEmpty()) {
+			return;
+		}
+		session = session.in(this.index);
+		this.rollups = null;
+		this.modifications++;
+		this.lines.andNot(session.lines);
+		LineCounts.Builder kept = new LineCounts.Builder(index);
+		boolean removed = false;
+		for (int c = 0; c < counts.size; c++) {
+			if (lines.contains(counts.ids[c])) {
+				kept.add(counts.ids[c], counts.instructions[c], counts.branches[c]);
+			} else {
+				removed = true;
 			}
 		}
+		if (removed) {
+			this.counts = kept.build();
+		}
 	}
 
 	/**
 	 * Retail the coverage data of session in this.
 	 * Intersection operation.
+	 * If a line is covered by both: keep the one with the lowest coverage (i.e. min instructions covered).
 	 * @param session
 	 */
 	public void retain(JacocoSession session) {
-		Set<String> toRemove = new HashSet<>();
-		for(Map.Entry<String, JacocoMethodCoverage> entry : this.coverage.entrySet()) {
-			JacocoMethodCoverage jMethodCoverage = session.coverage.get(entry.getKey());
-			if(jMethodCoverage != null) {
-				entry.getValue().retainLinesCovered(jMethodCoverage);
-				if(entry.getValue().getNumberOfLinesCovered() == 0){
-					toRemove.add(entry.getKey());
+		if (this.isEmpty()) {
+			return;
+		}
+		this.rollups = null;
+		this.modifications++;
+		if (session.isEmpty()) {
+			this.lines = new LineBitmap();
+			this.counts = LineCounts.EMPTY;
+			return;
+		}
+		session = session.in(this.index);
+		this.counts = mergeCounts(session, false);
+		this.lines.and(session.lines);
+	}
+
+	/**
+	 * Union of many sessions in one pass, with the result of adding them one after another, see {@link #add(JacocoSession)}.
+	 * Of the sessions that cover a line with the most instructions, the coverage of the first one is kept.
+	 * @param id - id of the union
+	 * @param index - index of the union, or null for the index of the first session that covers a line
+	 * @param sessions - sessions in the order they are merged, they are not changed
+	 * @return - union of the sessions
+	 */
+	static JacocoSession union(String id, LineIndex index, List<JacocoSession> sessions) {
+		List<JacocoSession> covering = new ArrayList<>(sessions.size());
+		List<LineBitmap> bitmaps = new ArrayList<>(sessions.size());
+		for (JacocoSession session : sessions) {
+			if (!session.isEmpty()) {
+				if (index == null) {
+					index = session.index;
+				}
+				session = session.in(index);
+				covering.add(session);
+				bitmaps.add(session.lines);
+			}
+		}
+		JacocoSession union = new JacocoSession(id);
+		if (covering.isEmpty()) {
+			return union;
+		}
+		union.index = index;
+		union.lines = LineBitmap.orAll(bitmaps);
+		union.counts = mergeCounts(index, covering, union.lines, true);
+		return union;
+	}
+
+	/**
+	 * Intersection of many sessions in one pass, with the result of retaining them one after another, see {@link #retain(JacocoSession)}.
+	 * Of the sessions that cover a line with the least instructions, the coverage of the first one is kept.
+	 * @param id - id of the intersection
+	 * @param index - index of the intersection, or null for the index of the first session
+	 * @param sessions - sessions in the order they are merged, they are not changed
+	 * @return - intersection of the sessions
+	 */
+	static JacocoSession intersection(String id, LineIndex index, List<JacocoSession> sessions) {
+		JacocoSession intersection = new JacocoSession(id);
+		List<JacocoSession> translated = new ArrayList<>(sessions.size());
+		for (JacocoSession session : sessions) {
+			if (session.isEmpty()) {
+				return intersection;
+			}
+			if (index == null) {
+				index = session.index;
+			}
+			translated.add(session.in(index));
+		}
+		if (translated.isEmpty()) {
+			return intersection;
+		}
+		LineBitmap lines = translated.get(0).lines.copy();
+		for (int i = 1; i < translated.size() && !lines.isEmpty(); i++) {
+			lines.and(translated.get(i).lines);
+		}
+		if (lines.isEmpty()) {
+			return intersection;
+		}
+		intersection.index = index;
+		intersection.lines = lines;
+		intersection.counts = mergeCounts(index, translated, lines, false);
+		return intersection;
+	}
+
+	/**
+	 * Splits the coverage of two sessions in one pass, with the results of removing and retaining them,
+	 * see {@link #remove(JacocoSession)} and {@link #retain(JacocoSession)}.
+	 * @return - coverage only a has, with the counts of a, coverage both have, with the lowest counts,
+	 * coverage only b has, with the counts of b
+	 */
+	static JacocoSessionDiff diff(JacocoSession a, JacocoSession b, String onlyAId, String commonId, String onlyBId) {
+		if (a.isEmpty() || b.isEmpty()) {
+			return new JacocoSessionDiff(a.copy(onlyAId), new JacocoSession(commonId), b.copy(onlyBId));
+		}
+		if (a.index != b.index) {
+			// lines of the other structure get ids in the index of each session
+			JacocoSession onlyA = a.copy(onlyAId);
+			onlyA.remove(b);
+			JacocoSession common = a.copy(commonId);
+			common.retain(b);
+			JacocoSession onlyB = b.copy(onlyBId);
+			onlyB.remove(a);
+			return new JacocoSessionDiff(onlyA, common, onlyB);
+		}
+
+		LineIndex index = a.index;
+		LineBitmap[] parts = LineBitmap.partition(a.lines, b.lines);
+		JacocoSession onlyA = of(onlyAId, index, parts[0]);
+		JacocoSession common = of(commonId, index, parts[1]);
+		JacocoSession onlyB = of(onlyBId, index, parts[2]);
+
+		// split the counts in one walk over the counts of both sessions
+		LineCounts.Builder onlyACounts = new LineCounts.Builder(index);
+		LineCounts.Builder commonCounts = new LineCounts.Builder(index);
+		LineCounts.Builder onlyBCounts = new LineCounts.Builder(index);
+		LineCounts x = a.counts;
+		LineCounts y = b.counts;
+		int i = 0;
+		int j = 0;
+		while (i < x.size || j < y.size) {
+			int lineId = j == y.size || (i < x.size && x.ids[i] < y.ids[j]) ? x.ids[i] : y.ids[j];
+			boolean inA = i < x.size && x.ids[i] == lineId;
+			boolean inB = j < y.size && y.ids[j] == lineId;
+			if (inA && !inB && !b.lines.contains(lineId)) {
+				onlyACounts.add(lineId, x.instructions[i], x.branches[i]);
+			} else if (inB && !inA && !a.lines.contains(lineId)) {
+				onlyBCounts.add(lineId, y.instructions[j], y.branches[j]);
+			} else {
+				JacocoLine line = index.getLine(lineId);
+				int instructionsA = inA ? x.instructions[i] : LineCounts.getDefaultInstructions(line);
+				int branchesA = inA ? x.branches[i] : LineCounts.getDefaultBranches(line);
+				int instructionsB = inB ? y.instructions[j] : LineCounts.getDefaultInstructions(line);
+				int branchesB = inB ? y.branches[j] : LineCounts.getDefaultBranches(line);
+				boolean takeB = instructionsB < instructionsA;
+				commonCounts.add(lineId, takeB ? instructionsB : instructionsA, takeB ? branchesB : branchesA);
+			}
+			if (inA) {
+				i++;
+			}
+			if (inB) {
+				j++;
+			}
+		}
+		onlyA.counts = onlyACounts.build();
+		common.counts = commonCounts.build();
+		onlyB.counts = onlyBCounts.build();
+		return new JacocoSessionDiff(onlyA, common, onlyB);
+	}
+
+	/**
+	 * @return - whether both sessions cover the same lines, stops at the first difference
+	 */
+	static boolean coverSameLines(JacocoSession a, JacocoSession b) {
+		if (a.isEmpty() || b.isEmpty()) {
+			return a.isEmpty() && b.isEmpty();
+		}
+		if (a.getNumberOfLinesCovered() != b.getNumberOfLinesCovered()) {
+			return false;
+		}
+		return a.lines.sameIds(b.getLines(a.index));
+	}
+
+	/**
+	 * Merges the counts of the lines not fully covered in any of the sessions.
+	 * @param sessions - sessions in the index, in the order they are merged
+	 * @param lines - merged lines of the sessions
+	 * @param union - whether the best or the lowest coverage of a line is kept
+	 * @return - counts of the merged lines
+	 */
+	private static LineCounts mergeCounts(LineIndex index, List<JacocoSession> sessions, LineBitmap lines, boolean union) {
+		int total = 0;
+		for (JacocoSession session : sessions) {
+			total += session.counts.size;
+		}
+		if (total == 0) {
+			return LineCounts.EMPTY;
+		}
+		int[] candidates = new int[total];
+		int n = 0;
+		for (JacocoSession session : sessions) {
+			System.arraycopy(session.counts.ids, 0, candidates, n, session.counts.size);
+			n += session.counts.size;
+		}
+		Arrays.sort(candidates);
+
+		LineCounts.Builder merged = new LineCounts.Builder(index);
+		int[] positions = new int[sessions.size()];
+		int previous = -1;
+		for (int lineId : candidates) {
+			if (lineId == previous) {
+				continue;
+			}
+			previous = lineId;
+			if (!lines.contains(lineId)) {
+				continue;
+			}
+			JacocoLine line = index.getLine(lineId);
+			boolean found = false;
+			int instructions = 0;
+			int branches = 0;
+			for (int s = 0; s < positions.length; s++) {
+				JacocoSession session = sessions.get(s);
+				LineCounts counts = session.counts;
+				while (positions[s] < counts.size && counts.ids[positions[s]] < lineId) {
+					positions[s]++;
+				}
+				int instructionsCovered;
+				int branchesCovered;
+				if (positions[s] < counts.size && counts.ids[positions[s]] == lineId) {
+					instructionsCovered = counts.instructions[positions[s]];
+					branchesCovered = counts.branches[positions[s]];
+				} else if (session.lines.contains(lineId)) {
+					instructionsCovered = LineCounts.getDefaultInstructions(line);
+					branchesCovered = LineCounts.getDefaultBranches(line);
+				} else {
+					continue;
+				}
+				if (!found || (union ? instructions < instructionsCovered : instructionsCovered < instructions)) {
+					instructions = instructionsCovered;
+					branches = branchesCovered;
+					found = true;
 				}
+			}
+			merged.add(lineId, instructions, branches);
+		}
+		return merged.build();
+	}
+
+	private Rollups getRollups() {
+		if (rollups == null) {
+			rollups = new Rollups(this);
+		}
+		return rollups;
+	}
+
+	/**
+	 * Merges the counts of the lines not fully covered in this or session, before their lines are merged.
+	 * @param session - session in the same index
+	 * @param union - whether the lines are merged by union or by intersection
+	 * @return - counts of the merged lines
+	 */
+	private LineCounts mergeCounts(JacocoSession session, boolean union) {
+		LineCounts a = this.counts;
+		LineCounts b = session.counts;
+		LineCounts.Builder merged = new LineCounts.Builder(index);
+		int i = 0;
+		int j = 0;
+		while (i < a.size || j < b.size) {
+			int lineId = j == b.size || (i < a.size && a.ids[i] < b.ids[j]) ? a.ids[i] : b.ids[j];
+			boolean inA = i < a.size && a.ids[i] == lineId;
+			boolean inB = j < b.size && b.ids[j] == lineId;
+			boolean coveredA = inA || this.lines.contains(lineId);
+			boolean coveredB = inB || session.lines.contains(lineId);
+			JacocoLine line = index.getLine(lineId);
+			int instructionsA = inA ? a.instructions[i] : LineCounts.getDefaultInstructions(line);
+			int branchesA = inA ? a.branches[i] : LineCounts.getDefaultBranches(line);
+			int instructionsB = inB ? b.instructions[j] : LineCounts.getDefaultInstructions(line);
+			int branchesB = inB ? b.branches[j] : LineCounts.getDefaultBranches(line);
+			if (coveredA && coveredB) {
+				boolean takeB = union ? instructionsA < instructionsB : instructionsB < instructionsA;
+				merged.add(lineId, takeB ? instructionsB : instructionsA, takeB ? branchesB : branchesA);
+			} else if (union) {
+				merged.add(lineId, coveredA ? instructionsA : instructionsB, coveredA ? branchesA : branchesB);
+			}
+			if (inA) {
+				i++;
+			}
+			if (inB) {
+				j++;
+			}
+		}
+		return merged.build();
+	}
+
+	/**
+	 * @param target - line index
+	 * @return - ids of the covered lines in the target index, not to be changed
+	 */
+	LineBitmap getLines(LineIndex target) {
+		return in(target).lines;
+	}
+
+	/**
+	 * @param union - union of sessions including this one
+	 * @return - ids of the lines this session covers with the coverage the union keeps, in the index of the union
+	 */
+	LineBitmap getLinesCoveredAs(JacocoSession union) {
+		JacocoSession session = in(union.index);
+		LineCounts x = session.counts;
+		LineCounts y = union.counts;
+		int[] differing = new int[x.size + y.size];
+		int n = 0;
+		int i = 0;
+		int j = 0;
+		while (i < x.size || j < y.size) {
+			int lineId = j == y.size || (i < x.size && x.ids[i] < y.ids[j]) ? x.ids[i] : y.ids[j];
+			boolean inSession = i < x.size && x.ids[i] == lineId;
+			boolean inUnion = j < y.size && y.ids[j] == lineId;
+			if (inSession != inUnion || (inSession
+					&& (x.instructions[i] != y.instructions[j] || x.branches[i] != y.branches[j]))) {
+				// counts differ, if the session covers the line at all
+				differing[n++] = lineId;
+			}
+			if (inSession) {
+				i++;
+			}
+			if (inUnion) {
+				j++;
+			}
+		}
+		if (n == 0) {
+			return session.lines;
+		}
+		LineBitmap lines = session.lines.copy();
+		lines.andNot(LineBitmap.of(differing, n));
+		return lines;
+	}
+
+	/**
+	 * @param instructions - whether the covered instructions or the covered branches are returned
+	 * @return - covered instructions or branches of every covered line, by line id, 0 for lines not covered
+	 */
+	int[] getCountsById(boolean instructions) {
+		int[] ids = lines.toArray();
+		int[] countsById = new int[ids.length == 0 ? 0 : ids[ids.length - 1] + 1];
+		int c = 0;
+		for (int lineId : ids) {
+			while (c < counts.size && counts.ids[c] < lineId) {
+				c++;
+			}
+			boolean partial = c < counts.size && counts.ids[c] == lineId;
+			JacocoLine line = index.getLine(lineId);
+			if (instructions) {
+				countsById[lineId] = partial ? counts.instructions[c] : LineCounts.getDefaultInstructions(line);
 			} else {
-				toRemove.add(entry.getKey());
+				countsById[lineId] = partial ? counts.branches[c] : LineCounts.getDefaultBranches(line);
 			}
 		}
-		for(String key : toRemove) {
-			this.coverage.remove(key);
+		return countsById;
+	}
+
+	/**
+	 * @return - index of the covered lines, or null if the session is empty
+	 */
+	LineIndex getIndex() {
+		return index;
+	}
+
+	/**
+	 * @param id - session id
+	 * @param index - line index
+	 * @param lines - ids of the covered lines, each fully covered, the session takes them over
+	 * @return - session covering the lines
+	 */
+	static JacocoSession of(String id, LineIndex index, LineBitmap lines) {
+		JacocoSession session = new JacocoSession(id);
+		if (!lines.isEmpty()) {
+			session.index = index;
+			session.lines = lines;
 		}
+		return session;
+	}
+
+	/**
+	 * @param target - line index
+	 * @return - this session, or a copy with the line ids of the target index
+	 */
+	JacocoSession in(LineIndex target) {
+		if (this.index == target || this.isEmpty()) {
+			return this;
+		}
+		Builder translated = new Builder(this.id, target);
+		int c = 0;
+		for (int lineId : lines.toArray()) {
+			JacocoLine line = index.getLine(lineId);
+			while (c < counts.size && counts.ids[c] < lineId) {
+				c++;
+			}
+			boolean partial = c < counts.size && counts.ids[c] == lineId;
+			translated.addLine(target.getId(line),
+					partial ? counts.instructions[c] : LineCounts.getDefaultInstructions(line),
+					partial ? counts.branches[c] : LineCounts.getDefaultBranches(line));
+		}
+		return translated.build();
+	}
+
+	/**
+	 * Index the lines of the method are numbered in, so sessions built on the same structure share their line ids.
+	 * If the structure is not numbered yet, e.g. no report was created on it, its package is numbered.
+	 */
+	private static LineIndex findIndex(JacocoMethod method) {
+		for (JacocoLine line : method.getLines()) {
+			if (line.index != null) {
+				return line.index;
+			}
+		}
+		return LineIndex.of(Collections.singleton(method.getClazz().getPackage()));
 	}
 
 	protected JSONObject serialize() {
@@ -137,7 +688,7 @@ public class JacocoSession {
 
 		// serialize coverage
 		JSONArray coverage = new JSONArray();
-		for (JacocoMethodCoverage methodCoverage : this.coverage.values()) {
+		for (JacocoMethodCoverage methodCoverage : getCoverage().values()) {
 			JSONObject jCoverage = methodCoverage.serialize();
 			coverage.put(jCoverage);
 		}
@@ -160,4 +711,133 @@ public class JacocoSession {
 
 		return deserialized;
 	}
+
+	/**
+	 * Covered methods, and covered lines per class and package, counted in one pass over the covered lines.
+	 * Not changed once counted, so copies of a session share them.
+	 */
+	private static class Rollups {
+
+		private int methods;
+
+		/**
+		 * Covered lines by full name of the class.
+		 */
+		private final Map<String, Integer> classes = new HashMap<>();
+
+		/**
+		 * Covered lines by name of the package.
+		 */
+		private final Map<String, Integer> packages = new HashMap<>();
+
+		private Rollups(JacocoSession session) {
+			// the lines of a method mostly have consecutive ids, so only the method ordinals at boundaries are set
+			BitSet methodOrdinals = new BitSet();
+			int ordinal = -1;
+			JacocoMethod method = null;
+			int lines = 0;
+			for (int lineId : session.lines.toArray()) {
+				JacocoLine line = session.index.getLine(lineId);
+				if (line.getMethod() != method) {
+					addLines(method, lines);
+					method = line.getMethod();
+					lines = 0;
+				}
+				lines++;
+				if (session.index.getMethodOrdinal(lineId) != ordinal) {
+					ordinal = session.index.getMethodOrdinal(lineId);
+					methodOrdinals.set(ordinal);
+				}
+			}
+			addLines(method, lines);
+			this.methods = methodOrdinals.cardinality();
+		}
+
+		private void addLines(JacocoMethod method, int lines) {
+			if (method != null) {
+				classes.merge(method.getClazz().getFullName(), lines, Integer::sum);
+				packages.merge(method.getClazz().getPackage().getName(), lines, Integer::sum);
+			}
+		}
+	}
+
+	/**
+	 * Collects the covered lines of a session in any order, the lines are sorted once when the session is built.
+	 */
+	static class Builder {
+
+		private final String id;
+
+		private final LineIndex index;
+
+		/**
+		 * Line id in the upper 32 bits, position of the line in the lower 32 bits.
+		 */
+		private long[] order = new long[64];
+
+		private int[] instructions = new int[64];
+
+		private int[] branches = new int[64];
+
+		private int size;
+
+		Builder(String id, LineIndex index) {
+			this.id = id;
+			this.index = index;
+		}
+
+		/**
+		 * Adds a covered line, a line added again replaces the coverage added before.
+		 * @param lineId - id of the line in the index
+		 * @param instructionsCovered - covered instructions of the line
+		 * @param branchesCovered - covered branches of the line
+		 */
+		void addLine(int lineId, int instructionsCovered, int branchesCovered) {
+			if (size == order.length) {
+				order = Arrays.copyOf(order, size * 2);
+				instructions = Arrays.copyOf(instructions, size * 2);
+				branches = Arrays.copyOf(branches, size * 2);
+			}
+			order[size] = ((long) lineId << 32) | size;
+			instructions[size] = instructionsCovered;
+			branches[size] = branchesCovered;
+			size++;
+		}
+
+		/**
+		 * Adds a covered line of the structure the index was created for.
+		 */
+		void addLine(JacocoLine line, int instructionsCovered, int branchesCovered) {
+			addLine(index.getId(line), instructionsCovered, branchesCovered);
+		}
+
+		boolean isEmpty() {
+			return size == 0;
+		}
+
+		JacocoSession build() {
+			JacocoSession session = new JacocoSession(id);
+			if (size == 0) {
+				return session;
+			}
+			Arrays.sort(order, 0, size);
+			int[] ids = new int[size];
+			int n = 0;
+			LineCounts.Builder counts = new LineCounts.Builder(index);
+			for (int i = 0; i < size; i++) {
+				int lineId = (int) (order[i] >>> 32);
+				if (i + 1 < size && (int) (order[i + 1] >>> 32) == lineId) {
+					// added again later
+					continue;
+				}
+				int position = (int) order[i];
+				ids[n++] = lineId;
+				counts.add(lineId, instructions[position], branches[position]);
+			}
+			session.index = index;
+			session.lines = LineBitmap.of(ids, n);
+			session.counts = counts.build();
+			return session;
+		}
+	}
 }
@@ -24,6 +24,6 @@ public class JacocoSessionDiff {
     }
 
     public boolean containsDifference(){
-        return onlyA.getNumberOfCoveredMethods() > 0 || onlyB.getNumberOfCoveredMethods() > 0;
+        return !onlyA.isEmpty() || !onlyB.isEmpty();
     }
 }
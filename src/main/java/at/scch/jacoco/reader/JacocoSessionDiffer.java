@@ -2,20 +2,26 @@ package at.scch.jacoco.reader;
 
 public class JacocoSessionDiffer {
 
+    /**
+     * Splits the coverage of a and b into the coverage only a has, both have and only b has, in one pass over both.
+     * Lines covered by both keep the coverage with the least instructions covered.
+     * @param a - first session
+     * @param b - second session
+     * @return - difference of a and b
+     */
     public static JacocoSessionDiff computeDiff(JacocoSession a, JacocoSession b){
-        JacocoSession onlyA = new JacocoSession("onlyA " + System.currentTimeMillis());
-        JacocoSession common = new JacocoSession("common " + System.currentTimeMillis());
-        JacocoSession onlyB = new JacocoSession("onlyB " + System.currentTimeMillis());
-
-        onlyA.add(a);
-        onlyA.remove(b);
-
-        common.add(a);
-        common.retain(b);
-
-        onlyB.add(b);
-        onlyB.remove(a);
+        long time = System.currentTimeMillis();
+        return JacocoSession.diff(a, b, "onlyA " + time, "common " + time, "onlyB " + time);
+    }
 
-        return new JacocoSessionDiff(onlyA, common, onlyB);
+    /**
+     * Same as computeDiff(a, b).containsDifference(), without building the difference.
+     * Stops at the first part of the sessions that differs.
+     * @param a - first session
+     * @param b - second session
+     * @return - whether a line is covered by only one of the sessions
+     */
+    public static boolean containsDifference(JacocoSession a, JacocoSession b){
+        return !JacocoSession.coverSameLines(a, b);
     }
 }
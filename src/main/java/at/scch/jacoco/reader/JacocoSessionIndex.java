@@ -0,0 +1,176 @@
+package at.scch.jacoco.reader;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Inverted index from the lines, methods and classes of a report to the sessions covering them.
+ * Sessions are referred to by their ordinal, i.e. their position in the order they were added to the report.
+ * The ordinals covering a line are kept as one sorted array for all lines, with the start of every line in a second array,
+ * the ordinals covering a method or a class are merged once when the index is built.
+ */
+public class JacocoSessionIndex {
+
+	/**
+	 * Number of sessions whose lines are collected in parallel, before they are added to the index.
+	 */
+	private static final int BLOCK_SIZE = 256;
+
+	private static final int[] NO_SESSIONS = new int[0];
+
+	private final LineIndex index;
+
+	/**
+	 * Session IDs by ordinal.
+	 */
+	private final String[] sessionIds;
+
+	/**
+	 * Start of the ordinals of every line id in ordinals, the ordinals of line id end at the start of id + 1.
+	 */
+	private final int[] starts;
+
+	/**
+	 * Ordinals of the sessions covering the lines, ascending per line.
+	 */
+	private final int[] ordinals;
+
+	/**
+	 * Ordinals of the sessions covering a method, by full name of the method.
+	 */
+	private final Map<String, int[]> methods;
+
+	/**
+	 * Ordinals of the sessions covering a class, by full name of the class.
+	 */
+	private final Map<String, int[]> classes;
+
+	/**
+	 * @param index - line index of the report
+	 * @param sessionIds - IDs of the sessions, in the order of the report
+	 * @param sessions - sessions, in the same order
+	 */
+	JacocoSessionIndex(LineIndex index, List<String> sessionIds, List<? extends Supplier<JacocoSession>> sessions) {
+		super();
+		this.index = index;
+		this.sessionIds = sessionIds.toArray(new String[0]);
+
+		// ordinals of every line, appended in the order of the sessions so they stay sorted
+		int[][] lines = new int[1024][];
+		int[] sizes = new int[1024];
+		int total = 0;
+		int lineCount = 0;
+		for (int from = 0; from < sessions.size(); from += BLOCK_SIZE) {
+			int[][] block = new int[Math.min(BLOCK_SIZE, sessions.size() - from)][];
+			int offset = from;
+			Arrays.parallelSetAll(block, i -> {
+				JacocoSession session = sessions.get(offset + i).get();
+				return session.isEmpty() ? NO_SESSIONS : session.getLines(index).toArray();
+			});
+			for (int i = 0; i < block.length; i++) {
+				for (int lineId : block[i]) {
+					if (lineId >= lines.length) {
+						int length = Math.max(lines.length * 2, lineId + 1);
+						lines = Arrays.copyOf(lines, length);
+						sizes = Arrays.copyOf(sizes, length);
+					}
+					if (lines[lineId] == null) {
+						lines[lineId] = new int[4];
+					} else if (sizes[lineId] == lines[lineId].length) {
+						lines[lineId] = Arrays.copyOf(lines[lineId], sizes[lineId] * 2);
+					}
+					lines[lineId][sizes[lineId]++] = from + i;
+					lineCount = Math.max(lineCount, lineId + 1);
+				}
+				total += block[i].length;
+			}
+		}
+
+		this.starts = new int[lineCount + 1];
+		this.ordinals = new int[total];
+		Map<String, BitSet> methodSessions = new HashMap<>();
+		Map<String, BitSet> classSessions = new HashMap<>();
+		int start = 0;
+		for (int lineId = 0; lineId < lineCount; lineId++) {
+			starts[lineId] = start;
+			if (sizes[lineId] == 0) {
+				continue;
+			}
+			System.arraycopy(lines[lineId], 0, ordinals, start, sizes[lineId]);
+			start += sizes[lineId];
+			JacocoMethod method = index.getLine(lineId).getMethod();
+			BitSet covering = methodSessions.computeIfAbsent(method.getFullName(), name -> new BitSet());
+			BitSet classCovering = classSessions.computeIfAbsent(method.getClazz().getFullName(), name -> new BitSet());
+			for (int i = 0; i < sizes[lineId]; i++) {
+				covering.set(lines[lineId][i]);
+				classCovering.set(lines[lineId][i]);
+			}
+			lines[lineId] = null;
+		}
+		starts[lineCount] = total;
+		this.methods = toOrdinals(methodSessions);
+		this.classes = toOrdinals(classSessions);
+	}
+
+	private static Map<String, int[]> toOrdinals(Map<String, BitSet> sessions) {
+		Map<String, int[]> ordinals = new HashMap<>();
+		for (Map.Entry<String, BitSet> entry : sessions.entrySet()) {
+			ordinals.put(entry.getKey(), entry.getValue().stream().toArray());
+		}
+		return ordinals;
+	}
+
+	public int getNumberOfSessions() {
+		return sessionIds.length;
+	}
+
+	/**
+	 * @param ordinal - position of the session in the report
+	 * @return - ID of the session
+	 */
+	public String getSessionId(int ordinal) {
+		return sessionIds[ordinal];
+	}
+
+	/**
+	 * @param ordinals - positions of sessions in the report
+	 * @return - IDs of the sessions
+	 */
+	public List<String> getSessionIDs(int[] ordinals) {
+		List<String> ids = new ArrayList<>(ordinals.length);
+		for (int ordinal : ordinals) {
+			ids.add(sessionIds[ordinal]);
+		}
+		return ids;
+	}
+
+	/**
+	 * @param line - line of the structure
+	 * @return - ordinals of the sessions covering the line, ascending
+	 */
+	public int[] getSessionsCoveringLine(JacocoLine line) {
+		int lineId = index.findId(line);
+		if (lineId < 0 || lineId + 1 >= starts.length) {
+			return NO_SESSIONS;
+		}
+		return Arrays.copyOfRange(ordinals, starts[lineId], starts[lineId + 1]);
+	}
+
+	/**
+	 * @param fullName - package name + class name + method signature
+	 * @return - ordinals of the sessions covering any line of the method, ascending
+	 */
+	public int[] getSessionsCoveringMethod(String fullName) {
+		int[] covering = methods.get(fullName);
+		return covering == null ? NO_SESSIONS : covering.clone();
+	}
+
+	/**
+	 * @param fullName - package name + class name
+	 * @return - ordinals of the sessions covering any line of the class, ascending
+	 */
+	public int[] getSessionsCoveringClass(String fullName) {
+		int[] covering = classes.get(fullName);
+		return covering == null ? NO_SESSIONS : covering.clone();
+	}
+}
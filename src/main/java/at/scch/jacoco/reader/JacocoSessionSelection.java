@@ -0,0 +1,73 @@
+package at.scch.jacoco.reader;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Sessions selected from a report, e.g. a minimized test suite, in the order they were selected.
+ */
+public class JacocoSessionSelection {
+
+    /**
+     * Coverage the selected sessions should reach.
+     */
+    public enum Criterion {
+        /**
+         * Every line the union of all sessions covers.
+         */
+        LINES,
+        /**
+         * Every line with the instructions covered in the union of all sessions.
+         */
+        INSTRUCTIONS,
+        /**
+         * Every line with the branches covered in the union of all sessions.
+         */
+        BRANCHES
+    }
+
+    private final Criterion criterion;
+    private final List<String> sessionIDs;
+    private final long covered;
+    private final long total;
+
+    public JacocoSessionSelection(Criterion criterion, List<String> sessionIDs, long covered, long total) {
+        this.criterion = criterion;
+        this.sessionIDs = Collections.unmodifiableList(sessionIDs);
+        this.covered = covered;
+        this.total = total;
+    }
+
+    public Criterion getCriterion() {
+        return criterion;
+    }
+
+    /**
+     * @return - IDs of the selected sessions, in the order they were selected
+     */
+    public List<String> getSessionIDs() {
+        return sessionIDs;
+    }
+
+    /**
+     * @return - lines, instructions or branches the selected sessions cover, depending on the criterion
+     */
+    public long getCovered() {
+        return covered;
+    }
+
+    /**
+     * @return - lines, instructions or branches the union of all sessions covers, depending on the criterion
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * @return - whether the selected sessions cover as much as all sessions,
+     * false if the selection was stopped early, e.g. by a time budget
+     */
+    public boolean isComplete() {
+        return covered == total;
+    }
+}
@@ -0,0 +1,83 @@
+package at.scch.jacoco.reader;
+
+/**
+ * Similarity of the line coverage of two sessions.
+ */
+public class JacocoSessionSimilarity {
+
+    /**
+     * Measure of the similarity of two sets of covered lines.
+     */
+    public enum Measure {
+        /**
+         * Lines covered by both, divided by the lines covered by either.
+         */
+        JACCARD,
+        /**
+         * Lines covered by both, divided by the lines covered by the session covering fewer lines.
+         */
+        OVERLAP;
+
+        /**
+         * @param linesA - number of lines covered by the first session
+         * @param linesB - number of lines covered by the second session
+         * @param common - number of lines covered by both
+         * @return - similarity between 0 and 1, 0 if a session covers no line
+         */
+        public double of(int linesA, int linesB, int common) {
+            int denominator = this == JACCARD ? linesA + linesB - common : Math.min(linesA, linesB);
+            return denominator == 0 ? 0 : (double) common / denominator;
+        }
+    }
+
+    private final String sessionA;
+    private final String sessionB;
+    private final int linesCoveredA;
+    private final int linesCoveredB;
+    private final int linesCoveredByBoth;
+    private final double similarity;
+
+    public JacocoSessionSimilarity(String sessionA, String sessionB, int linesCoveredA, int linesCoveredB, int linesCoveredByBoth, double similarity) {
+        this.sessionA = sessionA;
+        this.sessionB = sessionB;
+        this.linesCoveredA = linesCoveredA;
+        this.linesCoveredB = linesCoveredB;
+        this.linesCoveredByBoth = linesCoveredByBoth;
+        this.similarity = similarity;
+    }
+
+    /**
+     * @return - ID of the first session
+     */
+    public String getSessionA() {
+        return sessionA;
+    }
+
+    /**
+     * @return - ID of the second session
+     */
+    public String getSessionB() {
+        return sessionB;
+    }
+
+    public int getLinesCoveredA() {
+        return linesCoveredA;
+    }
+
+    public int getLinesCoveredB() {
+        return linesCoveredB;
+    }
+
+    public int getLinesCoveredByBoth() {
+        return linesCoveredByBoth;
+    }
+
+    public double getSimilarity() {
+        return similarity;
+    }
+
+    @Override
+    public String toString() {
+        return sessionA + " ~ " + sessionB + ": " + similarity;
+    }
+}
@@ -0,0 +1,744 @@
+package at.scch.jacoco.reader;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compressed set of line ids, split into chunks of 65536 ids by the upper 16 bits.
+ * A chunk with few ids keeps them as a sorted array of their lower 16 bits,
+ * a chunk with many ids as a bitmap of 1024 words, so sparse and dense coverage both stay small.
+ * Union, intersection and difference work chunk by chunk, only chunks present in both sets are combined.
+ * <p>
+ * Chunks are never changed once created, so copies share all chunks and an operation only creates the chunks it changes.
+ * Chunks that an operation leaves unchanged, or takes over from the other set, are shared as well.
+ */
+final class LineBitmap {
+
+	/**
+	 * Maximum number of ids in an array chunk, a bitmap chunk with as many ids takes the same space.
+	 */
+	private static final int ARRAY_MAX = 4096;
+
+	private static final int BITMAP_WORDS = 1024;
+
+	/**
+	 * Upper 16 bits of the ids in every chunk, ascending.
+	 */
+	private char[] keys;
+
+	/**
+	 * Chunks, either a sorted char[] or a long[] bitmap.
+	 */
+	private Object[] chunks;
+
+	/**
+	 * Number of ids in every chunk.
+	 */
+	private int[] cardinalities;
+
+	private int size;
+
+	/**
+	 * Number of ids in all chunks.
+	 */
+	private int total;
+
+	LineBitmap() {
+		super();
+		this.keys = new char[4];
+		this.chunks = new Object[4];
+		this.cardinalities = new int[4];
+	}
+
+	/**
+	 * @param ids - line ids, ascending and without duplicates
+	 * @param length - number of ids to use
+	 * @return - set of the ids
+	 */
+	static LineBitmap of(int[] ids, int length) {
+		LineBitmap bitmap = new LineBitmap();
+		int start = 0;
+		while (start < length) {
+			int key = ids[start] >>> 16;
+			int end = start + 1;
+			while (end < length && ids[end] >>> 16 == key) {
+				end++;
+			}
+			int cardinality = end - start;
+			Object chunk;
+			if (cardinality <= ARRAY_MAX) {
+				char[] values = new char[cardinality];
+				for (int i = start; i < end; i++) {
+					values[i - start] = (char) ids[i];
+				}
+				chunk = values;
+			} else {
+				long[] words = new long[BITMAP_WORDS];
+				for (int i = start; i < end; i++) {
+					words[(ids[i] & 0xFFFF) >>> 6] |= 1L << ids[i];
+				}
+				chunk = words;
+			}
+			bitmap.insertChunk(bitmap.size, (char) key, chunk, cardinality);
+			start = end;
+		}
+		return bitmap;
+	}
+
+	/**
+	 * @return - copy that shares all chunks with this set
+	 */
+	LineBitmap copy() {
+		LineBitmap copy = new LineBitmap();
+		copy.keys = Arrays.copyOf(keys, Math.max(size, 4));
+		copy.chunks = Arrays.copyOf(chunks, copy.keys.length);
+		copy.cardinalities = Arrays.copyOf(cardinalities, copy.keys.length);
+		copy.size = size;
+		copy.total = total;
+		return copy;
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	int cardinality() {
+		return total;
+	}
+
+	boolean contains(int id) {
+		int i = findKey((char) (id >>> 16));
+		if (i < 0) {
+			return false;
+		}
+		Object chunk = chunks[i];
+		if (chunk instanceof long[]) {
+			return (((long[]) chunk)[(id & 0xFFFF) >>> 6] & (1L << id)) != 0;
+		}
+		return Arrays.binarySearch((char[]) chunk, 0, cardinalities[i], (char) id) >= 0;
+	}
+
+	/**
+	 * @return - all ids, ascending
+	 */
+	int[] toArray() {
+		int[] ids = new int[cardinality()];
+		int n = 0;
+		for (int i = 0; i < size; i++) {
+			int high = keys[i] << 16;
+			Object chunk = chunks[i];
+			if (chunk instanceof long[]) {
+				long[] words = (long[]) chunk;
+				for (int w = 0; w < BITMAP_WORDS; w++) {
+					for (long bits = words[w]; bits != 0; bits &= bits - 1) {
+						ids[n++] = high | (w << 6) | Long.numberOfTrailingZeros(bits);
+					}
+				}
+			} else {
+				char[] values = (char[]) chunk;
+				for (int v = 0; v < cardinalities[i]; v++) {
+					ids[n++] = high | values[v];
+				}
+			}
+		}
+		return ids;
+	}
+
+	/**
+	 * @param other - ids that are not counted
+	 * @param weights - weight by id, or null to count every id once
+	 * @return - sum of the weights of the ids this set contains and other does not
+	 */
+	long weightAndNot(LineBitmap other, int[] weights) {
+		long weight = 0;
+		int j = 0;
+		for (int i = 0; i < size; i++) {
+			char key = keys[i];
+			while (j < other.size && other.keys[j] < key) {
+				j++;
+			}
+			Object excluded = j < other.size && other.keys[j] == key ? other.chunks[j] : null;
+			int excludedCardinality = excluded == null ? 0 : other.cardinalities[j];
+			int high = key << 16;
+			Object chunk = chunks[i];
+			if (chunk instanceof long[]) {
+				long[] words = (long[]) chunk;
+				for (int w = 0; w < BITMAP_WORDS; w++) {
+					long bits = words[w];
+					if (excluded instanceof long[]) {
+						bits &= ~((long[]) excluded)[w];
+					}
+					for (; bits != 0; bits &= bits - 1) {
+						int low = (w << 6) | Long.numberOfTrailingZeros(bits);
+						if (excluded instanceof char[] && Arrays.binarySearch((char[]) excluded, 0, excludedCardinality, (char) low) >= 0) {
+							continue;
+						}
+						weight += weights == null ? 1 : weights[high | low];
+					}
+				}
+			} else {
+				char[] values = (char[]) chunk;
+				for (int v = 0; v < cardinalities[i]; v++) {
+					if (excluded instanceof long[] && (((long[]) excluded)[values[v] >>> 6] & (1L << values[v])) != 0
+							|| excluded instanceof char[] && Arrays.binarySearch((char[]) excluded, 0, excludedCardinality, values[v]) >= 0) {
+						continue;
+					}
+					weight += weights == null ? 1 : weights[high | values[v]];
+				}
+			}
+		}
+		return weight;
+	}
+
+	/**
+	 * Splits the ids of two sets in one walk over their chunks, chunks only one set has are shared.
+	 * @return - ids only a contains, ids both contain, ids only b contains
+	 */
+	static LineBitmap[] partition(LineBitmap a, LineBitmap b) {
+		LineBitmap onlyA = new LineBitmap();
+		LineBitmap both = new LineBitmap();
+		LineBitmap onlyB = new LineBitmap();
+		int i = 0;
+		int j = 0;
+		while (i < a.size || j < b.size) {
+			if (j == b.size || (i < a.size && a.keys[i] < b.keys[j])) {
+				onlyA.insertChunk(onlyA.size, a.keys[i], a.chunks[i], a.cardinalities[i]);
+				i++;
+			} else if (i == a.size || a.keys[i] > b.keys[j]) {
+				onlyB.insertChunk(onlyB.size, b.keys[j], b.chunks[j], b.cardinalities[j]);
+				j++;
+			} else {
+				char key = a.keys[i];
+				Object x = a.chunks[i];
+				Object y = b.chunks[j];
+				if (x instanceof long[] && y instanceof long[]) {
+					long[] xWords = (long[]) x;
+					long[] yWords = (long[]) y;
+					long[] xOnly = new long[BITMAP_WORDS];
+					long[] common = new long[BITMAP_WORDS];
+					long[] yOnly = new long[BITMAP_WORDS];
+					for (int w = 0; w < BITMAP_WORDS; w++) {
+						xOnly[w] = xWords[w] & ~yWords[w];
+						common[w] = xWords[w] & yWords[w];
+						yOnly[w] = yWords[w] & ~xWords[w];
+					}
+					onlyA.appendChunk(key, xOnly);
+					both.appendChunk(key, common);
+					onlyB.appendChunk(key, yOnly);
+				} else if (x instanceof char[] && y instanceof char[]) {
+					partitionValues(key, (char[]) x, a.cardinalities[i], (char[]) y, b.cardinalities[j], onlyA, both, onlyB);
+				} else {
+					onlyA.appendChunk(key, andChunks(x, a.cardinalities[i], y, b.cardinalities[j], true));
+					both.appendChunk(key, andChunks(x, a.cardinalities[i], y, b.cardinalities[j], false));
+					onlyB.appendChunk(key, andChunks(y, b.cardinalities[j], x, a.cardinalities[i], true));
+				}
+				i++;
+				j++;
+			}
+		}
+		return new LineBitmap[]{onlyA, both, onlyB};
+	}
+
+	private static void partitionValues(char key, char[] x, int xCardinality, char[] y, int yCardinality,
+										LineBitmap onlyA, LineBitmap both, LineBitmap onlyB) {
+		char[] xOnly = new char[xCardinality];
+		char[] common = new char[Math.min(xCardinality, yCardinality)];
+		char[] yOnly = new char[yCardinality];
+		int xOnlyCardinality = 0;
+		int commonCardinality = 0;
+		int yOnlyCardinality = 0;
+		int i = 0;
+		int j = 0;
+		while (i < xCardinality || j < yCardinality) {
+			if (j == yCardinality || (i < xCardinality && x[i] < y[j])) {
+				xOnly[xOnlyCardinality++] = x[i++];
+			} else if (i == xCardinality || x[i] > y[j]) {
+				yOnly[yOnlyCardinality++] = y[j++];
+			} else {
+				common[commonCardinality++] = x[i++];
+				j++;
+			}
+		}
+		onlyA.appendChunk(key, xOnlyCardinality == xCardinality ? x : Arrays.copyOf(xOnly, xOnlyCardinality));
+		both.appendChunk(key, commonCardinality == xCardinality ? x : Arrays.copyOf(common, commonCardinality));
+		onlyB.appendChunk(key, yOnlyCardinality == yCardinality ? y : Arrays.copyOf(yOnly, yOnlyCardinality));
+	}
+
+	/**
+	 * @return - whether both sets contain the same ids, stops at the first chunk that differs
+	 */
+	boolean sameIds(LineBitmap other) {
+		if (size != other.size || total != other.total) {
+			return false;
+		}
+		for (int i = 0; i < size; i++) {
+			if (keys[i] != other.keys[i] || cardinalities[i] != other.cardinalities[i]) {
+				return false;
+			}
+			Object x = chunks[i];
+			Object y = other.chunks[i];
+			if (x == y) {
+				// shared chunk
+				continue;
+			}
+			boolean same;
+			if (x instanceof long[] && y instanceof long[]) {
+				same = Arrays.equals((long[]) x, (long[]) y);
+			} else if (x instanceof char[] && y instanceof char[]) {
+				same = Arrays.equals((char[]) x, 0, cardinalities[i], (char[]) y, 0, cardinalities[i]);
+			} else {
+				same = andCardinality(x, cardinalities[i], y, cardinalities[i]) == cardinalities[i];
+			}
+			if (!same) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return - number of ids both sets contain, without building their intersection
+	 */
+	int andCardinality(LineBitmap other) {
+		int cardinality = 0;
+		int i = 0;
+		int j = 0;
+		while (i < size && j < other.size) {
+			if (keys[i] < other.keys[j]) {
+				i++;
+			} else if (keys[i] > other.keys[j]) {
+				j++;
+			} else {
+				cardinality += andCardinality(chunks[i], cardinalities[i], other.chunks[j], other.cardinalities[j]);
+				i++;
+				j++;
+			}
+		}
+		return cardinality;
+	}
+
+	private static int andCardinality(Object a, int aCardinality, Object b, int bCardinality) {
+		if (a instanceof long[] && b instanceof long[]) {
+			long[] x = (long[]) a;
+			long[] y = (long[]) b;
+			int cardinality = 0;
+			for (int w = 0; w < BITMAP_WORDS; w++) {
+				cardinality += Long.bitCount(x[w] & y[w]);
+			}
+			return cardinality;
+		}
+		if (a instanceof long[] || b instanceof long[]) {
+			long[] words = (long[]) (a instanceof long[] ? a : b);
+			char[] values = (char[]) (a instanceof long[] ? b : a);
+			int length = a instanceof long[] ? bCardinality : aCardinality;
+			int cardinality = 0;
+			for (int v = 0; v < length; v++) {
+				if ((words[values[v] >>> 6] & (1L << values[v])) != 0) {
+					cardinality++;
+				}
+			}
+			return cardinality;
+		}
+		char[] x = (char[]) a;
+		char[] y = (char[]) b;
+		int cardinality = 0;
+		int i = 0;
+		int j = 0;
+		while (i < aCardinality && j < bCardinality) {
+			if (x[i] < y[j]) {
+				i++;
+			} else if (x[i] > y[j]) {
+				j++;
+			} else {
+				cardinality++;
+				i++;
+				j++;
+			}
+		}
+		return cardinality;
+	}
+
+	/**
+	 * Adds all ids of other to this set. (Union)
+	 */
+	void or(LineBitmap other) {
+		int i = 0;
+		for (int j = 0; j < other.size; j++) {
+			char key = other.keys[j];
+			while (i < size && keys[i] < key) {
+				i++;
+			}
+			if (i < size && keys[i] == key) {
+				setChunk(i, orChunks(chunks[i], cardinalities[i], other.chunks[j], other.cardinalities[j]));
+			} else {
+				insertChunk(i, key, other.chunks[j], other.cardinalities[j]);
+			}
+			i++;
+		}
+	}
+
+	/**
+	 * Union of many sets in one pass, every chunk key is merged once over all sets that have it.
+	 * @param bitmaps - sets to merge, they are not changed
+	 * @return - set with the ids of all sets
+	 */
+	static LineBitmap orAll(List<LineBitmap> bitmaps) {
+		LineBitmap union = new LineBitmap();
+		int[] positions = new int[bitmaps.size()];
+		long[] words = new long[BITMAP_WORDS];
+		while (true) {
+			int key = Integer.MAX_VALUE;
+			int found = 0;
+			int single = -1;
+			for (int b = 0; b < positions.length; b++) {
+				LineBitmap bitmap = bitmaps.get(b);
+				if (positions[b] < bitmap.size) {
+					int candidate = bitmap.keys[positions[b]];
+					if (candidate < key) {
+						key = candidate;
+						found = 1;
+						single = b;
+					} else if (candidate == key) {
+						found++;
+					}
+				}
+			}
+			if (found == 0) {
+				return union;
+			}
+			if (found == 1) {
+				// only one set has ids in the chunk, share it
+				LineBitmap bitmap = bitmaps.get(single);
+				union.insertChunk(union.size, (char) key, bitmap.chunks[positions[single]], bitmap.cardinalities[positions[single]]);
+				positions[single]++;
+				continue;
+			}
+			for (int b = 0; b < positions.length; b++) {
+				LineBitmap bitmap = bitmaps.get(b);
+				if (positions[b] < bitmap.size && bitmap.keys[positions[b]] == key) {
+					Object chunk = bitmap.chunks[positions[b]];
+					if (chunk instanceof long[]) {
+						long[] chunkWords = (long[]) chunk;
+						for (int w = 0; w < BITMAP_WORDS; w++) {
+							words[w] |= chunkWords[w];
+						}
+					} else {
+						setAll(words, (char[]) chunk, bitmap.cardinalities[positions[b]]);
+					}
+					positions[b]++;
+				}
+			}
+			int cardinality = cardinality(words);
+			union.insertChunk(union.size, (char) key, cardinality <= ARRAY_MAX ? toValues(words, cardinality) : words.clone(), cardinality);
+			Arrays.fill(words, 0);
+		}
+	}
+
+	/**
+	 * Keeps only the ids that other contains as well. (Intersection)
+	 */
+	void and(LineBitmap other) {
+		int kept = 0;
+		int j = 0;
+		for (int i = 0; i < size; i++) {
+			char key = keys[i];
+			while (j < other.size && other.keys[j] < key) {
+				j++;
+			}
+			if (j == other.size || other.keys[j] != key) {
+				continue;
+			}
+			Object chunk = andChunks(chunks[i], cardinalities[i], other.chunks[j], other.cardinalities[j], false);
+			int cardinality = cardinality(chunk);
+			if (cardinality > 0) {
+				keys[kept] = key;
+				chunks[kept] = chunk;
+				cardinalities[kept] = cardinality;
+				kept++;
+			}
+		}
+		truncate(kept);
+	}
+
+	/**
+	 * Removes all ids that other contains. (Difference)
+	 */
+	void andNot(LineBitmap other) {
+		int kept = 0;
+		int j = 0;
+		for (int i = 0; i < size; i++) {
+			char key = keys[i];
+			Object chunk = chunks[i];
+			int cardinality = cardinalities[i];
+			while (j < other.size && other.keys[j] < key) {
+				j++;
+			}
+			if (j < other.size && other.keys[j] == key) {
+				chunk = andChunks(chunk, cardinality, other.chunks[j], other.cardinalities[j], true);
+				cardinality = cardinality(chunk);
+			}
+			if (cardinality > 0) {
+				keys[kept] = key;
+				chunks[kept] = chunk;
+				cardinalities[kept] = cardinality;
+				kept++;
+			}
+		}
+		truncate(kept);
+	}
+
+	private static Object orChunks(Object a, int aCardinality, Object b, int bCardinality) {
+		if (a instanceof long[]) {
+			long[] words = (long[]) a;
+			if (b instanceof long[]) {
+				long[] bWords = (long[]) b;
+				if (!anyWord(bWords, words, false)) {
+					return a;
+				}
+				long[] merged = words.clone();
+				for (int w = 0; w < BITMAP_WORDS; w++) {
+					merged[w] |= bWords[w];
+				}
+				return merged;
+			}
+			char[] values = (char[]) b;
+			if (containsAll(words, values, bCardinality)) {
+				return a;
+			}
+			long[] merged = words.clone();
+			setAll(merged, values, bCardinality);
+			return merged;
+		}
+		if (b instanceof long[]) {
+			long[] words = (long[]) b;
+			if (containsAll(words, (char[]) a, aCardinality)) {
+				return b;
+			}
+			long[] merged = words.clone();
+			setAll(merged, (char[]) a, aCardinality);
+			return merged;
+		}
+		char[] x = (char[]) a;
+		char[] y = (char[]) b;
+		if (aCardinality + bCardinality > ARRAY_MAX) {
+			long[] merged = toWords(x, aCardinality);
+			setAll(merged, y, bCardinality);
+			return merged;
+		}
+		if (aCardinality == 0 || bCardinality == 0 || x[aCardinality - 1] < y[0]) {
+			// common when lines are added in order
+			char[] merged = Arrays.copyOf(x, aCardinality + bCardinality);
+			System.arraycopy(y, 0, merged, aCardinality, bCardinality);
+			return merged;
+		}
+		char[] merged = new char[aCardinality + bCardinality];
+		int n = 0;
+		int i = 0;
+		int j = 0;
+		while (i < aCardinality && j < bCardinality) {
+			if (x[i] < y[j]) {
+				merged[n++] = x[i++];
+			} else if (x[i] > y[j]) {
+				merged[n++] = y[j++];
+			} else {
+				merged[n++] = x[i++];
+				j++;
+			}
+		}
+		if (i == aCardinality && j == bCardinality && n == aCardinality) {
+			// b is a subset of a
+			return a;
+		}
+		while (i < aCardinality) {
+			merged[n++] = x[i++];
+		}
+		while (j < bCardinality) {
+			merged[n++] = y[j++];
+		}
+		return n == merged.length ? merged : Arrays.copyOf(merged, n);
+	}
+
+	/**
+	 * @param negate - whether to keep the ids of a that b does not contain
+	 */
+	private static Object andChunks(Object a, int aCardinality, Object b, int bCardinality, boolean negate) {
+		if (a instanceof long[] && b instanceof long[]) {
+			long[] words = (long[]) a;
+			long[] bWords = (long[]) b;
+			// a changes if it has ids outside of b, or ids in b when negated
+			if (!anyWord(words, bWords, negate)) {
+				return a;
+			}
+			long[] result = new long[BITMAP_WORDS];
+			for (int w = 0; w < BITMAP_WORDS; w++) {
+				result[w] = negate ? words[w] & ~bWords[w] : words[w] & bWords[w];
+			}
+			return result;
+		}
+		if (a instanceof long[]) {
+			long[] words = (long[]) a;
+			char[] values = (char[]) b;
+			if (negate) {
+				if (!containsAny(words, values, bCardinality)) {
+					return a;
+				}
+				long[] result = words.clone();
+				for (int v = 0; v < bCardinality; v++) {
+					result[values[v] >>> 6] &= ~(1L << values[v]);
+				}
+				return result;
+			}
+			if (containsAll(words, values, bCardinality)) {
+				return b;
+			}
+			char[] kept = new char[bCardinality];
+			int n = 0;
+			for (int v = 0; v < bCardinality; v++) {
+				if ((words[values[v] >>> 6] & (1L << values[v])) != 0) {
+					kept[n++] = values[v];
+				}
+			}
+			return Arrays.copyOf(kept, n);
+		}
+		char[] values = (char[]) a;
+		char[] kept = new char[aCardinality];
+		int n = 0;
+		for (int v = 0; v < aCardinality; v++) {
+			boolean contained = b instanceof long[]
+					? (((long[]) b)[values[v] >>> 6] & (1L << values[v])) != 0
+					: Arrays.binarySearch((char[]) b, 0, bCardinality, values[v]) >= 0;
+			if (contained != negate) {
+				kept[n++] = values[v];
+			}
+		}
+		return n == aCardinality ? a : Arrays.copyOf(kept, n);
+	}
+
+	/**
+	 * @param common - whether to look for common bits, or for bits of words missing in other
+	 * @return - whether any word has such bits
+	 */
+	private static boolean anyWord(long[] words, long[] other, boolean common) {
+		for (int w = 0; w < BITMAP_WORDS; w++) {
+			if ((common ? words[w] & other[w] : words[w] & ~other[w]) != 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean containsAll(long[] words, char[] values, int cardinality) {
+		for (int v = 0; v < cardinality; v++) {
+			if ((words[values[v] >>> 6] & (1L << values[v])) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean containsAny(long[] words, char[] values, int cardinality) {
+		for (int v = 0; v < cardinality; v++) {
+			if ((words[values[v] >>> 6] & (1L << values[v])) != 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static void setAll(long[] words, char[] values, int cardinality) {
+		for (int v = 0; v < cardinality; v++) {
+			words[values[v] >>> 6] |= 1L << values[v];
+		}
+	}
+
+	private static long[] toWords(char[] values, int cardinality) {
+		long[] words = new long[BITMAP_WORDS];
+		for (int v = 0; v < cardinality; v++) {
+			words[values[v] >>> 6] |= 1L << values[v];
+		}
+		return words;
+	}
+
+	private static int cardinality(Object chunk) {
+		if (chunk instanceof char[]) {
+			return ((char[]) chunk).length;
+		}
+		int cardinality = 0;
+		for (long word : (long[]) chunk) {
+			cardinality += Long.bitCount(word);
+		}
+		return cardinality;
+	}
+
+	/**
+	 * Replaces a chunk, a bitmap chunk with few ids is turned into an array chunk.
+	 */
+	private void setChunk(int i, Object chunk) {
+		int cardinality = cardinality(chunk);
+		if (chunk instanceof long[] && cardinality <= ARRAY_MAX) {
+			chunk = toValues((long[]) chunk, cardinality);
+		}
+		total += cardinality - cardinalities[i];
+		chunks[i] = chunk;
+		cardinalities[i] = cardinality;
+	}
+
+	private static char[] toValues(long[] words, int cardinality) {
+		char[] values = new char[cardinality];
+		int n = 0;
+		for (int w = 0; w < BITMAP_WORDS; w++) {
+			for (long bits = words[w]; bits != 0; bits &= bits - 1) {
+				values[n++] = (char) ((w << 6) | Long.numberOfTrailingZeros(bits));
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Adds a chunk after the last one, unless it is empty.
+	 */
+	private void appendChunk(char key, Object chunk) {
+		int cardinality = cardinality(chunk);
+		if (cardinality == 0) {
+			return;
+		}
+		if (chunk instanceof long[] && cardinality <= ARRAY_MAX) {
+			chunk = toValues((long[]) chunk, cardinality);
+		}
+		insertChunk(size, key, chunk, cardinality);
+	}
+
+	private void insertChunk(int i, char key, Object chunk, int cardinality) {
+		if (size == keys.length) {
+			keys = Arrays.copyOf(keys, size * 2);
+			chunks = Arrays.copyOf(chunks, size * 2);
+			cardinalities = Arrays.copyOf(cardinalities, size * 2);
+		}
+		System.arraycopy(keys, i, keys, i + 1, size - i);
+		System.arraycopy(chunks, i, chunks, i + 1, size - i);
+		System.arraycopy(cardinalities, i, cardinalities, i + 1, size - i);
+		keys[i] = key;
+		chunks[i] = chunk;
+		cardinalities[i] = cardinality;
+		total += cardinality;
+		size++;
+	}
+
+	private void truncate(int kept) {
+		for (int i = kept; i < size; i++) {
+			chunks[i] = null;
+		}
+		total = 0;
+		for (int i = 0; i < kept; i++) {
+			total += cardinalities[i];
+			if (chunks[i] instanceof long[] && cardinalities[i] <= ARRAY_MAX) {
+				chunks[i] = toValues((long[]) chunks[i], cardinalities[i]);
+			}
+		}
+		size = kept;
+	}
+
+	private int findKey(char key) {
+		return Arrays.binarySearch(keys, 0, size, key);
+	}
+}
@@ -0,0 +1,94 @@
+package at.scch.jacoco.reader;
+
+import java.util.Arrays;
+
+/**
+ * Covered instructions and branches of the lines of a session that differ from the counts of a fully covered line,
+ * by line id. Most covered lines are fully covered, so only a few lines need their counts kept.
+ * A table is not changed once it is built, sessions share it until their coverage changes.
+ */
+final class LineCounts {
+
+	static final LineCounts EMPTY = new LineCounts(new int[0], new int[0], new int[0], 0);
+
+	/**
+	 * Line ids, ascending.
+	 */
+	final int[] ids;
+
+	final int[] instructions;
+
+	final int[] branches;
+
+	final int size;
+
+	private LineCounts(int[] ids, int[] instructions, int[] branches, int size) {
+		super();
+		this.ids = ids;
+		this.instructions = instructions;
+		this.branches = branches;
+		this.size = size;
+	}
+
+	/**
+	 * Instructions of a fully covered line, in the order the coverage of a line is created with.
+	 * The branches of the line on purpose: {@link JacocoReportGenerator} creates the coverage of a line with the
+	 * covered branches and instructions swapped, and a fully covered line must have the default counts to be left out
+	 * of the table. Changing one side without the other stores the counts of every fully covered line.
+	 */
+	static int getDefaultInstructions(JacocoLine line) {
+		return line.getBranches();
+	}
+
+	/**
+	 * Branches of a fully covered line, in the order the coverage of a line is created with.
+	 * The instructions of the line on purpose, see {@link #getDefaultInstructions(JacocoLine)}.
+	 */
+	static int getDefaultBranches(JacocoLine line) {
+		return line.getInstructions();
+	}
+
+	/**
+	 * Collects the counts of a table in ascending order of the line ids.
+	 */
+	static class Builder {
+
+		private final LineIndex index;
+
+		private int[] ids = new int[16];
+
+		private int[] instructions = new int[16];
+
+		private int[] branches = new int[16];
+
+		private int size;
+
+		Builder(LineIndex index) {
+			this.index = index;
+		}
+
+		/**
+		 * Adds the counts of a line, if they are not the counts of a fully covered line.
+		 * @param id - line id, greater than the ids added before
+		 */
+		void add(int id, int instructionsCovered, int branchesCovered) {
+			JacocoLine line = index.getLine(id);
+			if (instructionsCovered == getDefaultInstructions(line) && branchesCovered == getDefaultBranches(line)) {
+				return;
+			}
+			if (size == ids.length) {
+				ids = Arrays.copyOf(ids, size * 2);
+				instructions = Arrays.copyOf(instructions, size * 2);
+				branches = Arrays.copyOf(branches, size * 2);
+			}
+			ids[size] = id;
+			instructions[size] = instructionsCovered;
+			branches[size] = branchesCovered;
+			size++;
+		}
+
+		LineCounts build() {
+			return size == 0 ? EMPTY : new LineCounts(ids, instructions, branches, size);
+		}
+	}
+}
@@ -0,0 +1,220 @@
+package at.scch.jacoco.reader;
+
+import java.util.*;
+
+/**
+ * Dense integer ids for the lines of a source code structure, so sessions can keep their coverage as a bitmap of line ids.
+ * The lines of a structure are numbered when the first report on it is created, method by method,
+ * lines added to the structure later are numbered on first use.
+ * <p>
+ * Lines of another structure, e.g. coverage of an earlier report, are mapped to the line with the same method name
+ * and line number, or get an id of their own if this structure has no such line.
+ */
+final class LineIndex {
+
+	/**
+	 * Lines by their id, written under the lock of the index.
+	 */
+	private volatile JacocoLine[] lines;
+
+	/**
+	 * Method ordinals by line id, lines of methods with the same full name have the same ordinal.
+	 */
+	private volatile int[] methodOrdinals;
+
+	private int size;
+
+	/**
+	 * Ordinals of the methods by their full name.
+	 */
+	private final Map<String, Integer> ordinals = new HashMap<>();
+
+	/**
+	 * Method of the line numbered last, lines are mostly numbered method by method.
+	 */
+	private JacocoMethod lastMethod;
+
+	private int lastOrdinal;
+
+	/**
+	 * Methods by their full name, only built to map lines of other structures.
+	 */
+	private Map<String, JacocoMethod> methods;
+
+	/**
+	 * Ids of the lines of other structures without a line in this structure, by line identifier.
+	 */
+	private Map<String, Integer> foreignLines;
+
+	LineIndex() {
+		super();
+		this.lines = new JacocoLine[1024];
+		this.methodOrdinals = new int[1024];
+	}
+
+	/**
+	 * Numbers the lines of the structure, continuing the index the structure is numbered in already.
+	 * @param packages - source code structure
+	 * @return - index of the lines
+	 */
+	static LineIndex of(Collection<JacocoPackage> packages) {
+		LineIndex index = findIndex(packages);
+		if (index == null) {
+			index = new LineIndex();
+		}
+		index.addAll(packages);
+		return index;
+	}
+
+	private static LineIndex findIndex(Collection<JacocoPackage> packages) {
+		for (JacocoPackage pkg : packages) {
+			for (JacocoClass clazz : pkg.getClasses()) {
+				for (JacocoMethod method : clazz.getMethods()) {
+					for (JacocoLine line : method.getLines()) {
+						if (line.index != null) {
+							return line.index;
+						}
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	private synchronized void addAll(Collection<JacocoPackage> packages) {
+		for (JacocoPackage pkg : packages) {
+			for (JacocoClass clazz : pkg.getClasses()) {
+				for (JacocoMethod method : clazz.getMethods()) {
+					int[] lineNumbers = new int[method.getNumberOfLines()];
+					int n = 0;
+					for (int lineNumber : method.getLineNumbers()) {
+						lineNumbers[n++] = lineNumber;
+					}
+					Arrays.sort(lineNumbers);
+					for (int lineNumber : lineNumbers) {
+						JacocoLine line = method.getLine(lineNumber);
+						if (line.index == null) {
+							add(line);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param id - line id
+	 * @return - line with the id
+	 */
+	JacocoLine getLine(int id) {
+		return lines[id];
+	}
+
+	/**
+	 * @param id - line id
+	 * @return - ordinal of the method of the line, the same for all methods with the same full name
+	 */
+	int getMethodOrdinal(int id) {
+		return methodOrdinals[id];
+	}
+
+	/**
+	 * @param line - line of any structure
+	 * @return - id of the line, or -1 if the line has none in this index
+	 */
+	int findId(JacocoLine line) {
+		if (line.index == this) {
+			return line.id;
+		}
+		synchronized (this) {
+			return translate(line);
+		}
+	}
+
+	/**
+	 * @param line - line of any structure
+	 * @return - id of the line, a line without an id gets one
+	 */
+	int getId(JacocoLine line) {
+		if (line.index == this) {
+			return line.id;
+		}
+		synchronized (this) {
+			if (line.index == null) {
+				return add(line);
+			}
+			int id = translate(line);
+			if (id < 0) {
+				id = register(line);
+				foreignLines.put(line.getIdentifier(), id);
+			}
+			return id;
+		}
+	}
+
+	/**
+	 * @param fullName - full name of a method
+	 * @return - method of this structure, or null if there is none
+	 */
+	synchronized JacocoMethod getMethod(String fullName) {
+		return getMethods().get(fullName);
+	}
+
+	private int translate(JacocoLine line) {
+		JacocoMethod method = getMethods().get(line.getMethod().getFullName());
+		if (method != null) {
+			JacocoLine same = method.getLine(line.getLineNumber());
+			if (same != null && same.index == this) {
+				return same.id;
+			}
+		}
+		Integer id = foreignLines.get(line.getIdentifier());
+		return id == null ? -1 : id;
+	}
+
+	private Map<String, JacocoMethod> getMethods() {
+		if (methods == null) {
+			methods = new HashMap<>();
+			foreignLines = new HashMap<>();
+			for (int id = 0; id < size; id++) {
+				JacocoMethod method = lines[id].getMethod();
+				methods.put(method.getFullName(), method);
+			}
+		}
+		return methods;
+	}
+
+	private int add(JacocoLine line) {
+		int id = register(line);
+		line.id = id;
+		// published last, a thread seeing the index sees the id as well
+		line.index = this;
+		if (methods != null) {
+			methods.put(line.getMethod().getFullName(), line.getMethod());
+		}
+		return id;
+	}
+
+	private int register(JacocoLine line) {
+		if (size == lines.length) {
+			methodOrdinals = Arrays.copyOf(methodOrdinals, size * 2);
+			lines = Arrays.copyOf(lines, size * 2);
+		}
+		methodOrdinals[size] = getOrdinal(line.getMethod());
+		lines[size] = line;
+		return size++;
+	}
+
+	private int getOrdinal(JacocoMethod method) {
+		if (method != lastMethod) {
+			Integer ordinal = ordinals.get(method.getFullName());
+			if (ordinal == null) {
+				ordinal = ordinals.size();
+				ordinals.put(method.getFullName(), ordinal);
+			}
+			lastMethod = method;
+			lastOrdinal = ordinal;
+		}
+		return lastOrdinal;
+	}
+}
@@ -0,0 +1,240 @@
+package at.scch.jacoco.reader;
+
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.ISessionInfoVisitor;
+import org.jacoco.core.data.IncompatibleExecDataVersionException;
+import org.jacoco.core.data.SessionInfo;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reader for JaCoCo exec files, that maps the file into memory and decodes the blocks directly from the mapped buffer.
+ * Probe arrays are not copied, they are passed to the {@link ProbeBitsVisitor} as {@link ProbeBits} views.
+ * Files larger than the mapping window are mapped window by window.
+ */
+public class MappedExecFileReader implements Closeable {
+
+	private static final long WINDOW_SIZE = 1L << 28;
+
+	private final FileChannel channel;
+
+	private final long size;
+
+	private final long windowSize;
+
+	private ByteBuffer buffer;
+
+	/**
+	 * File offset of the mapped window.
+	 */
+	private long bufferOffset;
+
+	/**
+	 * File offset of the next byte to read.
+	 */
+	private long position;
+
+	private final ProbeBits probes = new ProbeBits();
+
+	private ISessionInfoVisitor sessionInfoVisitor;
+
+	private ProbeBitsVisitor executionDataVisitor;
+
+	public MappedExecFileReader(File execFile) throws IOException {
+		this(execFile, WINDOW_SIZE);
+	}
+
+	MappedExecFileReader(File execFile, long windowSize) throws IOException {
+		this.channel = FileChannel.open(execFile.toPath(), StandardOpenOption.READ);
+		this.size = channel.size();
+		this.windowSize = windowSize;
+	}
+
+	public void setSessionInfoVisitor(ISessionInfoVisitor sessionInfoVisitor) {
+		this.sessionInfoVisitor = sessionInfoVisitor;
+	}
+
+	public void setExecutionDataVisitor(ProbeBitsVisitor executionDataVisitor) {
+		this.executionDataVisitor = executionDataVisitor;
+	}
+
+	/**
+	 * @return - file offset of the next block to read
+	 */
+	public long getPosition() {
+		return position;
+	}
+
+	/**
+	 * Continue reading at a block read before, e.g. to read only the blocks appended to the file since.
+	 * @param position - file offset of the next block to read
+	 */
+	public void setPosition(long position) {
+		this.position = position;
+	}
+
+	/**
+	 * Reads all blocks of the file, starting at the current position.
+	 * @throws IOException - if the file is not a valid exec file
+	 */
+	public void read() throws IOException {
+		read(false);
+	}
+
+	/**
+	 * Reads all complete blocks of the file, starting at the current position.
+	 * A block at the end of the file that is not complete, as it is still being written, is not read.
+	 * The position stays at its start, so it is read by the next call once the file is complete.
+	 * @throws IOException - if the file is not a valid exec file
+	 */
+	public void readCompleteBlocks() throws IOException {
+		read(true);
+	}
+
+	private void read(boolean completeBlocks) throws IOException {
+		boolean firstBlock = position == 0;
+		while (position < size) {
+			long blockStart = position;
+			try {
+				readBlock(firstBlock);
+			} catch (EOFException e) {
+				if (!completeBlocks) {
+					throw e;
+				}
+				position = blockStart;
+				return;
+			}
+			firstBlock = false;
+		}
+	}
+
+	private void readBlock(boolean firstBlock) throws IOException {
+		byte type = readByte();
+		if (firstBlock && type != ExecutionDataWriter.BLOCK_HEADER) {
+			throw new IOException("Invalid execution data file.");
+		}
+		switch (type) {
+			case ExecutionDataWriter.BLOCK_HEADER:
+				readHeader();
+				break;
+			case ExecutionDataWriter.BLOCK_SESSIONINFO:
+				readSessionInfo();
+				break;
+			case ExecutionDataWriter.BLOCK_EXECUTIONDATA:
+				readExecutionData();
+				break;
+			default:
+				throw new IOException(String.format("Unknown block type %x.", type));
+		}
+	}
+
+	private void readHeader() throws IOException {
+		if (readChar() != ExecutionDataWriter.MAGIC_NUMBER) {
+			throw new IOException("Invalid execution data file.");
+		}
+		char version = readChar();
+		if (version != ExecutionDataWriter.FORMAT_VERSION) {
+			throw new IncompatibleExecDataVersionException(version);
+		}
+	}
+
+	private void readSessionInfo() throws IOException {
+		if (sessionInfoVisitor == null) {
+			throw new IOException("No session info visitor.");
+		}
+		String id = readUTF();
+		long start = readLong();
+		long dump = readLong();
+		sessionInfoVisitor.visitSessionInfo(new SessionInfo(id, start, dump));
+	}
+
+	private void readExecutionData() throws IOException {
+		if (executionDataVisitor == null) {
+			throw new IOException("No execution data visitor.");
+		}
+		long id = readLong();
+		long nameStart = position;
+		int nameLength = readChar();
+		position += nameLength;
+		int probeCount = readVarInt();
+		long probesStart = position;
+		position += (probeCount + 7) >>> 3;
+		ensure(nameStart, position);
+
+		probes.set(buffer, id, (int) (nameStart - bufferOffset), (int) (probesStart - bufferOffset), probeCount);
+		executionDataVisitor.visitClassExecution(probes);
+	}
+
+	/**
+	 * Makes sure the given range of the file is mapped.
+	 * If it is not in the current window, the window is moved to start at the range.
+	 * @param from - file offset of the first byte, inclusive
+	 * @param to - file offset of the last byte, exclusive
+	 */
+	private void ensure(long from, long to) throws IOException {
+		if (to > size) {
+			throw new EOFException();
+		}
+		if (buffer != null && from >= bufferOffset && to <= bufferOffset + buffer.limit()) {
+			return;
+		}
+		long length = Math.min(Math.max(windowSize, to - from), size - from);
+		buffer = channel.map(FileChannel.MapMode.READ_ONLY, from, length);
+		bufferOffset = from;
+	}
+
+	private void ensure(int bytes) throws IOException {
+		ensure(position, position + bytes);
+	}
+
+	private byte readByte() throws IOException {
+		ensure(1);
+		return buffer.get((int) (position++ - bufferOffset));
+	}
+
+	private char readChar() throws IOException {
+		ensure(2);
+		char value = buffer.getChar((int) (position - bufferOffset));
+		position += 2;
+		return value;
+	}
+
+	private long readLong() throws IOException {
+		ensure(8);
+		long value = buffer.getLong((int) (position - bufferOffset));
+		position += 8;
+		return value;
+	}
+
+	private int readVarInt() throws IOException {
+		int value = 0;
+		int shift = 0;
+		int b;
+		do {
+			b = readByte() & 0xFF;
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return value;
+	}
+
+	private String readUTF() throws IOException {
+		ensure(2);
+		int length = buffer.getChar((int) (position - bufferOffset));
+		ensure(2 + length);
+		byte[] utf = new byte[2 + length];
+		for (int i = 0; i < utf.length; i++) {
+			utf[i] = buffer.get((int) (position - bufferOffset) + i);
+		}
+		position += utf.length;
+		return new DataInputStream(new ByteArrayInputStream(utf)).readUTF();
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+}
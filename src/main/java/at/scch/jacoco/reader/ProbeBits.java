@@ -0,0 +1,92 @@
+package at.scch.jacoco.reader;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+
+/**
+ * View on the execution data of a class, as stored in the exec file.
+ * The probes are read directly from the packed bits of the file, instead of being copied into a boolean array.
+ * A view is only valid during the {@link ProbeBitsVisitor#visitClassExecution(ProbeBits)} call it is passed to,
+ * as the reader reuses it for the next class.
+ */
+public class ProbeBits {
+
+	private ByteBuffer buffer;
+
+	private int nameOffset;
+
+	private int probesOffset;
+
+	private int probeCount;
+
+	private long id;
+
+	void set(ByteBuffer buffer, long id, int nameOffset, int probesOffset, int probeCount) {
+		this.buffer = buffer;
+		this.id = id;
+		this.nameOffset = nameOffset;
+		this.probesOffset = probesOffset;
+		this.probeCount = probeCount;
+	}
+
+	/**
+	 * @return - class id (CRC64 of the class file)
+	 */
+	public long getId() {
+		return id;
+	}
+
+	/**
+	 * Decodes the VM name of the class, the name is not read unless requested.
+	 * @return - name of the class, with "/" as package separator
+	 */
+	public String getName() {
+		int length = ((buffer.get(nameOffset) & 0xFF) << 8) | (buffer.get(nameOffset + 1) & 0xFF);
+		byte[] utf = new byte[length + 2];
+		for (int i = 0; i < utf.length; i++) {
+			utf[i] = buffer.get(nameOffset + i);
+		}
+		try {
+			return new DataInputStream(new ByteArrayInputStream(utf)).readUTF();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public int getProbeCount() {
+		return probeCount;
+	}
+
+	public boolean isExecuted(int probe) {
+		return (buffer.get(probesOffset + (probe >>> 3)) & (1 << (probe & 7))) != 0;
+	}
+
+	/**
+	 * @return - whether any probe was executed
+	 */
+	public boolean hasHits() {
+		int bytes = (probeCount + 7) >>> 3;
+		for (int i = 0; i < bytes; i++) {
+			if (buffer.get(probesOffset + i) != 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Copies the probes into a bit array, bit i of the array is probe i.
+	 * @return - executed probes as bits
+	 */
+	public long[] toLongArray() {
+		long[] bits = new long[(probeCount + 63) >>> 6];
+		int bytes = (probeCount + 7) >>> 3;
+		for (int i = 0; i < bytes; i++) {
+			bits[i >>> 3] |= (buffer.get(probesOffset + i) & 0xFFL) << ((i & 7) << 3);
+		}
+		return bits;
+	}
+}
@@ -0,0 +1,13 @@
+package at.scch.jacoco.reader;
+
+/**
+ * Interface for data output of execution data read by the {@link MappedExecFileReader}.
+ */
+public interface ProbeBitsVisitor {
+
+	/**
+	 * Provides execution data for a class.
+	 * @param probes - view on the execution data, only valid during this call
+	 */
+	void visitClassExecution(ProbeBits probes);
+}
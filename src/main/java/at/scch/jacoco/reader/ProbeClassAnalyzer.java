@@ -0,0 +1,126 @@
+package at.scch.jacoco.reader;
+
+import org.jacoco.core.internal.analysis.filter.Filters;
+import org.jacoco.core.internal.analysis.filter.IFilter;
+import org.jacoco.core.internal.analysis.filter.IFilterContext;
+import org.jacoco.core.internal.flow.ClassProbesVisitor;
+import org.jacoco.core.internal.flow.MethodProbesVisitor;
+import org.jacoco.core.internal.instr.InstrSupport;
+import org.jacoco.report.JavaNames;
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.Attribute;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.tree.MethodNode;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Analyzes the structure of a class and collects the probe to line mapping of its methods.
+ */
+class ProbeClassAnalyzer extends ClassProbesVisitor implements IFilterContext {
+
+	private static final JavaNames NAMES = new JavaNames();
+
+	private final String className;
+
+	private final ClassProbeIndex.Builder builder;
+
+	private final IFilter filter = Filters.all();
+
+	private final Set<String> classAnnotations = new HashSet<>();
+
+	private final Set<String> classAttributes = new HashSet<>();
+
+	private String superClassName;
+
+	private String sourceFileName;
+
+	private String sourceDebugExtension;
+
+	ProbeClassAnalyzer(String className, ClassProbeIndex.Builder builder) {
+		this.className = className;
+		this.builder = builder;
+	}
+
+	@Override
+	public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+		this.superClassName = superName;
+	}
+
+	@Override
+	public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+		classAnnotations.add(desc);
+		return super.visitAnnotation(desc, visible);
+	}
+
+	@Override
+	public void visitAttribute(Attribute attribute) {
+		classAttributes.add(attribute.type);
+	}
+
+	@Override
+	public void visitSource(String source, String debug) {
+		this.sourceFileName = source;
+		this.sourceDebugExtension = debug;
+		builder.setSourceFileName(source);
+	}
+
+	@Override
+	public MethodProbesVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+		InstrSupport.assertNotInstrumented(name, className);
+		return new ProbeMethodAnalyzer() {
+			@Override
+			public void accept(MethodNode methodNode, MethodVisitor methodVisitor) {
+				super.accept(methodNode, methodVisitor);
+				filter.filter(methodNode, ProbeClassAnalyzer.this, this);
+				String methodName = NAMES.getMethodName(className, name, desc, signature);
+				builder.addMethod(methodName, getInstructions());
+			}
+		};
+	}
+
+	@Override
+	public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
+		InstrSupport.assertNotInstrumented(name, className);
+		return super.visitField(access, name, desc, signature, value);
+	}
+
+	@Override
+	public void visitTotalProbeCount(int count) {
+		// nothing to do
+	}
+
+	// IFilterContext implementation
+
+	@Override
+	public String getClassName() {
+		return className;
+	}
+
+	@Override
+	public String getSuperClassName() {
+		return superClassName;
+	}
+
+	@Override
+	public Set<String> getClassAnnotations() {
+		return classAnnotations;
+	}
+
+	@Override
+	public Set<String> getClassAttributes() {
+		return classAttributes;
+	}
+
+	@Override
+	public String getSourceFileName() {
+		return sourceFileName;
+	}
+
+	@Override
+	public String getSourceDebugExtension() {
+		return sourceDebugExtension;
+	}
+}
@@ -0,0 +1,83 @@
+package at.scch.jacoco.reader;
+
+import org.jacoco.core.analysis.Analyzer;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.internal.data.CRC64;
+import org.jacoco.core.internal.flow.ClassProbesAdapter;
+import org.jacoco.core.internal.instr.InstrSupport;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Opcodes;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Analyzer that adds every analyzed class to a {@link JacocoProbeIndex}, or another sink, instead of computing its coverage.
+ * Class directories and archives are traversed the same way as by the JaCoCo {@link Analyzer}.
+ */
+class ProbeIndexAnalyzer extends Analyzer {
+
+	/**
+	 * Receives the analyzed classes, possibly from several threads.
+	 */
+	private final Consumer<AnalyzedClass> sink;
+
+	/**
+	 * Cache of classes analyzed earlier, or null.
+	 */
+	private final AnalysisCache cache;
+
+	ProbeIndexAnalyzer(JacocoProbeIndex index) {
+		this(index, null);
+	}
+
+	ProbeIndexAnalyzer(JacocoProbeIndex index, AnalysisCache cache) {
+		this(index::addClass, cache);
+	}
+
+	ProbeIndexAnalyzer(Consumer<AnalyzedClass> sink, AnalysisCache cache) {
+		super(new ExecutionDataStore(), coverage -> {});
+		this.sink = sink;
+		this.cache = cache;
+	}
+
+	@Override
+	public void analyzeClass(byte[] buffer, String location) throws IOException {
+		try {
+			analyzeClass(buffer);
+		} catch (RuntimeException cause) {
+			throw new IOException("Error while analyzing " + location + ".", cause);
+		}
+	}
+
+	private void analyzeClass(byte[] buffer) {
+		long classId = CRC64.classId(buffer);
+		if (cache != null) {
+			AnalyzedClass cached = cache.get(classId);
+			if (cached != null) {
+				sink.accept(cached);
+				return;
+			}
+		}
+		ClassReader reader = InstrSupport.classReaderFor(buffer);
+		if ((reader.getAccess() & Opcodes.ACC_MODULE) != 0) {
+			return;
+		}
+		if ((reader.getAccess() & Opcodes.ACC_SYNTHETIC) != 0) {
+			return;
+		}
+
+		ClassProbeIndex.Builder builder = new ClassProbeIndex.Builder(classId, reader.getClassName());
+		ProbeClassAnalyzer analyzer = new ProbeClassAnalyzer(reader.getClassName(), builder);
+		reader.accept(new ClassProbesAdapter(analyzer, false), 0);
+		AnalyzedClass analyzedClass = builder.build();
+		if (analyzedClass.signatures.length == 0) {
+			// no method contains code, e.g. an interface without default methods, skipped like the CoverageBuilder does
+			return;
+		}
+		if (cache != null) {
+			cache.put(analyzedClass);
+		}
+		sink.accept(analyzedClass);
+	}
+}
@@ -0,0 +1,154 @@
+package at.scch.jacoco.reader;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+
+/**
+ * Symbolic counterpart of a JaCoCo instruction.
+ * Instead of a covered flag per branch it keeps the ids of all probes that cover the branch,
+ * so the coverage of the instruction can be derived for any probe array of its class.
+ */
+class ProbeInstruction {
+
+	/**
+	 * Source line this instruction belongs to.
+	 */
+	private final int line;
+
+	/**
+	 * Number of outgoing branches.
+	 */
+	private int branches;
+
+	/**
+	 * Probes covering the branches of this instruction, by branch id.
+	 */
+	private BitSet[] branchProbes;
+
+	/**
+	 * Probes covering at least one branch of this instruction.
+	 */
+	private final BitSet probes;
+
+	private ProbeInstruction predecessor;
+
+	private int predecessorBranch;
+
+	ProbeInstruction(int line) {
+		this.line = line;
+		this.branches = 0;
+		this.branchProbes = new BitSet[0];
+		this.probes = new BitSet();
+	}
+
+	/**
+	 * Adds a branch whose coverage is derived from the coverage of the target instruction.
+	 * @param target - target instruction of the branch
+	 * @param branch - branch id, unique for this instruction
+	 */
+	void addBranch(ProbeInstruction target, int branch) {
+		branches++;
+		target.predecessor = this;
+		target.predecessorBranch = branch;
+		if (!target.probes.isEmpty()) {
+			propagateProbes(this, branch, (BitSet) target.probes.clone());
+		}
+	}
+
+	/**
+	 * Adds a branch whose coverage is directly derived from a probe.
+	 * @param probeId - id of the probe
+	 * @param branch - branch id, unique for this instruction
+	 */
+	void addBranch(int probeId, int branch) {
+		branches++;
+		BitSet probe = new BitSet();
+		probe.set(probeId);
+		propagateProbes(this, branch, probe);
+	}
+
+	private static void propagateProbes(ProbeInstruction insn, int branch, BitSet pending) {
+		// No recursion here, as there can be very long chains of instructions
+		while (insn != null && !pending.isEmpty()) {
+			insn.getBranchProbes(branch).or(pending);
+			BitSet unseen = (BitSet) pending.clone();
+			unseen.andNot(insn.probes);
+			insn.probes.or(pending);
+			pending = unseen;
+			branch = insn.predecessorBranch;
+			insn = insn.predecessor;
+		}
+	}
+
+	private BitSet getBranchProbes(int branch) {
+		if (branch >= branchProbes.length) {
+			int length = branchProbes.length;
+			branchProbes = Arrays.copyOf(branchProbes, branch + 1);
+			for (int i = length; i < branchProbes.length; i++) {
+				branchProbes[i] = new BitSet();
+			}
+		}
+		return branchProbes[branch];
+	}
+
+	int getLine() {
+		return line;
+	}
+
+	/**
+	 * @return - number of branches, only instructions with at least 2 branches report them
+	 */
+	int getBranches() {
+		return branches < 2 ? 0 : branches;
+	}
+
+	/**
+	 * @return - probes of which any one covers this instruction
+	 */
+	BitSet getProbes() {
+		return probes;
+	}
+
+	/**
+	 * @return - per branch, the probes of which any one covers the branch
+	 */
+	BitSet[] getBranchProbes() {
+		return branchProbes;
+	}
+
+	/**
+	 * Merges the coverage of this instruction with another instruction.
+	 * @param other - instruction to merge with
+	 * @return - new instance with merged branches
+	 */
+	ProbeInstruction merge(ProbeInstruction other) {
+		ProbeInstruction result = new ProbeInstruction(this.line);
+		result.branches = this.branches;
+		for (int i = 0; i < this.branchProbes.length; i++) {
+			result.getBranchProbes(i).or(this.branchProbes[i]);
+		}
+		for (int i = 0; i < other.branchProbes.length; i++) {
+			result.getBranchProbes(i).or(other.branchProbes[i]);
+		}
+		result.probes.or(this.probes);
+		result.probes.or(other.probes);
+		return result;
+	}
+
+	/**
+	 * Creates a copy of this instruction where all branches are replaced with the given instructions.
+	 * @param newBranches - new branches to consider
+	 * @return - new instance with replaced branches
+	 */
+	ProbeInstruction replaceBranches(Collection<ProbeInstruction> newBranches) {
+		ProbeInstruction result = new ProbeInstruction(this.line);
+		result.branches = newBranches.size();
+		int branch = 0;
+		for (ProbeInstruction b : newBranches) {
+			result.getBranchProbes(branch++).or(b.probes);
+			result.probes.or(b.probes);
+		}
+		return result;
+	}
+}
@@ -0,0 +1,329 @@
+package at.scch.jacoco.reader;
+
+import org.jacoco.core.analysis.ISourceNode;
+import org.jacoco.core.internal.analysis.filter.IFilterOutput;
+import org.jacoco.core.internal.flow.IFrame;
+import org.jacoco.core.internal.flow.LabelInfo;
+import org.jacoco.core.internal.flow.MethodProbesVisitor;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TryCatchBlockNode;
+
+import java.util.*;
+
+/**
+ * Builds the {@link ProbeInstruction}s of a method.
+ * Follows the control flow rules of JaCoCo's method analysis and applies the filter commands of JaCoCo,
+ * but records which probes cover an instruction instead of evaluating a single probe array.
+ */
+class ProbeMethodAnalyzer extends MethodProbesVisitor implements IFilterOutput {
+
+	/**
+	 * The line which belongs to subsequently added instructions.
+	 */
+	private int currentLine = ISourceNode.UNKNOWN_LINE;
+
+	/**
+	 * The last instruction which has been added.
+	 */
+	private ProbeInstruction currentInsn;
+
+	/**
+	 * Current node of the ASM tree API.
+	 */
+	private AbstractInsnNode currentNode;
+
+	private final Map<AbstractInsnNode, ProbeInstruction> instructions = new LinkedHashMap<>();
+
+	/**
+	 * The labels which mark the subsequent instruction.
+	 */
+	private final List<Label> currentLabel = new ArrayList<>(2);
+
+	private final Map<Label, ProbeInstruction> labelInstructions = new IdentityHashMap<>();
+
+	private final List<Jump> jumps = new ArrayList<>();
+
+	private final Set<AbstractInsnNode> ignored = new HashSet<>();
+
+	private final Map<AbstractInsnNode, AbstractInsnNode> merged = new HashMap<>();
+
+	private final Map<AbstractInsnNode, Set<AbstractInsnNode>> replacements = new HashMap<>();
+
+	@Override
+	public void accept(MethodNode methodNode, MethodVisitor methodVisitor) {
+		methodVisitor.visitCode();
+		for (TryCatchBlockNode n : methodNode.tryCatchBlocks) {
+			n.accept(methodVisitor);
+		}
+		for (AbstractInsnNode i : methodNode.instructions) {
+			currentNode = i;
+			i.accept(methodVisitor);
+		}
+		methodVisitor.visitEnd();
+	}
+
+	/**
+	 * Wires the jumps and applies the filter commands.
+	 * Must be called exactly once after the method has been visited.
+	 * @return - instructions of the method that are not ignored by a filter
+	 */
+	Collection<ProbeInstruction> getInstructions() {
+		for (Jump jump : jumps) {
+			jump.source.addBranch(labelInstructions.get(jump.target), jump.branch);
+		}
+		applyMerges();
+		applyReplacements();
+
+		List<ProbeInstruction> result = new ArrayList<>();
+		for (Map.Entry<AbstractInsnNode, ProbeInstruction> entry : instructions.entrySet()) {
+			if (!ignored.contains(entry.getKey())) {
+				result.add(entry.getValue());
+			}
+		}
+		return result;
+	}
+
+	private void applyMerges() {
+		for (Map.Entry<AbstractInsnNode, AbstractInsnNode> entry : merged.entrySet()) {
+			AbstractInsnNode node = entry.getKey();
+			ProbeInstruction instruction = instructions.get(node);
+			AbstractInsnNode representativeNode = findRepresentative(node);
+			ignored.add(node);
+			instructions.put(representativeNode, instructions.get(representativeNode).merge(instruction));
+			entry.setValue(representativeNode);
+		}
+		for (Map.Entry<AbstractInsnNode, AbstractInsnNode> entry : merged.entrySet()) {
+			instructions.put(entry.getKey(), instructions.get(entry.getValue()));
+		}
+	}
+
+	private void applyReplacements() {
+		for (Map.Entry<AbstractInsnNode, Set<AbstractInsnNode>> entry : replacements.entrySet()) {
+			List<ProbeInstruction> newBranches = new ArrayList<>(entry.getValue().size());
+			for (AbstractInsnNode b : entry.getValue()) {
+				newBranches.add(instructions.get(b));
+			}
+			AbstractInsnNode node = entry.getKey();
+			instructions.put(node, instructions.get(node).replaceBranches(newBranches));
+		}
+	}
+
+	private AbstractInsnNode findRepresentative(AbstractInsnNode i) {
+		AbstractInsnNode r;
+		while ((r = merged.get(i)) != null) {
+			i = r;
+		}
+		return i;
+	}
+
+	private void addInstruction() {
+		ProbeInstruction insn = new ProbeInstruction(currentLine);
+		for (Label label : currentLabel) {
+			labelInstructions.put(label, insn);
+		}
+		currentLabel.clear();
+		if (currentInsn != null) {
+			currentInsn.addBranch(insn, 0);
+		}
+		currentInsn = insn;
+		instructions.put(currentNode, insn);
+	}
+
+	private void addJump(Label target, int branch) {
+		jumps.add(new Jump(currentInsn, target, branch));
+	}
+
+	private void addProbe(int probeId, int branch) {
+		currentInsn.addBranch(probeId, branch);
+	}
+
+	private void noSuccessor() {
+		currentInsn = null;
+	}
+
+	@Override
+	public void visitLabel(Label label) {
+		currentLabel.add(label);
+		if (!LabelInfo.isSuccessor(label)) {
+			noSuccessor();
+		}
+	}
+
+	@Override
+	public void visitLineNumber(int line, Label start) {
+		currentLine = line;
+	}
+
+	@Override
+	public void visitInsn(int opcode) {
+		addInstruction();
+	}
+
+	@Override
+	public void visitIntInsn(int opcode, int operand) {
+		addInstruction();
+	}
+
+	@Override
+	public void visitVarInsn(int opcode, int var) {
+		addInstruction();
+	}
+
+	@Override
+	public void visitTypeInsn(int opcode, String type) {
+		addInstruction();
+	}
+
+	@Override
+	public void visitFieldInsn(int opcode, String owner, String name, String desc) {
+		addInstruction();
+	}
+
+	@Override
+	public void visitMethodInsn(int opcode, String owner, String name, String desc, boolean itf) {
+		addInstruction();
+	}
+
+	@Override
+	public void visitInvokeDynamicInsn(String name, String desc, Handle bsm, Object... bsmArgs) {
+		addInstruction();
+	}
+
+	@Override
+	public void visitJumpInsn(int opcode, Label label) {
+		addInstruction();
+		addJump(label, 1);
+	}
+
+	@Override
+	public void visitLdcInsn(Object cst) {
+		addInstruction();
+	}
+
+	@Override
+	public void visitIincInsn(int var, int increment) {
+		addInstruction();
+	}
+
+	@Override
+	public void visitTableSwitchInsn(int min, int max, Label dflt, Label... labels) {
+		visitSwitchInsn(dflt, labels);
+	}
+
+	@Override
+	public void visitLookupSwitchInsn(Label dflt, int[] keys, Label[] labels) {
+		visitSwitchInsn(dflt, labels);
+	}
+
+	private void visitSwitchInsn(Label dflt, Label[] labels) {
+		addInstruction();
+		LabelInfo.resetDone(labels);
+		int branch = 0;
+		addJump(dflt, branch);
+		LabelInfo.setDone(dflt);
+		for (Label l : labels) {
+			if (!LabelInfo.isDone(l)) {
+				branch++;
+				addJump(l, branch);
+				LabelInfo.setDone(l);
+			}
+		}
+	}
+
+	@Override
+	public void visitMultiANewArrayInsn(String desc, int dims) {
+		addInstruction();
+	}
+
+	@Override
+	public void visitProbe(int probeId) {
+		addProbe(probeId, 0);
+		noSuccessor();
+	}
+
+	@Override
+	public void visitJumpInsnWithProbe(int opcode, Label label, int probeId, IFrame frame) {
+		addInstruction();
+		addProbe(probeId, 1);
+	}
+
+	@Override
+	public void visitInsnWithProbe(int opcode, int probeId) {
+		addInstruction();
+		addProbe(probeId, 0);
+	}
+
+	@Override
+	public void visitTableSwitchInsnWithProbes(int min, int max, Label dflt, Label[] labels, IFrame frame) {
+		visitSwitchInsnWithProbes(dflt, labels);
+	}
+
+	@Override
+	public void visitLookupSwitchInsnWithProbes(Label dflt, int[] keys, Label[] labels, IFrame frame) {
+		visitSwitchInsnWithProbes(dflt, labels);
+	}
+
+	private void visitSwitchInsnWithProbes(Label dflt, Label[] labels) {
+		addInstruction();
+		LabelInfo.resetDone(dflt);
+		LabelInfo.resetDone(labels);
+		int branch = 0;
+		visitSwitchTarget(dflt, branch);
+		for (Label l : labels) {
+			branch++;
+			visitSwitchTarget(l, branch);
+		}
+	}
+
+	private void visitSwitchTarget(Label label, int branch) {
+		int id = LabelInfo.getProbeId(label);
+		if (!LabelInfo.isDone(label)) {
+			if (id == LabelInfo.NO_PROBE) {
+				addJump(label, branch);
+			} else {
+				addProbe(id, branch);
+			}
+			LabelInfo.setDone(label);
+		}
+	}
+
+	// IFilterOutput implementation
+
+	@Override
+	public void ignore(AbstractInsnNode fromInclusive, AbstractInsnNode toInclusive) {
+		for (AbstractInsnNode i = fromInclusive; i != toInclusive; i = i.getNext()) {
+			ignored.add(i);
+		}
+		ignored.add(toInclusive);
+	}
+
+	@Override
+	public void merge(AbstractInsnNode i1, AbstractInsnNode i2) {
+		i1 = findRepresentative(i1);
+		i2 = findRepresentative(i2);
+		if (i1 != i2) {
+			merged.put(i2, i1);
+		}
+	}
+
+	@Override
+	public void replaceBranches(AbstractInsnNode source, Set<AbstractInsnNode> newTargets) {
+		replacements.put(source, newTargets);
+	}
+
+	private static class Jump {
+		private final ProbeInstruction source;
+		private final Label target;
+		private final int branch;
+
+		Jump(ProbeInstruction source, Label target, int branch) {
+			this.source = source;
+			this.target = target;
+			this.branch = branch;
+		}
+	}
+}
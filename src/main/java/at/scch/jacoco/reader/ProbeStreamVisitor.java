@@ -0,0 +1,109 @@
+package at.scch.jacoco.reader;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.IExecutionDataVisitor;
+import org.jacoco.core.data.ISessionInfoVisitor;
+import org.jacoco.core.data.SessionInfo;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Visitor for parsing JaCoCo coverage file against a {@link JacocoProbeIndex},
+ * read either by the JaCoCo ExecutionDataReader or the {@link MappedExecFileReader}.
+ * Unlike the {@link ExecutionDataVisitor} it does not keep the probe arrays read from the file.
+ * The probes of every class execution are merged into the compact {@link SessionProbes} of the current session
+ * right away, classes that are not in the index or were not hit are skipped.
+ */
+public class ProbeStreamVisitor implements ISessionInfoVisitor, IExecutionDataVisitor, ProbeBitsVisitor {
+
+	private final JacocoProbeIndex index;
+
+	/**
+	 * Selects the sessions that are kept, the execution data of other sessions is skipped.
+	 */
+	private final SessionFilter filter;
+
+	private final Map<String, SessionInfo> sessionInfos = new HashMap<>();
+
+	private final Map<String, SessionProbes> sessions = new LinkedHashMap<>();
+
+	private SessionProbes current;
+
+	public ProbeStreamVisitor(JacocoProbeIndex index) {
+		this(index, SessionFilter.ALL);
+	}
+
+	/**
+	 * @param index - probe index of the class files that should be part of the analysis
+	 * @param filter - selects the sessions that are kept
+	 */
+	public ProbeStreamVisitor(JacocoProbeIndex index, SessionFilter filter) {
+		this.index = index;
+		this.filter = filter;
+	}
+
+	@Override
+	public void visitSessionInfo(SessionInfo info) {
+		if (!filter.accept(info)) {
+			current = null;
+			return;
+		}
+		String sessionId = info.getId();
+		current = sessions.computeIfAbsent(sessionId, SessionProbes::new);
+		sessionInfos.computeIfAbsent(sessionId, id -> info);
+	}
+
+	@Override
+	public void visitClassExecution(ExecutionData data) {
+		if (current == null) {
+			// session not selected, or execution data without a session
+			return;
+		}
+		if (data.hasHits() && index.containsClass(data.getId())) {
+			current.addProbes(data.getId(), data.getName(), data.getProbes());
+		}
+	}
+
+	@Override
+	public void visitClassExecution(ProbeBits probes) {
+		if (current == null) {
+			// session not selected, or execution data without a session
+			return;
+		}
+		if (index.containsClass(probes.getId()) && probes.hasHits()) {
+			current.addProbes(probes.getId(), probes.getName(), probes.toLongArray(), probes.getProbeCount());
+		}
+	}
+
+	/**
+	 * Merges the sessions read by another visitor into this visitor, sessions with the same ID are merged.
+	 * Sessions only read by the other visitor are added after the sessions of this visitor.
+	 * @param other - visitor, that must not be used afterwards
+	 * @return - this visitor
+	 */
+	ProbeStreamVisitor merge(ProbeStreamVisitor other) {
+		for (Map.Entry<String, SessionProbes> entry : other.sessions.entrySet()) {
+			SessionProbes session = sessions.get(entry.getKey());
+			if (session == null) {
+				sessions.put(entry.getKey(), entry.getValue());
+			} else {
+				session.merge(entry.getValue());
+			}
+		}
+		for (Map.Entry<String, SessionInfo> entry : other.sessionInfos.entrySet()) {
+			sessionInfos.putIfAbsent(entry.getKey(), entry.getValue());
+		}
+		current = null;
+		return this;
+	}
+
+	Map<String, SessionProbes> getSessions() {
+		return sessions;
+	}
+
+	public SessionInfo getSession(String sessionId) {
+		return sessionInfos.get(sessionId);
+	}
+}
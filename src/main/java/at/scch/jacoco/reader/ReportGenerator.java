@@ -64,7 +64,7 @@ public class ReportGenerator {
 
     private final String title;
 
-    private final File executionDataFile;
+    private final Collection<File> executionDataFiles;
     private final Set<File> classDirectories;
     private final Set<File> jarFiles;
     private final File sourceDirectory;
@@ -75,6 +75,10 @@ public class ReportGenerator {
 
     private final Format format;
 
+    private SessionFilter sessionFilter = SessionFilter.ALL;
+
+    private int workers = 1;
+
     /**
      * Create a new generator based for the given project.
      *
@@ -135,7 +139,7 @@ public class ReportGenerator {
      */
     public ReportGenerator(String title, File executionDataFile, File classesDirectory, Set<File> jarFiles, File sourceDirectory, File reportDirectory, Format format) {
         this.title = title;
-        this.executionDataFile = executionDataFile;
+        this.executionDataFiles = Collections.singleton(executionDataFile);
         this.classDirectories = new HashSet<>();
         this.classDirectories.add(classesDirectory);
         this.jarFiles = jarFiles;
@@ -156,8 +160,21 @@ public class ReportGenerator {
      * @param format            - format the report should be generated in (HTML, XML, CSV)
      */
     public ReportGenerator(String title, File executionDataFile, Set<File> classDirectories, Set<File> jarFiles, File sourceDirectory, File reportDirectory, Format format, Set<String> includes, Set<String> excludes) {
+        this(title, Collections.singleton(executionDataFile), classDirectories, jarFiles, sourceDirectory, reportDirectory, format, includes, excludes);
+    }
+
+    /**
+     * @param title              - project title
+     * @param executionDataFiles - coverage data files (e.g. jacoco.exec) or directories containing them, sessions with the same ID are merged
+     * @param classDirectories   - bin directories with Java byte code
+     * @param jarFiles           - jar files for project dependencies
+     * @param sourceDirectory    - src directory with Java source files
+     * @param reportDirectory    - target directory for the generated report
+     * @param format             - format the report should be generated in (HTML, XML, CSV)
+     */
+    public ReportGenerator(String title, Collection<File> executionDataFiles, Set<File> classDirectories, Set<File> jarFiles, File sourceDirectory, File reportDirectory, Format format, Set<String> includes, Set<String> excludes) {
         this.title = title;
-        this.executionDataFile = executionDataFile;
+        this.executionDataFiles = executionDataFiles;
         this.classDirectories = classDirectories;
         this.jarFiles = jarFiles;
         this.sourceDirectory = sourceDirectory;
@@ -167,6 +184,20 @@ public class ReportGenerator {
         this.excludes = excludes;
     }
 
+    /**
+     * @param sessionFilter - selects the sessions that are part of the report, by default all sessions
+     */
+    public void setSessionFilter(SessionFilter sessionFilter) {
+        this.sessionFilter = sessionFilter;
+    }
+
+    /**
+     * @param workers - number of exec files read and class files analyzed concurrently, by default 1
+     */
+    public void setWorkers(int workers) {
+        this.workers = workers;
+    }
+
     public void create() throws IOException {
         create(false);
     }
@@ -177,14 +208,18 @@ public class ReportGenerator {
      * @throws IOException
      */
     public void create(boolean perSession) throws IOException {
-        ExecutionDataVisitor visitor = JacocoReportGenerator.getExecutionDataVisitor(executionDataFile);
+        ExecutionDataVisitor visitor = JacocoReportGenerator.getExecutionDataVisitor(executionDataFiles, sessionFilter, workers);
 
-        CoverageBuilder mergedBuilder = JacocoReportGenerator.getCoverageBuilder(visitor.getMerged(), classDirectories, jarFiles, includes, excludes);
+        CoverageBuilder mergedBuilder = JacocoReportGenerator.getCoverageBuilder(visitor.getMerged(), classDirectories, jarFiles, includes, excludes, workers);
         createReport(mergedBuilder, visitor.getSessionInfos(), visitor.getMerged(), reportDirectory, "complete");
 
         if (perSession) {
             int count = 0;
             for (Map.Entry<String, ExecutionDataStore> entry : visitor.getSessions().entrySet()) {
+                if (entry.getKey().equals(JacocoReportGenerator.NO_TEST_SESSION)) {
+                    continue;
+                }
+
                 File dir;
                 if (this.format == Format.HTML) {
                     dir = new File(reportDirectory, entry.getKey());
@@ -192,7 +227,7 @@ public class ReportGenerator {
                     dir = reportDirectory;
                 }
 
-                CoverageBuilder sessionBuilder = JacocoReportGenerator.getCoverageBuilder(entry.getValue(), classDirectories, jarFiles, includes, excludes);
+                CoverageBuilder sessionBuilder = JacocoReportGenerator.getCoverageBuilder(entry.getValue(), classDirectories, jarFiles, includes, excludes, workers);
                 List<SessionInfo> sessionInfos = new LinkedList<>();
                 sessionInfos.add(visitor.getSession(entry.getKey()));
 
@@ -264,7 +299,7 @@ public class ReportGenerator {
                 .longOpt("exec")
                 .argName("execPath")
                 .hasArg()
-                .desc("Path to the exec file from recording coverage with JaCoCo")
+                .desc("List of paths to the exec files from recording coverage with JaCoCo, or directories containing them. The list entries are separated by a semicolon (;) in Windows and a colon (:) in Unix. Sessions with the same ID in several files are merged.")
                 .required()
                 .build();
         Option binariesOption = Option.builder("b")
@@ -284,6 +319,17 @@ public class ReportGenerator {
                 .hasArg()
                 .desc("A list of class names that should be excluded from execution analysis. The list entries are separated by a colon (:) and may use wildcard characters (* and ?).")
                 .build();
+        Option workersOption = Option.builder("w")
+                .longOpt("workers")
+                .argName("count")
+                .hasArg()
+                .desc("Number of exec files read and binaries analyzed concurrently. (Optional: By default 1.)")
+                .build();
+        Option sessionsOption = Option.builder("sessions")
+                .argName("idPatterns")
+                .hasArg()
+                .desc("A list of session IDs that should be part of the report. The list entries are separated by a colon (:) and may use wildcard characters (* and ?). (Optional: By default all sessions.)")
+                .build();
         Option reportOption = Option.builder("r")
                 .longOpt("reportDir")
                 .argName("reportPath")
@@ -311,6 +357,8 @@ public class ReportGenerator {
         options.addOption(binariesOption);
         options.addOption(includesOption);
         options.addOption(excludesOption);
+        options.addOption(sessionsOption);
+        options.addOption(workersOption);
         options.addOption(sourcesOption);
         options.addOption(reportOption);
         options.addOption(formatOption);
@@ -344,13 +392,16 @@ public class ReportGenerator {
         String reportDir = cmd.getOptionValue('r');
 
         Set<String> classesDirs;
+        List<String> executionDataFiles;
         String OS = System.getProperty("os.name").toLowerCase();
         if(OS.contains("win")){
             String[] split = classesDir.split(";");
             classesDirs = new HashSet<>(Arrays.asList(split));
+            executionDataFiles = Arrays.asList(executionData.split(";"));
         } else {
             String[] split = classesDir.split(":");
             classesDirs = new HashSet<>(Arrays.asList(split));
+            executionDataFiles = Arrays.asList(executionData.split(":"));
         }
 
         Set<String> includes = null;
@@ -362,10 +413,33 @@ public class ReportGenerator {
             excludes = new HashSet<>(Arrays.asList(cmd.getOptionValue("excludes").split(":")));
         }
 
-        generate(title, executionData, classesDirs, sourceDir, reportDir, format, includes, excludes);
+        SessionFilter sessionFilter = SessionFilter.ALL;
+        if(cmd.hasOption("sessions")){
+            sessionFilter = sessionFilter.withIdPatterns(Arrays.asList(cmd.getOptionValue("sessions").split(":")));
+        }
+
+        int workers = 1;
+        if(cmd.hasOption('w')){
+            try {
+                workers = Integer.parseInt(cmd.getOptionValue('w'));
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid number of workers: " + cmd.getOptionValue('w'));
+                return;
+            }
+        }
+
+        generate(title, executionDataFiles, classesDirs, sourceDir, reportDir, format, includes, excludes, sessionFilter, workers);
     }
 
     public static void generate(final String title, final String executionData, final Set<String> classesDir, final String sourceDir, final String reportDir, Format format, final Set<String> includes, final Set<String> excludes) throws IOException {
+        generate(title, executionData, classesDir, sourceDir, reportDir, format, includes, excludes, SessionFilter.ALL);
+    }
+
+    public static void generate(final String title, final String executionData, final Set<String> classesDir, final String sourceDir, final String reportDir, Format format, final Set<String> includes, final Set<String> excludes, final SessionFilter sessionFilter) throws IOException {
+        generate(title, Collections.singletonList(executionData), classesDir, sourceDir, reportDir, format, includes, excludes, sessionFilter, 1);
+    }
+
+    public static void generate(final String title, final List<String> executionData, final Set<String> classesDir, final String sourceDir, final String reportDir, Format format, final Set<String> includes, final Set<String> excludes, final SessionFilter sessionFilter, final int workers) throws IOException {
         File f = new File(reportDir);
         if (f.exists()) {
             f.mkdirs();
@@ -374,9 +448,12 @@ public class ReportGenerator {
         Set<File> classDirectories = new HashSet<>();
         classesDir.forEach(cd -> classDirectories.add(new File(cd)));
 
+        List<File> executionDataFiles = new ArrayList<>();
+        executionData.forEach(e -> executionDataFiles.add(new File(e)));
+
         ReportGenerator generator = new ReportGenerator(
                 title,
-                new File(executionData),
+                executionDataFiles,
                 classDirectories,
                 null,
                 sourceDir != null ? new File(sourceDir) : null,
@@ -385,6 +462,8 @@ public class ReportGenerator {
                 includes,
                 excludes
         );
+        generator.setSessionFilter(sessionFilter);
+        generator.setWorkers(workers);
         generator.create();
     }
 }
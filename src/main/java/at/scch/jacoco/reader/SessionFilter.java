@@ -0,0 +1,121 @@
+package at.scch.jacoco.reader;
+
+import org.jacoco.core.data.SessionInfo;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Selects the sessions of an exec file that should be read.
+ * The execution data of sessions that are not selected is skipped while reading the exec file,
+ * so it is neither kept in memory nor analyzed.
+ * <p>
+ * Sessions are selected by their ID, given as explicit IDs or as patterns with the wildcard characters * and ?,
+ * and by the time window they were recorded in. A session has to match all given criteria,
+ * for the ID it is enough to match one of the IDs or patterns.
+ * A filter is immutable, the with-methods return a new filter with an additional criterion.
+ */
+public class SessionFilter {
+
+	/**
+	 * Filter that selects all sessions.
+	 */
+	public static final SessionFilter ALL = new SessionFilter(Collections.emptySet(), null, Long.MIN_VALUE, Long.MAX_VALUE);
+
+	private final Set<String> ids;
+
+	/**
+	 * Patterns of the IDs, compiled into a single expression, or null if there are none.
+	 */
+	private final Pattern idPattern;
+
+	private final long from;
+
+	private final long to;
+
+	private SessionFilter(Set<String> ids, Pattern idPattern, long from, long to) {
+		super();
+		this.ids = ids;
+		this.idPattern = idPattern;
+		this.from = from;
+		this.to = to;
+	}
+
+	/**
+	 * @param ids - IDs of the sessions to select
+	 * @return - filter that also selects the sessions with the given IDs
+	 */
+	public SessionFilter withIds(Collection<String> ids) {
+		Set<String> union = new HashSet<>(this.ids);
+		union.addAll(ids);
+		return new SessionFilter(union, idPattern, from, to);
+	}
+
+	/**
+	 * @param patterns - patterns of the IDs of the sessions to select, may use the wildcard characters * and ?
+	 * @return - filter that also selects the sessions with IDs matching one of the patterns
+	 */
+	public SessionFilter withIdPatterns(Collection<String> patterns) {
+		StringBuilder regex = new StringBuilder();
+		if (idPattern != null) {
+			regex.append(idPattern.pattern());
+		}
+		for (String pattern : patterns) {
+			if (regex.length() > 0) {
+				regex.append('|');
+			}
+			regex.append(getRegexFromPattern(pattern));
+		}
+		return new SessionFilter(ids, regex.length() == 0 ? idPattern : Pattern.compile(regex.toString()), from, to);
+	}
+
+	/**
+	 * @param from - earliest start time stamp of a session to select, in milliseconds
+	 * @param to - latest dump time stamp of a session to select, in milliseconds
+	 * @return - filter that only selects the sessions recorded within the time window
+	 */
+	public SessionFilter withTimeWindow(long from, long to) {
+		return new SessionFilter(ids, idPattern, Math.max(this.from, from), Math.min(this.to, to));
+	}
+
+	/**
+	 * @param info - session info, as read from the exec file
+	 * @return - whether the session is selected
+	 */
+	public boolean accept(SessionInfo info) {
+		if (info.getStartTimeStamp() < from || info.getDumpTimeStamp() > to) {
+			return false;
+		}
+		return accept(info.getId());
+	}
+
+	/**
+	 * @param id - session ID
+	 * @return - whether a session with this ID is selected, not considering the time window
+	 */
+	public boolean accept(String id) {
+		if (ids.isEmpty() && idPattern == null) {
+			return true;
+		}
+		return ids.contains(id) || (idPattern != null && idPattern.matcher(id).matches());
+	}
+
+	private static String getRegexFromPattern(String pattern) {
+		StringBuilder regex = new StringBuilder("(?:");
+		int start = 0;
+		for (int i = 0; i < pattern.length(); i++) {
+			char c = pattern.charAt(i);
+			if (c == '*' || c == '?') {
+				if (i > start) {
+					regex.append(Pattern.quote(pattern.substring(start, i)));
+				}
+				regex.append(c == '*' ? ".*" : ".");
+				start = i + 1;
+			}
+		}
+		if (start < pattern.length()) {
+			regex.append(Pattern.quote(pattern.substring(start)));
+		}
+		return regex.append(')').toString();
+	}
+}
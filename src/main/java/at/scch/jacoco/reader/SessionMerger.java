@@ -0,0 +1,141 @@
+package at.scch.jacoco.reader;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
+
+/**
+ * Merges many sessions into their union or intersection.
+ * Unions of many sessions are built on the fork-join pool of the calling task, or else the common fork-join pool:
+ * groups of sessions are merged in one pass each, the groups are merged pairwise in a tree. Merging keeps the order of the sessions,
+ * so the result is the same as if the sessions were merged one after another.
+ * Sessions are only obtained when their group is merged, so lazily built sessions are built by all workers,
+ * and only the sessions of the groups currently merged are kept.
+ * <p>
+ * Intersections, and unions of few sessions or without a second worker, are merged one after another:
+ * an intersection shrinks with every session and stops at the first empty one, which the tree can't do as early.
+ */
+final class SessionMerger {
+
+	/**
+	 * Number of sessions merged in one pass.
+	 */
+	private static final int GROUP_SIZE = 64;
+
+	/**
+	 * Number of sessions from which a union is built in parallel.
+	 * On one core the tree is not faster than merging one after another, so it only pays off with many sessions to split.
+	 */
+	private static final int PARALLEL_THRESHOLD = 1024;
+
+	private final String id;
+
+	private final LineIndex index;
+
+	private final boolean union;
+
+	/**
+	 * Set once an intersection is empty, the remaining groups are skipped.
+	 */
+	private volatile boolean empty;
+
+	/**
+	 * @param id - id of the merged session
+	 * @param index - index of the merged session, or null for the index of the first session
+	 * @param union - whether the union or the intersection is built
+	 */
+	SessionMerger(String id, LineIndex index, boolean union) {
+		this.id = id;
+		this.index = index;
+		this.union = union;
+	}
+
+	/**
+	 * @param sessions - sessions in the order they are merged
+	 * @return - merged session
+	 */
+	JacocoSession merge(List<? extends Supplier<JacocoSession>> sessions) {
+		if (!union || sessions.size() < PARALLEL_THRESHOLD || getParallelism() < 2) {
+			return mergeSequentially(sessions);
+		}
+		return new MergeTask(sessions).invoke();
+	}
+
+	/**
+	 * @return - parallelism of the pool the tree is merged on, the pool of the calling task or else the common pool
+	 */
+	private static int getParallelism() {
+		ForkJoinPool pool = ForkJoinTask.getPool();
+		return pool != null ? pool.getParallelism() : ForkJoinPool.getCommonPoolParallelism();
+	}
+
+	private JacocoSession mergeSequentially(List<? extends Supplier<JacocoSession>> sessions) {
+		if (sessions.isEmpty()) {
+			return new JacocoSession(id);
+		}
+		JacocoSession merged;
+		if (union) {
+			merged = new JacocoSession(id);
+			for (Supplier<JacocoSession> session : sessions) {
+				merged.add(session.get());
+			}
+		} else {
+			merged = sessions.get(0).get().copy(id);
+			for (int i = 1; i < sessions.size() && !merged.isEmpty(); i++) {
+				merged.retain(sessions.get(i).get());
+			}
+		}
+		return index == null || merged.isEmpty() ? merged : merged.in(index);
+	}
+
+	private JacocoSession mergeGroup(List<? extends Supplier<JacocoSession>> group) {
+		JacocoSession[] sessions = new JacocoSession[group.size()];
+		for (int i = 0; i < sessions.length; i++) {
+			if (empty) {
+				return new JacocoSession(id);
+			}
+			sessions[i] = group.get(i).get();
+		}
+		JacocoSession merged = union
+				? JacocoSession.union(id, index, List.of(sessions))
+				: JacocoSession.intersection(id, index, List.of(sessions));
+		if (!union && merged.isEmpty()) {
+			empty = true;
+		}
+		return merged;
+	}
+
+	private class MergeTask extends RecursiveTask<JacocoSession> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final List<? extends Supplier<JacocoSession>> sessions;
+
+		MergeTask(List<? extends Supplier<JacocoSession>> sessions) {
+			this.sessions = sessions;
+		}
+
+		@Override
+		protected JacocoSession compute() {
+			if (sessions.size() <= GROUP_SIZE) {
+				return mergeGroup(sessions);
+			}
+			int middle = sessions.size() / 2;
+			MergeTask first = new MergeTask(sessions.subList(0, middle));
+			MergeTask second = new MergeTask(sessions.subList(middle, sessions.size()));
+			second.fork();
+			JacocoSession merged = first.compute();
+			JacocoSession other = second.join();
+			if (union) {
+				merged.add(other);
+			} else if (empty) {
+				return new JacocoSession(id);
+			} else {
+				merged.retain(other);
+			}
+			return merged;
+		}
+	}
+}
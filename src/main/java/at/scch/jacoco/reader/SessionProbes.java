@@ -0,0 +1,119 @@
+package at.scch.jacoco.reader;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compact execution data of a session.
+ * Keeps the probes of the classes that were hit as bits, instead of one boolean per probe.
+ */
+class SessionProbes {
+
+	/**
+	 * Session ID
+	 */
+	private final String id;
+
+	/**
+	 * Executed probes as bits, by class id.
+	 */
+	private final Map<Long, long[]> probes;
+
+	/**
+	 * Number of probes, by class id, as the bits only tell the number of words.
+	 */
+	private final Map<Long, Integer> probeCounts;
+
+	SessionProbes(String id) {
+		this.id = id;
+		this.probes = new HashMap<>();
+		this.probeCounts = new HashMap<>();
+	}
+
+	String getId() {
+		return id;
+	}
+
+	/**
+	 * @return - executed probes as bits, by class id
+	 */
+	Map<Long, long[]> getProbes() {
+		return Collections.unmodifiableMap(probes);
+	}
+
+	/**
+	 * Merges the executed probes of a class into this session.
+	 * @param classId - id of the class
+	 * @param name - VM name of the class
+	 * @param executed - probe array of the class
+	 * @throws IllegalStateException if the session has probes of the class with another number of probes
+	 */
+	void addProbes(long classId, String name, boolean[] executed) {
+		long[] bits = probes.get(classId);
+		if (bits == null) {
+			probes.put(classId, toBits(executed));
+			probeCounts.put(classId, executed.length);
+		} else {
+			assertCompatible(classId, name, executed.length);
+			for (int i = 0; i < executed.length; i++) {
+				if (executed[i]) {
+					bits[i >>> 6] |= 1L << i;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Merges the executed probes of a class into this session.
+	 * @param classId - id of the class
+	 * @param name - VM name of the class, or null if it is not known
+	 * @param executed - executed probes as bits
+	 * @param probeCount - number of probes of the class
+	 * @throws IllegalStateException if the session has probes of the class with another number of probes
+	 */
+	void addProbes(long classId, String name, long[] executed, int probeCount) {
+		long[] bits = probes.get(classId);
+		if (bits == null) {
+			probes.put(classId, executed);
+			probeCounts.put(classId, probeCount);
+		} else {
+			assertCompatible(classId, name, probeCount);
+			for (int i = 0; i < bits.length; i++) {
+				bits[i] |= executed[i];
+			}
+		}
+	}
+
+	/**
+	 * Like {@link org.jacoco.core.data.ExecutionData#assertCompatibility}, the number of probes must be the same.
+	 */
+	private void assertCompatible(long classId, String name, int probeCount) {
+		if (probeCounts.get(classId).intValue() != probeCount) {
+			String clazz = name == null ? "" : name + " ";
+			throw new IllegalStateException(String.format("Incompatible execution data for class %swith id %016x.",
+					clazz, Long.valueOf(classId)));
+		}
+	}
+
+	/**
+	 * Merges the executed probes of another session into this session.
+	 * @param other - session, its probe arrays are taken over and must not be used afterwards
+	 * @throws IllegalStateException if the sessions have probes of a class with another number of probes
+	 */
+	void merge(SessionProbes other) {
+		for (Map.Entry<Long, long[]> entry : other.probes.entrySet()) {
+			addProbes(entry.getKey(), null, entry.getValue(), other.probeCounts.get(entry.getKey()).intValue());
+		}
+	}
+
+	static long[] toBits(boolean[] executed) {
+		long[] bits = new long[(executed.length + 63) >>> 6];
+		for (int i = 0; i < executed.length; i++) {
+			if (executed[i]) {
+				bits[i >>> 6] |= 1L << i;
+			}
+		}
+		return bits;
+	}
+}
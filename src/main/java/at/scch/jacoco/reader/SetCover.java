@@ -0,0 +1,273 @@
+package at.scch.jacoco.reader;
+
+import java.util.*;
+
+/**
+ * Selects few sessions that together cover as much as all sessions, by lazy greedy set cover,
+ * or orders all sessions by the coverage they add to the sessions before them.
+ * Every session is weighed by the coverage it adds to the sessions selected so far, divided by its cost.
+ * The weight of a session only decreases as sessions are selected, so the weights are kept in a priority queue
+ * and only the weight of the session on top is computed again, until it stays on top.
+ * <p>
+ * The elements to cover are the lines of the union of all sessions. A session covers a line for the
+ * instruction and branch criteria if it covers the line with the coverage the union keeps, lines are weighed
+ * by their instructions or branches.
+ */
+final class SetCover {
+
+	private final JacocoSession[] sessions;
+
+	private final JacocoSession union;
+
+	private final String[] ids;
+
+	/**
+	 * Lines every session covers, in the index of the union.
+	 */
+	private final LineBitmap[] lines;
+
+	private final double[] costs;
+
+	/**
+	 * Weight of every line by its id, or null if every line weighs 1.
+	 */
+	private final int[] weights;
+
+	private final JacocoSessionSelection.Criterion criterion;
+
+	/**
+	 * @param sessions - sessions to select from, in the order of the report
+	 * @param costs - cost of a session by its ID, sessions without a cost cost 1
+	 * @param criterion - coverage to reach
+	 */
+	SetCover(JacocoSession[] sessions, Map<String, Double> costs, JacocoSessionSelection.Criterion criterion) {
+		this.criterion = criterion;
+		this.sessions = sessions;
+		this.ids = new String[sessions.length];
+		this.lines = new LineBitmap[sessions.length];
+		this.costs = new double[sessions.length];
+		this.union = JacocoSession.union("union", null, Arrays.asList(sessions));
+		for (int s = 0; s < sessions.length; s++) {
+			ids[s] = sessions[s].getId();
+			this.costs[s] = costs == null ? 1 : costs.getOrDefault(ids[s], 1.0);
+		}
+		// sessions are compared to the union on all workers
+		Arrays.parallelSetAll(lines, s -> sessions[s].isEmpty() ? new LineBitmap()
+				: criterion == JacocoSessionSelection.Criterion.LINES ? sessions[s].getLines(union.getIndex())
+				: sessions[s].getLinesCoveredAs(union));
+		this.weights = criterion == JacocoSessionSelection.Criterion.LINES ? null
+				: union.getCountsById(criterion == JacocoSessionSelection.Criterion.INSTRUCTIONS);
+	}
+
+	/**
+	 * @param deadline - time in milliseconds, see {@link System#currentTimeMillis()}, to stop selecting at, or 0
+	 * @return - selected sessions
+	 */
+	JacocoSessionSelection select(long deadline) {
+		LineBitmap covered = new LineBitmap();
+		long total = weigh(unionOfAll(), covered);
+		long coveredWeight = 0;
+		List<Integer> selected = new ArrayList<>();
+
+		PriorityQueue<Candidate> queue = createQueue(getFullGains(), null);
+		while (coveredWeight < total) {
+			if (deadline > 0 && System.currentTimeMillis() >= deadline) {
+				break;
+			}
+			Candidate candidate = pollBest(queue, covered);
+			if (candidate == null) {
+				break;
+			}
+			selected.add(candidate.session);
+			covered.or(lines[candidate.session]);
+			coveredWeight += candidate.gain;
+		}
+		if (criterion == JacocoSessionSelection.Criterion.BRANCHES && coveredWeight == total) {
+			addFirstCovering(selected);
+		}
+		List<String> selectedIds = new ArrayList<>(selected.size());
+		for (int session : selected) {
+			selectedIds.add(ids[session]);
+		}
+		return new JacocoSessionSelection(criterion, selectedIds, coveredWeight, total);
+	}
+
+	/**
+	 * Orders all sessions by additional coverage: the next session is the one adding the most coverage per cost
+	 * to the sessions before it. Once no remaining session adds coverage, the coverage is reset and the remaining
+	 * sessions are ordered the same way, sessions covering nothing come last, in the order of the report.
+	 * @return - session IDs in additional coverage order, computed while iterating
+	 */
+	Iterator<String> prioritize() {
+		return new Iterator<String>() {
+
+			private final long[] fullGains = getFullGains();
+
+			private final boolean[] ordered = new boolean[ids.length];
+
+			private LineBitmap covered = new LineBitmap();
+
+			private PriorityQueue<Candidate> queue = createQueue(fullGains, ordered);
+
+			private int remaining = ids.length;
+
+			/**
+			 * Next session covering nothing, once all others are ordered.
+			 */
+			private int uncovering = 0;
+
+			@Override
+			public boolean hasNext() {
+				return remaining > 0;
+			}
+
+			@Override
+			public String next() {
+				if (remaining == 0) {
+					throw new NoSuchElementException();
+				}
+				Candidate candidate = pollBest(queue, covered);
+				if (candidate == null) {
+					// saturated, start over with the sessions not ordered yet
+					covered = new LineBitmap();
+					queue = createQueue(fullGains, ordered);
+					candidate = pollBest(queue, covered);
+				}
+				int session;
+				if (candidate != null) {
+					session = candidate.session;
+					covered.or(lines[session]);
+				} else {
+					while (ordered[uncovering]) {
+						uncovering++;
+					}
+					session = uncovering;
+				}
+				ordered[session] = true;
+				remaining--;
+				return ids[session];
+			}
+		};
+	}
+
+	/**
+	 * @return - coverage of every session on its own, computed on all workers
+	 */
+	private long[] getFullGains() {
+		LineBitmap none = new LineBitmap();
+		long[] gains = new long[ids.length];
+		Arrays.parallelSetAll(gains, s -> weigh(lines[s], none));
+		return gains;
+	}
+
+	/**
+	 * @param gains - gain of every session
+	 * @param excluded - sessions left out, or null
+	 * @return - queue of the sessions with a gain, by gain per cost, ties by the order of the sessions
+	 */
+	private PriorityQueue<Candidate> createQueue(long[] gains, boolean[] excluded) {
+		PriorityQueue<Candidate> queue = new PriorityQueue<>();
+		for (int s = 0; s < ids.length; s++) {
+			if (gains[s] > 0 && (excluded == null || !excluded[s])) {
+				queue.add(new Candidate(s, gains[s], costs[s]));
+			}
+		}
+		return queue;
+	}
+
+	/**
+	 * Takes the session adding the most coverage per cost from the queue.
+	 * Gains in the queue may be outdated, only the gain of the session on top is computed again, until it stays on top.
+	 * @return - session with its current gain, or null if no session adds coverage
+	 */
+	private Candidate pollBest(PriorityQueue<Candidate> queue, LineBitmap covered) {
+		while (!queue.isEmpty()) {
+			Candidate candidate = queue.poll();
+			long gain = weigh(lines[candidate.session], covered);
+			if (gain == 0) {
+				continue;
+			}
+			if (gain < candidate.gain) {
+				candidate = new Candidate(candidate.session, gain, costs[candidate.session]);
+				if (!queue.isEmpty() && queue.peek().compareTo(candidate) < 0) {
+					queue.add(candidate);
+					continue;
+				}
+			}
+			return candidate;
+		}
+		return null;
+	}
+
+	/**
+	 * The union keeps the branches of the first session that covers a line with the most instructions.
+	 * A selected session covering a line with as many instructions, but other branches, can therefore hide the
+	 * branches of the session selected for the line. For such lines the first session covering them with the coverage
+	 * of the union is selected as well, it comes before all sessions covering the line with as many instructions.
+	 */
+	private void addFirstCovering(List<Integer> selected) {
+		while (true) {
+			int[] order = new int[selected.size()];
+			for (int i = 0; i < order.length; i++) {
+				order[i] = selected.get(i);
+			}
+			Arrays.sort(order);
+			List<JacocoSession> inOrder = new ArrayList<>(order.length);
+			for (int session : order) {
+				inOrder.add(sessions[session]);
+			}
+			LineBitmap hidden = LineBitmap.orAll(Arrays.asList(lines));
+			hidden.andNot(JacocoSession.union("selected", union.getIndex(), inOrder).getLinesCoveredAs(union));
+			boolean added = false;
+			for (int lineId : hidden.toArray()) {
+				if (weights[lineId] == 0) {
+					continue;
+				}
+				for (int session = 0; session < lines.length; session++) {
+					if (lines[session].contains(lineId)) {
+						if (!selected.contains(session)) {
+							selected.add(session);
+							added = true;
+						}
+						break;
+					}
+				}
+			}
+			if (!added) {
+				return;
+			}
+		}
+	}
+
+	private LineBitmap unionOfAll() {
+		return LineBitmap.orAll(Arrays.asList(lines));
+	}
+
+	private long weigh(LineBitmap session, LineBitmap covered) {
+		return session.weightAndNot(covered, weights);
+	}
+
+	private static final class Candidate implements Comparable<Candidate> {
+
+		private final int session;
+
+		private final long gain;
+
+		private final double priority;
+
+		Candidate(int session, long gain, double cost) {
+			this.session = session;
+			this.gain = gain;
+			this.priority = cost > 0 ? gain / cost : Double.POSITIVE_INFINITY;
+		}
+
+		/**
+		 * Highest priority first, then the session added to the report first.
+		 */
+		@Override
+		public int compareTo(Candidate other) {
+			int byPriority = Double.compare(other.priority, priority);
+			return byPriority != 0 ? byPriority : Integer.compare(session, other.session);
+		}
+	}
+}
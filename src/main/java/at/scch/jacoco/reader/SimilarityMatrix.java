@@ -0,0 +1,224 @@
+package at.scch.jacoco.reader;
+
+import java.util.*;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Pairwise similarity of the covered lines of two lists of sessions.
+ * Only the sizes of the intersections are counted, chunk by chunk with popcounts, no intersection is built.
+ * The pairs are split into tiles of rows and columns, so a tile compares few bitmaps many times,
+ * and the tiles are computed on the common fork-join pool.
+ */
+final class SimilarityMatrix {
+
+	/**
+	 * Number of rows and columns of a tile.
+	 */
+	private static final int TILE_SIZE = 64;
+
+	/**
+	 * Orders pairs from the least to the most similar, equally similar pairs by their position in reverse.
+	 */
+	private static final Comparator<Pair> WORST_FIRST = Comparator.<Pair>comparingDouble(p -> p.similarity)
+			.thenComparing(Comparator.<Pair>comparingInt(p -> p.row).thenComparingInt(p -> p.column).reversed());
+
+	private final String[] rowIds;
+
+	private final LineBitmap[] rows;
+
+	private final String[] columnIds;
+
+	private final LineBitmap[] columns;
+
+	/**
+	 * Whether rows and columns are the same sessions, then only the pairs above the diagonal are compared.
+	 */
+	private final boolean symmetric;
+
+	private final JacocoSessionSimilarity.Measure measure;
+
+	/**
+	 * @param rowIds - session IDs of the rows
+	 * @param rows - covered lines of the rows, in one line index with the columns
+	 * @param columnIds - session IDs of the columns
+	 * @param columns - covered lines of the columns
+	 * @param symmetric - whether rows and columns are the same sessions
+	 * @param measure - similarity measure
+	 */
+	SimilarityMatrix(String[] rowIds, LineBitmap[] rows, String[] columnIds, LineBitmap[] columns, boolean symmetric,
+					 JacocoSessionSimilarity.Measure measure) {
+		this.rowIds = rowIds;
+		this.rows = rows;
+		this.columnIds = columnIds;
+		this.columns = columns;
+		this.symmetric = symmetric;
+		this.measure = measure;
+	}
+
+	/**
+	 * @return - similarity of every row to every column
+	 */
+	double[][] compute() {
+		double[][] matrix = new double[rows.length][columns.length];
+		new MatrixTask(0, tiles(rows.length), matrix).invoke();
+		if (symmetric) {
+			for (int row = 0; row < rows.length; row++) {
+				matrix[row][row] = measure.of(rows[row].cardinality(), rows[row].cardinality(), rows[row].cardinality());
+				for (int column = 0; column < row; column++) {
+					matrix[row][column] = matrix[column][row];
+				}
+			}
+		}
+		return matrix;
+	}
+
+	/**
+	 * @param k - number of pairs, or 0 for all pairs
+	 * @return - the k most similar pairs of a row and a column session, most similar first,
+	 * a session is not paired with itself
+	 */
+	List<JacocoSessionSimilarity> top(int k) {
+		PriorityQueue<Pair> top = new TopTask(0, tiles(rows.length), k).invoke();
+		List<Pair> pairs = new ArrayList<>(top);
+		pairs.sort(WORST_FIRST.reversed());
+		List<JacocoSessionSimilarity> similarities = new ArrayList<>(pairs.size());
+		for (Pair pair : pairs) {
+			similarities.add(new JacocoSessionSimilarity(rowIds[pair.row], columnIds[pair.column],
+					rows[pair.row].cardinality(), columns[pair.column].cardinality(), pair.common, pair.similarity));
+		}
+		return similarities;
+	}
+
+	private static int tiles(int length) {
+		return (length + TILE_SIZE - 1) / TILE_SIZE;
+	}
+
+	/**
+	 * Compares the rows of a row tile with all columns, tile by tile.
+	 */
+	private void compareTile(int rowTile, PairConsumer consumer) {
+		int rowFrom = rowTile * TILE_SIZE;
+		int rowTo = Math.min(rowFrom + TILE_SIZE, rows.length);
+		for (int columnFrom = symmetric ? rowFrom : 0; columnFrom < columns.length; columnFrom += TILE_SIZE) {
+			int columnTo = Math.min(columnFrom + TILE_SIZE, columns.length);
+			for (int row = rowFrom; row < rowTo; row++) {
+				LineBitmap a = rows[row];
+				int linesA = a.cardinality();
+				for (int column = symmetric ? Math.max(columnFrom, row + 1) : columnFrom; column < columnTo; column++) {
+					if (!symmetric && rowIds[row].equals(columnIds[column])) {
+						continue;
+					}
+					LineBitmap b = columns[column];
+					int common = linesA == 0 ? 0 : a.andCardinality(b);
+					consumer.accept(row, column, common, measure.of(linesA, b.cardinality(), common));
+				}
+			}
+		}
+	}
+
+	private interface PairConsumer {
+		void accept(int row, int column, int common, double similarity);
+	}
+
+	private static final class Pair {
+
+		private final int row;
+
+		private final int column;
+
+		private final int common;
+
+		private final double similarity;
+
+		Pair(int row, int column, int common, double similarity) {
+			this.row = row;
+			this.column = column;
+			this.common = common;
+			this.similarity = similarity;
+		}
+	}
+
+	private class MatrixTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int from;
+
+		private final int to;
+
+		private final double[][] matrix;
+
+		MatrixTask(int from, int to, double[][] matrix) {
+			this.from = from;
+			this.to = to;
+			this.matrix = matrix;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= 1) {
+				for (int rowTile = from; rowTile < to; rowTile++) {
+					compareTile(rowTile, (row, column, common, similarity) -> matrix[row][column] = similarity);
+				}
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new MatrixTask(from, middle, matrix), new MatrixTask(middle, to, matrix));
+		}
+	}
+
+	private class TopTask extends RecursiveTask<PriorityQueue<Pair>> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int from;
+
+		private final int to;
+
+		/**
+		 * Number of pairs to keep, or 0 for all pairs.
+		 */
+		private final int k;
+
+		TopTask(int from, int to, int k) {
+			this.from = from;
+			this.to = to;
+			this.k = k;
+		}
+
+		@Override
+		protected PriorityQueue<Pair> compute() {
+			if (to - from <= 1) {
+				PriorityQueue<Pair> top = new PriorityQueue<>(WORST_FIRST);
+				for (int rowTile = from; rowTile < to; rowTile++) {
+					compareTile(rowTile, (row, column, common, similarity) -> {
+						if (k <= 0 || top.size() < k) {
+							top.add(new Pair(row, column, common, similarity));
+						} else if (similarity >= top.peek().similarity) {
+							Pair pair = new Pair(row, column, common, similarity);
+							if (WORST_FIRST.compare(pair, top.peek()) > 0) {
+								top.poll();
+								top.add(pair);
+							}
+						}
+					});
+				}
+				return top;
+			}
+			int middle = (from + to) >>> 1;
+			TopTask second = new TopTask(middle, to, k);
+			second.fork();
+			PriorityQueue<Pair> top = new TopTask(from, middle, k).compute();
+			for (Pair pair : second.join()) {
+				if (k <= 0 || top.size() < k) {
+					top.add(pair);
+				} else if (WORST_FIRST.compare(pair, top.peek()) > 0) {
+					top.poll();
+					top.add(pair);
+				}
+			}
+			return top;
+		}
+	}
+}
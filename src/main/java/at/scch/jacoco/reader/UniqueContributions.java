@@ -0,0 +1,153 @@
+package at.scch.jacoco.reader;
+
+import java.util.*;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
+
+/**
+ * Unique contribution of every session of a report, i.e. the lines no other session covers.
+ * One pass over all sessions collects the lines covered by any session and the lines covered by more than one,
+ * a second pass removes the lines covered more than once from every session.
+ * Both passes work on groups of sessions on the common fork-join pool.
+ * Every session is obtained once, in the first pass, and kept until the second pass took its contribution,
+ * so lazily built sessions are not built again.
+ */
+final class UniqueContributions {
+
+	/**
+	 * Number of sessions handled by one task.
+	 */
+	private static final int GROUP_SIZE = 64;
+
+	private final List<? extends Supplier<JacocoSession>> sessions;
+
+	/**
+	 * Index the lines of all sessions are counted in.
+	 */
+	private final LineIndex index;
+
+	/**
+	 * Sessions obtained in the first pass, until the second pass took their contribution.
+	 */
+	private final JacocoSession[] built;
+
+	/**
+	 * @param index - line index of the structure of the sessions
+	 * @param sessions - sessions, each obtained once
+	 */
+	UniqueContributions(LineIndex index, List<? extends Supplier<JacocoSession>> sessions) {
+		this.index = index;
+		this.sessions = sessions;
+		this.built = new JacocoSession[sessions.size()];
+	}
+
+	/**
+	 * @return - unique contribution of every session, in the order of the sessions
+	 */
+	List<JacocoSession> compute() {
+		JacocoSession[] unique = new JacocoSession[sessions.size()];
+		Cover cover = new CountTask(0, sessions.size()).invoke();
+		JacocoSession shared = JacocoSession.of("shared", index, cover.twice);
+		new CollectTask(0, sessions.size(), shared, unique).invoke();
+		return Arrays.asList(unique);
+	}
+
+	/**
+	 * Lines covered by at least one session, and by more than one session, of a range of sessions.
+	 */
+	private static final class Cover {
+
+		private final LineBitmap once = new LineBitmap();
+
+		private final LineBitmap twice = new LineBitmap();
+
+		void add(LineBitmap lines) {
+			LineBitmap both = lines.copy();
+			both.and(once);
+			twice.or(both);
+			once.or(lines);
+		}
+
+		void add(Cover other) {
+			LineBitmap both = other.once.copy();
+			both.and(once);
+			twice.or(both);
+			twice.or(other.twice);
+			once.or(other.once);
+		}
+	}
+
+	private class CountTask extends RecursiveTask<Cover> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int from;
+
+		private final int to;
+
+		CountTask(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Cover compute() {
+			if (to - from <= GROUP_SIZE) {
+				Cover cover = new Cover();
+				for (int i = from; i < to; i++) {
+					JacocoSession session = sessions.get(i).get();
+					built[i] = session;
+					if (!session.isEmpty()) {
+						cover.add(session.getLines(index));
+					}
+				}
+				return cover;
+			}
+			int middle = (from + to) >>> 1;
+			CountTask second = new CountTask(middle, to);
+			second.fork();
+			Cover cover = new CountTask(from, middle).compute();
+			cover.add(second.join());
+			return cover;
+		}
+	}
+
+	private class CollectTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int from;
+
+		private final int to;
+
+		/**
+		 * Lines covered by more than one session.
+		 */
+		private final JacocoSession shared;
+
+		private final JacocoSession[] unique;
+
+		CollectTask(int from, int to, JacocoSession shared, JacocoSession[] unique) {
+			this.from = from;
+			this.to = to;
+			this.shared = shared;
+			this.unique = unique;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= GROUP_SIZE) {
+				for (int i = from; i < to; i++) {
+					JacocoSession session = built[i];
+					built[i] = null;
+					unique[i] = session.copy("unique " + session.getId());
+					unique[i].remove(shared);
+				}
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new CollectTask(from, middle, shared, unique), new CollectTask(middle, to, shared, unique));
+		}
+	}
+}
@@ -0,0 +1,234 @@
+package at.scch.jacoco.reader;
+
+import org.jacoco.core.internal.data.CRC64;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
+
+import java.io.*;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static at.scch.jacoco.reader.ProbeAnalysisTest.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class AnalysisCacheTest {
+
+	@TempDir
+	Path tempDir;
+
+	private File bins;
+
+	private Map<String, byte[]> classes;
+
+	/**
+	 * Class files that are part of the analysis, i.e. without synthetic classes.
+	 */
+	private List<byte[]> analyzedClasses;
+
+	private File cacheDir;
+
+	@BeforeEach
+	void copyClasses() throws IOException, URISyntaxException {
+		bins = tempDir.resolve("bin").toFile();
+		classes = copyFixtures(bins);
+		cacheDir = tempDir.resolve("cache").toFile();
+		analyzedClasses = new ArrayList<>();
+		for (byte[] buffer : classes.values()) {
+			List<AnalyzedClass> analyzed = new ArrayList<>();
+			new ProbeIndexAnalyzer(analyzed::add, null).analyzeClass(buffer, "test");
+			if (!analyzed.isEmpty()) {
+				analyzedClasses.add(buffer);
+			}
+		}
+	}
+
+	@Test
+	void cachedClassesMatchAnalysis() throws IOException {
+		File execFile = tempDir.resolve("jacoco.exec").toFile();
+		List<String> sessionIDs = writeExecFile(execFile, classes);
+		JacocoCoverageReport expected = JacocoReportGenerator.parseExecFile(execFile, createProbeIndex(null, 1));
+
+		// misses fill the cache, hits read the entries and mark them as used
+		AnalysisCache cache = new AnalysisCache(cacheDir, Long.MAX_VALUE);
+		List<JacocoCoverageReport> reports = new ArrayList<>();
+		reports.add(JacocoReportGenerator.parseExecFile(execFile, createProbeIndex(cache, 1)));
+		Map<Path, Object> fileKeys = getFileKeys();
+		assertEquals(analyzedClasses.size(), fileKeys.size());
+		setLastUsed(0);
+		reports.add(JacocoReportGenerator.parseExecFile(execFile, createProbeIndex(cache, 1)));
+		reports.add(JacocoReportGenerator.parseExecFile(execFile, createProbeIndex(cache, 3)));
+		CompactStructure structure = JacocoReportGenerator.createCompactStructure(Collections.singleton(bins), Collections.emptySet(), null, null, 1, cache);
+		CompactStructure expectedStructure = CompactStructure.of(expected.getPackages());
+		assertEquals(expectedStructure.getNumberOfClasses(), structure.getNumberOfClasses());
+		assertEquals(expectedStructure.getNumberOfMethods(), structure.getNumberOfMethods());
+		assertEquals(expectedStructure.getNumberOfLines(), structure.getNumberOfLines());
+		assertEquals(fileKeys, getFileKeys(), "entries are not written again");
+		for (Path file : fileKeys.keySet()) {
+			assertTrue(Files.getLastModifiedTime(file).toMillis() > 0, file.toString());
+		}
+
+		for (JacocoCoverageReport report : reports) {
+			assertEquals(getLines(expected), getLines(report));
+			for (String sessionID : sessionIDs) {
+				assertEquals(getLineCounts(expected.getSession(sessionID)), getLineCounts(report.getSession(sessionID)), sessionID);
+			}
+		}
+	}
+
+	@Test
+	void changedClassIsAnalyzedAgain() throws IOException {
+		AnalysisCache cache = new AnalysisCache(cacheDir, Long.MAX_VALUE);
+		byte[] buffer = analyzedClasses.get(0);
+		AnalyzedClass analyzed = analyze(buffer, cache);
+		assertEquals(CRC64.classId(buffer), analyzed.id);
+		assertEquals(toBytes(analyzed), toBytes(cache.get(analyzed.id)));
+
+		// the same class with an additional field has another class id
+		ClassReader reader = new ClassReader(buffer);
+		ClassWriter writer = new ClassWriter(0);
+		reader.accept(writer, 0);
+		writer.visitField(Opcodes.ACC_PRIVATE, "changed", "I", null, null).visitEnd();
+		byte[] changed = writer.toByteArray();
+		long changedId = CRC64.classId(changed);
+		assertNotEquals(analyzed.id, changedId);
+		assertNull(cache.get(changedId));
+		AnalyzedClass analyzedChanged = analyze(changed, cache);
+		assertEquals(changedId, analyzedChanged.id);
+		assertEquals(analyzed.vmName, analyzedChanged.vmName);
+		assertEquals(2, getFileKeys().size());
+		assertEquals(toBytes(analyzed), toBytes(analyze(buffer, cache)));
+	}
+
+	@Test
+	void damagedOrOutdatedEntriesAreMissing() throws IOException {
+		AnalysisCache cache = new AnalysisCache(cacheDir, Long.MAX_VALUE);
+		byte[] buffer = analyzedClasses.get(0);
+		AnalyzedClass analyzed = analyze(buffer, cache);
+		Path file = getFileKeys().keySet().iterator().next();
+		byte[] content = Files.readAllBytes(file);
+
+		// another format version
+		byte[] outdated = content.clone();
+		outdated[7]--;
+		Files.write(file, outdated);
+		assertNull(cache.get(analyzed.id));
+		// analyzed again and written in the current format
+		assertEquals(toBytes(analyzed), toBytes(analyze(buffer, cache)));
+		assertArrayEquals(content, Files.readAllBytes(file));
+
+		// not a cache entry
+		byte[] magic = content.clone();
+		magic[0]++;
+		Files.write(file, magic);
+		assertNull(cache.get(analyzed.id));
+		// truncated
+		Files.write(file, Arrays.copyOf(content, content.length - 3));
+		assertNull(cache.get(analyzed.id));
+		// entry of another class
+		Files.write(file, content);
+		Files.copy(file, file.resolveSibling(String.format("%016x", analyzed.id + 1) + file.getFileName().toString().substring(16)));
+		assertNull(cache.get(analyzed.id + 1));
+		assertNotNull(cache.get(analyzed.id));
+	}
+
+	@Test
+	void trimEvictsLeastRecentlyUsed() throws IOException {
+		AnalysisCache cache = new AnalysisCache(cacheDir, Long.MAX_VALUE);
+		for (byte[] buffer : analyzedClasses) {
+			analyze(buffer, cache);
+		}
+		List<Path> files = new ArrayList<>(getFileKeys().keySet());
+		assertTrue(files.size() >= 3);
+		// entries used in the order of the files, the first one is used again last
+		for (int i = 0; i < files.size(); i++) {
+			Files.setLastModifiedTime(files.get(i), FileTime.fromMillis(1000L * (i + 1)));
+		}
+		long firstId = Long.parseUnsignedLong(files.get(0).getFileName().toString().substring(0, 16), 16);
+		assertNotNull(cache.get(firstId));
+		List<Path> byLastUse = new ArrayList<>(files.subList(1, files.size()));
+		byLastUse.add(files.get(0));
+
+		// temporary files left over by a failed process are removed once they are old enough
+		Path oldTemp = cacheDir.toPath().resolve("old.class-index.tmp");
+		Path newTemp = cacheDir.toPath().resolve("new.class-index.tmp");
+		Files.write(oldTemp, new byte[10]);
+		Files.setLastModifiedTime(oldTemp, FileTime.fromMillis(0));
+		Files.write(newTemp, new byte[10]);
+
+		Map<Path, Long> sizes = new HashMap<>();
+		long size = 0;
+		for (Path file : files) {
+			sizes.put(file, Files.size(file));
+			size += Files.size(file);
+		}
+		new AnalysisCache(cacheDir, size).trim();
+		assertEquals(new HashSet<>(files), getFileKeys().keySet());
+		assertFalse(Files.exists(oldTemp));
+		assertTrue(Files.exists(newTemp));
+
+		long maxSize = size - 1;
+		new AnalysisCache(cacheDir, maxSize).trim();
+		List<Path> expected = new ArrayList<>(byLastUse);
+		while (size > maxSize) {
+			size -= sizes.get(expected.remove(0));
+		}
+		assertEquals(new HashSet<>(expected), getFileKeys().keySet());
+		assertFalse(getFileKeys().containsKey(files.get(1)), "least recently used entry is evicted");
+
+		new AnalysisCache(cacheDir, sizes.get(files.get(0))).trim();
+		assertEquals(Collections.singleton(files.get(0)), getFileKeys().keySet(), "recently used entry is kept");
+
+		new AnalysisCache(cacheDir, 0).trim();
+		assertTrue(getFileKeys().isEmpty());
+	}
+
+	private JacocoProbeIndex createProbeIndex(AnalysisCache cache, int workers) throws IOException {
+		return JacocoReportGenerator.createProbeIndex(Collections.singleton(bins), Collections.emptySet(), null, null, workers, cache);
+	}
+
+	private static AnalyzedClass analyze(byte[] buffer, AnalysisCache cache) throws IOException {
+		List<AnalyzedClass> analyzed = new ArrayList<>();
+		new ProbeIndexAnalyzer(analyzed::add, cache).analyzeClass(buffer, "test");
+		assertEquals(1, analyzed.size());
+		return analyzed.get(0);
+	}
+
+	private static List<Byte> toBytes(AnalyzedClass analyzedClass) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		analyzedClass.write(new DataOutputStream(out));
+		List<Byte> bytes = new ArrayList<>();
+		for (byte b : out.toByteArray()) {
+			bytes.add(b);
+		}
+		return bytes;
+	}
+
+	/**
+	 * @return - file keys of the cache entries, a file that is written again gets a new key
+	 */
+	private Map<Path, Object> getFileKeys() throws IOException {
+		Map<Path, Object> keys = new TreeMap<>();
+		try (Stream<Path> files = Files.list(cacheDir.toPath())) {
+			for (Path file : files.filter(f -> f.getFileName().toString().endsWith(".class-index")).collect(Collectors.toList())) {
+				keys.put(file, Files.readAttributes(file, BasicFileAttributes.class).fileKey());
+			}
+		}
+		return keys;
+	}
+
+	private void setLastUsed(long time) throws IOException {
+		for (Path file : getFileKeys().keySet()) {
+			Files.setLastModifiedTime(file, FileTime.fromMillis(time));
+		}
+	}
+}
@@ -0,0 +1,127 @@
+package at.scch.jacoco.reader;
+
+import org.jacoco.core.analysis.IClassCoverage;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.ZipEntry;
+
+import static at.scch.jacoco.reader.ProbeAnalysisTest.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClassFileFilterTest {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void withoutPatternsIncludesAll() {
+		for (ClassFileFilter filter : Arrays.asList(new ClassFileFilter(null, null), new ClassFileFilter(Collections.emptySet(), Collections.emptySet()))) {
+			assertFalse(filter.isFiltering());
+			assertTrue(filter.includes("bin/at/scch/Foo.class"));
+			assertTrue(filter.includes("lib.jar"));
+		}
+	}
+
+	/**
+	 * Patterns match the whole path, "." is a package separator, so patterns of class names end with a wildcard.
+	 */
+	@Test
+	void includesMatchEndOfPath() {
+		ClassFileFilter filter = new ClassFileFilter(new HashSet<>(Arrays.asList("at.scch.Foo*", "*.Ba?*")), null);
+		assertTrue(filter.isFiltering());
+		assertTrue(filter.includes("bin/at/scch/Foo.class"));
+		assertTrue(filter.includes("at/scch/Foo$Inner.class"));
+		assertTrue(filter.includes("bin\\at\\scch\\FooBar.class"));
+		assertTrue(filter.includes("bin/at/other/Bar.class"));
+		assertTrue(filter.includes("bin/at/other/Baz.class"));
+		assertFalse(filter.includes("bin/at/other/B.class"));
+		assertFalse(filter.includes("bin/at/scch/sub/Foo.class"));
+		assertFalse(filter.includes("bin/at/scch/Other.class"));
+	}
+
+	@Test
+	void excludesOverrideIncludes() {
+		ClassFileFilter filter = new ClassFileFilter(Collections.singleton("at.scch.*"), new HashSet<>(Arrays.asList("*Test*", "*.internal.*")));
+		assertTrue(filter.includes("bin/at/scch/Foo.class"));
+		assertFalse(filter.includes("bin/at/scch/FooTest.class"));
+		assertFalse(filter.includes("bin/at/scch/internal/Foo.class"));
+		assertFalse(filter.includes("bin/at/other/Foo.class"));
+
+		ClassFileFilter excludesOnly = new ClassFileFilter(null, Collections.singleton("*Test*"));
+		assertTrue(excludesOnly.isFiltering());
+		assertTrue(excludesOnly.includes("bin/at/other/Foo.class"));
+		assertFalse(excludesOnly.includes("bin/at/other/FooTest$1.class"));
+
+		// one filter shared by several threads
+		List<String> paths = IntStream.range(0, 10000).mapToObj(i -> "bin/at/" + (i % 3 == 0 ? "scch" : "other") + "/Foo" + (i % 5 == 0 ? "Test" : "") + i + ".class")
+				.collect(Collectors.toList());
+		List<Boolean> expected = paths.stream().map(filter::includes).collect(Collectors.toList());
+		assertEquals(expected, paths.parallelStream().map(filter::includes).collect(Collectors.toList()));
+	}
+
+	@Test
+	void analysisSkipsFilteredClassFiles() throws IOException, URISyntaxException {
+		// the fixtures split into a class directory and a jar
+		File bins = tempDir.resolve("bin").toFile();
+		Map<String, byte[]> classes = copyFixtures(bins);
+		File jar = tempDir.resolve("fixtures.jar").toFile();
+		try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar))) {
+			for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+				if (entry.getKey().contains("Fixture")) {
+					out.putNextEntry(new ZipEntry(entry.getKey() + ".class"));
+					out.write(entry.getValue());
+					Files.delete(bins.toPath().resolve(entry.getKey() + ".class"));
+				}
+			}
+		}
+
+		Set<String> all = getClassNames(null, null, bins, jar, 1);
+		assertTrue(all.stream().anyMatch(name -> name.endsWith("$Fixture")));
+		assertTrue(all.stream().anyMatch(name -> !name.contains("Fixture")));
+
+		Set<String> includes = Collections.singleton("*Fixture*");
+		Set<String> excludes = Collections.singleton("*Fixture?1*");
+		Set<String> expected = all.stream().filter(name -> name.contains("Fixture")).collect(Collectors.toSet());
+		for (int workers : new int[]{1, 3}) {
+			assertEquals(all, getClassNames(null, null, bins, jar, workers));
+			assertEquals(expected, getClassNames(includes, null, bins, jar, workers));
+			assertEquals(all.stream().filter(name -> !expected.contains(name)).collect(Collectors.toSet()), getClassNames(null, includes, bins, jar, workers));
+			Set<String> included = new HashSet<>(expected);
+			assertTrue(included.removeIf(name -> name.endsWith("$Fixture$1")));
+			assertEquals(included, getClassNames(includes, excludes, bins, jar, workers));
+		}
+	}
+
+	/**
+	 * @return - names of the classes with code analyzed by the probe index and by the JaCoCo analyzer, which must be the same
+	 */
+	private static Set<String> getClassNames(Set<String> includes, Set<String> excludes, File bins, File jar, int workers) throws IOException {
+		Set<String> names = new TreeSet<>();
+		JacocoProbeIndex index = JacocoReportGenerator.createProbeIndex(Collections.singleton(bins), Collections.singleton(jar), includes, excludes, workers);
+		for (JacocoPackage pkg : index.getPackages()) {
+			for (JacocoClass clazz : pkg.getClasses()) {
+				names.add(clazz.getFullName());
+			}
+		}
+		Set<String> analyzed = new TreeSet<>();
+		for (IClassCoverage coverage : JacocoReportGenerator.getCoverageBuilder(new ExecutionDataStore(), Collections.singleton(bins), Collections.singleton(jar), includes, excludes, workers).getClasses()) {
+			if (coverage.getInstructionCounter().getTotalCount() > 0) {
+				analyzed.add(coverage.getName().replace('/', '.'));
+			}
+		}
+		assertEquals(analyzed, names);
+		return names;
+	}
+}
@@ -0,0 +1,107 @@
+package at.scch.jacoco.reader;
+
+import org.jacoco.core.analysis.Analyzer;
+import org.jacoco.core.analysis.IClassCoverage;
+import org.jacoco.core.analysis.ICounter;
+import org.jacoco.core.analysis.IMethodCoverage;
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataStore;
+import org.jacoco.core.internal.data.CRC64;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.*;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import static at.scch.jacoco.reader.ProbeAnalysisTest.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares the classes analyzed on several threads with the classes analyzed by a single JaCoCo analyzer.
+ */
+class ClasspathScannerTest {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void scanMatchesAnalyzer() throws IOException, URISyntaxException {
+		// the fixtures split into a class directory, a jar and a jar within the jar, with files that are not class files
+		File bins = tempDir.resolve("bin").toFile();
+		Map<String, byte[]> classes = copyFixtures(bins);
+		Files.write(bins.toPath().resolve("readme.txt"), "not a class".getBytes());
+		ByteArrayOutputStream inner = new ByteArrayOutputStream();
+		File jar = tempDir.resolve("fixtures.jar").toFile();
+		try (JarOutputStream innerOut = new JarOutputStream(inner); JarOutputStream out = new JarOutputStream(new FileOutputStream(jar))) {
+			out.putNextEntry(new ZipEntry("META-INF/readme.txt"));
+			out.write("not a class".getBytes());
+			out.putNextEntry(new ZipEntry("classes/"));
+			int i = 0;
+			for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+				if (i++ % 3 == 0) {
+					continue;
+				}
+				JarOutputStream target = i % 2 == 0 ? out : innerOut;
+				target.putNextEntry(new ZipEntry("classes/" + entry.getKey() + ".class"));
+				target.write(entry.getValue());
+				Files.delete(bins.toPath().resolve(entry.getKey() + ".class"));
+			}
+			innerOut.finish();
+			out.putNextEntry(new ZipEntry("lib/inner.jar"));
+			out.write(inner.toByteArray());
+		}
+
+		// coverage of all probes executed
+		ExecutionDataStore store = new ExecutionDataStore();
+		for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+			boolean[] probes = new boolean[getProbeCount(entry.getValue())];
+			Arrays.fill(probes, true);
+			store.put(new ExecutionData(CRC64.classId(entry.getValue()), entry.getKey(), probes));
+		}
+
+		Map<String, String> expected = new TreeMap<>();
+		Analyzer analyzer = new Analyzer(store, coverage -> expected.put(coverage.getName(), toString(coverage)));
+		analyzer.analyzeAll(bins);
+		analyzer.analyzeAll(jar);
+		assertTrue(expected.size() >= 3, "classes of the directory, the jar and the inner jar");
+
+		for (int workers : new int[]{1, 2, 4}) {
+			Map<String, String> scanned = Collections.synchronizedMap(new TreeMap<>());
+			new ClasspathScanner(new ClassFileFilter(null, null), workers)
+					.scan(() -> new Analyzer(store, coverage -> assertNull(scanned.put(coverage.getName(), toString(coverage)))),
+							Collections.singleton(bins), Collections.singleton(jar));
+			assertEquals(expected, scanned, "workers " + workers);
+
+			JacocoProbeIndex index = JacocoReportGenerator.createProbeIndex(Collections.singleton(bins), Collections.singleton(jar), null, null, workers);
+			assertEquals(getLines(new JacocoCoverageReport(JacocoReportGenerator.createProbeIndex(Collections.singleton(bins), Collections.singleton(jar)).getPackages())),
+					getLines(new JacocoCoverageReport(index.getPackages())), "workers " + workers);
+		}
+	}
+
+	/**
+	 * @return - id, methods and counters of every line of the class
+	 */
+	private static String toString(IClassCoverage coverage) {
+		StringBuilder string = new StringBuilder(String.format("%016x", coverage.getId()));
+		for (IMethodCoverage method : coverage.getMethods()) {
+			string.append('\n').append(method.getName()).append(method.getDesc())
+					.append(' ').append(toString(method.getInstructionCounter()))
+					.append(' ').append(toString(method.getBranchCounter()))
+					.append(' ').append(toString(method.getComplexityCounter()));
+			for (int line = method.getFirstLine(); line <= method.getLastLine(); line++) {
+				string.append(' ').append(line).append(':').append(toString(method.getLine(line).getInstructionCounter()))
+						.append('/').append(toString(method.getLine(line).getBranchCounter()));
+			}
+		}
+		return string.toString();
+	}
+
+	private static String toString(ICounter counter) {
+		return counter.getCoveredCount() + "-" + counter.getMissedCount();
+	}
+}
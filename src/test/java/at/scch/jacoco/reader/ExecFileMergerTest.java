@@ -0,0 +1,126 @@
+package at.scch.jacoco.reader;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.internal.data.CRC64;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.*;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static at.scch.jacoco.reader.ProbeAnalysisTest.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares reading many exec files on several workers with reading them one after another, or as a single file.
+ */
+class ExecFileMergerTest {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void mergeKeepsOrderOfFiles() throws IOException {
+		List<File> files = new ArrayList<>();
+		for (int i = 0; i < 13; i++) {
+			files.add(new File("file" + i));
+		}
+		ExecFileMerger<List<String>> merger = new ExecFileMerger<>(file -> new ArrayList<>(Collections.singletonList(file.getName())), (a, b) -> {
+			a.addAll(b);
+			return a;
+		});
+		for (int workers = 1; workers <= 8; workers++) {
+			for (int count = 1; count <= files.size(); count++) {
+				List<String> expected = new ArrayList<>();
+				for (File file : files.subList(0, count)) {
+					expected.add(file.getName());
+				}
+				assertEquals(expected, merger.read(files.subList(0, count), workers));
+			}
+		}
+		assertThrows(IOException.class, () -> merger.read(Collections.emptyList(), 4));
+
+		// errors reading a file are passed on
+		ExecFileMerger<List<String>> failing = new ExecFileMerger<>(file -> {
+			if (file.getName().equals("file7")) {
+				throw new FileNotFoundException(file.getName());
+			}
+			return new ArrayList<>();
+		}, (a, b) -> a);
+		assertThrows(FileNotFoundException.class, () -> failing.read(files, 4));
+		assertThrows(FileNotFoundException.class, () -> failing.read(files, 1));
+	}
+
+	@Test
+	void listsExecFilesOfDirectoriesSorted() throws IOException {
+		Path dir = tempDir.resolve("execs");
+		Files.createDirectories(dir.resolve("sub"));
+		for (String name : Arrays.asList("b.exec", "a.exec", "sub/c.exec", "notes.txt")) {
+			Files.write(dir.resolve(name), new byte[0]);
+		}
+		File single = tempDir.resolve("single.exec").toFile();
+		assertEquals(Arrays.asList(single, dir.resolve("a.exec").toFile(), dir.resolve("b.exec").toFile(), dir.resolve("sub/c.exec").toFile()),
+				ExecFileMerger.listExecFiles(Arrays.asList(single, dir.toFile())));
+	}
+
+	@Test
+	void sessionsOfManyFilesMatchSingleFile() throws IOException, URISyntaxException {
+		File bins = tempDir.resolve("bin").toFile();
+		Map<String, byte[]> classes = copyFixtures(bins);
+		Random random = new Random(59);
+		List<File> execFiles = new ArrayList<>();
+		ByteArrayOutputStream all = new ByteArrayOutputStream();
+		for (int f = 0; f < 9; f++) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			ExecutionDataWriter writer = new ExecutionDataWriter(out);
+			for (int s = 0; s < 3; s++) {
+				// sessions continued in later files
+				writer.visitSessionInfo(new SessionInfo("s" + random.nextInt(12), f, f + 1));
+				for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+					boolean[] probes = new boolean[getProbeCount(entry.getValue())];
+					for (int p = 0; p < probes.length; p++) {
+						probes[p] = random.nextDouble() < 0.1;
+					}
+					writer.visitClassExecution(new ExecutionData(CRC64.classId(entry.getValue()), entry.getKey(), probes));
+				}
+			}
+			File execFile = tempDir.resolve("jacoco" + f + ".exec").toFile();
+			Files.write(execFile.toPath(), out.toByteArray());
+			execFiles.add(execFile);
+			all.write(out.toByteArray());
+		}
+		File allFile = tempDir.resolve("all.exec").toFile();
+		Files.write(allFile.toPath(), all.toByteArray());
+
+		JacocoProbeIndex index = JacocoReportGenerator.createProbeIndex(Collections.singleton(bins), Collections.emptySet());
+		JacocoCoverageReport expected = JacocoReportGenerator.streamExecFile(allFile, index);
+		List<String> expectedIds = getSessionIds(expected);
+		assertTrue(expectedIds.size() > 5);
+		for (int workers : new int[]{1, 2, 4}) {
+			List<JacocoCoverageReport> reports = Arrays.asList(
+					JacocoReportGenerator.streamExecFiles(execFiles, index, workers, SessionFilter.ALL),
+					JacocoReportGenerator.openExecFiles(execFiles, index, workers, SessionFilter.ALL, 2),
+					JacocoReportGenerator.parseExecFiles(execFiles, Collections.singleton(bins), Collections.emptySet(), workers, SessionFilter.ALL));
+			for (JacocoCoverageReport report : reports) {
+				assertEquals(expectedIds, getSessionIds(report), "workers " + workers);
+				for (String id : expectedIds) {
+					assertEquals(getLineCounts(expected.getSession(id)), getLineCounts(report.getSession(id)), id);
+				}
+			}
+			assertEquals(expectedIds, new ArrayList<>(JacocoReportGenerator.getExecutionDataVisitor(execFiles, SessionFilter.ALL, workers).getSessions().keySet()));
+		}
+	}
+
+	private static List<String> getSessionIds(JacocoCoverageReport report) {
+		List<String> ids = new ArrayList<>();
+		for (JacocoSession session : report.getSessions()) {
+			ids.add(session.getId());
+		}
+		return ids;
+	}
+}
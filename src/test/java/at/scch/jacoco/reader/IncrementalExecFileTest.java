@@ -0,0 +1,158 @@
+package at.scch.jacoco.reader;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.internal.data.CRC64;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static at.scch.jacoco.reader.ProbeAnalysisTest.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares the report of an exec file that is read while dumps are appended to it with the report of the complete file.
+ */
+class IncrementalExecFileTest {
+
+	/**
+	 * Sessions of the dumps appended to the exec file, sessions are continued by later dumps.
+	 */
+	private static final List<String> DUMPS = Arrays.asList("a", "b", "a", "c", "b", "d");
+
+	@TempDir
+	Path tempDir;
+
+	private File execFile;
+
+	private JacocoProbeIndex index;
+
+	/**
+	 * Content of every dump, as appended to the exec file.
+	 */
+	private List<byte[]> dumps;
+
+	@BeforeEach
+	void writeDumps() throws IOException, URISyntaxException {
+		File bins = tempDir.resolve("bin").toFile();
+		Map<String, byte[]> classes = copyFixtures(bins);
+		index = JacocoReportGenerator.createProbeIndex(Collections.singleton(bins), Collections.emptySet());
+		execFile = tempDir.resolve("jacoco.exec").toFile();
+
+		Random random = new Random(19);
+		dumps = new ArrayList<>();
+		for (String sessionId : DUMPS) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			ExecutionDataWriter writer = new ExecutionDataWriter(out);
+			writer.visitSessionInfo(new SessionInfo(sessionId, 0, 0));
+			// a class that is not analyzed
+			writer.visitClassExecution(new ExecutionData(42, "at/scch/Unknown", new boolean[]{true}));
+			double density = 0.05 + random.nextDouble() * 0.25;
+			for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+				boolean[] probes = new boolean[getProbeCount(entry.getValue())];
+				for (int p = 0; p < probes.length; p++) {
+					probes[p] = random.nextDouble() < density;
+				}
+				writer.visitClassExecution(new ExecutionData(CRC64.classId(entry.getValue()), entry.getKey(), probes));
+			}
+			dumps.add(out.toByteArray());
+		}
+	}
+
+	@Test
+	void updatesMatchCompleteFile() throws IOException {
+		IncrementalExecFile incremental = new IncrementalExecFile(execFile, index);
+		assertTrue(incremental.update().isEmpty());
+
+		byte[] content = concat(dumps.size());
+		Random random = new Random(23);
+		Set<String> changed = new LinkedHashSet<>();
+		for (int length = 0; length < content.length; length += 1 + random.nextInt(500)) {
+			Files.write(execFile.toPath(), Arrays.copyOf(content, length));
+			for (JacocoSession session : incremental.update(2)) {
+				changed.add(session.getId());
+			}
+			assertTrue(incremental.getOffset() <= length);
+		}
+		Files.write(execFile.toPath(), content);
+		for (JacocoSession session : incremental.update()) {
+			changed.add(session.getId());
+		}
+		assertEquals(content.length, incremental.getOffset());
+		assertTrue(incremental.update().isEmpty());
+
+		List<String> ids = Arrays.asList("a", "b", "c", "d");
+		assertEquals(ids, new ArrayList<>(incremental.getSessionIds()));
+		assertEquals(new HashSet<>(ids), changed);
+		JacocoCoverageReport expected = JacocoReportGenerator.streamExecFile(execFile, index);
+		assertEquals(ids.size(), incremental.getReport().numberOfSessions());
+		for (String id : ids) {
+			assertFalse(getLineCounts(expected.getSession(id)).isEmpty(), id);
+			assertEquals(getLineCounts(expected.getSession(id)), getLineCounts(incremental.getReport().getSession(id)), id);
+		}
+
+		// the file was replaced by a shorter one
+		Files.write(execFile.toPath(), dumps.get(0));
+		assertThrows(IOException.class, incremental::update);
+	}
+
+	@Test
+	void importContinuesWithAppendedDumps() throws IOException {
+		// stops within the execution data of the fourth dump, the session "c" is continued after the import
+		byte[] before = concat(3);
+		byte[] content = concat(dumps.size());
+		Files.write(execFile.toPath(), Arrays.copyOf(content, before.length + dumps.get(3).length / 2));
+		IncrementalExecFile incremental = new IncrementalExecFile(execFile, index);
+		incremental.update();
+		assertEquals(Arrays.asList("a", "b", "c"), new ArrayList<>(incremental.getSessionIds()));
+		File jsonFile = tempDir.resolve("report.json").toFile();
+		incremental.exportReport(jsonFile);
+		assertEquals(3, JacocoCoverageReport.importReport(jsonFile).numberOfSessions());
+
+		Files.write(execFile.toPath(), content);
+		IncrementalExecFile imported = IncrementalExecFile.importReport(execFile, jsonFile, index);
+		assertEquals(incremental.getOffset(), imported.getOffset());
+		assertEquals(3, imported.getReport().numberOfSessions());
+		imported.update();
+		assertEquals(content.length, imported.getOffset());
+		assertEquals(Arrays.asList("a", "b", "c", "d"), new ArrayList<>(imported.getSessionIds()));
+
+		JacocoCoverageReport expected = JacocoReportGenerator.streamExecFile(execFile, index);
+		// sessions only dumped before or after the import
+		for (String id : Arrays.asList("a", "d")) {
+			assertEquals(getLineCounts(expected.getSession(id)), getLineCounts(imported.getReport().getSession(id)), id);
+		}
+		// sessions continued after the import are merged on the level of lines, so the same lines are covered
+		for (String id : Arrays.asList("b", "c")) {
+			assertEquals(getLineCounts(expected.getSession(id)).keySet(), getLineCounts(imported.getReport().getSession(id)).keySet(), id);
+		}
+	}
+
+	@Test
+	void importRejectsPlainReport() throws IOException {
+		File jsonFile = tempDir.resolve("report.json").toFile();
+		Files.write(execFile.toPath(), concat(dumps.size()));
+		JacocoReportGenerator.streamExecFile(execFile, index).exportReport(jsonFile);
+		assertThrows(IOException.class, () -> IncrementalExecFile.importReport(execFile, jsonFile, index));
+	}
+
+	/**
+	 * @return - content of the exec file with the given number of dumps appended
+	 */
+	private byte[] concat(int count) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for (byte[] dump : dumps.subList(0, count)) {
+			out.write(dump, 0, dump.length);
+		}
+		return out.toByteArray();
+	}
+}
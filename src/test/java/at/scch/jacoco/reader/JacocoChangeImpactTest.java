@@ -0,0 +1,172 @@
+package at.scch.jacoco.reader;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JacocoChangeImpactTest {
+
+	private static final String DIFF = String.join("\n",
+			"diff --git a/src/main/java/at/scch/Foo.java b/src/main/java/at/scch/Foo.java",
+			"index 1111111..2222222 100644",
+			"--- a/src/main/java/at/scch/Foo.java",
+			"+++ b/src/main/java/at/scch/Foo.java",
+			// a replaced line, which starts like a file header
+			"@@ -10,3 +10,3 @@ class Foo {",
+			" line 10",
+			"--- line 11",
+			"+++ line 11 changed",
+			" line 12",
+			// added lines, their neighbours are changed
+			"@@ -20,2 +20,4 @@",
+			" line 20",
+			"+added",
+			"+added",
+			" line 21",
+			"@@ -40,2 +42,1 @@",
+			"-line 40",
+			" line 41",
+			"@@ -50 +51 @@",
+			"-line 50",
+			"+line 50 changed",
+			// a changed comment, no line of the structure
+			"@@ -60 +61 @@",
+			"-// comment",
+			"+// changed comment",
+			"\\ No newline at end of file",
+			"diff --git a/src/main/java/at/scch/New.java b/src/main/java/at/scch/New.java",
+			"new file mode 100644",
+			"--- /dev/null",
+			"+++ b/src/main/java/at/scch/New.java",
+			"@@ -0,0 +1,2 @@",
+			"+line 1",
+			"+line 2",
+			"--- a/src/main/java/at/scch/Other.java\t2024-01-01 10:00:00.000000000 +0100",
+			"+++ b/src/main/java/at/scch/Other.java\t2024-01-02 10:00:00.000000000 +0100",
+			// lines added after line 5
+			"@@ -5,0 +6,2 @@",
+			"+added",
+			"+added",
+			"--- a/Empty.java",
+			"+++ b/Empty.java",
+			// lines added to an empty file
+			"@@ -0,0 +1 @@",
+			"+added",
+			"");
+
+	@Test
+	void readChangedLines() throws IOException {
+		Map<String, Set<Integer>> changedLines = JacocoChangeImpact.readChangedLines(new StringReader(DIFF));
+		// the paths of the original files, the prefix is matched like any other directory
+		assertEquals(Arrays.asList("a/src/main/java/at/scch/Foo.java", "a/src/main/java/at/scch/Other.java", "a/Empty.java"),
+				new ArrayList<>(changedLines.keySet()));
+		assertEquals(new TreeSet<>(Arrays.asList(11, 20, 21, 40, 50, 60)), changedLines.get("a/src/main/java/at/scch/Foo.java"));
+		assertEquals(new TreeSet<>(Arrays.asList(5, 6)), changedLines.get("a/src/main/java/at/scch/Other.java"));
+		assertEquals(new TreeSet<>(Collections.singletonList(1)), changedLines.get("a/Empty.java"));
+	}
+
+	@Test
+	void getClassesBySourceFile() {
+		JacocoCoverageReport report = new JacocoCoverageReport(createStructure().values().stream()
+				.map(method -> method.getClazz().getPackage()).collect(Collectors.toSet()));
+		Set<String> foo = new TreeSet<>(Arrays.asList("at.scch.Foo", "at.scch.Foo$Bar", "at.scch.Helper"));
+		assertEquals(foo, getNames(report.getClassesBySourceFile("src/main/java/at/scch/Foo.java")));
+		assertEquals(foo, getNames(report.getClassesBySourceFile("at/scch/Foo")));
+		assertEquals(foo, getNames(report.getClassesBySourceFile("C:\\project\\src\\at\\scch\\Foo.java")));
+		assertEquals(Collections.singleton("x.Foo"), getNames(report.getClassesBySourceFile("src/x/Foo.java")));
+		// without a source file attribute, by the outer class name
+		assertEquals(new TreeSet<>(Arrays.asList("at.scch.Other", "at.scch.Other$Inner")),
+				getNames(report.getClassesBySourceFile("at/scch/Other.java")));
+		assertEquals(Collections.singleton("Empty"), getNames(report.getClassesBySourceFile("src/Empty.java")));
+		// Helper is declared in Foo.java, and no package matches a file alone
+		assertTrue(report.getClassesBySourceFile("at/scch/Helper.java").isEmpty());
+		assertTrue(report.getClassesBySourceFile("Foo.java").isEmpty());
+	}
+
+	@Test
+	void getChangeImpact() throws IOException {
+		Map<String, JacocoMethod> methods = createStructure();
+		JacocoCoverageReport report = new JacocoCoverageReport(methods.values().stream()
+				.map(method -> method.getClazz().getPackage()).collect(Collectors.toSet()));
+		report.addSession(createSession("s0", methods, "at.scch.Foo.a():12"));
+		report.addSession(createSession("s1", methods, "at.scch.Foo.a():11", "at.scch.Foo.b():20", "at.scch.Foo.b():22"));
+		report.addSession(createSession("s2", methods, "at.scch.Foo$Bar.c():40", "at.scch.Helper.h():50"));
+		// line 6 of Other.java in two classes counts once
+		report.addSession(createSession("s3", methods, "at.scch.Other.o():6", "at.scch.Other$Inner.i():6"));
+		// line 11 of another Foo.java
+		report.addSession(createSession("s4", methods, "x.Foo.z():11"));
+		report.addSession(createSession("s5", methods, "at.scch.Foo.a():11", "at.scch.Foo.b():20", "at.scch.Foo.b():21"));
+
+		JacocoChangeImpact impact = report.getChangeImpact(JacocoChangeImpact.readChangedLines(new StringReader(DIFF)));
+		// s1 and s2 cover as many lines, in the order of the report
+		assertEquals(Arrays.asList("s5", "s1", "s2", "s3"), impact.getSessionIDs());
+		assertEquals(3, impact.getNumberOfChangedLinesCovered("s5"));
+		assertEquals(2, impact.getNumberOfChangedLinesCovered("s1"));
+		assertEquals(2, impact.getNumberOfChangedLinesCovered("s2"));
+		assertEquals(1, impact.getNumberOfChangedLinesCovered("s3"));
+		assertEquals(0, impact.getNumberOfChangedLinesCovered("s4"));
+		assertEquals(0, impact.getNumberOfChangedLinesCovered("s0"));
+		// Foo.java 11, 20, 21, 40 and 50, Other.java 5 and 6, Empty.java 1
+		assertEquals(8, impact.getNumberOfChangedLines());
+		assertEquals(Arrays.asList("at.scch.Other.o():5", ".Empty.e():1"),
+				impact.getUncoveredLines().stream().map(JacocoLine::getIdentifier).collect(Collectors.toList()));
+	}
+
+	@Test
+	void getChangeImpactWithoutSessions() throws IOException {
+		JacocoCoverageReport report = new JacocoCoverageReport(createStructure().values().stream()
+				.map(method -> method.getClazz().getPackage()).collect(Collectors.toSet()));
+		JacocoChangeImpact impact = report.getChangeImpact(JacocoChangeImpact.readChangedLines(new StringReader(DIFF)));
+		assertTrue(impact.getSessionIDs().isEmpty());
+		assertEquals(8, impact.getNumberOfChangedLines());
+		assertEquals(8, impact.getUncoveredLines().size());
+	}
+
+	/**
+	 * Classes compiled from at/scch/Foo.java, at/scch/Other.java without source file attribute,
+	 * x/Foo.java and Empty.java in the default package.
+	 */
+	private static Map<String, JacocoMethod> createStructure() {
+		Map<String, JacocoMethod> methods = new LinkedHashMap<>();
+		JacocoPackage scch = new JacocoPackage("at.scch");
+		addMethod(methods, new JacocoClass(scch, "Foo", "Foo.java"), "a()", 10, 11, 12);
+		addMethod(methods, scch.getClasses().iterator().next(), "b()", 20, 21, 22);
+		addMethod(methods, new JacocoClass(scch, "Foo$Bar", "Foo.java"), "c()", 40, 41);
+		addMethod(methods, new JacocoClass(scch, "Helper", "Foo.java"), "h()", 50, 51);
+		addMethod(methods, new JacocoClass(scch, "Other"), "o()", 5, 6, 7);
+		addMethod(methods, new JacocoClass(scch, "Other$Inner"), "i()", 6);
+		addMethod(methods, new JacocoClass(new JacocoPackage("x"), "Foo", "Foo.java"), "z()", 11);
+		addMethod(methods, new JacocoClass(new JacocoPackage(""), "Empty", "Empty.java"), "e()", 1);
+		return methods;
+	}
+
+	private static void addMethod(Map<String, JacocoMethod> methods, JacocoClass clazz, String signature, int... lineNumbers) {
+		JacocoMethod method = new JacocoMethod(clazz, signature, 1);
+		for (int lineNumber : lineNumbers) {
+			new JacocoLine(lineNumber, method, 2, 0);
+		}
+		methods.put(method.getFullName(), method);
+	}
+
+	private static JacocoSession createSession(String id, Map<String, JacocoMethod> methods, String... lines) {
+		Map<String, int[]> coverage = new TreeMap<>();
+		for (String line : lines) {
+			coverage.put(line, new int[]{0, 2});
+		}
+		return JacocoSessionTest.createSession(id, coverage, methods);
+	}
+
+	private static Set<String> getNames(List<JacocoClass> classes) {
+		Set<String> names = new TreeSet<>();
+		for (JacocoClass clazz : classes) {
+			String pkg = clazz.getPackage().getName();
+			names.add(pkg.isEmpty() ? clazz.getName() : pkg + "." + clazz.getName());
+		}
+		return names;
+	}
+}
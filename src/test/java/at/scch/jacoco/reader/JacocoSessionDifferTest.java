@@ -0,0 +1,83 @@
+package at.scch.jacoco.reader;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static at.scch.jacoco.reader.JacocoSessionTest.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class JacocoSessionDifferTest {
+
+	@Test
+	void diffMatchesCoverageMaps() {
+		Random random = new Random(23);
+		Map<String, JacocoMethod> structure = createStructure(false);
+		Map<String, JacocoMethod> other = createStructure(true);
+		for (int round = 0; round < 300; round++) {
+			Map<String, int[]> x = randomCoverage(random, structure);
+			Map<String, int[]> y = randomCoverage(random, round % 2 == 0 ? structure : other);
+			JacocoSession a = createSession("a", x, structure);
+			JacocoSession b = createSession("b", y, round % 2 == 0 ? structure : other);
+			assertDiff(x, a, y, b);
+		}
+	}
+
+	@Test
+	void containsDifferenceMatchesDiff() {
+		Random random = new Random(29);
+		Map<String, JacocoMethod> structure = createStructure(false);
+		Map<String, JacocoMethod> other = createStructure(false);
+		for (int round = 0; round < 100; round++) {
+			Map<String, int[]> x = randomCoverage(random, structure);
+			JacocoSession a = createSession("a", x, structure);
+
+			// same lines, in the same and in another structure, with other counts
+			Map<String, int[]> sameLines = new TreeMap<>();
+			for (String line : x.keySet()) {
+				sameLines.put(line, new int[]{random.nextInt(5), random.nextInt(5)});
+			}
+			assertDiff(x, a, x, a.copy("copy"));
+			assertDiff(x, a, sameLines, createSession("same", sameLines, structure));
+			assertDiff(x, a, sameLines, createSession("same", sameLines, other));
+
+			// one line more or less
+			if (!x.isEmpty()) {
+				Map<String, int[]> fewer = new TreeMap<>(x);
+				fewer.remove(new ArrayList<>(x.keySet()).get(random.nextInt(x.size())));
+				assertDiff(x, a, fewer, createSession("fewer", fewer, structure));
+			}
+			assertDiff(x, a, new TreeMap<>(), new JacocoSession("empty"));
+		}
+	}
+
+	private static void assertDiff(Map<String, int[]> x, JacocoSession a, Map<String, int[]> y, JacocoSession b) {
+		Map<String, int[]> onlyA = new TreeMap<>(x);
+		onlyA.keySet().removeAll(y.keySet());
+		Map<String, int[]> onlyB = new TreeMap<>(y);
+		onlyB.keySet().removeAll(x.keySet());
+		Map<String, int[]> common = new TreeMap<>();
+		for (Map.Entry<String, int[]> line : x.entrySet()) {
+			int[] counts = y.get(line.getKey());
+			if (counts != null) {
+				common.put(line.getKey(), counts[0] < line.getValue()[0] ? counts : line.getValue());
+			}
+		}
+
+		JacocoSessionDiff diff = JacocoSessionDiffer.computeDiff(a, b);
+		assertCoverage(onlyA, diff.getOnlyA());
+		assertCoverage(common, diff.getCommon());
+		assertCoverage(onlyB, diff.getOnlyB());
+		assertEquals(!onlyA.isEmpty() || !onlyB.isEmpty(), diff.containsDifference());
+		assertEquals(diff.containsDifference(), JacocoSessionDiffer.containsDifference(a, b));
+		assertEquals(diff.containsDifference(), JacocoSessionDiffer.containsDifference(b, a));
+
+		// the parts of the diff share coverage with a and b, changing them does not change a and b
+		diff.getOnlyA().add(b);
+		diff.getCommon().remove(a);
+		diff.getOnlyB().retain(a);
+		diff.getOnlyB().add(diff.getOnlyA());
+		assertCoverage(x, a);
+		assertCoverage(y, b);
+	}
+}
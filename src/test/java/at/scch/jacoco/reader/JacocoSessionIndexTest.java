@@ -0,0 +1,95 @@
+package at.scch.jacoco.reader;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static at.scch.jacoco.reader.JacocoSessionTest.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares the sessions the index finds with a scan of all sessions of the report.
+ */
+class JacocoSessionIndexTest {
+
+	@Test
+	void indexMatchesScanOfSessions() {
+		Random random = new Random(67);
+		Map<String, JacocoMethod> structure = createStructure(false);
+		JacocoCoverageReport report = createReport(structure);
+		// more sessions than are collected in one block
+		for (int i = 0; i < 300; i++) {
+			Map<String, int[]> coverage = i % 40 == 1 ? new TreeMap<>() : randomCoverage(random, structure, random.nextDouble() * 0.1);
+			report.addSession(createSession("s" + i, coverage, structure));
+		}
+		assertIndex(report, structure);
+	}
+
+	@Test
+	void indexIsBuiltAgainAfterChanges() {
+		Random random = new Random(71);
+		Map<String, JacocoMethod> structure = createStructure(false);
+		JacocoCoverageReport report = createReport(structure);
+		for (int i = 0; i < 20; i++) {
+			report.addSession(createSession("s" + i, randomCoverage(random, structure, 0.05), structure));
+		}
+		JacocoSessionIndex before = report.getSessionIndex();
+		assertSame(before, report.getSessionIndex());
+
+		// changed in place
+		report.getSession("s3").add(createSession("x", randomCoverage(random, structure, 0.5), structure));
+		assertNotSame(before, report.getSessionIndex());
+		assertIndex(report, structure);
+		report.getSession("s7").remove(report.getSession("s3"));
+		assertIndex(report, structure);
+		report.getSession("s8").retain(report.getSession("s9"));
+		assertIndex(report, structure);
+
+		// added, and replaced
+		report.addSession(createSession("s20", randomCoverage(random, structure, 0.3), structure));
+		assertEquals(21, report.getSessionIndex().getNumberOfSessions());
+		assertIndex(report, structure);
+		report.addSession(new JacocoSession("s5"));
+		assertIndex(report, structure);
+	}
+
+	private static void assertIndex(JacocoCoverageReport report, Map<String, JacocoMethod> structure) {
+		JacocoSessionIndex index = report.getSessionIndex();
+		List<JacocoSession> sessions = new ArrayList<>(report.getSessions());
+		assertEquals(sessions.size(), index.getNumberOfSessions());
+		for (int ordinal = 0; ordinal < sessions.size(); ordinal++) {
+			assertEquals(sessions.get(ordinal).getId(), index.getSessionId(ordinal));
+		}
+
+		Map<String, List<Integer>> byClass = new HashMap<>();
+		for (JacocoMethod method : structure.values()) {
+			List<Integer> byMethod = new ArrayList<>();
+			for (JacocoLine line : method.getLines()) {
+				List<Integer> byLine = new ArrayList<>();
+				for (int ordinal = 0; ordinal < sessions.size(); ordinal++) {
+					if (sessions.get(ordinal).coversLine(line)) {
+						byLine.add(ordinal);
+					}
+				}
+				assertEquals(byLine, toList(index.getSessionsCoveringLine(line)), line.getIdentifier());
+				byMethod.addAll(byLine);
+			}
+			byMethod = new ArrayList<>(new TreeSet<>(byMethod));
+			assertEquals(byMethod, toList(index.getSessionsCoveringMethod(method.getFullName())), method.getFullName());
+			byClass.computeIfAbsent(method.getClazz().getFullName(), name -> new ArrayList<>()).addAll(byMethod);
+		}
+		for (Map.Entry<String, List<Integer>> entry : byClass.entrySet()) {
+			assertEquals(new ArrayList<>(new TreeSet<>(entry.getValue())), toList(index.getSessionsCoveringClass(entry.getKey())), entry.getKey());
+		}
+		assertEquals(0, index.getSessionsCoveringMethod("a.b.Foo.unknown()").length);
+		assertEquals(0, index.getSessionsCoveringClass("a.b.Unknown").length);
+	}
+
+	private static List<Integer> toList(int[] ordinals) {
+		List<Integer> list = new ArrayList<>();
+		for (int ordinal : ordinals) {
+			list.add(ordinal);
+		}
+		return list;
+	}
+}
@@ -0,0 +1,236 @@
+package at.scch.jacoco.reader;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares add, remove and retain with the rules of the coverage maps sessions were kept in before:
+ * a union keeps the coverage with the most instructions covered, the first one of equal ones,
+ * an intersection the coverage with the least instructions covered, the first one of equal ones.
+ */
+class JacocoSessionTest {
+
+	@Test
+	void operationsMatchCoverageMaps() {
+		Random random = new Random(13);
+		Map<String, JacocoMethod> structure = createStructure(false);
+		for (int round = 0; round < 300; round++) {
+			Map<String, int[]> x = randomCoverage(random, structure);
+			Map<String, int[]> y = randomCoverage(random, structure);
+			assertOperations(x, createSession("x", x, structure), y, createSession("y", y, structure));
+		}
+	}
+
+	@Test
+	void operationsMatchCoverageMapsAcrossStructures() {
+		Random random = new Random(17);
+		Map<String, JacocoMethod> structure = createStructure(false);
+		// same names, plus lines only this structure has
+		Map<String, JacocoMethod> other = createStructure(true);
+		for (int round = 0; round < 300; round++) {
+			Map<String, int[]> x = randomCoverage(random, structure);
+			Map<String, int[]> y = randomCoverage(random, other);
+			assertOperations(x, createSession("x", x, structure), y, createSession("y", y, other));
+			assertOperations(y, createSession("y", y, other), x, createSession("x", x, structure));
+		}
+	}
+
+	@Test
+	void copiesDoNotChangeTheirSource() {
+		Random random = new Random(19);
+		Map<String, JacocoMethod> structure = createStructure(false);
+		for (int round = 0; round < 100; round++) {
+			Map<String, int[]> x = randomCoverage(random, structure);
+			Map<String, int[]> y = randomCoverage(random, structure);
+			JacocoSession a = createSession("a", x, structure);
+			JacocoSession b = createSession("b", y, structure);
+
+			JacocoSession copy = a.copy("copy");
+			copy.add(b);
+			copy.retain(b);
+			copy.remove(a);
+			for (JacocoMethodCoverage methodCoverage : createSession("c", randomCoverage(random, structure), structure).getCoverage().values()) {
+				copy.addCoverage(methodCoverage);
+			}
+			assertCoverage(x, a);
+
+			// and the other way around
+			copy = a.copy("copy");
+			a.remove(b);
+			a.add(b);
+			assertCoverage(x, copy);
+			assertCoverage(y, b);
+		}
+	}
+
+	@Test
+	void coveredMethodsAreCountedOnce() {
+		Map<String, JacocoMethod> structure = createStructure(false);
+		JacocoCoverageReport report = createReport(structure);
+		JacocoMethod m0 = structure.get("a.b.Foo.m0()");
+		JacocoMethod m1 = structure.get("a.b.Foo.m1()");
+		// lines added to the structure later, and lines of another structure with the same method names, are numbered after all others
+		new JacocoLine(98, m0, 2, 1);
+		Map<String, JacocoMethod> other = createStructure(true);
+		Map<String, int[]> coverage = new TreeMap<>();
+		coverage.put("a.b.Foo.m0():1", new int[]{1, 0});
+		coverage.put("a.b.Foo.m0():98", new int[]{2, 1});
+		coverage.put("a.b.Foo.m1():101", new int[]{1, 0});
+		JacocoSession session = createSession("s", coverage, structure);
+		report.addSession(session);
+		assertCoverage(coverage, session);
+		assertEquals(3, session.getNumberOfLinesCovered(m1.getClazz()));
+
+		Map<String, int[]> otherCoverage = new TreeMap<>();
+		otherCoverage.put("a.b.Foo.m0():99", new int[]{3, 2});
+		otherCoverage.put("a.b.Foo.m3():399", new int[]{3, 2});
+		session.add(createSession("o", otherCoverage, other));
+		coverage.putAll(otherCoverage);
+		assertCoverage(coverage, session);
+		assertEquals(3, session.getNumberOfCoveredMethods());
+		assertEquals(5, session.getNumberOfLinesCovered(m0.getClazz()));
+	}
+
+	private static void assertOperations(Map<String, int[]> x, JacocoSession a, Map<String, int[]> y, JacocoSession b) {
+		Map<String, int[]> expectedUnion = new TreeMap<>(x);
+		for (Map.Entry<String, int[]> line : y.entrySet()) {
+			int[] counts = expectedUnion.get(line.getKey());
+			if (counts == null || counts[0] < line.getValue()[0]) {
+				expectedUnion.put(line.getKey(), line.getValue());
+			}
+		}
+		Map<String, int[]> expectedDifference = new TreeMap<>(x);
+		expectedDifference.keySet().removeAll(y.keySet());
+		Map<String, int[]> expectedIntersection = new TreeMap<>();
+		for (Map.Entry<String, int[]> line : x.entrySet()) {
+			int[] counts = y.get(line.getKey());
+			if (counts != null) {
+				expectedIntersection.put(line.getKey(), counts[0] < line.getValue()[0] ? counts : line.getValue());
+			}
+		}
+
+		JacocoSession union = a.copy("union");
+		union.add(b);
+		assertCoverage(expectedUnion, union);
+
+		JacocoSession difference = a.copy("difference");
+		difference.remove(b);
+		assertCoverage(expectedDifference, difference);
+
+		JacocoSession intersection = a.copy("intersection");
+		intersection.retain(b);
+		assertCoverage(expectedIntersection, intersection);
+
+		assertCoverage(expectedUnion, JacocoCoverageReport.union(List.of(a, b)));
+		assertCoverage(expectedIntersection, JacocoCoverageReport.intersection(List.of(a, b)));
+
+		// the operands are not changed
+		assertCoverage(x, a);
+		assertCoverage(y, b);
+	}
+
+	/**
+	 * Two packages with two classes of three methods each, every method with up to 40 lines.
+	 */
+	static Map<String, JacocoMethod> createStructure(boolean extraLines) {
+		Map<String, JacocoMethod> methods = new LinkedHashMap<>();
+		Random random = new Random(1);
+		for (String packageName : new String[]{"a.b", "c"}) {
+			JacocoPackage pkg = new JacocoPackage(packageName);
+			for (String className : new String[]{"Foo", "Foo$Bar"}) {
+				JacocoClass clazz = new JacocoClass(pkg, className);
+				for (int m = 0; m < (extraLines ? 4 : 3); m++) {
+					JacocoMethod method = new JacocoMethod(clazz, "m" + m + "()", 1);
+					int lines = 10 + random.nextInt(30);
+					for (int line = 1; line <= lines; line++) {
+						new JacocoLine(m * 100 + line, method, 1 + random.nextInt(8), random.nextInt(4));
+					}
+					if (extraLines) {
+						new JacocoLine(m * 100 + 99, method, 3, 2);
+					}
+					methods.put(method.getFullName(), method);
+				}
+			}
+		}
+		return methods;
+	}
+
+	/**
+	 * Coverage of random lines, half of them fully covered, by line identifier.
+	 */
+	static Map<String, int[]> randomCoverage(Random random, Map<String, JacocoMethod> structure) {
+		return randomCoverage(random, structure, random.nextDouble());
+	}
+
+	/**
+	 * @param density - share of the lines that are covered
+	 */
+	static Map<String, int[]> randomCoverage(Random random, Map<String, JacocoMethod> structure, double density) {
+		Map<String, int[]> coverage = new TreeMap<>();
+		for (JacocoMethod method : structure.values()) {
+			for (JacocoLine line : method.getLines()) {
+				if (random.nextDouble() >= density) {
+					continue;
+				}
+				int[] counts;
+				if (random.nextBoolean()) {
+					counts = new int[]{LineCounts.getDefaultInstructions(line), LineCounts.getDefaultBranches(line)};
+				} else {
+					counts = new int[]{random.nextInt(5), random.nextInt(5)};
+				}
+				coverage.put(line.getIdentifier(), counts);
+			}
+		}
+		return coverage;
+	}
+
+	static JacocoSession createSession(String id, Map<String, int[]> coverage, Map<String, JacocoMethod> structure) {
+		Map<String, JacocoMethodCoverage> methods = new LinkedHashMap<>();
+		for (Map.Entry<String, int[]> line : coverage.entrySet()) {
+			int pos = line.getKey().lastIndexOf(':');
+			JacocoMethod method = structure.get(line.getKey().substring(0, pos));
+			JacocoMethodCoverage methodCoverage = methods.computeIfAbsent(method.getFullName(), name -> new JacocoMethodCoverage(method));
+			methodCoverage.setLineCovered(Integer.parseInt(line.getKey().substring(pos + 1)), line.getValue()[0], line.getValue()[1]);
+		}
+		JacocoSession session = new JacocoSession(id);
+		for (JacocoMethodCoverage methodCoverage : methods.values()) {
+			session.addCoverage(methodCoverage);
+		}
+		return session;
+	}
+
+	/**
+	 * @return - report of the packages of the structure, without sessions
+	 */
+	static JacocoCoverageReport createReport(Map<String, JacocoMethod> structure) {
+		Set<JacocoPackage> packages = new LinkedHashSet<>();
+		for (JacocoMethod method : structure.values()) {
+			packages.add(method.getClazz().getPackage());
+		}
+		return new JacocoCoverageReport(packages);
+	}
+
+	static void assertCoverage(Map<String, int[]> expected, JacocoSession session) {
+		Map<String, String> actual = new TreeMap<>();
+		for (JacocoMethodCoverage methodCoverage : session.getCoverage().values()) {
+			String method = methodCoverage.getMethod().getFullName();
+			methodCoverage.visitLinesCovered((lineNumber, instructions, branches) ->
+					actual.put(method + ":" + lineNumber, instructions + "/" + branches));
+		}
+		Map<String, String> expectedCounts = new TreeMap<>();
+		for (Map.Entry<String, int[]> line : expected.entrySet()) {
+			expectedCounts.put(line.getKey(), line.getValue()[0] + "/" + line.getValue()[1]);
+		}
+		assertEquals(expectedCounts, actual);
+		assertEquals(expected.size(), session.getNumberOfLinesCovered());
+		assertEquals(expected.isEmpty(), session.isEmpty());
+		Set<String> methods = new HashSet<>();
+		for (String line : expected.keySet()) {
+			methods.add(line.substring(0, line.lastIndexOf(':')));
+		}
+		assertEquals(methods.size(), session.getNumberOfCoveredMethods());
+	}
+}
@@ -0,0 +1,230 @@
+package at.scch.jacoco.reader;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LineBitmapTest {
+
+	private static final int ARRAY_MAX = 4096;
+
+	@Test
+	void ofKeepsUpToArrayMaxIdsAsArray() throws ReflectiveOperationException {
+		LineBitmap array = LineBitmap.of(range(0, ARRAY_MAX), ARRAY_MAX);
+		assertInstanceOf(char[].class, getChunk(array, 0));
+		assertEquals(ARRAY_MAX, array.cardinality());
+
+		LineBitmap bitmap = LineBitmap.of(range(0, ARRAY_MAX + 1), ARRAY_MAX + 1);
+		assertInstanceOf(long[].class, getChunk(bitmap, 0));
+		assertEquals(ARRAY_MAX + 1, bitmap.cardinality());
+		assertIds(toSet(range(0, ARRAY_MAX + 1)), bitmap);
+	}
+
+	@Test
+	void orConvertsBetweenArrayAndBitmapAtArrayMax() throws ReflectiveOperationException {
+		// two overlapping arrays, whose union has exactly ARRAY_MAX ids
+		LineBitmap a = LineBitmap.of(range(0, 3000), 3000);
+		LineBitmap b = LineBitmap.of(range(ARRAY_MAX - 2000, ARRAY_MAX), 2000);
+		a.or(b);
+		assertInstanceOf(char[].class, getChunk(a, 0));
+		assertIds(toSet(range(0, ARRAY_MAX)), a);
+
+		a.or(LineBitmap.of(new int[]{ARRAY_MAX}, 1));
+		assertInstanceOf(long[].class, getChunk(a, 0));
+		assertIds(toSet(range(0, ARRAY_MAX + 1)), a);
+	}
+
+	@Test
+	void orAllConvertsBetweenArrayAndBitmapAtArrayMax() throws ReflectiveOperationException {
+		LineBitmap a = LineBitmap.of(range(0, 3000), 3000);
+		LineBitmap b = LineBitmap.of(range(2000, ARRAY_MAX), ARRAY_MAX - 2000);
+		LineBitmap c = LineBitmap.of(new int[]{ARRAY_MAX}, 1);
+
+		LineBitmap array = LineBitmap.orAll(List.of(a, b));
+		assertInstanceOf(char[].class, getChunk(array, 0));
+		assertIds(toSet(range(0, ARRAY_MAX)), array);
+
+		LineBitmap bitmap = LineBitmap.orAll(List.of(a, b, c));
+		assertInstanceOf(long[].class, getChunk(bitmap, 0));
+		assertIds(toSet(range(0, ARRAY_MAX + 1)), bitmap);
+	}
+
+	@Test
+	void operationsMatchTreeSet() {
+		Random random = new Random(42);
+		for (int round = 0; round < 200; round++) {
+			TreeSet<Integer> x = randomIds(random);
+			TreeSet<Integer> y = randomIds(random);
+			LineBitmap a = toBitmap(x);
+			LineBitmap b = toBitmap(y);
+
+			LineBitmap or = a.copy();
+			or.or(b);
+			TreeSet<Integer> expectedOr = new TreeSet<>(x);
+			expectedOr.addAll(y);
+			assertIds(expectedOr, or);
+
+			LineBitmap and = a.copy();
+			and.and(b);
+			TreeSet<Integer> expectedAnd = new TreeSet<>(x);
+			expectedAnd.retainAll(y);
+			assertIds(expectedAnd, and);
+			assertEquals(expectedAnd.size(), a.andCardinality(b));
+
+			LineBitmap andNot = a.copy();
+			andNot.andNot(b);
+			TreeSet<Integer> expectedAndNot = new TreeSet<>(x);
+			expectedAndNot.removeAll(y);
+			assertIds(expectedAndNot, andNot);
+			assertEquals(expectedAndNot.size(), a.weightAndNot(b, null));
+
+			LineBitmap[] partition = LineBitmap.partition(a, b);
+			TreeSet<Integer> expectedOnlyB = new TreeSet<>(y);
+			expectedOnlyB.removeAll(x);
+			assertIds(expectedAndNot, partition[0]);
+			assertIds(expectedAnd, partition[1]);
+			assertIds(expectedOnlyB, partition[2]);
+
+			TreeSet<Integer> z = randomIds(random);
+			TreeSet<Integer> expectedOrAll = new TreeSet<>(expectedOr);
+			expectedOrAll.addAll(z);
+			assertIds(expectedOrAll, LineBitmap.orAll(List.of(a, b, toBitmap(z))));
+
+			assertEquals(x.equals(y), a.sameIds(b));
+			// the operands are not changed
+			assertIds(x, a);
+			assertIds(y, b);
+		}
+	}
+
+	@Test
+	void sameIdsWithSharedChunks() {
+		TreeSet<Integer> ids = randomIds(new Random(7));
+		LineBitmap a = toBitmap(ids);
+		LineBitmap copy = a.copy();
+		assertTrue(a.sameIds(copy));
+		assertTrue(copy.sameIds(a));
+
+		// equal, but not shared chunks
+		assertTrue(a.sameIds(toBitmap(ids)));
+
+		int removed = ids.last();
+		copy.andNot(LineBitmap.of(new int[]{removed}, 1));
+		assertFalse(a.sameIds(copy));
+		assertTrue(a.contains(removed));
+		assertIds(ids, a);
+	}
+
+	@Test
+	void changingResultsDoesNotChangeSharedChunks() {
+		Random random = new Random(11);
+		for (int round = 0; round < 100; round++) {
+			TreeSet<Integer> x = randomIds(random);
+			TreeSet<Integer> y = randomIds(random);
+			LineBitmap a = toBitmap(x);
+			LineBitmap b = toBitmap(y);
+			LineBitmap other = toBitmap(randomIds(random));
+
+			List<LineBitmap> results = new ArrayList<>(Arrays.asList(LineBitmap.partition(a, b)));
+			results.add(LineBitmap.orAll(List.of(a, b)));
+			results.add(a.copy());
+			LineBitmap or = b.copy();
+			or.or(a);
+			results.add(or);
+			for (LineBitmap result : results) {
+				result.or(other);
+				result.and(b);
+				result.or(a);
+				result.andNot(other);
+				result.andNot(a);
+			}
+			assertIds(x, a);
+			assertIds(y, b);
+		}
+	}
+
+	@Test
+	void andNotDownToEmpty() {
+		TreeSet<Integer> ids = randomIds(new Random(3));
+		LineBitmap a = toBitmap(ids);
+		a.andNot(toBitmap(ids));
+		assertTrue(a.isEmpty());
+		assertEquals(0, a.cardinality());
+		assertEquals(0, a.toArray().length);
+
+		LineBitmap b = toBitmap(ids);
+		b.andNot(LineBitmap.of(range(0, 1 << 20), 1 << 20));
+		assertTrue(b.isEmpty());
+
+		// an empty set stays usable
+		a.or(LineBitmap.of(new int[]{5, 70000}, 2));
+		assertIds(new TreeSet<>(List.of(5, 70000)), a);
+	}
+
+	/**
+	 * Ids in up to four chunks, each sparse, around ARRAY_MAX or dense, so both kinds of chunks meet.
+	 */
+	private static TreeSet<Integer> randomIds(Random random) {
+		TreeSet<Integer> ids = new TreeSet<>();
+		for (int key = 0; key < 4; key++) {
+			int count;
+			switch (random.nextInt(4)) {
+				case 0:
+					continue;
+				case 1:
+					count = random.nextInt(50);
+					break;
+				case 2:
+					count = ARRAY_MAX - 100 + random.nextInt(200);
+					break;
+				default:
+					count = 10000 + random.nextInt(20000);
+			}
+			// dense chunks use a small range, so they overlap a lot
+			int range = count < 100 ? 65536 : Math.min(65536, count * 2);
+			for (int i = 0; i < count; i++) {
+				ids.add((key << 16) | random.nextInt(range));
+			}
+		}
+		return ids;
+	}
+
+	private static LineBitmap toBitmap(Set<Integer> ids) {
+		int[] array = ids.stream().mapToInt(Integer::intValue).toArray();
+		return LineBitmap.of(array, array.length);
+	}
+
+	private static int[] range(int from, int to) {
+		int[] ids = new int[to - from];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = from + i;
+		}
+		return ids;
+	}
+
+	private static TreeSet<Integer> toSet(int[] ids) {
+		TreeSet<Integer> set = new TreeSet<>();
+		for (int id : ids) {
+			set.add(id);
+		}
+		return set;
+	}
+
+	private static void assertIds(SortedSet<Integer> expected, LineBitmap actual) {
+		assertArrayEquals(expected.stream().mapToInt(Integer::intValue).toArray(), actual.toArray());
+		assertEquals(expected.size(), actual.cardinality());
+		assertEquals(expected.isEmpty(), actual.isEmpty());
+		for (int id : expected) {
+			assertTrue(actual.contains(id));
+		}
+	}
+
+	private static Object getChunk(LineBitmap bitmap, int i) throws ReflectiveOperationException {
+		Field chunks = LineBitmap.class.getDeclaredField("chunks");
+		chunks.setAccessible(true);
+		return ((Object[]) chunks.get(bitmap))[i];
+	}
+}
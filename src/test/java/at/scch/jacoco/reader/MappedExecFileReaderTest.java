@@ -0,0 +1,190 @@
+package at.scch.jacoco.reader;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataReader;
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.SessionInfo;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares the blocks read by the {@link MappedExecFileReader} with the blocks read by the JaCoCo ExecutionDataReader,
+ * for exec files written by the JaCoCo ExecutionDataWriter.
+ */
+class MappedExecFileReaderTest {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void readsBlocksStraddlingWindows() throws IOException {
+		File execFile = tempDir.resolve("jacoco.exec").toFile();
+		// several dumps appended to the file, each with a header of its own, and repeated session IDs
+		byte[] content = writeDumps(new Random(11), Arrays.asList("a", "b", "a", "c", "b"));
+		Files.write(execFile.toPath(), content);
+		List<String> expected = readWithJacoco(content);
+		assertEquals(5, expected.stream().filter(block -> block.startsWith("session")).count());
+
+		// windows smaller than a block, windows ending within the fields of a block, and a window larger than the file
+		for (long windowSize : new long[]{1, 2, 3, 7, 64, 1000, 1L << 28}) {
+			try (MappedExecFileReader reader = new MappedExecFileReader(execFile, windowSize)) {
+				assertEquals(expected, read(reader), "window size " + windowSize);
+				assertEquals(content.length, reader.getPosition());
+			}
+		}
+		try (MappedExecFileReader reader = new MappedExecFileReader(execFile)) {
+			assertEquals(expected, read(reader));
+		}
+	}
+
+	@Test
+	void resumesAtIncompleteBlock() throws IOException {
+		File execFile = tempDir.resolve("jacoco.exec").toFile();
+		Random random = new Random(17);
+		byte[] content = writeDumps(random, Arrays.asList("a", "b", "a", "c"));
+		List<String> expected = readWithJacoco(content);
+		// file offsets at which the blocks passed to the visitors end
+		List<Long> blockEnds = new ArrayList<>();
+		Files.write(execFile.toPath(), content);
+		try (MappedExecFileReader reader = new MappedExecFileReader(execFile)) {
+			reader.setSessionInfoVisitor(info -> blockEnds.add(reader.getPosition()));
+			reader.setExecutionDataVisitor(data -> blockEnds.add(reader.getPosition()));
+			reader.read();
+		}
+		assertEquals(expected.size(), blockEnds.size());
+
+		for (int length = 0; length <= content.length; length += 1 + random.nextInt(40)) {
+			// the file is still being written
+			Files.write(execFile.toPath(), Arrays.copyOf(content, length));
+			List<String> blocks = new ArrayList<>();
+			long position;
+			try (MappedExecFileReader reader = new MappedExecFileReader(execFile, 16)) {
+				setVisitors(reader, blocks);
+				reader.readCompleteBlocks();
+				position = reader.getPosition();
+			}
+			assertTrue(position <= length);
+			int complete = length;
+			assertEquals(blockEnds.stream().filter(end -> end <= complete).count(), blocks.size(), "length " + length);
+
+			// the file is complete
+			Files.write(execFile.toPath(), content);
+			try (MappedExecFileReader reader = new MappedExecFileReader(execFile, 16)) {
+				setVisitors(reader, blocks);
+				reader.setPosition(position);
+				reader.readCompleteBlocks();
+				assertEquals(content.length, reader.getPosition());
+			}
+			assertEquals(expected, blocks, "length " + length);
+		}
+	}
+
+	@Test
+	void rejectsInvalidFiles() throws IOException {
+		File execFile = tempDir.resolve("jacoco.exec").toFile();
+		byte[] content = writeDumps(new Random(13), Collections.singletonList("a"));
+
+		// no header
+		Files.write(execFile.toPath(), Arrays.copyOfRange(content, 5, content.length));
+		try (MappedExecFileReader reader = new MappedExecFileReader(execFile)) {
+			assertThrows(IOException.class, () -> read(reader));
+		}
+		// unknown block type after the header
+		byte[] unknown = Arrays.copyOf(content, content.length);
+		unknown[5] = 0x42;
+		Files.write(execFile.toPath(), unknown);
+		try (MappedExecFileReader reader = new MappedExecFileReader(execFile)) {
+			assertThrows(IOException.class, () -> read(reader));
+		}
+		// truncated block
+		Files.write(execFile.toPath(), Arrays.copyOf(content, content.length - 1));
+		try (MappedExecFileReader reader = new MappedExecFileReader(execFile, 16)) {
+			assertThrows(EOFException.class, () -> read(reader));
+		}
+	}
+
+	/**
+	 * Writes a dump per session ID, like JaCoCo agents appending to an exec file.
+	 * Classes have names of different lengths, also with characters that are not ASCII, and up to 300 probes.
+	 * @return - content of the exec file
+	 */
+	static byte[] writeDumps(Random random, List<String> sessionIds) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for (String sessionId : sessionIds) {
+			ExecutionDataWriter writer = new ExecutionDataWriter(out);
+			writer.visitSessionInfo(new SessionInfo(sessionId, random.nextInt(1000), 1000 + random.nextInt(1000)));
+			int classes = random.nextInt(20);
+			for (int c = 0; c < classes; c++) {
+				StringBuilder name = new StringBuilder("at/scch/Cl\u00e4ss");
+				for (int i = random.nextInt(40); i > 0; i--) {
+					name.append((char) ('a' + random.nextInt(26)));
+				}
+				boolean[] probes = new boolean[random.nextInt(300)];
+				double density = random.nextDouble();
+				for (int p = 0; p < probes.length; p++) {
+					probes[p] = random.nextDouble() < density;
+				}
+				writer.visitClassExecution(new ExecutionData(random.nextLong(), name.toString(), probes));
+			}
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * @return - blocks read by the JaCoCo reader, as strings
+	 */
+	static List<String> readWithJacoco(byte[] content) throws IOException {
+		List<String> blocks = new ArrayList<>();
+		ExecutionDataReader reader = new ExecutionDataReader(new ByteArrayInputStream(content));
+		reader.setSessionInfoVisitor(info -> blocks.add(toString(info)));
+		reader.setExecutionDataVisitor(data -> {
+			StringBuilder probes = new StringBuilder();
+			for (boolean probe : data.getProbes()) {
+				probes.append(probe ? '1' : '0');
+			}
+			blocks.add(toString(data.getId(), data.getName(), probes.toString(), data.hasHits()));
+		});
+		reader.read();
+		return blocks;
+	}
+
+	/**
+	 * Reads the blocks from the current position of the reader, also checks the bit array of the probes.
+	 * @return - blocks read, as strings
+	 */
+	static List<String> read(MappedExecFileReader reader) throws IOException {
+		List<String> blocks = new ArrayList<>();
+		setVisitors(reader, blocks);
+		reader.read();
+		return blocks;
+	}
+
+	static void setVisitors(MappedExecFileReader reader, List<String> blocks) {
+		reader.setSessionInfoVisitor(info -> blocks.add(toString(info)));
+		reader.setExecutionDataVisitor(data -> {
+			StringBuilder probes = new StringBuilder();
+			long[] bits = data.toLongArray();
+			assertEquals((data.getProbeCount() + 63) >>> 6, bits.length);
+			for (int p = 0; p < data.getProbeCount(); p++) {
+				probes.append(data.isExecuted(p) ? '1' : '0');
+				assertEquals(data.isExecuted(p), (bits[p >>> 6] & (1L << p)) != 0);
+			}
+			blocks.add(toString(data.getId(), data.getName(), probes.toString(), data.hasHits()));
+		});
+	}
+
+	private static String toString(SessionInfo info) {
+		return "session " + info.getId() + " " + info.getStartTimeStamp() + " " + info.getDumpTimeStamp();
+	}
+
+	private static String toString(long id, String name, String probes, boolean hasHits) {
+		return String.format("class %016x %s %s %b", id, name, probes, hasHits);
+	}
+}
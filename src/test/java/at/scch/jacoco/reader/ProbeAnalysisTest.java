@@ -0,0 +1,276 @@
+package at.scch.jacoco.reader;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.internal.data.CRC64;
+import org.jacoco.core.internal.flow.ClassProbesAdapter;
+import org.jacoco.core.internal.flow.ClassProbesVisitor;
+import org.jacoco.core.internal.flow.MethodProbesVisitor;
+import org.jacoco.core.internal.instr.InstrSupport;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.*;
+import java.net.URISyntaxException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares the coverage derived from the probe index with the coverage computed by the JaCoCo analyzer,
+ * for the fixture classes below and several probe arrays.
+ */
+class ProbeAnalysisTest {
+
+	private static final String PATH = ProbeAnalysisTest.class.getPackage().getName().replace('.', '/');
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void probeIndexMatchesAnalyzer() throws IOException, URISyntaxException {
+		File bins = tempDir.resolve("bin").toFile();
+		Map<String, byte[]> classes = copyFixtures(bins);
+		File execFile = tempDir.resolve("jacoco.exec").toFile();
+		List<String> sessionIDs = writeExecFile(execFile, classes);
+
+		JacocoCoverageReport expected = JacocoReportGenerator.parseExecFile(execFile, bins);
+		JacocoProbeIndex index = JacocoReportGenerator.createProbeIndex(Collections.singleton(bins), Collections.emptySet());
+		List<JacocoCoverageReport> reports = Arrays.asList(
+				JacocoReportGenerator.parseExecFile(execFile, index),
+				JacocoReportGenerator.streamExecFile(execFile, index));
+
+		Map<String, String> lines = getLines(expected);
+		assertTrue(lines.keySet().stream().anyMatch(line -> line.contains("lambda$")), "lambdas are analyzed");
+		assertTrue(lines.keySet().stream().anyMatch(line -> line.contains("$1.run()")), "anonymous classes are analyzed");
+		assertFalse(lines.keySet().stream().anyMatch(line -> line.contains("compareTo(Object)")), "bridge methods are filtered");
+		assertFalse(getLineCounts(expected.getSession("all")).isEmpty());
+		Set<String> classNames = getClassNames(expected);
+		assertTrue(classes.containsKey(PATH + "/ProbeAnalysisTest$Shape"));
+		assertFalse(classNames.contains(ProbeAnalysisTest.class.getName() + "$Shape"), "classes without code are skipped");
+		assertEquals(classNames, getClassNames(new JacocoCoverageReport(index.getPackages())));
+		for (int workers : new int[]{1, 2}) {
+			Set<String> compactNames = new TreeSet<>();
+			for (CompactStructure.PackageView pkg : JacocoReportGenerator.createCompactStructure(Collections.singleton(bins), Collections.emptySet(), null, null, workers, null).getPackages()) {
+				for (CompactStructure.ClassView clazz : pkg.getClasses()) {
+					compactNames.add(clazz.getFullName());
+				}
+			}
+			assertEquals(classNames, compactNames);
+		}
+
+		for (JacocoCoverageReport report : reports) {
+			assertEquals(lines, getLines(report));
+			assertEquals(sessionIDs.size(), report.numberOfSessions());
+			for (String sessionID : sessionIDs) {
+				assertEquals(getLineCounts(expected.getSession(sessionID)), getLineCounts(report.getSession(sessionID)), sessionID);
+			}
+		}
+	}
+
+	/**
+	 * Copies the class files of the fixtures to a directory of their own.
+	 * @return - class files, by VM name
+	 */
+	static Map<String, byte[]> copyFixtures(File bins) throws IOException, URISyntaxException {
+		Path classes = Path.of(ProbeAnalysisTest.class.getProtectionDomain().getCodeSource().getLocation().toURI()).resolve(PATH);
+		Path target = bins.toPath().resolve(PATH);
+		Files.createDirectories(target);
+		Map<String, byte[]> fixtures = new TreeMap<>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(classes, ProbeAnalysisTest.class.getSimpleName() + "$*.class")) {
+			for (Path file : files) {
+				byte[] buffer = Files.readAllBytes(file);
+				Files.write(target.resolve(file.getFileName()), buffer);
+				String name = file.getFileName().toString();
+				fixtures.put(PATH + "/" + name.substring(0, name.length() - ".class".length()), buffer);
+			}
+		}
+		return fixtures;
+	}
+
+	/**
+	 * Writes sessions with no probe executed, all probes executed and random probes executed.
+	 * @return - session IDs
+	 */
+	static List<String> writeExecFile(File execFile, Map<String, byte[]> classes) throws IOException {
+		Random random = new Random(5);
+		List<String> sessionIDs = new ArrayList<>(Arrays.asList("none", "all"));
+		for (int i = 0; i < 30; i++) {
+			sessionIDs.add("random" + i);
+		}
+		try (OutputStream out = new BufferedOutputStream(new FileOutputStream(execFile))) {
+			ExecutionDataWriter writer = new ExecutionDataWriter(out);
+			for (String sessionID : sessionIDs) {
+				writer.visitSessionInfo(new SessionInfo(sessionID, 0, 0));
+				double density = random.nextDouble();
+				for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+					boolean[] probes = new boolean[getProbeCount(entry.getValue())];
+					for (int p = 0; p < probes.length; p++) {
+						probes[p] = sessionID.equals("all") || sessionID.startsWith("random") && random.nextDouble() < density;
+					}
+					writer.visitClassExecution(new ExecutionData(CRC64.classId(entry.getValue()), entry.getKey(), probes));
+				}
+			}
+		}
+		return sessionIDs;
+	}
+
+	static int getProbeCount(byte[] buffer) {
+		int[] count = new int[1];
+		ClassProbesVisitor visitor = new ClassProbesVisitor() {
+			@Override
+			public MethodProbesVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+				return null;
+			}
+
+			@Override
+			public void visitTotalProbeCount(int probeCount) {
+				count[0] = probeCount;
+			}
+		};
+		InstrSupport.classReaderFor(buffer).accept(new ClassProbesAdapter(visitor, false), 0);
+		return count[0];
+	}
+
+	/**
+	 * @return - instructions, branches and complexity of every line of the structure, by line identifier
+	 */
+	static Map<String, String> getLines(JacocoCoverageReport report) {
+		Map<String, String> lines = new TreeMap<>();
+		for (JacocoPackage pkg : report.getPackages()) {
+			for (JacocoClass clazz : pkg.getClasses()) {
+				for (JacocoMethod method : clazz.getMethods()) {
+					for (JacocoLine line : method.getLines()) {
+						lines.put(line.getIdentifier(), line.getInstructions() + "/" + line.getBranches() + "/" + method.getComplexity());
+					}
+				}
+			}
+		}
+		return lines;
+	}
+
+	private static Set<String> getClassNames(JacocoCoverageReport report) {
+		Set<String> names = new TreeSet<>();
+		for (JacocoPackage pkg : report.getPackages()) {
+			for (JacocoClass clazz : pkg.getClasses()) {
+				names.add(clazz.getFullName());
+			}
+		}
+		return names;
+	}
+
+	/**
+	 * @return - covered instructions and branches of every covered line, by line identifier
+	 */
+	static Map<String, String> getLineCounts(JacocoSession session) {
+		Map<String, String> lines = new TreeMap<>();
+		for (JacocoMethodCoverage methodCoverage : session.getCoverage().values()) {
+			String method = methodCoverage.getMethod().getFullName();
+			methodCoverage.visitLinesCovered((lineNumber, instructions, branches) ->
+					lines.put(method + ":" + lineNumber, instructions + "/" + branches));
+		}
+		return lines;
+	}
+
+	static class Fixture implements Comparable<Fixture> {
+
+		private final int value;
+
+		Fixture(int value) {
+			super();
+			this.value = value;
+		}
+
+		int tryFinally(int[] values) {
+			int sum = 0;
+			try {
+				for (int v : values) {
+					sum += 10 / v;
+				}
+			} catch (ArithmeticException e) {
+				sum = -1;
+			} finally {
+				sum++;
+			}
+			return sum;
+		}
+
+		String switchOnInt(int i) {
+			switch (i) {
+				case 1:
+					return "one";
+				case 2:
+				case 3:
+					return "few";
+				case 100:
+					return "many";
+				default:
+					return "other";
+			}
+		}
+
+		int switchOnString(String s) {
+			switch (s) {
+				case "a":
+					return 1;
+				case "b":
+					return 2;
+				default:
+					return s.isEmpty() ? 0 : 3;
+			}
+		}
+
+		long switchOnEnum(TimeUnit unit) {
+			switch (unit) {
+				case SECONDS:
+					return value * 1000L;
+				case MINUTES:
+					return value * 60000L;
+				default:
+					return unit.toMillis(value);
+			}
+		}
+
+		List<Integer> lambdas(List<Integer> values) {
+			Function<Integer, Integer> twice = v -> v * 2;
+			return values.stream()
+					.filter(v -> v > value && v % 2 == 0)
+					.map(twice)
+					.collect(Collectors.toList());
+		}
+
+		Runnable anonymous(List<Integer> values) {
+			return new Runnable() {
+				@Override
+				public void run() {
+					if (!values.isEmpty()) {
+						values.remove(0);
+					}
+				}
+			};
+		}
+
+		/**
+		 * Compiled with a synthetic bridge method compareTo(Object), which the analyzers filter.
+		 */
+		@Override
+		public int compareTo(Fixture other) {
+			return Integer.compare(value, other.value);
+		}
+	}
+
+	/**
+	 * No method contains code, so the class is not part of the structure.
+	 */
+	interface Shape {
+
+		int area();
+	}
+}
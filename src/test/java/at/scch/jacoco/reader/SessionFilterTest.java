@@ -0,0 +1,117 @@
+package at.scch.jacoco.reader;
+
+import org.jacoco.core.data.ExecutionData;
+import org.jacoco.core.data.ExecutionDataWriter;
+import org.jacoco.core.data.SessionInfo;
+import org.jacoco.core.internal.data.CRC64;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.*;
+import java.net.URISyntaxException;
+import java.nio.file.Path;
+import java.util.*;
+
+import static at.scch.jacoco.reader.ProbeAnalysisTest.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionFilterTest {
+
+	@TempDir
+	Path tempDir;
+
+	@Test
+	void selectsByIdsPatternsAndTimeWindow() {
+		assertTrue(SessionFilter.ALL.accept(new SessionInfo("any", Long.MIN_VALUE, Long.MAX_VALUE)));
+
+		SessionFilter ids = SessionFilter.ALL.withIds(Arrays.asList("a", "b.c"));
+		assertTrue(ids.accept("a"));
+		assertTrue(ids.accept("b.c"));
+		assertFalse(ids.accept("bxc"));
+		assertFalse(ids.accept("c"));
+
+		// characters of regular expressions are matched as they are
+		SessionFilter patterns = SessionFilter.ALL.withIdPatterns(Arrays.asList("test.*Foo?", "[x]"));
+		assertTrue(patterns.accept("test.Foo1"));
+		assertTrue(patterns.accept("test.barFooX"));
+		assertFalse(patterns.accept("testxFoo1"));
+		assertFalse(patterns.accept("test.Foo"));
+		assertFalse(patterns.accept("test.Foo12"));
+		assertTrue(patterns.accept("[x]"));
+		assertFalse(patterns.accept("x"));
+		assertEquals(patterns.accept("test.Foo1"), patterns.withIdPatterns(Collections.emptyList()).accept("test.Foo1"));
+
+		// either one of the IDs or one of the patterns
+		SessionFilter both = ids.withIdPatterns(Collections.singletonList("*Test"));
+		assertTrue(both.accept("a"));
+		assertTrue(both.accept("FooTest"));
+		assertFalse(both.accept("FooTests"));
+
+		// and within the time window, narrowed by every window
+		SessionFilter window = both.withTimeWindow(100, 200).withTimeWindow(0, 150);
+		assertTrue(window.accept(new SessionInfo("a", 100, 150)));
+		assertFalse(window.accept(new SessionInfo("a", 99, 150)));
+		assertFalse(window.accept(new SessionInfo("a", 100, 151)));
+		assertFalse(window.accept(new SessionInfo("c", 100, 150)));
+		// the ID alone is selected regardless of the time window
+		assertTrue(window.accept("FooTest"));
+		assertFalse(window.accept("c"));
+	}
+
+	@Test
+	void readersSkipSessionsNotSelected() throws IOException, URISyntaxException {
+		File bins = tempDir.resolve("bin").toFile();
+		Map<String, byte[]> classes = copyFixtures(bins);
+		File execFile = tempDir.resolve("jacoco.exec").toFile();
+		Random random = new Random(29);
+		List<SessionInfo> infos = new ArrayList<>();
+		try (OutputStream out = new BufferedOutputStream(new FileOutputStream(execFile))) {
+			ExecutionDataWriter writer = new ExecutionDataWriter(out);
+			for (int i = 0; i < 20; i++) {
+				SessionInfo info = new SessionInfo((i % 2 == 0 ? "unit" : "it") + i, i * 10, i * 10 + 15);
+				infos.add(info);
+				writer.visitSessionInfo(info);
+				for (Map.Entry<String, byte[]> entry : classes.entrySet()) {
+					boolean[] probes = new boolean[getProbeCount(entry.getValue())];
+					for (int p = 0; p < probes.length; p++) {
+						probes[p] = random.nextDouble() < 0.2;
+					}
+					writer.visitClassExecution(new ExecutionData(CRC64.classId(entry.getValue()), entry.getKey(), probes));
+				}
+			}
+		}
+		JacocoProbeIndex index = JacocoReportGenerator.createProbeIndex(Collections.singleton(bins), Collections.emptySet());
+		JacocoCoverageReport all = JacocoReportGenerator.streamExecFile(execFile, index);
+		assertEquals(infos.size(), all.numberOfSessions());
+
+		SessionFilter filter = SessionFilter.ALL.withIds(Collections.singleton("it1"))
+				.withIdPatterns(Collections.singleton("unit?"))
+				.withTimeWindow(0, 60);
+		List<String> expected = new ArrayList<>();
+		for (SessionInfo info : infos) {
+			if (filter.accept(info)) {
+				expected.add(info.getId());
+			}
+		}
+		assertEquals(Arrays.asList("unit0", "it1", "unit2", "unit4"), expected);
+
+		IncrementalExecFile incremental = new IncrementalExecFile(execFile, index, filter);
+		incremental.update();
+		List<JacocoCoverageReport> reports = Arrays.asList(
+				JacocoReportGenerator.streamExecFile(execFile, index, 2, filter),
+				JacocoReportGenerator.parseExecFile(execFile, index, 2, filter),
+				JacocoReportGenerator.openExecFile(execFile, index, filter, 1),
+				JacocoReportGenerator.parseExecFile(execFile, Collections.singleton(bins), Collections.emptySet(), 2, filter),
+				incremental.getReport());
+		for (JacocoCoverageReport report : reports) {
+			List<String> ids = new ArrayList<>();
+			for (JacocoSession session : report.getSessions()) {
+				ids.add(session.getId());
+			}
+			assertEquals(expected, ids);
+			for (String id : expected) {
+				assertEquals(getLineCounts(all.getSession(id)), getLineCounts(report.getSession(id)), id);
+			}
+		}
+	}
+}
@@ -0,0 +1,105 @@
+package at.scch.jacoco.reader;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+import static at.scch.jacoco.reader.JacocoSessionTest.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares merging more sessions than are merged one after another with folding the coverage maps,
+ * a union keeps the first coverage with the most instructions covered, an intersection the first with the least.
+ */
+class SessionMergerTest {
+
+	private static final int SESSIONS = 1500;
+
+	@Test
+	void unionOfManySessionsMatchesFold() throws InterruptedException, ExecutionException {
+		Random random = new Random(31);
+		Map<String, JacocoMethod> structure = createStructure(false);
+		List<Map<String, int[]>> coverages = new ArrayList<>();
+		List<JacocoSession> sessions = new ArrayList<>();
+		for (int i = 0; i < SESSIONS; i++) {
+			Map<String, int[]> coverage = randomCoverage(random, structure, 0.05);
+			coverages.add(coverage);
+			sessions.add(createSession("s" + i, coverage, structure));
+		}
+		Map<String, int[]> expected = new TreeMap<>();
+		for (Map<String, int[]> coverage : coverages) {
+			for (Map.Entry<String, int[]> line : coverage.entrySet()) {
+				int[] counts = expected.get(line.getKey());
+				if (counts == null || counts[0] < line.getValue()[0]) {
+					expected.put(line.getKey(), line.getValue());
+				}
+			}
+		}
+
+		assertCoverage(expected, JacocoCoverageReport.union(sessions));
+		// in a pool of several workers the sessions are merged in a tree
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			assertCoverage(expected, pool.submit(() -> JacocoCoverageReport.union(sessions)).get());
+			assertCoverage(expected, pool.submit(() -> new SessionMerger("union", null, true).merge(toLazySuppliers(sessions))).get());
+			JacocoCoverageReport report = createReport(structure);
+			for (JacocoSession session : sessions) {
+				report.addSession(session.getId(), () -> session.copy(session.getId()));
+			}
+			assertCoverage(expected, pool.submit(() -> report.union()).get());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	void intersectionOfManySessionsMatchesFold() {
+		Random random = new Random(37);
+		Map<String, JacocoMethod> structure = createStructure(false);
+		// lines all sessions cover, so the intersection does not end up empty
+		Set<String> common = new HashSet<>(randomCoverage(random, structure, 0.2).keySet());
+		List<Map<String, int[]>> coverages = new ArrayList<>();
+		List<JacocoSession> sessions = new ArrayList<>();
+		for (int i = 0; i < SESSIONS; i++) {
+			Map<String, int[]> coverage = randomCoverage(random, structure, 0.5);
+			for (String line : common) {
+				coverage.putIfAbsent(line, new int[]{1 + random.nextInt(4), random.nextInt(4)});
+			}
+			coverages.add(coverage);
+			sessions.add(createSession("s" + i, coverage, structure));
+		}
+		Map<String, int[]> expected = new TreeMap<>(coverages.get(0));
+		for (Map<String, int[]> coverage : coverages.subList(1, coverages.size())) {
+			expected.keySet().retainAll(coverage.keySet());
+			for (Map.Entry<String, int[]> line : expected.entrySet()) {
+				int[] counts = coverage.get(line.getKey());
+				if (counts[0] < line.getValue()[0]) {
+					line.setValue(counts);
+				}
+			}
+		}
+		assertFalse(expected.isEmpty());
+
+		assertCoverage(expected, JacocoCoverageReport.intersection(sessions));
+		JacocoCoverageReport report = createReport(structure);
+		for (JacocoSession session : sessions) {
+			report.addSession(session);
+		}
+		assertCoverage(expected, report.intersection());
+
+		// an empty session empties the intersection
+		sessions.add(SESSIONS / 2, new JacocoSession("empty"));
+		assertCoverage(Collections.emptyMap(), JacocoCoverageReport.intersection(sessions));
+	}
+
+	private static List<Supplier<JacocoSession>> toLazySuppliers(List<JacocoSession> sessions) {
+		List<Supplier<JacocoSession>> suppliers = new ArrayList<>();
+		for (JacocoSession session : sessions) {
+			suppliers.add(() -> session.copy(session.getId()));
+		}
+		return suppliers;
+	}
+}
@@ -0,0 +1,46 @@
+package at.scch.jacoco.reader;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionProbesTest {
+
+	@Test
+	void addProbesMergesProbesOfTheSameLength() {
+		SessionProbes session = new SessionProbes("s");
+		boolean[] executed = new boolean[70];
+		executed[3] = true;
+		session.addProbes(1L, "a/Foo", executed);
+		session.addProbes(1L, "a/Foo", new long[]{0b10L, 0L}, 70);
+		executed = new boolean[70];
+		executed[69] = true;
+		session.addProbes(1L, "a/Foo", executed);
+		assertArrayEquals(new long[]{0b1010L, 1L << 5}, session.getProbes().get(1L));
+	}
+
+	@Test
+	void addProbesRejectsProbesOfAnotherLength() {
+		SessionProbes session = new SessionProbes("s");
+		session.addProbes(1L, "a/Foo", new boolean[10]);
+		// the same number of words, but not the same number of probes
+		IllegalStateException e = assertThrows(IllegalStateException.class, () -> session.addProbes(1L, "a/Foo", new boolean[12]));
+		assertEquals("Incompatible execution data for class a/Foo with id 0000000000000001.", e.getMessage());
+		assertThrows(IllegalStateException.class, () -> session.addProbes(1L, null, new long[1], 12));
+		assertThrows(IllegalStateException.class, () -> session.addProbes(1L, null, new long[2], 70));
+	}
+
+	@Test
+	void mergeRejectsProbesOfAnotherLength() {
+		SessionProbes session = new SessionProbes("s");
+		session.addProbes(1L, "a/Foo", new boolean[10]);
+		SessionProbes other = new SessionProbes("s");
+		other.addProbes(1L, "a/Foo", new boolean[12]);
+		assertThrows(IllegalStateException.class, () -> session.merge(other));
+
+		SessionProbes same = new SessionProbes("s");
+		same.addProbes(1L, "a/Foo", new boolean[]{true, false, false, false, false, false, false, false, false, false});
+		session.merge(same);
+		assertArrayEquals(new long[]{1L}, session.getProbes().get(1L));
+	}
+}
@@ -0,0 +1,340 @@
+package at.scch.jacoco.reader;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static at.scch.jacoco.reader.JacocoSessionTest.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares the lazy greedy selection with a greedy selection that weighs every session again in every step,
+ * and checks that the selected sessions cover as much as the union of all sessions.
+ */
+class SetCoverTest {
+
+	@Test
+	void minimizeMatchesGreedySelection() {
+		Random random = new Random(59);
+		Map<String, JacocoMethod> structure = createStructure(false);
+		for (int round = 0; round < 10; round++) {
+			Map<String, Map<String, int[]>> coverages = randomCoverages(random, structure, 60);
+			JacocoCoverageReport report = createReport(coverages, structure);
+			Map<String, Double> costs = round % 2 == 0 ? null : randomCosts(random, coverages.keySet());
+			for (JacocoSessionSelection.Criterion criterion : JacocoSessionSelection.Criterion.values()) {
+				Greedy greedy = new Greedy(coverages, costs, criterion);
+				JacocoSessionSelection selection = costs == null ? report.minimize(criterion) : report.minimize(criterion, costs, 0);
+				assertEquals(criterion, selection.getCriterion());
+				assertTrue(selection.isComplete());
+				assertEquals(greedy.total, selection.getTotal());
+				assertEquals(greedy.total, selection.getCovered());
+
+				List<String> expected = greedy.select();
+				if (criterion == JacocoSessionSelection.Criterion.BRANCHES) {
+					// sessions covering hidden branches are added after the greedy selection
+					assertEquals(expected, selection.getSessionIDs().subList(0, expected.size()));
+				} else {
+					assertEquals(expected, selection.getSessionIDs());
+				}
+				assertCoversUnion(coverages, selection, report);
+			}
+		}
+	}
+
+	@Test
+	void minimizeSelectsSessionsCoveringHiddenBranches() {
+		Map<String, JacocoMethod> structure = createStructure(false);
+		List<JacocoLine> lines = new ArrayList<>(structure.values().iterator().next().getLines());
+		String l = lines.get(0).getIdentifier();
+		Map<String, Map<String, int[]>> coverages = new LinkedHashMap<>();
+		// the union keeps the coverage of first, as no session covers more instructions
+		coverages.put("first", Map.of(l, new int[]{3, 1}));
+		// covers the line with as many instructions, but other branches
+		coverages.put("other", Map.of(l, new int[]{3, 2},
+				lines.get(1).getIdentifier(), new int[]{1, 2},
+				lines.get(2).getIdentifier(), new int[]{1, 2},
+				lines.get(3).getIdentifier(), new int[]{1, 2}));
+		// covers the line as the union does, and is selected for it instead of first
+		coverages.put("same", Map.of(l, new int[]{3, 1},
+				lines.get(4).getIdentifier(), new int[]{1, 2},
+				lines.get(5).getIdentifier(), new int[]{1, 2}));
+		JacocoCoverageReport report = createReport(coverages, structure);
+
+		JacocoSessionSelection selection = report.minimize(JacocoSessionSelection.Criterion.BRANCHES);
+		// the union of other and same keeps the branches of other
+		assertEquals(Arrays.asList("other", "same", "first"), selection.getSessionIDs());
+		assertEquals(11, selection.getTotal());
+		assertCoversUnion(coverages, selection, report);
+
+		// same adds the instructions of the line as well
+		assertEquals(Arrays.asList("same", "other"), report.minimize(JacocoSessionSelection.Criterion.INSTRUCTIONS).getSessionIDs());
+		assertEquals(Arrays.asList("other", "same"), report.minimize(JacocoSessionSelection.Criterion.LINES).getSessionIDs());
+	}
+
+	@Test
+	void minimizeWithoutCoverage() {
+		Map<String, JacocoMethod> structure = createStructure(false);
+		Map<String, Map<String, int[]>> coverages = new LinkedHashMap<>();
+		coverages.put("a", new TreeMap<>());
+		coverages.put("b", new TreeMap<>());
+		JacocoCoverageReport report = createReport(coverages, structure);
+		for (JacocoSessionSelection.Criterion criterion : JacocoSessionSelection.Criterion.values()) {
+			JacocoSessionSelection selection = report.minimize(criterion);
+			assertTrue(selection.getSessionIDs().isEmpty());
+			assertEquals(0, selection.getTotal());
+			assertTrue(selection.isComplete());
+		}
+	}
+
+	@Test
+	void prioritizeMatchesGreedyOrder() {
+		Random random = new Random(61);
+		Map<String, JacocoMethod> structure = createStructure(false);
+		for (int round = 0; round < 10; round++) {
+			Map<String, Map<String, int[]>> coverages = randomCoverages(random, structure, 60);
+			JacocoCoverageReport report = createReport(coverages, structure);
+			Map<String, Double> costs = round % 2 == 0 ? null : randomCosts(random, coverages.keySet());
+			for (JacocoSessionSelection.Criterion criterion : JacocoSessionSelection.Criterion.values()) {
+				List<String> expected = new Greedy(coverages, costs, criterion).prioritize();
+				assertEquals(new HashSet<>(coverages.keySet()), new HashSet<>(expected));
+
+				Iterator<String> order = costs == null ? report.prioritize(criterion) : report.prioritize(criterion, costs);
+				List<String> actual = new ArrayList<>();
+				while (order.hasNext()) {
+					actual.add(order.next());
+				}
+				assertEquals(expected, actual);
+				assertThrows(NoSuchElementException.class, order::next);
+			}
+		}
+	}
+
+	@Test
+	void prioritizeStartsOverOnceSaturated() {
+		Map<String, JacocoMethod> structure = createStructure(false);
+		List<JacocoLine> lines = new ArrayList<>(structure.values().iterator().next().getLines());
+		Map<String, Map<String, int[]>> coverages = new LinkedHashMap<>();
+		coverages.put("empty", new TreeMap<>());
+		coverages.put("one", Map.of(lines.get(0).getIdentifier(), new int[]{1, 0}));
+		coverages.put("two", Map.of(lines.get(0).getIdentifier(), new int[]{1, 0}, lines.get(1).getIdentifier(), new int[]{1, 0}));
+		coverages.put("three", Map.of(lines.get(2).getIdentifier(), new int[]{1, 0}));
+		coverages.put("none", new TreeMap<>());
+		JacocoCoverageReport report = createReport(coverages, structure);
+
+		List<String> actual = new ArrayList<>();
+		report.prioritize(JacocoSessionSelection.Criterion.LINES).forEachRemaining(actual::add);
+		// two and three cover all lines, one comes after the reset, sessions covering nothing last
+		assertEquals(Arrays.asList("two", "three", "one", "empty", "none"), actual);
+	}
+
+	/**
+	 * Sessions covering few lines, some of them empty, others covering the same lines as a session before them.
+	 */
+	static Map<String, Map<String, int[]>> randomCoverages(Random random, Map<String, JacocoMethod> structure, int sessions) {
+		Map<String, Map<String, int[]>> coverages = new LinkedHashMap<>();
+		for (int i = 0; i < sessions; i++) {
+			Map<String, int[]> coverage;
+			if (i % 15 == 4) {
+				coverage = new TreeMap<>();
+			} else if (i % 15 == 9) {
+				coverage = new TreeMap<>(coverages.get("s" + (i - 1)));
+			} else {
+				coverage = randomCoverage(random, structure, random.nextDouble() * 0.2);
+			}
+			coverages.put("s" + i, coverage);
+		}
+		return coverages;
+	}
+
+	/**
+	 * Costs of some sessions, one of them free.
+	 */
+	static Map<String, Double> randomCosts(Random random, Collection<String> ids) {
+		Map<String, Double> costs = new HashMap<>();
+		for (String id : ids) {
+			if (random.nextInt(3) > 0) {
+				costs.put(id, 0.5 + random.nextInt(6) * 0.5);
+			}
+		}
+		costs.put(ids.iterator().next(), 0.0);
+		return costs;
+	}
+
+	static JacocoCoverageReport createReport(Map<String, Map<String, int[]>> coverages, Map<String, JacocoMethod> structure) {
+		JacocoCoverageReport report = JacocoSessionTest.createReport(structure);
+		for (Map.Entry<String, Map<String, int[]>> entry : coverages.entrySet()) {
+			report.addSession(createSession(entry.getKey(), entry.getValue(), structure));
+		}
+		return report;
+	}
+
+	/**
+	 * @return - union of the coverage maps, the first coverage with the most instructions of a line is kept
+	 */
+	static Map<String, int[]> union(Collection<Map<String, int[]>> coverages) {
+		Map<String, int[]> union = new TreeMap<>();
+		for (Map<String, int[]> coverage : coverages) {
+			for (Map.Entry<String, int[]> line : coverage.entrySet()) {
+				int[] counts = union.get(line.getKey());
+				if (counts == null || counts[0] < line.getValue()[0]) {
+					union.put(line.getKey(), line.getValue());
+				}
+			}
+		}
+		return union;
+	}
+
+	/**
+	 * The union of the selected sessions, in the order of the report, covers every line of the union of all sessions,
+	 * with the instructions or branches of the union, lines without instructions or branches need not be covered.
+	 */
+	private static void assertCoversUnion(Map<String, Map<String, int[]>> coverages, JacocoSessionSelection selection,
+										  JacocoCoverageReport report) {
+		Map<String, int[]> union = union(coverages.values());
+		assertCoverage(union, report.union());
+		List<Map<String, int[]>> selected = new ArrayList<>();
+		for (Map.Entry<String, Map<String, int[]>> entry : coverages.entrySet()) {
+			if (selection.getSessionIDs().contains(entry.getKey())) {
+				selected.add(entry.getValue());
+			}
+		}
+		Map<String, int[]> selectedUnion = union(selected);
+		if (selection.getCriterion() == JacocoSessionSelection.Criterion.LINES) {
+			assertEquals(union.keySet(), selectedUnion.keySet());
+		}
+		for (Map.Entry<String, int[]> line : union.entrySet()) {
+			int[] counts = selectedUnion.get(line.getKey());
+			switch (selection.getCriterion()) {
+				case INSTRUCTIONS:
+					if (line.getValue()[0] > 0) {
+						assertEquals(line.getValue()[0], counts[0], line.getKey());
+					}
+					break;
+				case BRANCHES:
+					if (line.getValue()[1] > 0) {
+						assertEquals(line.getValue()[1], counts[1], line.getKey());
+					}
+					break;
+				default:
+			}
+		}
+	}
+
+	/**
+	 * Greedy selection, weighing every remaining session again in every step.
+	 */
+	static final class Greedy {
+
+		private final List<String> ids;
+
+		/**
+		 * Weight of every line a session covers as the union does, by session.
+		 */
+		private final List<Map<String, Integer>> lines;
+
+		private final double[] costs;
+
+		final long total;
+
+		Greedy(Map<String, Map<String, int[]>> coverages, Map<String, Double> costs, JacocoSessionSelection.Criterion criterion) {
+			this.ids = new ArrayList<>(coverages.keySet());
+			this.lines = new ArrayList<>();
+			this.costs = new double[ids.size()];
+			Map<String, int[]> union = union(coverages.values());
+			for (Map<String, int[]> coverage : coverages.values()) {
+				Map<String, Integer> weights = new HashMap<>();
+				for (Map.Entry<String, int[]> line : coverage.entrySet()) {
+					int[] counts = union.get(line.getKey());
+					if (criterion == JacocoSessionSelection.Criterion.LINES) {
+						weights.put(line.getKey(), 1);
+					} else if (Arrays.equals(counts, line.getValue())) {
+						weights.put(line.getKey(), criterion == JacocoSessionSelection.Criterion.INSTRUCTIONS ? counts[0] : counts[1]);
+					}
+				}
+				lines.add(weights);
+			}
+			for (int s = 0; s < ids.size(); s++) {
+				this.costs[s] = costs == null ? 1 : costs.getOrDefault(ids.get(s), 1.0);
+			}
+			long total = 0;
+			for (int[] counts : union.values()) {
+				total += criterion == JacocoSessionSelection.Criterion.LINES ? 1
+						: criterion == JacocoSessionSelection.Criterion.INSTRUCTIONS ? counts[0] : counts[1];
+			}
+			this.total = total;
+		}
+
+		List<String> select() {
+			Set<String> covered = new HashSet<>();
+			List<String> selected = new ArrayList<>();
+			boolean[] excluded = new boolean[ids.size()];
+			long coveredWeight = 0;
+			while (coveredWeight < total) {
+				int best = next(covered, excluded);
+				selected.add(ids.get(best));
+				excluded[best] = true;
+				coveredWeight += gain(best, covered);
+				covered.addAll(lines.get(best).keySet());
+			}
+			return selected;
+		}
+
+		/**
+		 * @return - all sessions, each adding the most weight per cost to the sessions before it, starting over
+		 * once no session adds weight, sessions without weight last
+		 */
+		List<String> prioritize() {
+			Set<String> covered = new HashSet<>();
+			List<String> order = new ArrayList<>();
+			boolean[] excluded = new boolean[ids.size()];
+			while (order.size() < ids.size()) {
+				int next = next(covered, excluded);
+				if (next == -1) {
+					covered.clear();
+					next = next(covered, excluded);
+				}
+				if (next == -1) {
+					next = 0;
+					while (excluded[next]) {
+						next++;
+					}
+				} else {
+					covered.addAll(lines.get(next).keySet());
+				}
+				order.add(ids.get(next));
+				excluded[next] = true;
+			}
+			return order;
+		}
+
+		/**
+		 * @return - the session adding the most weight per cost, the first of equal ones, or -1 if none adds weight
+		 */
+		int next(Set<String> covered, boolean[] excluded) {
+			int best = -1;
+			double bestPriority = 0;
+			for (int s = 0; s < ids.size(); s++) {
+				long gain = excluded[s] ? 0 : gain(s, covered);
+				if (gain == 0) {
+					continue;
+				}
+				double priority = costs[s] > 0 ? gain / costs[s] : Double.POSITIVE_INFINITY;
+				if (best == -1 || priority > bestPriority) {
+					best = s;
+					bestPriority = priority;
+				}
+			}
+			return best;
+		}
+
+		long gain(int session, Set<String> covered) {
+			long gain = 0;
+			for (Map.Entry<String, Integer> line : lines.get(session).entrySet()) {
+				if (!covered.contains(line.getKey())) {
+					gain += line.getValue();
+				}
+			}
+			return gain;
+		}
+	}
+}
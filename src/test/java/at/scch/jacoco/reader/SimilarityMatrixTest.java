@@ -0,0 +1,154 @@
+package at.scch.jacoco.reader;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+import static at.scch.jacoco.reader.JacocoSessionTest.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares the similarity matrix and the most similar pairs with the intersections of the covered lines as sets.
+ */
+class SimilarityMatrixTest {
+
+	@Test
+	void similarityMatchesSetIntersections() throws InterruptedException, ExecutionException {
+		Random random = new Random(47);
+		Map<String, JacocoMethod> structure = createStructure(false);
+		JacocoCoverageReport report = createReport(structure);
+		Map<String, TreeSet<String>> lines = new LinkedHashMap<>();
+		// more sessions than fit in one tile, with empty and equal sessions, so many pairs are equally similar
+		for (int i = 0; i < 150; i++) {
+			Map<String, int[]> coverage;
+			if (i % 20 == 3) {
+				coverage = new TreeMap<>();
+			} else if (i % 20 == 4) {
+				coverage = randomCoverage(new Random(i / 20), structure, 0.1);
+			} else {
+				coverage = randomCoverage(random, structure, random.nextDouble() * 0.3);
+			}
+			lines.put("s" + i, new TreeSet<>(coverage.keySet()));
+			report.addSession(createSession("s" + i, coverage, structure));
+		}
+		List<String> ids = new ArrayList<>(lines.keySet());
+
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			for (JacocoSessionSimilarity.Measure measure : JacocoSessionSimilarity.Measure.values()) {
+				double[][] expected = new double[ids.size()][ids.size()];
+				List<String> pairs = new ArrayList<>();
+				for (int row = 0; row < ids.size(); row++) {
+					for (int column = 0; column < ids.size(); column++) {
+						expected[row][column] = similarity(lines.get(ids.get(row)), lines.get(ids.get(column)), measure);
+						if (row < column) {
+							pairs.add(toString(ids.get(row), ids.get(column), expected[row][column]));
+						}
+					}
+				}
+				sort(pairs);
+
+				assertMatrixEquals(expected, report.getSimilarityMatrix(measure));
+				assertMatrixEquals(expected, pool.submit(() -> report.getSimilarityMatrix(measure)).get());
+				for (int k : new int[]{1, 10, 100, 0}) {
+					List<String> top = k == 0 ? pairs : pairs.subList(0, k);
+					assertEquals(top, toStrings(report.getMostSimilarSessions(measure, k)));
+					assertEquals(top, toStrings(pool.submit(() -> report.getMostSimilarSessions(measure, k)).get()));
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	void similarityOfGroupsMatchesSetIntersections() {
+		Random random = new Random(53);
+		Map<String, JacocoMethod> structure = createStructure(false);
+		JacocoCoverageReport report = createReport(structure);
+		Map<String, TreeSet<String>> lines = new LinkedHashMap<>();
+		for (int i = 0; i < 90; i++) {
+			Map<String, int[]> coverage = i % 30 == 5 ? new TreeMap<>() : randomCoverage(random, structure, random.nextDouble() * 0.3);
+			lines.put("s" + i, new TreeSet<>(coverage.keySet()));
+			report.addSession(createSession("s" + i, coverage, structure));
+		}
+		// sessions in both groups are not paired with themselves, sessions not in the report cover no line
+		List<String> groupA = new ArrayList<>(Arrays.asList("missing", "s5", "s40"));
+		for (int i = 0; i < 70; i++) {
+			groupA.add("s" + i);
+		}
+		List<String> groupB = new ArrayList<>();
+		for (int i = 60; i < 90; i++) {
+			groupB.add("s" + i);
+		}
+		groupB.add("s40");
+		lines.put("missing", new TreeSet<>());
+
+		for (JacocoSessionSimilarity.Measure measure : JacocoSessionSimilarity.Measure.values()) {
+			double[][] expected = new double[groupA.size()][groupB.size()];
+			List<String> pairs = new ArrayList<>();
+			for (int row = 0; row < groupA.size(); row++) {
+				for (int column = 0; column < groupB.size(); column++) {
+					if (!groupA.get(row).equals(groupB.get(column))) {
+						expected[row][column] = similarity(lines.get(groupA.get(row)), lines.get(groupB.get(column)), measure);
+						pairs.add(toString(groupA.get(row), groupB.get(column), expected[row][column]));
+					}
+				}
+			}
+			sort(pairs);
+
+			assertMatrixEquals(expected, report.getSimilarityMatrix(groupA, groupB, measure));
+			for (int k : new int[]{1, 25, 0}) {
+				assertEquals(k == 0 ? pairs : pairs.subList(0, k), toStrings(report.getMostSimilarSessions(groupA, groupB, measure, k)));
+			}
+		}
+	}
+
+	private static double similarity(Set<String> a, Set<String> b, JacocoSessionSimilarity.Measure measure) {
+		Set<String> common = new TreeSet<>(a);
+		common.retainAll(b);
+		return measure.of(a.size(), b.size(), common.size());
+	}
+
+	/**
+	 * Sorts pairs most similar first, equally similar pairs in the order they were listed.
+	 */
+	private static void sort(List<String> pairs) {
+		Integer[] order = new Integer[pairs.size()];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, Comparator.<Integer>comparingDouble(i -> -getSimilarity(pairs.get(i))).thenComparingInt(i -> i));
+		List<String> sorted = new ArrayList<>(pairs.size());
+		for (int i : order) {
+			sorted.add(pairs.get(i));
+		}
+		pairs.clear();
+		pairs.addAll(sorted);
+	}
+
+	private static double getSimilarity(String pair) {
+		return Double.parseDouble(pair.substring(pair.lastIndexOf(' ') + 1));
+	}
+
+	private static String toString(String a, String b, double similarity) {
+		return a + " ~ " + b + ": " + similarity;
+	}
+
+	private static List<String> toStrings(List<JacocoSessionSimilarity> similarities) {
+		List<String> strings = new ArrayList<>();
+		for (JacocoSessionSimilarity similarity : similarities) {
+			strings.add(similarity.toString());
+		}
+		return strings;
+	}
+
+	private static void assertMatrixEquals(double[][] expected, double[][] actual) {
+		assertEquals(expected.length, actual.length);
+		for (int row = 0; row < expected.length; row++) {
+			assertArrayEquals(expected[row], actual[row], "row " + row);
+		}
+	}
+}
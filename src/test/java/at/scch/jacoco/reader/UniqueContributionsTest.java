@@ -0,0 +1,118 @@
+package at.scch.jacoco.reader;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+import static at.scch.jacoco.reader.JacocoSessionTest.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+class UniqueContributionsTest {
+
+	@Test
+	void uniqueContributionsMatchCoverCounts() throws InterruptedException, ExecutionException {
+		Random random = new Random(41);
+		Map<String, JacocoMethod> structure = createStructure(false);
+		Map<String, Map<String, int[]>> coverages = new LinkedHashMap<>();
+		for (int i = 0; i < 200; i++) {
+			Map<String, int[]> coverage;
+			if (i % 50 == 7) {
+				coverage = new TreeMap<>();
+			} else if (i % 50 == 8) {
+				// the same lines as the session before the empty one
+				coverage = new TreeMap<>(coverages.get("s" + (i - 2)));
+			} else {
+				coverage = randomCoverage(random, structure, 0.005 + random.nextDouble() * 0.02);
+			}
+			coverages.put("s" + i, coverage);
+		}
+		Map<String, Integer> covering = new HashMap<>();
+		for (Map<String, int[]> coverage : coverages.values()) {
+			for (String line : coverage.keySet()) {
+				covering.merge(line, 1, Integer::sum);
+			}
+		}
+
+		JacocoCoverageReport report = createReport(structure);
+		for (Map.Entry<String, Map<String, int[]>> entry : coverages.entrySet()) {
+			report.addSession(createSession(entry.getKey(), entry.getValue(), structure));
+		}
+		Map<String, JacocoSession> unique = report.getUniqueContributions();
+		// on several workers as well
+		ForkJoinPool pool = new ForkJoinPool(4);
+		Map<String, JacocoSession> uniqueInPool;
+		try {
+			uniqueInPool = pool.submit(() -> report.getUniqueContributions()).get();
+		} finally {
+			pool.shutdown();
+		}
+
+		assertEquals(new ArrayList<>(coverages.keySet()), new ArrayList<>(unique.keySet()));
+		assertEquals(new ArrayList<>(coverages.keySet()), new ArrayList<>(uniqueInPool.keySet()));
+		int nonEmpty = 0;
+		for (Map.Entry<String, Map<String, int[]>> entry : coverages.entrySet()) {
+			Map<String, int[]> expected = new TreeMap<>(entry.getValue());
+			expected.keySet().removeIf(line -> covering.get(line) > 1);
+			nonEmpty += expected.isEmpty() ? 0 : 1;
+			assertCoverage(expected, unique.get(entry.getKey()));
+			assertCoverage(expected, uniqueInPool.get(entry.getKey()));
+			assertCoverage(expected, report.getUniqueContribution(report.getSession(entry.getKey())));
+		}
+		assertTrue(nonEmpty > 0);
+		// the sessions are not changed
+		for (Map.Entry<String, Map<String, int[]>> entry : coverages.entrySet()) {
+			assertCoverage(entry.getValue(), report.getSession(entry.getKey()));
+		}
+	}
+
+	@Test
+	void lazySessionsAreBuiltOnce() {
+		Random random = new Random(43);
+		Map<String, JacocoMethod> structure = createStructure(false);
+		// keeps a single built session
+		JacocoCoverageReport report = new JacocoCoverageReport(createReport(structure).getPackages(), 1);
+		Map<String, Map<String, int[]>> coverages = new LinkedHashMap<>();
+		// sessions are built on several workers
+		Map<String, Integer> builds = new ConcurrentHashMap<>();
+		for (int i = 0; i < 150; i++) {
+			String id = "s" + i;
+			Map<String, int[]> coverage = randomCoverage(random, structure, 0.01);
+			coverages.put(id, coverage);
+			report.addSession(id, () -> {
+				builds.merge(id, 1, Integer::sum);
+				return createSession(id, coverage, structure);
+			});
+		}
+
+		Map<String, JacocoSession> unique = report.getUniqueContributions();
+		for (String id : coverages.keySet()) {
+			assertEquals(1, builds.get(id), id);
+		}
+		Map<String, Integer> covering = new HashMap<>();
+		for (Map<String, int[]> coverage : coverages.values()) {
+			for (String line : coverage.keySet()) {
+				covering.merge(line, 1, Integer::sum);
+			}
+		}
+		for (Map.Entry<String, Map<String, int[]>> entry : coverages.entrySet()) {
+			Map<String, int[]> expected = new TreeMap<>(entry.getValue());
+			expected.keySet().removeIf(line -> covering.get(line) > 1);
+			assertCoverage(expected, unique.get(entry.getKey()));
+		}
+	}
+
+	@Test
+	void uniqueContributionsOfEmptySessions() {
+		JacocoCoverageReport report = createReport(createStructure(false));
+		report.addSession(new JacocoSession("a"));
+		report.addSession(new JacocoSession("b"));
+		Map<String, JacocoSession> unique = report.getUniqueContributions();
+		assertEquals(Arrays.asList("a", "b"), new ArrayList<>(unique.keySet()));
+		assertTrue(unique.get("a").isEmpty());
+		assertTrue(unique.get("b").isEmpty());
+		assertTrue(createReport(createStructure(false)).getUniqueContributions().isEmpty());
+	}
+}